@@ -0,0 +1,328 @@
+package com.pmsn.benchmark;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pmsn.constants.ConsistentHashRing;
+import com.pmsn.constants.PMSNFrame;
+import com.pmsn.constants.ServerFunctions;
+import com.pmsn.server.PMSNCluster;
+import com.pmsn.server.PrivateMobileServerNotification;
+
+/**
+ * This harness runs a cluster of PMNS nodes on localhost ports in one JVM and
+ * checks the routing of the cluster end to end with real connections:
+ *
+ * 1. All receivers register at the first node, the receivers of other nodes
+ * are redirected to their owner.
+ * 2. A sender pushes one notification per receiver to the first node, the
+ * pushes for other nodes are forwarded to them.
+ * 3. A node joins, the receivers it owns now are handed off and redirected to
+ * it, and all pushes arrive again.
+ * 4. The node leaves, its receivers are handed off back, and all pushes
+ * arrive again.
+ * 5. A legacy text receiver registering at a node which does not own it gets
+ * an error line with its owner.
+ *
+ * The number of redirects and notifications and the time of every step are
+ * printed, a step which does not deliver what the ring expects prints an error.
+ *
+ * Arguments: [nodes] [receivers] [first port]
+ */
+public class ClusterHarness {
+
+	private static final int DEFAULT_NODES = 3;
+	private static final int DEFAULT_RECEIVERS = 200;
+	private static final int DEFAULT_FIRST_PORT = 8300;
+	/**
+	 * Max time in milliseconds to wait for the receivers after a step
+	 */
+	private static final long STEP_TIMEOUT = 10000;
+
+	private static final AtomicInteger redirects = new AtomicInteger();
+	private static PrintStream console;
+
+	/**
+	 * Binary receiver which follows redirects to other nodes. It registers with
+	 * the sequence number of the last notification it got, so the notifications
+	 * kept by its owner are replayed.
+	 */
+	private static class TestReceiver extends Thread {
+
+		private final UUID clientId;
+		private final Set<String> notifications = ConcurrentHashMap.newKeySet();
+		private volatile String node;
+		private volatile Socket socket;
+		private volatile boolean running = true;
+		private long lastSeenSequence;
+
+		private TestReceiver(UUID clientId, String node) {
+			super("TestReceiver-" + clientId);
+			this.clientId = clientId;
+			this.node = node;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				String redirectNode = null;
+				try (Socket connection = new Socket(ConsistentHashRing.getHost(node),
+						ConsistentHashRing.getPort(node))) {
+					socket = connection;
+					OutputStream out = connection.getOutputStream();
+					out.write(PMSNFrame.MAGIC);
+					out.write(PMSNFrame.VERSION);
+					writeFrame(out, PMSNFrame.TYPE_REGISTER_RECEIVER,
+							ByteBuffer.allocate(8).putLong(lastSeenSequence).array());
+					DataInputStream in = new DataInputStream(connection.getInputStream());
+					while (running && redirectNode == null) {
+						byte[] frame = new byte[in.readInt()];
+						in.readFully(frame);
+						redirectNode = processFrame(frame, out);
+					}
+				} catch (IOException e) {
+					if (running)
+						console.println("ERROR: Receiver " + clientId + " lost its connection to " + node + ": " + e);
+					return;
+				}
+				if (redirectNode != null) {
+					redirects.incrementAndGet();
+					node = redirectNode;
+				}
+			}
+		}
+
+		/**
+		 * Processes a frame of the node.
+		 *
+		 * @return Node the receiver is redirected to or null
+		 */
+		private String processFrame(byte[] frame, OutputStream out) throws IOException {
+			byte type = frame[0];
+			byte flags = frame[PMSNFrame.HEADER_SIZE - 1];
+			int offset = PMSNFrame.HEADER_SIZE;
+			if (type == PMSNFrame.TYPE_NOTIFICATION) {
+				if ((flags & PMSNFrame.FLAG_SEQUENCED) != 0) {
+					lastSeenSequence = ByteBuffer.wrap(frame, offset, 8).getLong();
+					offset += 8;
+				}
+				notifications.add(new String(frame, offset, frame.length - offset, StandardCharsets.UTF_8));
+			} else if (type == PMSNFrame.TYPE_REDIRECT) {
+				return new String(frame, offset, frame.length - offset, StandardCharsets.UTF_8);
+			} else if (type == PMSNFrame.TYPE_PING) {
+				writeFrame(out, PMSNFrame.TYPE_PONG, new byte[0]);
+			} else if (type == PMSNFrame.TYPE_ERROR) {
+				console.println("ERROR: Receiver " + clientId + " got an error: "
+						+ new String(frame, offset, frame.length - offset, StandardCharsets.UTF_8));
+			}
+			return null;
+		}
+
+		private void writeFrame(OutputStream out, byte type, byte[] payload) throws IOException {
+			ByteBuffer frame = PMSNFrame.encode(type, clientId.getMostSignificantBits(),
+					clientId.getLeastSignificantBits(), (byte) 0, payload, 0, payload.length);
+			out.write(frame.array(), 0, frame.limit());
+			out.flush();
+		}
+
+		private void close() {
+			running = false;
+			try {
+				Socket connection = socket;
+				if (connection != null)
+					connection.close();
+			} catch (IOException e) {
+				console.println("EXCEPTION: " + e);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numberOfNodes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NODES;
+		int numberOfReceivers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RECEIVERS;
+		int firstPort = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_FIRST_PORT;
+		List<String> nodes = new ArrayList<>();
+		for (int i = 0; i < numberOfNodes; i++)
+			nodes.add("localhost:" + (firstPort + i));
+		String joiningNode = "localhost:" + (firstPort + numberOfNodes);
+		List<String> nodesAfterJoin = new ArrayList<>(nodes);
+		nodesAfterJoin.add(joiningNode);
+		ConsistentHashRing ring = new ConsistentHashRing(nodes);
+		ConsistentHashRing ringAfterJoin = new ConsistentHashRing(nodesAfterJoin);
+
+		// Every registration and push prints an info line, only the results of the harness are shown
+		console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		List<PrivateMobileServerNotification> instances = new ArrayList<>();
+		List<TestReceiver> receivers = new ArrayList<>();
+		try {
+			System.setProperty(PMSNCluster.NODES_PROPERTY, String.join(",", nodes));
+			for (String node : nodes)
+				instances.add(startNode(node));
+			console.println("Cluster of " + numberOfNodes + " nodes, " + numberOfReceivers + " receivers");
+
+			// 1. Registering at the first node
+			long startTime = System.currentTimeMillis();
+			int expectedRedirects = 0;
+			for (int i = 0; i < numberOfReceivers; i++) {
+				UUID clientId = UUID.randomUUID();
+				if (!nodes.get(0).equals(ring.getOwner(clientId)))
+					expectedRedirects++;
+				TestReceiver receiver = new TestReceiver(clientId, nodes.get(0));
+				receivers.add(receiver);
+				receiver.start();
+			}
+			awaitRedirects(expectedRedirects);
+			printStep("Redirects on register", redirects.get(), expectedRedirects, startTime);
+
+			// 2. Pushing everything to the first node
+			pushAndAwait(nodes.get(0), receivers, "forwarded");
+
+			// 3. A node joins
+			startTime = System.currentTimeMillis();
+			int expectedHandOffs = 0;
+			for (TestReceiver receiver : receivers)
+				if (joiningNode.equals(ringAfterJoin.getOwner(receiver.clientId)))
+					expectedHandOffs++;
+			redirects.set(0);
+			System.setProperty(PMSNCluster.NODES_PROPERTY, String.join(",", nodesAfterJoin));
+			PrivateMobileServerNotification joiningInstance = startNode(joiningNode);
+			instances.add(joiningInstance);
+			for (PrivateMobileServerNotification instance : instances)
+				instance.setClusterNodes(nodesAfterJoin);
+			awaitRedirects(expectedHandOffs);
+			printStep("Hand-offs on join", redirects.get(), expectedHandOffs, startTime);
+			pushAndAwait(nodes.get(0), receivers, "after join");
+
+			// 4. The node leaves again
+			startTime = System.currentTimeMillis();
+			redirects.set(0);
+			for (PrivateMobileServerNotification instance : instances)
+				instance.setClusterNodes(nodes);
+			awaitRedirects(expectedHandOffs);
+			printStep("Hand-offs on leave", redirects.get(), expectedHandOffs, startTime);
+			instances.remove(joiningInstance);
+			joiningInstance.close();
+			pushAndAwait(nodes.get(0), receivers, "after leave");
+
+			// 5. A legacy text receiver at a node which does not own it
+			UUID legacyClientId = UUID.randomUUID();
+			while (nodes.get(0).equals(ring.getOwner(legacyClientId)))
+				legacyClientId = UUID.randomUUID();
+			String expectedError = ServerFunctions.ERROR + "Receiver belongs to PMSN node "
+					+ ring.getOwner(legacyClientId);
+			String error = registerLegacyReceiver(nodes.get(0), legacyClientId);
+			if (expectedError.equals(error))
+				console.println("Legacy receiver at non-owner: " + error);
+			else
+				console.println("ERROR: Legacy receiver at non-owner got \"" + error + "\", expected \""
+						+ expectedError + "\"");
+		} finally {
+			for (TestReceiver receiver : receivers)
+				receiver.close();
+			for (PrivateMobileServerNotification instance : instances)
+				instance.close();
+			System.setOut(console);
+			System.clearProperty(PMSNCluster.NODES_PROPERTY);
+		}
+	}
+
+	private static PrivateMobileServerNotification startNode(String node) {
+		PrivateMobileServerNotification instance = new PrivateMobileServerNotification(node,
+				ConsistentHashRing.getPort(node));
+		instance.start();
+		return instance;
+	}
+
+	private static void awaitRedirects(int expectedRedirects) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + STEP_TIMEOUT;
+		while (redirects.get() < expectedRedirects && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		// Late redirects beyond the expected ones are counted as well
+		Thread.sleep(100);
+	}
+
+	/**
+	 * Pushes one notification per receiver over one sender connection to a node
+	 * and waits until every receiver has got it.
+	 */
+	private static void pushAndAwait(String node, List<TestReceiver> receivers, String step)
+			throws IOException, InterruptedException {
+		long startTime = System.currentTimeMillis();
+		String message = "Notification " + step;
+		byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+		try (Socket socket = new Socket(ConsistentHashRing.getHost(node), ConsistentHashRing.getPort(node))) {
+			OutputStream out = socket.getOutputStream();
+			out.write(PMSNFrame.MAGIC);
+			out.write(PMSNFrame.VERSION);
+			for (TestReceiver receiver : receivers) {
+				ByteBuffer frame = PMSNFrame.encode(PMSNFrame.TYPE_PUSH, receiver.clientId.getMostSignificantBits(),
+						receiver.clientId.getLeastSignificantBits(), (byte) 0, payload, 0, payload.length);
+				out.write(frame.array(), 0, frame.limit());
+			}
+			out.flush();
+			long deadline = System.currentTimeMillis() + STEP_TIMEOUT;
+			while (countDelivered(receivers, message) < receivers.size() && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+		}
+		printStep("Pushes " + step, countDelivered(receivers, message), receivers.size(), startTime);
+	}
+
+	private static int countDelivered(List<TestReceiver> receivers, String message) {
+		int delivered = 0;
+		for (TestReceiver receiver : receivers)
+			if (receiver.notifications.contains(message))
+				delivered++;
+		return delivered;
+	}
+
+	/**
+	 * Registers a legacy text receiver and reads the first line of the node.
+	 *
+	 * @return First line or null if the node sent none until the timeout
+	 */
+	private static String registerLegacyReceiver(String node, UUID clientId) throws IOException {
+		try (Socket socket = new Socket(ConsistentHashRing.getHost(node), ConsistentHashRing.getPort(node))) {
+			socket.setSoTimeout((int) STEP_TIMEOUT);
+			OutputStream out = socket.getOutputStream();
+			out.write((ServerFunctions.POST_CLIENT_ID + clientId + "\n" + ServerFunctions.POST_ROLE
+					+ ServerFunctions.RECEIVER + "\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			return in.readLine();
+		} catch (SocketTimeoutException e) {
+			// The receiver has been registered although another node owns it
+			return null;
+		}
+	}
+
+	private static void printStep(String step, int actual, int expected, long startTime) {
+		String result = step + ": " + actual + " of " + expected + " in " + (System.currentTimeMillis() - startTime)
+				+ " ms";
+		console.println(actual == expected ? result : "ERROR: " + result);
+	}
+}
@@ -0,0 +1,165 @@
+package com.pmsn.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pmsn.server.Receiver;
+import com.pmsn.server.ReceiverStorage;
+
+/**
+ * This benchmark compares the concurrent {@link ReceiverStorage} with the former
+ * storage, a HashMap with synchronized methods. Many threads register and look
+ * up receivers at once: most operations look up a receiver, the others register
+ * a new receiver or reconnect a registered one. The storages run in turn for a
+ * fixed time after a warmup, and the throughput of each is printed.
+ * 
+ * Arguments: [threads] [seconds per run] [percent of registrations]
+ */
+public class ReceiverStorageBenchmark {
+
+	private static final int NUMBER_OF_IDS = 100_000;
+	private static final int DEFAULT_THREADS = 32;
+	private static final int DEFAULT_SECONDS = 5;
+	private static final int DEFAULT_REGISTER_PERCENT = 10;
+	private static final LongAdder foundReceivers = new LongAdder();
+
+	/**
+	 * Operations of a storage used by the benchmark
+	 */
+	private interface Storage {
+		Receiver register(Receiver receiver);
+
+		Receiver lookup(UUID receiverId);
+	}
+
+	/**
+	 * Storage as it was before: a HashMap guarded by the lock of the storage
+	 */
+	private static class SynchronizedStorage implements Storage {
+
+		private final HashMap<UUID, Receiver> receiverStore = new HashMap<>();
+
+		@Override
+		public synchronized Receiver register(Receiver receiver) {
+			Receiver alreadyRegisteredUser = receiverStore.get(receiver.getReceiverId());
+			if (alreadyRegisteredUser != null) {
+				alreadyRegisteredUser.reconnected(receiver.getConnection(), receiver.usesBinaryFrames(),
+						receiver.getLastSeenSequence());
+				return alreadyRegisteredUser;
+			}
+			receiverStore.put(receiver.getReceiverId(), receiver);
+			return receiver;
+		}
+
+		@Override
+		public synchronized Receiver lookup(UUID receiverId) {
+			return receiverStore.get(receiverId);
+		}
+	}
+
+	/**
+	 * Adapts the concurrent storage to the operations of the benchmark
+	 */
+	private static class ConcurrentStorageAdapter implements Storage {
+
+		private final ReceiverStorage receiverStorage = new ReceiverStorage();
+
+		@Override
+		public Receiver register(Receiver receiver) {
+			return receiverStorage.addNewReceiver(receiver);
+		}
+
+		@Override
+		public Receiver lookup(UUID receiverId) {
+			return receiverStorage.getReceiver(receiverId);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		int registerPercent = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REGISTER_PERCENT;
+		UUID[] receiverIds = new UUID[NUMBER_OF_IDS];
+		for (int i = 0; i < receiverIds.length; i++)
+			receiverIds[i] = UUID.randomUUID();
+
+		// Registering prints an info line, which would measure the console instead of the storage
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		try {
+			console.println("Threads: " + threads + ", registrations: " + registerPercent + "%");
+			for (int round = 0; round < 2; round++) {
+				String label = round == 0 ? "Warmup   " : "Measured ";
+				console.println(label + "synchronized HashMap: "
+						+ run(new SynchronizedStorage(), receiverIds, threads, seconds, registerPercent) + " ops/s");
+				console.println(label + "ReceiverStorage:      "
+						+ run(new ConcurrentStorageAdapter(), receiverIds, threads, seconds, registerPercent) + " ops/s");
+			}
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	/**
+	 * Runs the operations on a storage with the threads given.
+	 * 
+	 * @return Operations per second of all threads
+	 */
+	private static long run(Storage storage, UUID[] receiverIds, int threads, int seconds, int registerPercent)
+			throws InterruptedException {
+		// Half of the receivers are registered before, so lookups hit and miss
+		for (int i = 0; i < receiverIds.length; i += 2)
+			storage.register(new Receiver(receiverIds[i], null, true, Receiver.NO_SEQUENCE));
+
+		LongAdder operations = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		long durationNanos = seconds * 1_000_000_000L;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long count = 0;
+				long found = 0;
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long end = System.nanoTime() + durationNanos;
+				do {
+					// Checking the time after a batch of operations only
+					for (int i = 0; i < 256; i++) {
+						UUID receiverId = receiverIds[random.nextInt(receiverIds.length)];
+						if (random.nextInt(100) < registerPercent)
+							storage.register(new Receiver(receiverId, null, true, Receiver.NO_SEQUENCE));
+						else if (storage.lookup(receiverId) != null)
+							found++;
+					}
+					count += 256;
+				} while (System.nanoTime() < end);
+				operations.add(count);
+				// Keeps the lookups from being optimized away
+				foundReceivers.add(found);
+			}, "Benchmark-" + t);
+			workers[t].start();
+		}
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		return operations.sum() * 1_000_000_000L / (System.nanoTime() - startTime);
+	}
+}
@@ -0,0 +1,122 @@
+package com.pmsn.constants;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * This class maps client IDs to the nodes of a PMNS cluster with consistent
+ * hashing. Every node ("host:port") is put on a ring of hash values at a
+ * number of virtual points, and a client belongs to the first node at or after
+ * the hash of its client ID. When a node joins or leaves, only the clients
+ * between its points and the previous points change their node.
+ * 
+ * PMNS, the HTTP server and the app compute the same ring from the same list
+ * of nodes, so a sender finds the node of a receiver without asking anyone.
+ */
+public class ConsistentHashRing {
+
+	/**
+	 * Number of points of every node on the ring
+	 */
+	public static final int VIRTUAL_NODES = 64;
+
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+	private final List<String> nodes;
+
+	/**
+	 * Creates a ring of the nodes given. The order of the nodes does not matter.
+	 * 
+	 * @param nodes: Addresses of the nodes ("host:port")
+	 */
+	public ConsistentHashRing(Collection<String> nodes) {
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+		for (String node : this.nodes) {
+			for (int i = 0; i < VIRTUAL_NODES; i++)
+				ring.put(hash(node + "#" + i), node);
+		}
+	}
+
+	/**
+	 * Returns the node a client belongs to.
+	 * 
+	 * @param clientId: Client ID
+	 * @return Address of the node or null if the ring is empty
+	 */
+	public String getOwner(UUID clientId) {
+		if (ring.isEmpty())
+			return null;
+		Map.Entry<Long, String> point = ring.ceilingEntry(hash(clientId));
+		return point != null ? point.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * Returns the nodes of the ring.
+	 * 
+	 * @return Sorted addresses of the nodes
+	 */
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Parses a comma separated list of nodes, e.g. "localhost:83,localhost:84".
+	 * 
+	 * @param nodeList: List of node addresses
+	 * @return Addresses of the nodes
+	 */
+	public static List<String> parseNodes(String nodeList) {
+		List<String> nodes = new ArrayList<>();
+		for (String node : nodeList.split(",")) {
+			if (!node.trim().isEmpty())
+				nodes.add(node.trim());
+		}
+		return nodes;
+	}
+
+	public static String getHost(String node) {
+		return node.substring(0, node.lastIndexOf(':'));
+	}
+
+	public static int getPort(String node) {
+		return Integer.parseInt(node.substring(node.lastIndexOf(':') + 1));
+	}
+
+	/**
+	 * Hash of a client ID, the bits of the UUID are mixed so that IDs which are not
+	 * random are spread over the ring as well.
+	 */
+	private static long hash(UUID clientId) {
+		long hash = clientId.getMostSignificantBits() ^ Long.rotateLeft(clientId.getLeastSignificantBits(), 32);
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Hash of a point of a node, the first 8 bytes of its MD5 hash
+	 */
+	private static long hash(String point) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(point.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for (int i = 0; i < 8; i++)
+				hash = (hash << 8) | (digest[i] & 0xFF);
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports MD5
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.pmsn.constants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This class reads and writes the binary frames of PMNS. A binary connection
+ * starts with the magic byte and the protocol version, so PMNS can tell it
+ * from a legacy text connection by its first byte. Afterwards every frame is:
+ * length of the rest of the frame (int), type (byte), client ID (2 longs),
+ * flags (byte), payload (UTF-8 notification text).
+ * 
+ * Frames about a topic carry the topic ID instead of the client ID, see
+ * {@link #getTopicId(String)}.
+ * 
+ * A frame object is reused for all frames read by an event loop: the payload
+ * is copied into its buffer and the header is read into primitive fields, so
+ * reading a frame does not allocate.
+ */
+public class PMSNFrame {
+
+	/**
+	 * First byte of a binary connection. It is not a valid first byte of a text
+	 * line.
+	 */
+	public static final int MAGIC = 0xB1;
+	public static final int VERSION = 1;
+
+	/**
+	 * A receiver registers for notifications. The payload can contain the sequence
+	 * number (long) of the last notification the receiver got. Then PMNS sends the
+	 * notifications missed since then and numbers all notifications.
+	 */
+	public static final byte TYPE_REGISTER_RECEIVER = 1;
+	/**
+	 * A sender requests to push a notification to a receiver
+	 */
+	public static final byte TYPE_PUSH = 2;
+	/**
+	 * A notification pushed to a receiver
+	 */
+	public static final byte TYPE_NOTIFICATION = 3;
+	/**
+	 * An error, the payload contains the error message
+	 */
+	public static final byte TYPE_ERROR = 4;
+	/**
+	 * A heartbeat sent by PMNS to an idle receiver
+	 */
+	public static final byte TYPE_PING = 5;
+	/**
+	 * The answer of a receiver to a heartbeat
+	 */
+	public static final byte TYPE_PONG = 6;
+	/**
+	 * A registered receiver subscribes to the topic with the ID in the header
+	 */
+	public static final byte TYPE_SUBSCRIBE = 7;
+	/**
+	 * A registered receiver unsubscribes from the topic with the ID in the header
+	 */
+	public static final byte TYPE_UNSUBSCRIBE = 8;
+	/**
+	 * A sender requests to push a notification to all subscribers of the topic
+	 * with the ID in the header
+	 */
+	public static final byte TYPE_BROADCAST = 9;
+	/**
+	 * PMNS tells a receiver to connect to another node of the cluster, the payload
+	 * contains its address ("host:port")
+	 */
+	public static final byte TYPE_REDIRECT = 10;
+	/**
+	 * A receiver acknowledges a displayed notification, the payload contains its
+	 * message ID (long). PMNS relays it to the senders listening for
+	 * acknowledgements.
+	 */
+	public static final byte TYPE_ACK = 11;
+	/**
+	 * A sender listens for the acknowledgements of the receivers on its connection
+	 */
+	public static final byte TYPE_LISTEN_ACKS = 12;
+	/**
+	 * A notification with a message ID has been pushed to a legacy text receiver,
+	 * which cannot acknowledge it. The payload contains the message ID (long).
+	 * PMNS relays it to the senders listening for acknowledgements, so they stop
+	 * waiting for the acknowledgement.
+	 */
+	public static final byte TYPE_NO_ACK = 13;
+
+	public static final byte FLAG_HIGH_PRIORITY = 1;
+	/**
+	 * The payload of a notification starts with its sequence number (long)
+	 */
+	public static final byte FLAG_SEQUENCED = 2;
+	/**
+	 * A push forwarded by another node of the cluster, it is never forwarded again
+	 */
+	public static final byte FLAG_FORWARDED = 4;
+	/**
+	 * The message of a push or notification starts with the message ID (long)
+	 * which the receiver acknowledges, after the sequence number of a sequenced
+	 * notification
+	 */
+	public static final byte FLAG_MESSAGE_ID = 8;
+
+	/**
+	 * Size of type, client ID and flags
+	 */
+	public static final int HEADER_SIZE = 1 + 16 + 1;
+	/**
+	 * Max size of a frame without the length field
+	 */
+	public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+	private final byte[] buffer = new byte[MAX_FRAME_SIZE];
+	private byte type;
+	private long clientIdMostSignificantBits;
+	private long clientIdLeastSignificantBits;
+	private byte flags;
+	private int payloadLength;
+
+	/**
+	 * Reads the next frame from the bytes received if they contain a complete
+	 * frame. Otherwise nothing is consumed.
+	 * 
+	 * @param in: Bytes received on a binary connection
+	 * @return true if a frame has been read, false if the frame is incomplete
+	 * @throws IOException if the frame is invalid
+	 */
+	public boolean readFrom(ByteBuffer in) throws IOException {
+		if (in.remaining() < 4)
+			return false;
+		int length = in.getInt(in.position());
+		if (length < HEADER_SIZE || length > MAX_FRAME_SIZE)
+			throw new IOException("Invalid frame length: " + length);
+		if (in.remaining() < 4 + length)
+			return false;
+		in.position(in.position() + 4);
+		in.get(buffer, 0, length);
+		type = buffer[0];
+		clientIdMostSignificantBits = getLong(buffer, 1);
+		clientIdLeastSignificantBits = getLong(buffer, 9);
+		flags = buffer[17];
+		payloadLength = length - HEADER_SIZE;
+		return true;
+	}
+
+	/**
+	 * Encodes a frame into a new buffer which can be queued for writing.
+	 * 
+	 * @param type:          Frame type
+	 * @param msb:           Most significant bits of the client ID
+	 * @param lsb:           Least significant bits of the client ID
+	 * @param flags:         Flags
+	 * @param payload:       Buffer with the payload
+	 * @param payloadOffset: Offset of the payload in the buffer
+	 * @param payloadLength: Length of the payload
+	 * @return Buffer with the frame, ready for writing
+	 * @throws IOException if the frame is too large
+	 */
+	public static ByteBuffer encode(byte type, long msb, long lsb, byte flags, byte[] payload, int payloadOffset,
+			int payloadLength) throws IOException {
+		int length = HEADER_SIZE + payloadLength;
+		if (length > MAX_FRAME_SIZE)
+			throw new IOException("Frame too large: " + length);
+		ByteBuffer frame = ByteBuffer.allocate(4 + length);
+		frame.putInt(length).put(type).putLong(msb).putLong(lsb).put(flags).put(payload, payloadOffset,
+				payloadLength);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Encodes the header of a notification frame into a new buffer. The message
+	 * is written after the header from its own buffer, so the message bytes of a
+	 * broadcast are shared by all receivers. With a sequence number the payload
+	 * starts with it.
+	 * 
+	 * @param msb:           Most significant bits of the client ID
+	 * @param lsb:           Least significant bits of the client ID
+	 * @param flags:         Flags, {@link #FLAG_SEQUENCED} is added for a sequence number
+	 * @param sequence:      Sequence number of the notification or -1 for none
+	 * @param messageLength: Length of the UTF-8 notification message
+	 * @return Buffer with the header, ready for writing
+	 * @throws IOException if the frame is too large
+	 */
+	public static ByteBuffer encodeNotificationHeader(long msb, long lsb, byte flags, long sequence,
+			int messageLength) throws IOException {
+		boolean sequenced = sequence >= 0;
+		int length = HEADER_SIZE + (sequenced ? 8 : 0) + messageLength;
+		if (length > MAX_FRAME_SIZE)
+			throw new IOException("Frame too large: " + length);
+		ByteBuffer header = ByteBuffer.allocate(4 + length - messageLength);
+		header.putInt(length).put(TYPE_NOTIFICATION).putLong(msb).putLong(lsb);
+		if (sequenced)
+			header.put((byte) (flags | FLAG_SEQUENCED)).putLong(sequence);
+		else
+			header.put(flags);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Returns the ID of a topic, which frames about the topic carry instead of a
+	 * client ID.
+	 * 
+	 * @param topic: Name of the topic
+	 * @return Name based UUID of the topic
+	 */
+	public static UUID getTopicId(String topic) {
+		return UUID.nameUUIDFromBytes(("topic:" + topic).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the long at the start of the payload, e.g. a sequence number.
+	 * 
+	 * @return Long value or -1 if the payload is too short
+	 */
+	public long getPayloadLong() {
+		if (payloadLength < 8)
+			return -1;
+		return getLong(buffer, HEADER_SIZE);
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public long getClientIdMostSignificantBits() {
+		return clientIdMostSignificantBits;
+	}
+
+	public long getClientIdLeastSignificantBits() {
+		return clientIdLeastSignificantBits;
+	}
+
+	public byte getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Returns the buffer which contains the payload at {@link #getPayloadOffset()
+	 * getPayloadOffset}. It is overwritten by the next frame.
+	 * 
+	 * @return Frame buffer
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getPayloadOffset() {
+		return HEADER_SIZE;
+	}
+
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+
+	private static long getLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		return value;
+	}
+}
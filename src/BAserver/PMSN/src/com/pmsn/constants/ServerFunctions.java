@@ -3,8 +3,9 @@ package com.pmsn.constants;
 import java.util.UUID;
 
 /**
- * This class contains helper functions and regular expressions to process incoming requests to PMNS.
- * Requests sent to PMNS must use following regex statement to be successfully processed by PMNS.
+ * This class contains helper functions and prefixes to process incoming text requests to PMNS.
+ * Every line of a text request must start with the prefix of its field to be successfully processed by PMNS.
+ * Binary requests are described in {@link PMSNFrame}.
  */
 public class ServerFunctions {
 	
@@ -31,28 +32,23 @@ public class ServerFunctions {
 	public static final String POST_ROLE = "Role: ";
 	public static final String POST_CLIENT_TOKEN = "Token: ";
 	/**
-	 * Regex to validate for client Ids
+	 * A heartbeat line sent by PMNS to an idle receiver, receivers ignore lines without notification prefix.
 	 */
-	public static final String REGEX_CLIENT_ID = POST_CLIENT_ID + ".+";
-	public static final String REGEX_CLIENT_TOKEN = POST_CLIENT_TOKEN + ".+";
-	/**
-	 * Regex to validate for a role
-	 */
-	public static final String REGEX_ROLE = POST_ROLE + SENDER + "|" + POST_ROLE + RECEIVER;
+	public static final String PING = "PING";
 	
 	/**
 	 * This method returns the client ID in the string.
 	 * 
 	 * @param expectedClientIdAsText: string which should contain the client ID as UUID
-	 * @return client Id as UUID or null if regex match fails or string does not contain a parsable UUID.
+	 * @return client Id as UUID or null if the prefix is missing or string does not contain a parsable UUID.
 	 */
 	public static UUID getClientID(String expectedClientIdAsText) {
-		if(!expectedClientIdAsText.matches(REGEX_CLIENT_ID)) return null;
+		String clientIdAsText = getValue(expectedClientIdAsText, POST_CLIENT_ID);
+		if (clientIdAsText == null || clientIdAsText.isEmpty()) return null;
 	
 		UUID clientId = null;
 		try {
-			String[] clientIdPart = expectedClientIdAsText.split(POST_CLIENT_ID);
-			clientId = UUID.fromString(clientIdPart[1]);
+			clientId = UUID.fromString(clientIdAsText);
 		}
 		catch(Exception e) {
 			return null;
@@ -64,24 +60,36 @@ public class ServerFunctions {
 	 * Returns the role in the string.
 	 * 
 	 * @param expectedRole: Sender or Receiver 
-	 * @return Role or null if regex match fails or string does not contain a parsable UUID.
+	 * @return Role or null if the prefix is missing or the role is unknown.
 	 */
 	public static String getRole(String expectedRole) {
-		if(!expectedRole.matches(REGEX_ROLE)) return null;
-		
-		String[] clientRolePart = expectedRole.split(POST_ROLE);
-		return clientRolePart[1];
+		String role = getValue(expectedRole, POST_ROLE);
+		if (SENDER.equals(role)) return SENDER;
+		if (RECEIVER.equals(role)) return RECEIVER;
+		return null;
 	}
 	
 	/**
 	 * Returns the notification message as string to send to a receiver.
 	 * 
-	 * @param expectedNotificationMessage: notification message in regex string
-	 * @return notification message
+	 * @param expectedNotificationMessage: line which should contain the notification message
+	 * @return notification message or null if the prefix is missing
 	 */
 	public static String getNotificationMessage(String expectedNotificationMessage) {
 		// Message can also be empty string
-		String[] clientRolePart = expectedNotificationMessage.split(POST_NOTIFICATION);
-		return clientRolePart[1];
+		return getValue(expectedNotificationMessage, POST_NOTIFICATION);
+	}
+	
+	/**
+	 * Returns the value after the prefix of a request line. Lines are read for every
+	 * request, so they are checked with a prefix comparison instead of a regular expression.
+	 * 
+	 * @param line: request line
+	 * @param prefix: expected prefix of the line
+	 * @return value after the prefix or null if the line does not start with the prefix
+	 */
+	private static String getValue(String line, String prefix) {
+		if (line == null || !line.startsWith(prefix)) return null;
+		return line.substring(prefix.length());
 	}
 }
@@ -0,0 +1,637 @@
+package com.pmsn.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.pmsn.constants.PMSNFrame;
+import com.pmsn.constants.ServerFunctions;
+
+/**
+ * This class represents a connection of a receiver or sender to PMNS. It is
+ * processed by exactly one event loop. The first byte of a connection decides
+ * about its protocol: binary frames (see {@link PMSNFrame}) start with the magic
+ * byte, every other connection is processed as legacy text lines.
+ *
+ * Data to write is queued and written by the event loop when the socket accepts
+ * it, so a slow receiver never blocks PMNS. The event loop is the only writer of
+ * the connection. Other threads put their data into an incoming queue, which the
+ * event loop drains with one task for all data queued meanwhile. The queued data
+ * is written at the end of an iteration of the event loop with gathering writes,
+ * so consecutive notifications leave in one system call.
+ *
+ * An idle receiver gets heartbeats. A binary receiver has to answer them, a
+ * connection which stays silent until the heartbeat timeout is closed. Legacy
+ * text receivers cannot answer, they are closed when writing a heartbeat fails.
+ */
+public class ClientConnection {
+
+	/**
+	 * Max number of bytes queued for a client. A client which does not read its
+	 * notifications is closed.
+	 */
+	private static final int MAX_PENDING_BYTES = 1024 * 1024;
+
+	private static final int NEGOTIATING = 0;
+	private static final int BINARY_VERSION = 1;
+	private static final int BINARY = 2;
+	private static final int TEXT = 3;
+
+	private static final int EXPECT_CLIENT_ID = 0;
+	private static final int EXPECT_ROLE = 1;
+	private static final int EXPECT_NOTIFICATION = 2;
+	private static final int RECEIVER_REGISTERED = 3;
+
+	private final SocketChannel channel;
+	private final PMSNEventLoop eventLoop;
+	private final ReceiverStorage receiverStorage;
+	private final PMSNCluster cluster;
+	private final ConnectionMetrics metrics;
+	private SelectionKey key;
+	private int protocol = NEGOTIATING;
+	/**
+	 * Text request line expected next
+	 */
+	private int textState = EXPECT_CLIENT_ID;
+	private UUID textClientId;
+	private boolean textSender;
+	/**
+	 * Received bytes of an incomplete frame or line
+	 */
+	private ByteBuffer remainingInput;
+	private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+	/**
+	 * Bytes of the outbound queue not written yet
+	 */
+	private int pendingBytes;
+	/**
+	 * Data sent by other threads which has not been moved to the outbound queue yet
+	 */
+	private final ConcurrentLinkedQueue<ByteBuffer> incoming = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+	/**
+	 * true if the event loop is going to flush the connection, or the connection
+	 * waits for its socket to be writable
+	 */
+	private boolean flushPending;
+	private boolean closeAfterFlush;
+	private volatile boolean closed;
+	/**
+	 * Receiver which registered on this connection
+	 */
+	private Receiver receiver;
+	/**
+	 * true if the connection has sent a push request
+	 */
+	private boolean sender;
+	/**
+	 * true if the sender listens for acknowledgements
+	 */
+	private boolean ackListener;
+	private long lastActivityTime;
+	/**
+	 * true if a heartbeat has been sent and the connection has been silent since then
+	 */
+	private boolean awaitingPong;
+	/**
+	 * Tick of the next heartbeat check on the wheel of the event loop
+	 */
+	private long heartbeatTick;
+
+	/**
+	 * Creates a connection processed by an event loop.
+	 *
+	 * @param channel: Accepted channel in non-blocking mode
+	 * @param eventLoop: Event loop which processes the connection
+	 * @param receiverStorage: Storage of receivers to register and look up receivers
+	 * @param cluster: Cluster of the node to find the owners of receivers
+	 * @param metrics: Metrics of all connections
+	 * @param now: Current time in milliseconds
+	 */
+	public ClientConnection(SocketChannel channel, PMSNEventLoop eventLoop, ReceiverStorage receiverStorage,
+			PMSNCluster cluster, ConnectionMetrics metrics, long now) {
+		this.channel = channel;
+		this.eventLoop = eventLoop;
+		this.receiverStorage = receiverStorage;
+		this.cluster = cluster;
+		this.metrics = metrics;
+		lastActivityTime = now;
+		metrics.connectionOpened();
+	}
+
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	long getHeartbeatTick() {
+		return heartbeatTick;
+	}
+
+	void setHeartbeatTick(long heartbeatTick) {
+		this.heartbeatTick = heartbeatTick;
+	}
+
+	/**
+	 * Queues data for writing. It can be called by any thread. Data sent by one
+	 * thread is written in order.
+	 *
+	 * @param data: Data to write, not changed afterwards by the caller
+	 */
+	public void send(ByteBuffer data) {
+		send(data, null);
+	}
+
+	/**
+	 * Queues two buffers for writing, which are written back to back, e.g. the
+	 * header and the payload of a frame. It can be called by any thread. Threads
+	 * sending to the same connection are serialized by the lock of its receiver.
+	 *
+	 * @param header: Data to write first, not changed afterwards by the caller
+	 * @param payload: Data to write afterwards or null, not changed afterwards by the caller
+	 */
+	public void send(ByteBuffer header, ByteBuffer payload) {
+		if (eventLoop.inEventLoop()) {
+			// Data which other threads have sent before goes first
+			drainIncoming();
+			write(header);
+			if (payload != null)
+				write(payload);
+			return;
+		}
+		incoming.add(header);
+		if (payload != null)
+			incoming.add(payload);
+		if (drainScheduled.compareAndSet(false, true))
+			eventLoop.execute(this::drainIncoming);
+	}
+
+	private void drainIncoming() {
+		drainScheduled.set(false);
+		ByteBuffer data;
+		while ((data = incoming.poll()) != null)
+			write(data);
+	}
+
+	/**
+	 * Closes the connection. It can be called by any thread.
+	 */
+	public void close() {
+		if (eventLoop.inEventLoop())
+			closeNow();
+		else
+			eventLoop.execute(this::closeNow);
+	}
+
+	/**
+	 * Tells a receiver to connect to another node of the cluster and closes the
+	 * connection afterwards. It can be called by any thread. A binary receiver gets
+	 * a redirect frame. A legacy text receiver cannot follow a redirect, it gets an
+	 * error line with the node instead, as it would never get the pushes which go
+	 * to the owner of its client ID.
+	 *
+	 * @param node: Address of the node
+	 */
+	public void redirect(String node) {
+		byte[] address = node.getBytes(StandardCharsets.UTF_8);
+		Runnable task = () -> {
+			printInfo("Receiver is redirected to " + node);
+			drainIncoming();
+			try {
+				if (protocol == TEXT)
+					write(ByteBuffer.wrap((ServerFunctions.ERROR + "Receiver belongs to PMSN node " + node + "\n")
+							.getBytes(StandardCharsets.UTF_8)));
+				else
+					write(PMSNFrame.encode(PMSNFrame.TYPE_REDIRECT, 0, 0, (byte) 0, address, 0, address.length));
+			} catch (IOException e) {
+				printException(e);
+			}
+			closeAfterFlush = true;
+			if (outbound.isEmpty())
+				closeNow();
+		};
+		if (eventLoop.inEventLoop())
+			task.run();
+		else
+			eventLoop.execute(task);
+	}
+
+	/**
+	 * Reads the available bytes and processes all complete frames or lines. Called
+	 * by the event loop when the channel is readable.
+	 *
+	 * @param readBuffer: Read buffer of the event loop
+	 * @param frame: Frame object of the event loop
+	 */
+	void read(ByteBuffer readBuffer, PMSNFrame frame) {
+		readBuffer.clear();
+		if (remainingInput != null) {
+			readBuffer.put(remainingInput);
+			remainingInput = null;
+		}
+		int numberOfBytes;
+		try {
+			numberOfBytes = channel.read(readBuffer);
+		} catch (IOException e) {
+			closeNow();
+			return;
+		}
+		if (numberOfBytes > 0) {
+			// Every request or answer counts as heartbeat
+			lastActivityTime = System.currentTimeMillis();
+			if (awaitingPong) {
+				awaitingPong = false;
+				metrics.heartbeatCleared();
+			}
+		}
+		readBuffer.flip();
+		try {
+			process(readBuffer, frame);
+		} catch (IOException e) {
+			sendError(e.getMessage());
+		}
+		if (numberOfBytes < 0) {
+			closeNow();
+			return;
+		}
+		if (!closed && readBuffer.hasRemaining()) {
+			remainingInput = ByteBuffer.allocate(readBuffer.remaining());
+			remainingInput.put(readBuffer);
+			remainingInput.flip();
+		}
+	}
+
+	/**
+	 * Writes the queued data as far as the socket accepts it. Called by the event
+	 * loop at the end of an iteration and when the channel is writable. The
+	 * buffers at the head of the queue are written together with one gathering
+	 * write.
+	 *
+	 * @param writeBuffers: Array of the event loop for the buffers of one gathering write
+	 */
+	void flush(ByteBuffer[] writeBuffers) {
+		if (closed)
+			return;
+		while (!outbound.isEmpty()) {
+			int numberOfBuffers = 0;
+			for (ByteBuffer data : outbound) {
+				writeBuffers[numberOfBuffers++] = data;
+				if (numberOfBuffers == writeBuffers.length)
+					break;
+			}
+			ByteBuffer lastBuffer = writeBuffers[numberOfBuffers - 1];
+			try {
+				pendingBytes -= channel.write(writeBuffers, 0, numberOfBuffers);
+			} catch (IOException e) {
+				printError("Client has no connection to PMSN");
+				closeNow();
+				return;
+			} finally {
+				Arrays.fill(writeBuffers, 0, numberOfBuffers, null);
+			}
+			while (!outbound.isEmpty() && !outbound.peek().hasRemaining())
+				outbound.poll();
+			if (lastBuffer.hasRemaining()) {
+				// The socket is full, the event loop continues when it is writable
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+		flushPending = false;
+		if (closeAfterFlush) {
+			closeNow();
+			return;
+		}
+		key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Checks the heartbeat of the connection. A receiver which has been idle for the heartbeat interval gets a
+	 * heartbeat. A connection which has been idle until the timeout is closed, except legacy text receivers. Senders are
+	 * not checked.
+	 *
+	 * @param now: Current time in milliseconds
+	 * @param interval: Heartbeat interval in milliseconds
+	 * @param timeout: Heartbeat timeout in milliseconds
+	 * @return Time of the next check or -1 if the connection is not checked anymore
+	 */
+	long checkHeartbeat(long now, long interval, long timeout) {
+		if (closed || sender)
+			return -1;
+		long idleTime = now - lastActivityTime;
+		boolean answersHeartbeats = protocol != TEXT || receiver == null;
+		if (answersHeartbeats && idleTime >= timeout) {
+			printInfo("Connection has been silent for " + idleTime + " ms and is closed!");
+			metrics.connectionReaped();
+			closeNow();
+			return -1;
+		}
+		if (idleTime < interval)
+			return lastActivityTime + interval;
+		if (receiver != null) {
+			sendPing();
+			if (protocol == BINARY && !awaitingPong) {
+				awaitingPong = true;
+				metrics.heartbeatSent();
+			}
+		}
+		return answersHeartbeats ? Math.min(now + interval, lastActivityTime + timeout) : now + interval;
+	}
+
+	private void sendPing() {
+		if (protocol == BINARY) {
+			try {
+				write(PMSNFrame.encode(PMSNFrame.TYPE_PING, 0, 0, (byte) 0, new byte[0], 0, 0));
+			} catch (IOException e) {
+				printException(e);
+			}
+		} else {
+			write(ByteBuffer.wrap((ServerFunctions.PING + "\n").getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * Closes the channel and marks a receiver of this connection as not connected.
+	 */
+	void closeNow() {
+		if (closed)
+			return;
+		closed = true;
+		metrics.connectionClosed();
+		if (awaitingPong) {
+			awaitingPong = false;
+			metrics.heartbeatCleared();
+		}
+		if (key != null)
+			key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			printError("Closing connection failed!");
+			printException(e);
+		}
+		outbound.clear();
+		incoming.clear();
+		pendingBytes = 0;
+		if (receiver != null)
+			receiver.connectionClosed(this);
+		if (ackListener)
+			receiverStorage.removeAckListener(this);
+	}
+
+	private void write(ByteBuffer data) {
+		if (closed || closeAfterFlush)
+			return;
+		if (pendingBytes + data.remaining() > MAX_PENDING_BYTES) {
+			printError("Client does not read its notifications, connection is closed!");
+			closeNow();
+			return;
+		}
+		outbound.add(data);
+		pendingBytes += data.remaining();
+		// A queue which is already waiting for the socket is written when it is writable
+		if (!flushPending) {
+			flushPending = true;
+			eventLoop.flushLater(this);
+		}
+	}
+
+	private void process(ByteBuffer in, PMSNFrame frame) throws IOException {
+		while (in.hasRemaining() && !closed && !closeAfterFlush) {
+			if (protocol == NEGOTIATING) {
+				if ((in.get(in.position()) & 0xFF) == PMSNFrame.MAGIC) {
+					in.get();
+					protocol = BINARY_VERSION;
+				} else {
+					protocol = TEXT;
+				}
+			} else if (protocol == BINARY_VERSION) {
+				int version = in.get() & 0xFF;
+				// Errors are sent as frames from now on
+				protocol = BINARY;
+				if (version != PMSNFrame.VERSION)
+					throw new IOException("Protocol version " + version + " not supported!");
+			} else if (protocol == BINARY) {
+				if (!frame.readFrom(in))
+					return;
+				processFrame(frame);
+			} else {
+				String line = readLine(in);
+				if (line == null)
+					return;
+				processLine(line);
+			}
+		}
+	}
+
+	/**
+	 * Processes a frame of a binary connection. A receiver registers with one frame
+	 * and keeps the connection open for notifications, it can subscribe to topics
+	 * and acknowledge notifications afterwards. A sender writes push and broadcast
+	 * frames back to back until it closes the connection, a listening sender gets
+	 * the acknowledgements on the same connection.
+	 *
+	 * @param frame: Frame read
+	 * @throws IOException if the frame is not supported
+	 */
+	private void processFrame(PMSNFrame frame) throws IOException {
+		// Frames after an error or a redirect are ignored
+		if (closeAfterFlush)
+			return;
+		if (frame.getType() == PMSNFrame.TYPE_PUSH) {
+			UUID clientId = new UUID(frame.getClientIdMostSignificantBits(),
+					frame.getClientIdLeastSignificantBits());
+			sender = true;
+			byte flags = frame.getFlags();
+			if (cluster.forwardIfRemote(clientId, frame.getBuffer(), frame.getPayloadOffset(),
+					frame.getPayloadLength(), flags))
+				return;
+			// A forwarded push is kept for a receiver which has not registered at this node yet
+			Receiver receiver = (flags & PMSNFrame.FLAG_FORWARDED) != 0 ? receiverStorage.getOrAddReceiver(clientId)
+					: getRegisteredReceiver(clientId);
+			if (receiver == null)
+				return;
+			receiver.sendNotification(frame.getBuffer(), frame.getPayloadOffset(), frame.getPayloadLength(),
+					(byte) (flags & ~PMSNFrame.FLAG_FORWARDED));
+			// Legacy text receivers cannot acknowledge, the senders stop waiting for it
+			if ((flags & PMSNFrame.FLAG_MESSAGE_ID) != 0 && frame.getPayloadLength() >= 8 && !receiver.usesBinaryFrames())
+				receiverStorage.relayNoAcknowledgement(clientId, frame.getBuffer(), frame.getPayloadOffset());
+		} else if (frame.getType() == PMSNFrame.TYPE_REGISTER_RECEIVER) {
+			// A receiver which knows about sequence numbers sends its last one, otherwise the payload is empty
+			long lastSeenSequence = frame.getPayloadLong();
+			if (lastSeenSequence < 0)
+				lastSeenSequence = Receiver.NO_SEQUENCE;
+			registerReceiver(
+					new UUID(frame.getClientIdMostSignificantBits(), frame.getClientIdLeastSignificantBits()),
+					true, lastSeenSequence);
+		} else if (frame.getType() == PMSNFrame.TYPE_BROADCAST) {
+			sender = true;
+			UUID topicId = new UUID(frame.getClientIdMostSignificantBits(), frame.getClientIdLeastSignificantBits());
+			byte[] message = Arrays.copyOfRange(frame.getBuffer(), frame.getPayloadOffset(),
+					frame.getPayloadOffset() + frame.getPayloadLength());
+			receiverStorage.broadcastNotification(topicId, message, frame.getFlags());
+		} else if (frame.getType() == PMSNFrame.TYPE_SUBSCRIBE || frame.getType() == PMSNFrame.TYPE_UNSUBSCRIBE) {
+			if (receiver == null)
+				throw new IOException("Only a registered receiver can subscribe to topics!");
+			UUID topicId = new UUID(frame.getClientIdMostSignificantBits(), frame.getClientIdLeastSignificantBits());
+			if (frame.getType() == PMSNFrame.TYPE_SUBSCRIBE)
+				receiverStorage.subscribe(topicId, receiver);
+			else
+				receiverStorage.unsubscribe(topicId, receiver);
+		} else if (frame.getType() == PMSNFrame.TYPE_ACK) {
+			if (receiver == null)
+				throw new IOException("Only a registered receiver can acknowledge notifications!");
+			receiverStorage.relayAcknowledgement(receiver.getReceiverId(), frame.getBuffer(), frame.getPayloadOffset(),
+					frame.getPayloadLength());
+		} else if (frame.getType() == PMSNFrame.TYPE_LISTEN_ACKS) {
+			sender = true;
+			ackListener = true;
+			receiverStorage.addAckListener(this);
+		} else if (frame.getType() == PMSNFrame.TYPE_PONG) {
+			// Answer to a heartbeat, the activity has been recorded already
+		} else {
+			throw new IOException("Frame type " + frame.getType() + " not supported!");
+		}
+	}
+
+	/**
+	 * Processes a line of a text connection. Every request consists of the client
+	 * ID, the role and for a sender the notification message. A sender can write
+	 * many requests back to back.
+	 *
+	 * @param line: Line read
+	 * @throws IOException if the line is not valid
+	 */
+	private void processLine(String line) throws IOException {
+		if (textState == EXPECT_CLIENT_ID) {
+			textClientId = ServerFunctions.getClientID(line);
+			if (textClientId == null)
+				throw new IOException("No valid ClientId!");
+			textState = EXPECT_ROLE;
+		} else if (textState == EXPECT_ROLE) {
+			String role = ServerFunctions.getRole(line);
+			if (role == null)
+				throw new IOException("No valid role!");
+			if (textSender && !role.equals(ServerFunctions.SENDER))
+				throw new IOException("Role must not change on a sender connection!");
+			// Receiver is client as he receives the notification
+			if (role.equals(ServerFunctions.RECEIVER)) {
+				registerReceiver(textClientId, false, Receiver.NO_SEQUENCE);
+				textState = RECEIVER_REGISTERED;
+			}
+			// Sender is our private server as he request for push
+			else {
+				textSender = true;
+				sender = true;
+				textState = EXPECT_NOTIFICATION;
+			}
+		} else if (textState == EXPECT_NOTIFICATION) {
+			String notificationMessage = ServerFunctions.getNotificationMessage(line);
+			if (notificationMessage == null)
+				throw new IOException("No valid notification message!");
+			byte[] message = notificationMessage.getBytes(StandardCharsets.UTF_8);
+			if (!cluster.forwardIfRemote(textClientId, message, 0, message.length, (byte) 0)) {
+				Receiver receiver = getRegisteredReceiver(textClientId);
+				if (receiver != null)
+					receiver.sendNotification(message, (byte) 0);
+			}
+			textState = EXPECT_CLIENT_ID;
+		}
+		// Lines of a registered receiver are ignored
+	}
+
+	/**
+	 * Reads a line of a text connection.
+	 *
+	 * @param in: Bytes received
+	 * @return Line without line break or null if the line is incomplete
+	 * @throws IOException if the line is too long
+	 */
+	private String readLine(ByteBuffer in) throws IOException {
+		int start = in.position();
+		for (int i = start; i < in.limit(); i++) {
+			if (in.get(i) != '\n')
+				continue;
+			int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+			in.position(i + 1);
+			return new String(in.array(), in.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+		}
+		if (in.remaining() > PMSNFrame.MAX_FRAME_SIZE)
+			throw new IOException("Line too long!");
+		return null;
+	}
+
+	/**
+	 * Stores a receiver to retrieve for pushing notifications.
+	 *
+	 * @param clientId: Client ID of the receiver
+	 * @param binaryFrames: true if the receiver registered with binary frames
+	 * @param lastSeenSequence: Sequence number of the last notification the receiver got, or NO_SEQUENCE
+	 */
+	private void registerReceiver(UUID clientId, boolean binaryFrames, long lastSeenSequence) {
+		// Only the owner gets the pushes for a client ID, a legacy text receiver gets an error line
+		if (!cluster.isLocal(clientId)) {
+			redirect(cluster.getOwner(clientId));
+			return;
+		}
+		receiver = receiverStorage.addNewReceiver(new Receiver(clientId, this, binaryFrames, lastSeenSequence));
+	}
+
+	/**
+	 * Returns a registered receiver. A receiver which is not connected keeps the notification for replay.
+	 *
+	 * @param clientId: Client ID of the receiver
+	 * @return Receiver or null if not registered
+	 */
+	private Receiver getRegisteredReceiver(UUID clientId) {
+		Receiver receiver = receiverStorage.getReceiver(clientId);
+		if (receiver == null)
+			printError("Receiver Id " + clientId + " is not registered!");
+		return receiver;
+	}
+
+	/**
+	 * Sends an error message in the protocol of the connection and closes the
+	 * connection afterwards.
+	 *
+	 * @param errorMessage
+	 */
+	private void sendError(String errorMessage) {
+		printError(errorMessage);
+		byte[] message = errorMessage.getBytes(StandardCharsets.UTF_8);
+		try {
+			if (protocol == BINARY) {
+				write(PMSNFrame.encode(PMSNFrame.TYPE_ERROR, 0, 0, (byte) 0, message, 0, message.length));
+			} else {
+				write(ByteBuffer.wrap((ServerFunctions.ERROR + errorMessage + "\n").getBytes(StandardCharsets.UTF_8)));
+			}
+		} catch (IOException e) {
+			printException(e);
+		}
+		closeAfterFlush = true;
+		if (outbound.isEmpty())
+			closeNow();
+	}
+
+	private void printInfo(String infoMessage) {
+		System.out.println("INFO: " + infoMessage);
+	}
+
+	private void printError(String errorMessage) {
+		System.out.println("ERROR: " + errorMessage);
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+}
@@ -0,0 +1,74 @@
+package com.pmsn.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts the connections of PMNS for all event loops: open
+ * connections, receivers which have not answered their last heartbeat yet and
+ * connections which have been closed because they missed their heartbeat
+ * deadline.
+ */
+public class ConnectionMetrics {
+
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final AtomicInteger unansweredConnections = new AtomicInteger();
+	private final AtomicLong reapedConnections = new AtomicLong();
+
+	void connectionOpened() {
+		openConnections.incrementAndGet();
+	}
+
+	void connectionClosed() {
+		openConnections.decrementAndGet();
+	}
+
+	void heartbeatSent() {
+		unansweredConnections.incrementAndGet();
+	}
+
+	void heartbeatCleared() {
+		unansweredConnections.decrementAndGet();
+	}
+
+	void connectionReaped() {
+		reapedConnections.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of open connections, including unanswered ones.
+	 *
+	 * @return Number of open connections
+	 */
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	/**
+	 * Returns the number of open connections which have not answered their last
+	 * heartbeat yet.
+	 *
+	 * @return Number of possible zombie connections
+	 */
+	public int getUnansweredConnections() {
+		return unansweredConnections.get();
+	}
+
+	/**
+	 * Returns the number of connections closed because they missed their
+	 * heartbeat deadline.
+	 *
+	 * @return Number of reaped connections since start
+	 */
+	public long getReapedConnections() {
+		return reapedConnections.get();
+	}
+
+	@Override
+	public String toString() {
+		int open = getOpenConnections();
+		int unanswered = getUnansweredConnections();
+		return "Connections: " + (open - unanswered) + " live, " + unanswered + " not answering, "
+				+ getReapedConnections() + " reaped";
+	}
+}
@@ -0,0 +1,85 @@
+package com.pmsn.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a hashed timer wheel for the heartbeat checks of the connections
+ * of one event loop. The wheel has a fixed number of slots of one tick each. A
+ * connection is put into the slot of its check time and remembers the tick of
+ * the check, so a slot can hold checks of several rounds of the wheel. Only the
+ * event loop uses the wheel, so it is not synchronized.
+ */
+public class HeartbeatWheel {
+
+	private final long tickDuration;
+	private final List<ClientConnection>[] slots;
+	/**
+	 * Next tick to process
+	 */
+	private long currentTick;
+
+	/**
+	 * Creates a wheel starting at the time given.
+	 *
+	 * @param tickDuration: Duration of one tick in milliseconds
+	 * @param numberOfSlots: Number of slots
+	 * @param startTime: Current time in milliseconds
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public HeartbeatWheel(long tickDuration, int numberOfSlots, long startTime) {
+		this.tickDuration = tickDuration;
+		slots = new List[numberOfSlots];
+		for (int i = 0; i < numberOfSlots; i++)
+			slots[i] = new ArrayList<>();
+		currentTick = startTime / tickDuration + 1;
+	}
+
+	/**
+	 * Schedules a check of a connection at the first tick at or after the time
+	 * given. A connection is scheduled once at a time.
+	 *
+	 * @param connection: Connection to check
+	 * @param checkTime: Time of the check in milliseconds
+	 */
+	public void schedule(ClientConnection connection, long checkTime) {
+		long checkTick = Math.max(currentTick, (checkTime + tickDuration - 1) / tickDuration);
+		connection.setHeartbeatTick(checkTick);
+		slots[(int) (checkTick % slots.length)].add(connection);
+	}
+
+	/**
+	 * Returns the time until the next tick.
+	 *
+	 * @param now: Current time in milliseconds
+	 * @return Delay in milliseconds, at least 1
+	 */
+	public long getDelayToNextTick(long now) {
+		return Math.max(1, currentTick * tickDuration - now);
+	}
+
+	/**
+	 * Removes the connections of all ticks which have passed.
+	 *
+	 * @param now: Current time in milliseconds
+	 * @return Connections to check
+	 */
+	public List<ClientConnection> expire(long now) {
+		List<ClientConnection> expired = new ArrayList<>();
+		while (currentTick * tickDuration <= now) {
+			List<ClientConnection> slot = slots[(int) (currentTick % slots.length)];
+			int numberOfKept = 0;
+			for (int i = 0; i < slot.size(); i++) {
+				ClientConnection connection = slot.get(i);
+				// Checks of a later round of the wheel stay in the slot
+				if (connection.getHeartbeatTick() > currentTick)
+					slot.set(numberOfKept++, connection);
+				else
+					expired.add(connection);
+			}
+			slot.subList(numberOfKept, slot.size()).clear();
+			currentTick++;
+		}
+		return expired;
+	}
+}
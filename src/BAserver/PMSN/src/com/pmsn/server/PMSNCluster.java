@@ -0,0 +1,231 @@
+package com.pmsn.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.pmsn.constants.ConsistentHashRing;
+import com.pmsn.constants.PMSNFrame;
+
+/**
+ * This class represents the view of one PMNS node on its cluster. The client
+ * IDs are mapped to the nodes with a {@link ConsistentHashRing}. A node keeps
+ * the receivers it owns; pushes for receivers of other nodes, e.g. from a
+ * sender which does not know about a new node yet, are forwarded to their
+ * owner. A forwarded push is marked, so it is never forwarded again even if
+ * two nodes disagree about the owner.
+ * 
+ * Pushes are forwarded on one connection per node, written by a thread of its
+ * own, so an event loop never waits for another node.
+ */
+public class PMSNCluster {
+
+	/**
+	 * System property to configure the nodes of the cluster, e.g. "localhost:83,localhost:84"
+	 */
+	public static final String NODES_PROPERTY = "pmsn.cluster";
+	/**
+	 * Max number of pushes waiting to be forwarded to a node
+	 */
+	private static final int MAX_PENDING_FORWARDS = 10000;
+
+	private final String localNode;
+	private volatile ConsistentHashRing ring;
+	private final ConcurrentHashMap<String, PeerConnection> peers = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the cluster view of a node.
+	 * 
+	 * @param localNode: Address of this node ("host:port")
+	 * @param nodes: Addresses of all nodes, including this node
+	 */
+	public PMSNCluster(String localNode, Collection<String> nodes) {
+		this.localNode = localNode;
+		ring = new ConsistentHashRing(nodes);
+	}
+
+	public String getLocalNode() {
+		return localNode;
+	}
+
+	/**
+	 * Returns the node a client belongs to.
+	 * 
+	 * @param clientId: Client ID
+	 * @return Address of the node
+	 */
+	public String getOwner(UUID clientId) {
+		ConsistentHashRing currentRing = ring;
+		// A single node owns everybody, the ring is not asked
+		if (currentRing.getNodes().size() == 1)
+			return currentRing.getNodes().get(0);
+		return currentRing.getOwner(clientId);
+	}
+
+	public boolean isLocal(UUID clientId) {
+		return localNode.equals(getOwner(clientId));
+	}
+
+	/**
+	 * Changes the nodes of the cluster after a node has joined or left.
+	 * Connections to nodes which left are closed.
+	 * 
+	 * @param nodes: Addresses of all nodes, including this node
+	 * @return true if the nodes have changed
+	 */
+	public boolean setNodes(Collection<String> nodes) {
+		ConsistentHashRing newRing = new ConsistentHashRing(nodes);
+		if (newRing.getNodes().equals(ring.getNodes()))
+			return false;
+		ring = newRing;
+		for (String node : peers.keySet()) {
+			if (!newRing.getNodes().contains(node)) {
+				PeerConnection peer = peers.remove(node);
+				if (peer != null)
+					peer.close();
+			}
+		}
+		return true;
+	}
+
+	public Collection<String> getNodes() {
+		return ring.getNodes();
+	}
+
+	/**
+	 * Forwards a push to the owner of the client, unless this node owns the client
+	 * or the push has been forwarded already.
+	 * 
+	 * @param clientId: Client ID of the receiver
+	 * @param message: Buffer with the UTF-8 notification message
+	 * @param offset: Offset of the notification message in the buffer
+	 * @param length: Length of the notification message
+	 * @param flags: Flags of the push frame
+	 * @return true if the push has been forwarded, false if it is delivered by this node
+	 * @throws IOException if the notification is too large
+	 */
+	public boolean forwardIfRemote(UUID clientId, byte[] message, int offset, int length, byte flags)
+			throws IOException {
+		if ((flags & PMSNFrame.FLAG_FORWARDED) != 0)
+			return false;
+		String owner = getOwner(clientId);
+		if (owner == null || owner.equals(localNode))
+			return false;
+		forward(owner, clientId, message, offset, length, flags);
+		return true;
+	}
+
+	/**
+	 * Forwards a push to another node.
+	 * 
+	 * @param node: Address of the node
+	 * @param clientId: Client ID of the receiver
+	 * @param message: Buffer with the UTF-8 notification message
+	 * @param offset: Offset of the notification message in the buffer
+	 * @param length: Length of the notification message
+	 * @param flags: Flags of the push frame
+	 * @throws IOException if the notification is too large
+	 */
+	public void forward(String node, UUID clientId, byte[] message, int offset, int length, byte flags)
+			throws IOException {
+		ByteBuffer frame = PMSNFrame.encode(PMSNFrame.TYPE_PUSH, clientId.getMostSignificantBits(),
+				clientId.getLeastSignificantBits(), (byte) (flags | PMSNFrame.FLAG_FORWARDED), message, offset,
+				length);
+		peers.computeIfAbsent(node, PeerConnection::new).send(frame);
+	}
+
+	/**
+	 * Closes the connections to all other nodes.
+	 */
+	public void close() {
+		for (PeerConnection peer : peers.values())
+			peer.close();
+		peers.clear();
+	}
+
+	/**
+	 * Sender connection to another node. The frames are queued and written by the
+	 * thread of the connection.
+	 */
+	private static final class PeerConnection {
+
+		private final String node;
+		private final ThreadPoolExecutor writer;
+		private Socket socket;
+		private OutputStream out;
+
+		private PeerConnection(String node) {
+			this.node = node;
+			writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(MAX_PENDING_FORWARDS), runnable -> {
+						Thread thread = new Thread(runnable, "PMSNPeer-" + node);
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+
+		private void send(ByteBuffer frame) {
+			try {
+				writer.execute(() -> write(frame));
+			} catch (RejectedExecutionException e) {
+				System.out.println("ERROR: Forwarding to node " + node + " failed, too many pushes waiting!");
+			}
+		}
+
+		/**
+		 * Writes a frame, the connection is opened with the first frame and again
+		 * after it failed. Frames waiting behind are written together.
+		 */
+		private void write(ByteBuffer frame) {
+			try {
+				if (socket == null) {
+					socket = new Socket(ConsistentHashRing.getHost(node), ConsistentHashRing.getPort(node));
+					socket.setTcpNoDelay(true);
+					out = new BufferedOutputStream(socket.getOutputStream());
+					out.write(PMSNFrame.MAGIC);
+					out.write(PMSNFrame.VERSION);
+				}
+				out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+				if (writer.getQueue().isEmpty())
+					out.flush();
+			} catch (IOException e) {
+				System.out.println("ERROR: Forwarding to node " + node + " failed!");
+				System.out.println("EXCEPTION: " + e);
+				closeSocket();
+			}
+		}
+
+		private void closeSocket() {
+			if (socket == null)
+				return;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				System.out.println("EXCEPTION: " + e);
+			}
+			socket = null;
+			out = null;
+		}
+
+		private void close() {
+			// Frames waiting are written before the connection is closed
+			try {
+				writer.execute(this::closeSocket);
+			} catch (RejectedExecutionException e) {
+				System.out.println("ERROR: Connection to node " + node + " closed with pushes waiting!");
+				writer.shutdownNow();
+				return;
+			}
+			writer.shutdown();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package com.pmsn.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.pmsn.constants.PMSNFrame;
+
+/**
+ * This thread processes the connections assigned to it with one selector. It
+ * reads requests and writes notifications whenever a socket is ready, so one
+ * thread serves many idle receivers. Other threads hand over their work to the
+ * event loop as tasks. The heartbeat checks of its connections are kept on one
+ * timer wheel, which is advanced by the loop itself. Data queued for writing
+ * during an iteration is written at its end, so all notifications of a
+ * connection are written together.
+ */
+public class PMSNEventLoop extends Thread {
+
+	private final Selector selector;
+	private final ReceiverStorage receiverStorage;
+	private final PMSNCluster cluster;
+	private final ConnectionMetrics metrics;
+	private final long heartbeatInterval;
+	private final long heartbeatTimeout;
+	private final HeartbeatWheel heartbeatWheel;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	/**
+	 * Read buffer shared by all connections of the event loop. It holds an
+	 * incomplete frame of a connection and at least one complete frame.
+	 */
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(2 * (4 + PMSNFrame.MAX_FRAME_SIZE));
+	/**
+	 * Frame object shared by all connections of the event loop
+	 */
+	private final PMSNFrame frame = new PMSNFrame();
+	/**
+	 * Buffers of one gathering write, shared by all connections of the event loop
+	 */
+	private final ByteBuffer[] writeBuffers = new ByteBuffer[64];
+	/**
+	 * Connections with data queued during the current iteration
+	 */
+	private final ArrayList<ClientConnection> connectionsToFlush = new ArrayList<>();
+	private volatile boolean running = true;
+
+	/**
+	 * Creates an event loop with its own selector.
+	 *
+	 * @param name: Name of the thread
+	 * @param receiverStorage: Storage of receivers for the connections
+	 * @param cluster: Cluster of the node
+	 * @param metrics: Metrics of all connections
+	 * @param heartbeatInterval: Idle time in milliseconds after which a receiver gets a heartbeat
+	 * @param heartbeatTimeout: Idle time in milliseconds after which a connection is closed
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public PMSNEventLoop(String name, ReceiverStorage receiverStorage, PMSNCluster cluster,
+			ConnectionMetrics metrics, long heartbeatInterval, long heartbeatTimeout) throws IOException {
+		super(name);
+		this.receiverStorage = receiverStorage;
+		this.cluster = cluster;
+		this.metrics = metrics;
+		this.heartbeatInterval = heartbeatInterval;
+		this.heartbeatTimeout = heartbeatTimeout;
+		// About ten ticks per heartbeat interval, at most one per second
+		heartbeatWheel = new HeartbeatWheel(Math.max(1, Math.min(1000, heartbeatInterval / 10)), 512,
+				System.currentTimeMillis());
+		selector = Selector.open();
+	}
+
+	/**
+	 * Hands over an accepted connection to the event loop.
+	 *
+	 * @param channel: Accepted channel
+	 */
+	public void register(SocketChannel channel) {
+		execute(() -> {
+			try {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				long now = System.currentTimeMillis();
+				ClientConnection connection = new ClientConnection(channel, this, receiverStorage, cluster, metrics,
+						now);
+				connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+				heartbeatWheel.schedule(connection, now + heartbeatInterval);
+			} catch (IOException e) {
+				printError("Registering connection failed!");
+				printException(e);
+				closeChannel(channel);
+			}
+		});
+	}
+
+	/**
+	 * Runs a task on the event loop.
+	 *
+	 * @param task: Task to run
+	 */
+	public void execute(Runnable task) {
+		tasks.add(task);
+		if (!inEventLoop())
+			selector.wakeup();
+	}
+
+	/**
+	 * Writes the queued data of a connection at the end of the current iteration.
+	 * Called by the event loop.
+	 *
+	 * @param connection: Connection with queued data
+	 */
+	void flushLater(ClientConnection connection) {
+		connectionsToFlush.add(connection);
+	}
+
+	/**
+	 * Checks if the current thread is this event loop.
+	 *
+	 * @return true if called by the event loop
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == this;
+	}
+
+	/**
+	 * Stops the event loop and closes all its connections.
+	 */
+	public void close() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				selector.select(heartbeatWheel.getDelayToNextTick(System.currentTimeMillis()));
+			} catch (IOException e) {
+				printError("Selecting connections failed!");
+				printException(e);
+				break;
+			}
+			Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+			while (selectedKeys.hasNext()) {
+				SelectionKey key = selectedKeys.next();
+				selectedKeys.remove();
+				ClientConnection connection = (ClientConnection) key.attachment();
+				if (key.isValid() && key.isReadable())
+					connection.read(readBuffer, frame);
+				if (key.isValid() && key.isWritable())
+					connection.flush(writeBuffers);
+			}
+			runTasks();
+			checkHeartbeats();
+			flushConnections();
+		}
+		closeAllConnections();
+	}
+
+	private void checkHeartbeats() {
+		long now = System.currentTimeMillis();
+		List<ClientConnection> connectionsToCheck = heartbeatWheel.expire(now);
+		for (ClientConnection connection : connectionsToCheck) {
+			long nextCheckTime = connection.checkHeartbeat(now, heartbeatInterval, heartbeatTimeout);
+			if (nextCheckTime >= 0)
+				heartbeatWheel.schedule(connection, nextCheckTime);
+		}
+	}
+
+	private void flushConnections() {
+		for (int i = 0; i < connectionsToFlush.size(); i++)
+			connectionsToFlush.get(i).flush(writeBuffers);
+		connectionsToFlush.clear();
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				printException(e);
+			}
+		}
+	}
+
+	private void closeAllConnections() {
+		for (SelectionKey key : selector.keys())
+			((ClientConnection) key.attachment()).closeNow();
+		tasks.clear();
+		connectionsToFlush.clear();
+		try {
+			selector.close();
+		} catch (IOException e) {
+			printException(e);
+		}
+	}
+
+	private void closeChannel(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			printException(e);
+		}
+	}
+
+	private void printError(String errorMessage) {
+		System.out.println("ERROR: " + errorMessage);
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+}
@@ -1,40 +1,117 @@
 package com.pmsn.server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import com.pmsn.constants.ConsistentHashRing;
 import com.pmsn.constants.PMSNNetworkInfo;
 
 /**
  * This class contains all methods for PMNS (or PMSN).
+ * 
+ * PMNS can run as a cluster of nodes on different hosts or ports, see
+ * {@link PMSNCluster}. Every node owns the receivers which the consistent hash
+ * ring of the cluster maps to it. When a node joins or leaves, every node hands
+ * off the receivers it does not own anymore.
  */
 public class PrivateMobileServerNotification {
 
 	public static final String PMSN_IP = PMSNNetworkInfo.PMSN_IP;
 	public static final int PMSN_PORT = PMSNNetworkInfo.PMSN_PORT;
 	/**
-	 * Max number of accepted connections
+	 * Max number of connections waiting to be accepted
 	 */
 	private static final int MAX_NUM_OF_CONNECTIONS = 100;
+	/**
+	 * System property to configure the number of event loops, one per core by default
+	 */
+	public static final String EVENT_LOOPS_PROPERTY = "pmsn.eventLoops";
+	/**
+	 * System property to configure the idle time in milliseconds after which a receiver gets a heartbeat
+	 */
+	public static final String HEARTBEAT_INTERVAL_PROPERTY = "pmsn.heartbeatInterval";
+	/**
+	 * System property to configure the idle time in milliseconds after which a connection is closed
+	 */
+	public static final String HEARTBEAT_TIMEOUT_PROPERTY = "pmsn.heartbeatTimeout";
+	/**
+	 * System property to configure the time in milliseconds between two outputs of the connection metrics
+	 */
+	public static final String METRICS_INTERVAL_PROPERTY = "pmsn.metricsInterval";
+	/**
+	 * System property to configure the port of the single PMNS instance
+	 */
+	public static final String PORT_PROPERTY = "pmsn.port";
+	/**
+	 * System property to configure the address ("host:port") other nodes and clients use for the single PMNS instance
+	 */
+	public static final String NODE_ADDRESS_PROPERTY = "pmsn.nodeAddress";
+	private static final long DEFAULT_HEARTBEAT_INTERVAL = 30 * 1000;
 	/**
 	 * Singleton instance for PMNS
 	 */
-	private static PrivateMobileServerNotification PMSN_ServerInstance = new PrivateMobileServerNotification();
+	private static PrivateMobileServerNotification PMSN_ServerInstance = createServerInstance();
+
+	/**
+	 * Port PMNS listens on
+	 */
+	private final int port;
+	/**
+	 * Nodes of the cluster as seen by this node
+	 */
+	private final PMSNCluster cluster;
 
 	/**
 	 * Thread which listens on PMNS port for connections.
 	 */
-	private Thread listenToIncommingSockets;
+	private TListenToIncomingSockets listenToIncommingSockets;
+	/**
+	 * Event loops which process the connections
+	 */
+	private PMSNEventLoop[] eventLoops;
 	/**
 	 * Server instance
 	 */
-	private ServerSocket serverSocket;
+	private ServerSocketChannel serverSocket;
 	/**
 	 * Storage for all registered clients (receiver) by PMNS
 	 */
 	private ReceiverStorage registeredReceiver = new ReceiverStorage();
+	/**
+	 * Metrics of all connections
+	 */
+	private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+	/**
+	 * Timer which prints the connection metrics
+	 */
+	private ScheduledExecutorService metricsPrinter;
+
+	/**
+	 * Creates a PMNS node, e.g. one of several nodes of a cluster in one JVM. The
+	 * nodes of the cluster are read from {@link PMSNCluster#NODES_PROPERTY}, without
+	 * it the node is alone.
+	 * 
+	 * @param nodeAddress: Address of this node in the cluster ("host:port")
+	 * @param port: Port to listen on
+	 */
+	public PrivateMobileServerNotification(String nodeAddress, int port) {
+		this.port = port;
+		String nodeList = System.getProperty(PMSNCluster.NODES_PROPERTY);
+		Collection<String> nodes = nodeList != null ? ConsistentHashRing.parseNodes(nodeList)
+				: Collections.singletonList(nodeAddress);
+		cluster = new PMSNCluster(nodeAddress, nodes);
+	}
 
-	private PrivateMobileServerNotification() {
+	private static PrivateMobileServerNotification createServerInstance() {
+		int port = Integer.getInteger(PORT_PROPERTY, PMSN_PORT);
+		return new PrivateMobileServerNotification(System.getProperty(NODE_ADDRESS_PROPERTY, PMSN_IP + ":" + port),
+				port);
 	}
 
 	/**
@@ -48,7 +125,7 @@ public class PrivateMobileServerNotification {
 
 	/**
 	 * Starts PMNS. 
-	 * A thread is listening on PMNS port to accept connections.
+	 * A thread is listening on PMNS port to accept connections, which are processed by the event loops.
 	 */
 	public void start() {
 		if (serverSocket != null) {
@@ -65,8 +142,15 @@ public class PrivateMobileServerNotification {
 			return;
 		}
 
-		printInfo("PMSN is now listening on port: " + PMSN_PORT + " !");
-		listenToIncommingSockets = new TListenToIncomingSockets(serverSocket, registeredReceiver);
+		try {
+			listenToIncommingSockets = new TListenToIncomingSockets(serverSocket, eventLoops);
+		} catch (IOException e) {
+			printError("Problem starting PSMN!");
+			printException(e);
+			close();
+			return;
+		}
+		printInfo("PMSN is now listening on port: " + port + " !");
 		listenToIncommingSockets.start();
 	}
 
@@ -78,13 +162,21 @@ public class PrivateMobileServerNotification {
 		if (serverSocket != null) {
 			try {
 				printInfo("Close PMSN!");
+				if (listenToIncommingSockets != null)
+					listenToIncommingSockets.close();
 				closePMSN();
 			} catch (IOException e) {
 				printError("Server could not be closed");
 				printException(e);
 			}
 			registeredReceiver.clearStorage();
+			cluster.close();
+			for (PMSNEventLoop eventLoop : eventLoops)
+				eventLoop.close();
+			metricsPrinter.shutdownNow();
+			metricsPrinter = null;
 			listenToIncommingSockets = null;
+			eventLoops = null;
 			serverSocket = null;
 		} else {
 			printInfo("PMSN has not been already started!");
@@ -92,12 +184,80 @@ public class PrivateMobileServerNotification {
 	}
 
 	/**
-	 * PMNS instance is created on PMNS port and a fixed max number of connections.
+	 * PMNS instance is created on PMNS port and a fixed max number of waiting connections.
+	 * The accepted connections are processed by a fixed number of event loops, which also
+	 * send the heartbeats and close silent connections.
 	 * 
 	 * @throws IOException
 	 */
 	private void startPMSN() throws IOException {
-		serverSocket = new ServerSocket(PMSN_PORT, MAX_NUM_OF_CONNECTIONS);
+		serverSocket = ServerSocketChannel.open();
+		try {
+			serverSocket.socket().setReuseAddress(true);
+			serverSocket.bind(new InetSocketAddress(port), MAX_NUM_OF_CONNECTIONS);
+		} catch (IOException e) {
+			serverSocket.close();
+			serverSocket = null;
+			throw e;
+		}
+		int numberOfEventLoops = Math.max(1,
+				Integer.getInteger(EVENT_LOOPS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+		long heartbeatInterval = Math.max(1, Long.getLong(HEARTBEAT_INTERVAL_PROPERTY, DEFAULT_HEARTBEAT_INTERVAL));
+		long heartbeatTimeout = Math.max(heartbeatInterval,
+				Long.getLong(HEARTBEAT_TIMEOUT_PROPERTY, 3 * heartbeatInterval));
+		eventLoops = new PMSNEventLoop[numberOfEventLoops];
+		for (int i = 0; i < numberOfEventLoops; i++) {
+			eventLoops[i] = new PMSNEventLoop("PMSNEventLoop-" + port + "-" + i, registeredReceiver, cluster,
+					connectionMetrics, heartbeatInterval, heartbeatTimeout);
+			eventLoops[i].start();
+		}
+
+		long metricsInterval = Math.max(1, Long.getLong(METRICS_INTERVAL_PROPERTY, 60 * 1000));
+		metricsPrinter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "PMSNMetrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		metricsPrinter.scheduleAtFixedRate(() -> printInfo(connectionMetrics.toString()), metricsInterval,
+				metricsInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Changes the nodes of the cluster after a node has joined or left. The
+	 * receivers owned by another node now are handed off: their pending
+	 * notifications are forwarded to the new owner and connected receivers are
+	 * redirected to it. Legacy text receivers cannot follow a redirect, they get
+	 * an error line and are closed, so they connect again.
+	 * 
+	 * @param nodes: Addresses of all nodes ("host:port"), including this node
+	 */
+	public void setClusterNodes(Collection<String> nodes) {
+		if (!cluster.setNodes(nodes))
+			return;
+		printInfo("Cluster nodes changed: " + cluster.getNodes());
+		int numberOfHandOffs = 0;
+		for (Receiver receiver : registeredReceiver.getReceivers()) {
+			String owner = cluster.getOwner(receiver.getReceiverId());
+			if (owner == null || owner.equals(cluster.getLocalNode()))
+				continue;
+			registeredReceiver.removeReceiver(receiver);
+			receiver.handOff(owner, cluster);
+			numberOfHandOffs++;
+		}
+		printInfo(numberOfHandOffs + " receivers handed off to other nodes");
+	}
+
+	public PMSNCluster getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * Returns the metrics of all connections, e.g. the number of live and silent connections.
+	 * 
+	 * @return Connection metrics
+	 */
+	public ConnectionMetrics getConnectionMetrics() {
+		return connectionMetrics;
 	}
 
 	/**
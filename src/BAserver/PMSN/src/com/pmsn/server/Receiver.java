@@ -1,27 +1,64 @@
 package com.pmsn.server;
 
 import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.UUID;
 
+import com.pmsn.constants.PMSNFrame;
+import com.pmsn.constants.ServerFunctions;
+
 /**
  * This class represents a receiver of PMNS. A receiver is a client which registers for expected notifications sent by a sender.
+ * The latest notifications are kept in a replay buffer, so a receiver gets the notifications sent while it was disconnected
+ * when it reconnects.
+ * The connection of a receiver is replaced by the event loop of a new connection while other threads send notifications,
+ * so the state of a receiver is only accessed while holding the lock of the receiver.
  */
 public class Receiver {
 
-	private UUID receiverId;
-	private Socket connection;
-	private boolean connected = true;
+	/**
+	 * Sequence number of a receiver which does not know about sequence numbers
+	 */
+	public static final long NO_SEQUENCE = -1;
+
+	private final UUID receiverId;
+	private ClientConnection connection;
+	private boolean connected;
+	/**
+	 * true if the receiver registered with binary frames, otherwise it gets text lines
+	 */
+	private boolean binaryFrames;
+	/**
+	 * Sequence number of the last notification the receiver got when it registered or NO_SEQUENCE
+	 */
+	private long lastSeenSequence;
+	/**
+	 * Sequence number of the last notification handed to a connection
+	 */
+	private long lastSentSequence;
+	private final ReplayBuffer replayBuffer = new ReplayBuffer();
+	/**
+	 * Node of the cluster the receiver has been handed off to, or null while this node owns the receiver
+	 */
+	private String newOwner;
+	private PMSNCluster cluster;
 
 	/**
 	 * A receiver has to register with a UUID. A connection to a receiver is kept open for pushing notifications. 
 	 * 
 	 * @param receiverId: Unique UUID of a client for registration
-	 * @param connection: Socket to client to push notifications by PMNS
+	 * @param connection: Connection to client to push notifications by PMNS
+	 * @param binaryFrames: true if the receiver registered with binary frames
+	 * @param lastSeenSequence: Sequence number of the last notification the receiver got, or NO_SEQUENCE
 	 */
-	public Receiver(UUID receiverId, Socket connection) {
+	public Receiver(UUID receiverId, ClientConnection connection, boolean binaryFrames, long lastSeenSequence) {
 		this.receiverId = receiverId;
 		this.connection = connection;
+		this.binaryFrames = binaryFrames;
+		this.lastSeenSequence = lastSeenSequence;
+		connected = connection != null;
 	}
 
 	/**
@@ -29,66 +66,198 @@ public class Receiver {
 	 * 
 	 * @return true if client is currently connected to PMNS, otherwise false
 	 */
-	public boolean isCurrentlyConnected() {
+	public synchronized boolean isCurrentlyConnected() {
 		return connected;
 	}
 
 	/**
-	 * Reconnects a receiver to PMNS.
+	 * Reconnects a receiver to PMNS. A previous connection which is still open is closed. The notifications missed
+	 * are sent again: after the sequence number given by the receiver, or the notifications not handed to a connection
+	 * if the receiver does not know about sequence numbers.
 	 * 
-	 * @param connection: New socket of receiver
+	 * @param connection: New connection of receiver
+	 * @param binaryFrames: true if the receiver registered with binary frames
+	 * @param lastSeenSequence: Sequence number of the last notification the receiver got, or NO_SEQUENCE
 	 */
-	public void reconnected(Socket connection) {
+	public synchronized void reconnected(ClientConnection connection, boolean binaryFrames, long lastSeenSequence) {
+		if (newOwner != null) {
+			// The receiver has been handed off while registering
+			connection.redirect(newOwner);
+			return;
+		}
+		ClientConnection previousConnection = this.connection;
 		this.connection = connection;
+		this.binaryFrames = binaryFrames;
+		this.lastSeenSequence = lastSeenSequence;
 		connected = true;
-	}
+		if (previousConnection != null && previousConnection != connection)
+			previousConnection.close();
 
-	public UUID getReceiverId() {
-		return receiverId;
+		long replayAfter = lastSeenSequence == NO_SEQUENCE ? lastSentSequence : lastSeenSequence;
+		// Sequence numbers of a former PMNS run are unknown
+		if (replayAfter > replayBuffer.getLastSequence())
+			replayAfter = 0;
+		long firstSequence = replayBuffer.getFirstSequence();
+		if (replayAfter + 1 < firstSequence) {
+			printInfo((firstSequence - replayAfter - 1) + " notifications for receiver " + receiverId
+					+ " dropped from replay buffer!");
+			replayAfter = firstSequence - 1;
+		}
+		try {
+			for (long sequence = replayAfter + 1; sequence <= replayBuffer.getLastSequence(); sequence++)
+				send(sequence, replayBuffer.getPayload(sequence), replayBuffer.getFlags(sequence));
+		} catch (IOException e) {
+			printInfo("Replaying notifications failed: " + e);
+		}
 	}
 
-	public Socket getConnection() {
-		return connection;
+	public synchronized long getLastSeenSequence() {
+		return lastSeenSequence;
 	}
 
 	/**
-	 * Closes the connection of a receiver to PMNS and marks him as not connected.
+	 * Marks the receiver as not connected if the connection closed is its current connection.
+	 * 
+	 * @param closedConnection: Connection which has been closed
 	 */
-	public void closeConnection() {
+	synchronized void connectionClosed(ClientConnection closedConnection) {
+		if (connection != closedConnection)
+			return;
 		connected = false;
-		try {
-			connection.close();
-		} catch (IOException e) {
-			printError("Closing connection to receiver failed!");
-			printException(e);
-		}
 		connection = null;
 	}
 
-	private void printError(String errorMessage) {
-		System.out.println("ERROR: " + errorMessage);
+	public synchronized boolean usesBinaryFrames() {
+		return binaryFrames;
 	}
 
-	private void printException(Exception exception) {
-		System.out.println("EXCEPTION: " + exception);
+	/**
+	 * Sends a notification in the protocol the receiver registered with.
+	 * 
+	 * @param notificationMessage: Notification message
+	 * @param flags: Flags of the notification frame
+	 * @throws IOException if the notification is too large
+	 */
+	public void sendNotification(String notificationMessage, byte flags) throws IOException {
+		byte[] payload = notificationMessage.getBytes(StandardCharsets.UTF_8);
+		sendNotification(payload, 0, payload.length, flags);
 	}
 
-	/*
-	 * TODO Not yet implemented, in case of when receiver has lost connection: Store
-	 * dismissed messages
-	 * 
-	 * private List<String> messagesFailedToSend = new ArrayList<>();
+	/**
+	 * Stores a notification in the replay buffer and sends it in the protocol the receiver registered with, if the
+	 * receiver is connected. A binary receiver gets the payload bytes as they are, so a notification received as frame
+	 * is passed on without decoding it.
 	 * 
-	 * public synchronized void addFailedSentMessage(String messageFailedToSend) {
-	 * messagesFailedToSend.add(messageFailedToSend); }
+	 * @param payload: Buffer with the UTF-8 notification message
+	 * @param offset: Offset of the notification message in the buffer
+	 * @param length: Length of the notification message
+	 * @param flags: Flags of the notification frame
+	 * @throws IOException if the notification is too large
+	 */
+	public void sendNotification(byte[] payload, int offset, int length, byte flags) throws IOException {
+		checkMessageLength(length);
+		sendNotification(Arrays.copyOfRange(payload, offset, offset + length), flags);
+	}
+
+	/**
+	 * Stores a notification in the replay buffer and sends it like
+	 * {@link #sendNotification(byte[], int, int, byte)}. The message is not copied, so a broadcast shares the message
+	 * bytes between all receivers.
 	 * 
-	 * public synchronized boolean anyMissedMessages() { return
-	 * messagesFailedToSend.isEmpty(); }
+	 * @param message: UTF-8 notification message, not changed afterwards by the caller
+	 * @param flags: Flags of the notification frame
+	 * @throws IOException if the notification is too large
+	 */
+	public synchronized void sendNotification(byte[] message, byte flags) throws IOException {
+		checkMessageLength(message.length);
+		if (newOwner != null) {
+			cluster.forward(newOwner, receiverId, message, 0, message.length, flags);
+			return;
+		}
+		long sequence = replayBuffer.add(message, flags);
+		if (connection == null) {
+			printInfo("Receiver with Id " + receiverId + " currently not connected, notification is kept for replay!");
+			return;
+		}
+		send(sequence, message, flags);
+	}
+
+	/**
+	 * Queues a notification on the connection of the receiver. The event loop of the connection writes it.
 	 * 
-	 * public synchronized String getAMissedMessage() { return
-	 * messagesFailedToSend.get(0); }
+	 * @param sequence: Sequence number of the notification
+	 * @param message: UTF-8 notification message
+	 * @param flags: Flags of the notification frame
+	 * @throws IOException if the notification is too large
+	 */
+	private void send(long sequence, byte[] message, byte flags) throws IOException {
+		if (!binaryFrames) {
+			// Legacy text receivers cannot acknowledge, they get the text only
+			int textOffset = (flags & PMSNFrame.FLAG_MESSAGE_ID) != 0 ? 8 : 0;
+			String text = new String(message, textOffset, message.length - textOffset, StandardCharsets.UTF_8);
+			connection.send(ByteBuffer.wrap((ServerFunctions.POST_NOTIFICATION + text + "\n").getBytes(StandardCharsets.UTF_8)));
+		} else {
+			// Only the header is encoded for the receiver, the message bytes are written from the shared array
+			ByteBuffer header = PMSNFrame.encodeNotificationHeader(receiverId.getMostSignificantBits(),
+					receiverId.getLeastSignificantBits(), flags, lastSeenSequence == NO_SEQUENCE ? -1 : sequence,
+					message.length);
+			connection.send(header, ByteBuffer.wrap(message));
+		}
+		lastSentSequence = sequence;
+	}
+
+	private static void checkMessageLength(int length) throws IOException {
+		if (PMSNFrame.HEADER_SIZE + 8 + length > PMSNFrame.MAX_FRAME_SIZE)
+			throw new IOException("Notification too large: " + length);
+	}
+
+	/**
+	 * Hands off the receiver to another node of the cluster which owns it now. The
+	 * notifications which have not been handed to a connection are forwarded to the
+	 * new owner, and so are all notifications sent afterwards. A connected receiver
+	 * is told to connect to the new owner.
 	 * 
-	 * public synchronized void removeMissedMessage(String missedMessage) {
-	 * messagesFailedToSend.remove(missedMessage); }
+	 * @param owner: Address of the new owner
+	 * @param cluster: Cluster of this node
 	 */
+	synchronized void handOff(String owner, PMSNCluster cluster) {
+		newOwner = owner;
+		this.cluster = cluster;
+		long firstSequence = Math.max(lastSentSequence + 1, replayBuffer.getFirstSequence());
+		for (long sequence = firstSequence; sequence <= replayBuffer.getLastSequence(); sequence++) {
+			byte[] message = replayBuffer.getPayload(sequence);
+			try {
+				cluster.forward(owner, receiverId, message, 0, message.length, replayBuffer.getFlags(sequence));
+			} catch (IOException e) {
+				printInfo("Forwarding notification to " + owner + " failed: " + e);
+			}
+		}
+		if (connection != null)
+			connection.redirect(owner);
+		connection = null;
+		connected = false;
+	}
+
+	public UUID getReceiverId() {
+		return receiverId;
+	}
+
+	public synchronized ClientConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Closes the connection of a receiver to PMNS and marks him as not connected.
+	 */
+	public synchronized void closeConnection() {
+		connected = false;
+		if (connection != null)
+			connection.close();
+		connection = null;
+	}
+
+	private void printInfo(String infoMessage) {
+		System.out.println("INFO: " + infoMessage);
+	}
+
 }
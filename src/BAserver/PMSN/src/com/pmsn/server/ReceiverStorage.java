@@ -1,34 +1,96 @@
 package com.pmsn.server;
 
-import java.net.Socket;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pmsn.constants.PMSNFrame;
 
 /**
- * This class represents a storage for registered receivers of PMNS.
+ * This class represents a storage for registered receivers of PMNS. The storage
+ * is used by all event loops at once, so the receivers are kept in a concurrent
+ * map: looking up a receiver does not lock, and registering locks only the
+ * receiver concerned.
+ * 
+ * Receivers can subscribe to topics. A broadcast to a topic is sent to all its
+ * subscribers in one pass, which share the bytes of the message.
+ * 
+ * Senders can listen for the acknowledgements of the receivers on their
+ * connection. An acknowledgement is relayed to all listening senders.
  */
 public class ReceiverStorage {
 
-	private HashMap<UUID, Receiver> receiverStore = new HashMap<>();
+	private final ConcurrentHashMap<UUID, Receiver> receiverStore = new ConcurrentHashMap<>();
+	/**
+	 * Subscribers by topic ID
+	 */
+	private final ConcurrentHashMap<UUID, Set<Receiver>> topicStore = new ConcurrentHashMap<>();
+	/**
+	 * Sender connections listening for acknowledgements
+	 */
+	private final Set<ClientConnection> ackListeners = ConcurrentHashMap.newKeySet();
 
 	/**
-	 * Adds a new receiver to PMNS.
+	 * Adds a new receiver to PMNS. If the client ID is already registered, the
+	 * receiver stored is reconnected with the connection of the new receiver
+	 * instead. Of two clients registering the same ID at once, one adds its
+	 * receiver and the other one reconnects it.
 	 * 
 	 * @param receiver: Receiver who registers to PMNS
+	 * @return Receiver stored for the client ID, an already registered receiver is reconnected
 	 */
-	public void addNewReceiver(Receiver receiver) {
+	public Receiver addNewReceiver(Receiver receiver) {
 		UUID receiverID = receiver.getReceiverId();
-		// Check if receiver is already registered in the receiver store
-		if (receiverStore.containsKey(receiverID)) {
-			printInfo("User with ID " + receiverID + " is already registered at PMSN");
-			Receiver alreadyRegisteredUser = receiverStore.get(receiverID);
-			// Receiver has probably reconnected to PMNS e.g. because of connection loss
-			alreadyRegisteredUser.reconnected(receiver.getConnection());
-			return;
+		Receiver alreadyRegisteredUser = receiverStore.putIfAbsent(receiverID, receiver);
+		if (alreadyRegisteredUser == null) {
+			printInfo("New User registered at PMSN: " + receiverID);
+			return receiver;
 		}
-		printInfo("New User registered at PMSN: " + receiverID);
-		receiverStore.put(receiverID, receiver);
+		printInfo("User with ID " + receiverID + " is already registered at PMSN");
+		// Receiver has probably reconnected to PMNS e.g. because of connection loss
+		alreadyRegisteredUser.reconnected(receiver.getConnection(), receiver.usesBinaryFrames(),
+				receiver.getLastSeenSequence());
+		return alreadyRegisteredUser;
+	}
+
+	/**
+	 * Returns the receiver of a client ID, a receiver which has not registered yet
+	 * is added without connection. It keeps the notifications until it registers,
+	 * e.g. notifications forwarded by the node of the cluster which owned the
+	 * receiver before.
+	 * 
+	 * @param receiverId: client Id of receiver
+	 * @return Receiver stored for the client ID
+	 */
+	public Receiver getOrAddReceiver(UUID receiverId) {
+		return receiverStore.computeIfAbsent(receiverId,
+				id -> new Receiver(id, null, true, Receiver.NO_SEQUENCE));
+	}
+
+	/**
+	 * Removes a receiver and its subscriptions, e.g. after it has been handed off to
+	 * another node of the cluster.
+	 * 
+	 * @param receiver: Registered receiver
+	 */
+	public void removeReceiver(Receiver receiver) {
+		receiverStore.remove(receiver.getReceiverId(), receiver);
+		for (Set<Receiver> subscribers : topicStore.values())
+			subscribers.remove(receiver);
+	}
+
+	/**
+	 * Returns all registered receivers.
+	 * 
+	 * @return Copy of the receivers, connected or not
+	 */
+	public List<Receiver> getReceivers() {
+		return new ArrayList<>(receiverStore.values());
 	}
 
 	/**
@@ -45,11 +107,129 @@ public class ReceiverStorage {
 	 * Deletes all registered receivers in the storage and closes properly all connections.
 	 */
 	public void clearStorage() {
-		Collection<Receiver> allRegisteredReceiver = receiverStore.values();
-		for (Receiver receiver : allRegisteredReceiver) {
+		Iterator<Receiver> allRegisteredReceiver = receiverStore.values().iterator();
+		while (allRegisteredReceiver.hasNext()) {
+			Receiver receiver = allRegisteredReceiver.next();
+			allRegisteredReceiver.remove();
 			receiver.closeConnection();
 		}
-		receiverStore.clear();
+		topicStore.clear();
+		ackListeners.clear();
+	}
+
+	/**
+	 * Subscribes a receiver to a topic. The subscription is kept when the receiver
+	 * reconnects.
+	 * 
+	 * @param topicId: ID of the topic
+	 * @param receiver: Registered receiver
+	 */
+	public void subscribe(UUID topicId, Receiver receiver) {
+		topicStore.computeIfAbsent(topicId, id -> ConcurrentHashMap.newKeySet()).add(receiver);
+	}
+
+	/**
+	 * Unsubscribes a receiver from a topic.
+	 * 
+	 * @param topicId: ID of the topic
+	 * @param receiver: Registered receiver
+	 */
+	public void unsubscribe(UUID topicId, Receiver receiver) {
+		Set<Receiver> subscribers = topicStore.get(topicId);
+		if (subscribers != null)
+			subscribers.remove(receiver);
+	}
+
+	/**
+	 * Sends a notification to all subscribers of a topic. Every subscriber gets its
+	 * own frame header, the message bytes are shared. A subscriber which is not
+	 * connected keeps the notification for replay.
+	 * 
+	 * @param topicId: ID of the topic
+	 * @param message: UTF-8 notification message, not changed afterwards by the caller
+	 * @param flags: Flags of the notification frames
+	 * @return Number of subscribers
+	 * @throws IOException if the notification is too large
+	 */
+	public int broadcastNotification(UUID topicId, byte[] message, byte flags) throws IOException {
+		Set<Receiver> subscribers = topicStore.get(topicId);
+		if (subscribers == null) {
+			printInfo("Topic " + topicId + " has no subscribers!");
+			return 0;
+		}
+		int numberOfSubscribers = 0;
+		for (Receiver subscriber : subscribers) {
+			subscriber.sendNotification(message, flags);
+			numberOfSubscribers++;
+		}
+		return numberOfSubscribers;
+	}
+
+	/**
+	 * Adds a sender connection which gets the acknowledgements of all receivers.
+	 * 
+	 * @param connection: Sender connection
+	 */
+	public void addAckListener(ClientConnection connection) {
+		ackListeners.add(connection);
+	}
+
+	/**
+	 * Removes a sender connection listening for acknowledgements, e.g. when it is
+	 * closed.
+	 * 
+	 * @param connection: Sender connection
+	 */
+	public void removeAckListener(ClientConnection connection) {
+		ackListeners.remove(connection);
+	}
+
+	/**
+	 * Relays the acknowledgement of a receiver to all sender connections listening
+	 * for acknowledgements. The frame is encoded once and shared by the listeners.
+	 * 
+	 * @param receiverId: Client ID of the acknowledging receiver
+	 * @param payload: Buffer with the message ID
+	 * @param offset: Offset of the message ID in the buffer
+	 * @param length: Length of the message ID
+	 * @return Number of listeners
+	 * @throws IOException if the acknowledgement is too large
+	 */
+	public int relayAcknowledgement(UUID receiverId, byte[] payload, int offset, int length) throws IOException {
+		if (ackListeners.isEmpty()) {
+			printInfo("Acknowledgement of receiver " + receiverId + " has no listener!");
+			return 0;
+		}
+		return relayToAckListeners(PMSNFrame.TYPE_ACK, receiverId, payload, offset, length);
+	}
+
+	/**
+	 * Tells all sender connections listening for acknowledgements that a receiver
+	 * cannot acknowledge a notification, e.g. because it is a legacy text receiver.
+	 * 
+	 * @param receiverId: Client ID of the receiver
+	 * @param payload: Buffer with the message ID
+	 * @param offset: Offset of the message ID in the buffer
+	 * @return Number of listeners
+	 * @throws IOException if the frame is too large
+	 */
+	public int relayNoAcknowledgement(UUID receiverId, byte[] payload, int offset) throws IOException {
+		if (ackListeners.isEmpty())
+			return 0;
+		return relayToAckListeners(PMSNFrame.TYPE_NO_ACK, receiverId, payload, offset, 8);
+	}
+
+	private int relayToAckListeners(byte type, UUID receiverId, byte[] payload, int offset, int length)
+			throws IOException {
+		ByteBuffer frame = PMSNFrame.encode(type, receiverId.getMostSignificantBits(),
+				receiverId.getLeastSignificantBits(), (byte) 0, payload, offset, length);
+		int numberOfListeners = 0;
+		for (ClientConnection listener : ackListeners) {
+			// Every connection writes its own view of the frame
+			listener.send(frame.duplicate());
+			numberOfListeners++;
+		}
+		return numberOfListeners;
 	}
 
 	/**
@@ -66,8 +246,24 @@ public class ReceiverStorage {
 		return receiverStore.get(receiverId);
 	}
 
-	public Socket getConnection(UUID receiverId) {
-		return getReceiver(receiverId).getConnection();
+	/**
+	 * Returns the current connection of a registered receiver.
+	 * 
+	 * @param receiverId: client Id of receiver
+	 * @return Connection of the receiver, or null if the receiver is unknown or not connected
+	 */
+	public ClientConnection getConnection(UUID receiverId) {
+		Receiver receiver = getReceiver(receiverId);
+		return receiver == null ? null : receiver.getConnection();
+	}
+
+	/**
+	 * Returns the number of registered receivers.
+	 * 
+	 * @return Number of receivers, connected or not
+	 */
+	public int size() {
+		return receiverStore.size();
 	}
 
 	private void printInfo(String info) {
@@ -0,0 +1,95 @@
+package com.pmsn.server;
+
+/**
+ * This class keeps the latest notifications of a receiver in a ring of fixed
+ * size, so notifications sent while the receiver was disconnected can be sent
+ * again when it reconnects. Every notification gets the next sequence number of
+ * the receiver, starting with 1. The oldest notification is dropped when the
+ * ring is full.
+ */
+public class ReplayBuffer {
+
+	/**
+	 * System property to configure the number of notifications kept per receiver
+	 */
+	public static final String SIZE_PROPERTY = "pmsn.replayBufferSize";
+	private static final int DEFAULT_SIZE = 32;
+
+	private final int capacity;
+	/**
+	 * Payloads by sequence number modulo capacity, created with the first notification
+	 */
+	private byte[][] payloads;
+	private byte[] flags;
+	private long lastSequence;
+
+	public ReplayBuffer() {
+		this(Math.max(1, Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE)));
+	}
+
+	/**
+	 * Creates a ring for the number of notifications given.
+	 *
+	 * @param capacity: Max number of notifications kept
+	 */
+	public ReplayBuffer(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Adds a notification and drops the oldest one if the ring is full.
+	 *
+	 * @param payload: UTF-8 notification message, not changed afterwards by the caller
+	 * @param notificationFlags: Flags of the notification frame
+	 * @return Sequence number of the notification
+	 */
+	public long add(byte[] payload, byte notificationFlags) {
+		if (payloads == null) {
+			payloads = new byte[capacity][];
+			flags = new byte[capacity];
+		}
+		lastSequence++;
+		int index = (int) (lastSequence % capacity);
+		payloads[index] = payload;
+		flags[index] = notificationFlags;
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the sequence number of the latest notification.
+	 *
+	 * @return Sequence number or 0 if there has not been any notification
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the sequence number of the oldest notification kept.
+	 *
+	 * @return Sequence number or 1 if there has not been any notification
+	 */
+	public long getFirstSequence() {
+		return Math.max(1, lastSequence - capacity + 1);
+	}
+
+	/**
+	 * Returns a kept notification.
+	 *
+	 * @param sequence: Sequence number between {@link #getFirstSequence()} and {@link #getLastSequence()}
+	 * @return UTF-8 notification message
+	 */
+	public byte[] getPayload(long sequence) {
+		return payloads[(int) (sequence % capacity)];
+	}
+
+	/**
+	 * Returns the flags of a kept notification.
+	 *
+	 * @param sequence: Sequence number between {@link #getFirstSequence()} and {@link #getLastSequence()}
+	 * @return Flags of the notification frame
+	 */
+	public byte getFlags(long sequence) {
+		return flags[(int) (sequence % capacity)];
+	}
+}
@@ -1,49 +1,142 @@
 package com.pmsn.server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
- * This thread listens to built connections to PMNS and process all incoming requests.
+ * This thread accepts built connections to PMNS on its own selector and hands
+ * them over to the event loops, which process all incoming requests. All
+ * connections ready at once are accepted in one iteration. If accepting fails,
+ * e.g. because no file descriptors are left, the server channel is not selected
+ * for a growing back-off time, so the thread does not spin on the failure.
  */
 public class TListenToIncomingSockets extends Thread {
 
-	private final ServerSocket serverSocket;
-	private final ReceiverStorage receiverStorage;
+	/**
+	 * Back-off after the first failed accept, doubled for every further failure
+	 */
+	private static final long MIN_ACCEPT_BACKOFF = 10;
+	private static final long MAX_ACCEPT_BACKOFF = 1000;
+
+	private final ServerSocketChannel serverChannel;
+	private final PMSNEventLoop[] eventLoops;
+	private final Selector selector;
+	private SelectionKey acceptKey;
+	private int nextEventLoop;
+	private long acceptBackoff;
+	private long backoffUntil;
+	private volatile boolean running = true;
 
 	/**
 	 * Creates a thread to listen to sockets to PMNS.
 	 * 
-	 * @param serverSocket: Server Socket in order to accept new clients.
-	 * @param receiverStorage: A storage to save receivers to retrieve for pushing notifications
+	 * @param serverChannel: Server channel in order to accept new clients.
+	 * @param eventLoops: Event loops which get the accepted connections in turn
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public TListenToIncomingSockets(ServerSocketChannel serverChannel, PMSNEventLoop[] eventLoops)
+			throws IOException {
+		super("PMSNAcceptor");
+		this.serverChannel = serverChannel;
+		this.eventLoops = eventLoops;
+		selector = Selector.open();
+	}
+
+	/**
+	 * Stops accepting connections.
 	 */
-	public TListenToIncomingSockets(ServerSocket serverSocket, ReceiverStorage receiverStorage) {
-		this.serverSocket = serverSocket;
-		this.receiverStorage = receiverStorage;
+	public void close() {
+		running = false;
+		selector.wakeup();
 	}
 
 	@Override
 	public void run() {
-		boolean listenToInCommingConnection = false;
-		while (!listenToInCommingConnection) {
-			Socket client = null;
+		try {
+			serverChannel.configureBlocking(false);
+			acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			printError("Listening to incoming connection could not be started!");
+			printException(e);
+			closeSelector();
+			return;
+		}
+		while (running) {
 			try {
-				// Connection is accepted
-				client = serverSocket.accept();
-			} catch (SocketException e) {
-				printInfo("Listening to incoming connection is stopped!");
-				listenToInCommingConnection = true;
+				selector.select(backoffUntil == 0 ? 0 : Math.max(1, backoffUntil - System.currentTimeMillis()));
 			} catch (IOException e) {
-				printError("Error while waiting for connection!");
+				printError("Selecting incoming connections failed!");
 				printException(e);
+				break;
+			}
+			selector.selectedKeys().clear();
+			if (!running || !serverChannel.isOpen())
+				break;
+			if (backoffUntil != 0) {
+				if (System.currentTimeMillis() < backoffUntil)
+					continue;
+				// Back-off has passed, select the server channel again
+				backoffUntil = 0;
+				acceptKey.interestOps(SelectionKey.OP_ACCEPT);
 			}
-			if (client != null) {
-				// Processing received request 
-				Thread TProcessClient = new TProcessClient(client, receiverStorage);
-				TProcessClient.start();
+			acceptConnections();
+		}
+		printInfo("Listening to incoming connection is stopped!");
+		closeSelector();
+	}
+
+	/**
+	 * Accepts all pending connections and hands them over to the event loops in
+	 * turn.
+	 */
+	private void acceptConnections() {
+		while (true) {
+			SocketChannel client;
+			try {
+				// Connection is accepted
+				client = serverChannel.accept();
+			} catch (ClosedChannelException e) {
+				running = false;
+				return;
+			} catch (IOException e) {
+				backOff(e);
+				return;
 			}
+			if (client == null)
+				return;
+			acceptBackoff = 0;
+			// Received requests are processed by the event loop
+			eventLoops[nextEventLoop].register(client);
+			nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+		}
+	}
+
+	/**
+	 * Stops selecting the server channel after a failed accept. The pending
+	 * connections stay in the backlog until the back-off has passed.
+	 *
+	 * @param exception: Failure of the accept
+	 */
+	private void backOff(IOException exception) {
+		// Only the first failure in a row is printed
+		if (acceptBackoff == 0) {
+			printError("Error while waiting for connection!");
+			printException(exception);
+		}
+		acceptBackoff = acceptBackoff == 0 ? MIN_ACCEPT_BACKOFF : Math.min(MAX_ACCEPT_BACKOFF, 2 * acceptBackoff);
+		backoffUntil = System.currentTimeMillis() + acceptBackoff;
+		acceptKey.interestOps(0);
+	}
+
+	private void closeSelector() {
+		try {
+			selector.close();
+		} catch (IOException e) {
+			printException(e);
 		}
 	}
 
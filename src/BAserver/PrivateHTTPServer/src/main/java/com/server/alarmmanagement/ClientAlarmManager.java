@@ -1,22 +1,24 @@
 package com.server.alarmmanagement;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
 
 import com.server.forwarding.NotificationInfo;
 import com.server.model.RemindService;
 import com.server.storage.NotificationStorage;
 import com.server.storage.RemindServiceTimerStorage;
+import com.server.timer.BatchTimerTarget;
+import com.server.timer.FireBucketScheduler;
+import com.server.timer.TimerHandle;
 
 /**
  * This class is responsible for scheduling and saving the alarms of one client.
  * Those alarms will then trigger pushing the notification to the client with
  * the client ID.
  */
-public class ClientAlarmManager {
+public class ClientAlarmManager implements BatchTimerTarget<RemindService> {
 
 	/**
 	 * Client AlarmManager for Client with Client ID
@@ -34,6 +36,12 @@ public class ClientAlarmManager {
 	 */
 	private NotificationStorage notificationStorage = new NotificationStorage();
 
+	/**
+	 * Scheduler shared by all clients which groups the remind services of all
+	 * clients by their minute of reminding
+	 */
+	private FireBucketScheduler scheduler = FireBucketScheduler.getSchedulerInstance();
+
 	/**
 	 * Constructor of ClientAlarmManager for one Client
 	 * 
@@ -43,12 +51,16 @@ public class ClientAlarmManager {
 		this.clientId = clientId;
 	}
 
+	public UUID getClientId() {
+		return clientId;
+	}
+
 	/**
 	 * Returns the list of all registered remind services of the client
 	 * 
 	 * @return List of all registered remind services, empty if there is no one
 	 */
-	public List<RemindService> getRegisteredRemindServices() {
+	public synchronized List<RemindService> getRegisteredRemindServices() {
 		return remindServiceTimerStorage.getRegisteredRemindServices();
 	}
 
@@ -78,6 +90,70 @@ public class ClientAlarmManager {
 		}
 	}
 
+	/**
+	 * Restores a remind service read from the journal after a restart. Regular
+	 * remind services are scheduled at their next occurrence from now on, one-time
+	 * remind services which are already due are dropped as they have been notified
+	 * before.
+	 * 
+	 * @param remindService: Remind service read from the journal
+	 */
+	public synchronized void restoreRemindService(RemindService remindService) {
+		if (!remindService.getRemind()) {
+			cancelRemindService(remindService);
+			return;
+		}
+		Date timeToSendNotification = remindService.scheduleTimeToTriggerReminding();
+		long now = System.currentTimeMillis();
+		if (timeToSendNotification.getTime() <= now) {
+			if (!remindService.isRegular())
+				return;
+			long period = remindService.getPeriodOfReminding();
+			long missedPeriods = (now - timeToSendNotification.getTime()) / period + 1;
+			timeToSendNotification = new Date(timeToSendNotification.getTime() + missedPeriods * period);
+		}
+		registerForRemindService(remindService, timeToSendNotification);
+	}
+
+	/**
+	 * Registers or cancels several remind services in the order given with one
+	 * lock acquisition, e.g. when a device synchronizes all its remind services.
+	 * 
+	 * @param remindServices: Remind services to register or cancel
+	 */
+	public synchronized void registerOrCancelRemindServices(List<RemindService> remindServices) {
+		for (RemindService remindService : remindServices) {
+			if (remindService.getRemind()) {
+				registerForRemindService(remindService);
+			} else {
+				cancelRemindService(remindService);
+			}
+		}
+	}
+
+	/**
+	 * Cancels all registered remind services of the client, e.g. when the server
+	 * is closed.
+	 */
+	public synchronized void cancelAllRemindServices() {
+		remindServiceTimerStorage.cancelAllRemindServices();
+	}
+
+	/**
+	 * Returns the notification infos of all notifications available for sending
+	 * and removes them from the storage.
+	 * 
+	 * @return Notification infos in order of sending, empty if there is no
+	 *         notification available
+	 */
+	public synchronized List<NotificationInfo> getAvailableNotificationInfos() {
+		List<NotificationInfo> notificationInfos = new ArrayList<>();
+		NotificationInfo notificationInfo;
+		while ((notificationInfo = getNotificationInfo()) != null)
+			notificationInfos.add(notificationInfo);
+		return notificationInfos;
+	}
+
 	/**
 	 * Returns the notification text if there is a notification available for
 	 * sending which can be checked with {@link #anyNotificationAvailable()
@@ -94,24 +170,9 @@ public class ClientAlarmManager {
 				// time
 				remindServiceTimerStorage.removeRemindService(remindService);
 			}
-			boolean notificationHasHighPriority = false;
-			// Determine which priority the notification has according to the type of remind
-			// service
+			// Priority of the notification according to the type of remind service
 			// If priority is considered, depends on the specific push technology
-			switch (remindService.getRemindType()) {
-			case DOCAPPOINTMENT:
-				notificationHasHighPriority = true;
-				break;
-			case MEDICINE:
-				notificationHasHighPriority = true;
-				break;
-			case BLOODPRESSURE:
-				notificationHasHighPriority = false;
-				break;
-			case WATER:
-				notificationHasHighPriority = false;
-				break;
-			}
+			boolean notificationHasHighPriority = NotificationStorage.hasHighPriority(remindService);
 			return new NotificationInfo(remindService.getNotificationText(), notificationHasHighPriority);
 		}
 		return null;
@@ -123,76 +184,92 @@ public class ClientAlarmManager {
 	 * @param remindService: Registered remind service of the client
 	 */
 	private synchronized void registerForRemindService(RemindService remindService) {
-		// Maybe: Better solution
-		// Delete these remindObject before inserting if it is unique
-		// Change data model
+		registerForRemindService(remindService, remindService.scheduleTimeToTriggerReminding());
+	}
+
+	/**
+	 * Registers for a remind service which is notified first at the time given.
+	 * 
+	 * @param remindService:          Registered remind service of the client
+	 * @param timeToSendNotification: Time of the first notification
+	 */
+	private synchronized void registerForRemindService(RemindService remindService, Date timeToSendNotification) {
 		// Deletion before insertion
-		if (remindService.isUnique() && remindServiceTimerStorage.existsRemindService(remindService)) {
+		// An equal remind service (unique or registered twice) replaces the stored one
+		TimerHandle scheduledTimer = remindServiceTimerStorage.getTimerForRemindService(remindService);
+		if (scheduledTimer != null) {
 			// Canceling the scheduled timer of the remind service
-			Timer scheduledTimer = remindServiceTimerStorage.getTimerForRemindService(remindService);
 			scheduledTimer.cancel();
 			// Removing from timer storage
 			remindServiceTimerStorage.removeRemindService(remindService);
 		}
 
-		Timer timer = scheduleTimerTask(remindService);
+		TimerHandle timer = scheduleTimerTask(remindService, timeToSendNotification);
 		remindServiceTimerStorage.registerForRemindService(remindService, timer);
 	}
 
 	/**
-	 * Schedules the timer with the timer task which will trigger the 'pushing' of
-	 * the notification to the client at the proper timer.
+	 * Schedules the timer which will trigger the 'pushing' of the notification to
+	 * the client at the proper time on the shared scheduler. On expiration the
+	 * remind service is handed to {@link #timersExpired(List) timersExpired}
+	 * together with all other remind services of this client at the same minute.
 	 * 
 	 * @param specificRegistrationForNotifying: Remind service with all necessary
 	 *                                          info for scheduling a timer
-	 * @return Timer with scheduled task
+	 * @param timeToSendNotification:           Time of the first notification
+	 * @return Handle of the scheduled timer
 	 */
-	private Timer scheduleTimerTask(RemindService specificRegistrationForNotifying) {
-		Date timeToSendNotification = specificRegistrationForNotifying.scheduleTimeToTriggerReminding();
-		TimerTask timerTask = createTimerTask(specificRegistrationForNotifying);
-		Timer timer = new Timer();
-
+	private TimerHandle scheduleTimerTask(RemindService specificRegistrationForNotifying,
+			Date timeToSendNotification) {
 		if (specificRegistrationForNotifying.isRegular()) {
-			timer.scheduleAtFixedRate(timerTask, timeToSendNotification,
+			return scheduler.scheduleAtFixedRate(this, specificRegistrationForNotifying, timeToSendNotification,
 					specificRegistrationForNotifying.getPeriodOfReminding());
 		} else {
-			timer.schedule(timerTask, timeToSendNotification);
+			return scheduler.schedule(this, specificRegistrationForNotifying, timeToSendNotification);
 		}
-		return timer;
 	}
 
 	/**
-	 * Creates a timer task for this remind service. This timer task will add the
-	 * remind service to the storage of notifications. A thread is observing this
-	 * storage and will take the notification to send to the client.
+	 * Adds all remind services whose timers have expired at the same minute to
+	 * the storage of notifications from which the notifications are taken to send
+	 * to the client.
 	 * 
-	 * @param remindService: Remind service for creating a timer task
-	 * @return Timer task for this remind service
+	 * @param expiredRemindServices: Remind services of the expired timers
 	 */
-	private TimerTask createTimerTask(RemindService remindService) {
-		return new TimerTask() {
-			@Override
-			public void run() {
-				printInfo("Add new remindService of type " + remindService.getRemindType());
-				addNewNotificationToStorage(remindService);
-				printInfo("RemindService of type " + remindService.getRemindType() + " added");
-			}
-		};
+	@Override
+	public void timersExpired(List<RemindService> expiredRemindServices) {
+		printInfo("Add " + expiredRemindServices.size() + " new remindServices");
+		addNewNotificationsToStorage(expiredRemindServices);
 	}
 
 	/**
-	 * Adds a remind service to the notification storage from which the notification
-	 * will be taken to push
+	 * Adds remind services to the notification storage from which the
+	 * notifications will be taken to push. The storage is locked once for all of
+	 * them.
 	 * 
-	 * @param remindService: Remind service that is added to storage
+	 * @param remindServices: Remind services that are added to storage
 	 */
-	private synchronized void addNewNotificationToStorage(RemindService remindService) {
-		if (!notificationStorage.contains(remindService)) {
-			printInfo("RemindService not already stored!");
-			notificationStorage.addNewNotificationMessage(remindService);
-		} else {
-			printInfo("RemindService already stored!");
+	private synchronized void addNewNotificationsToStorage(List<RemindService> remindServices) {
+		boolean anyNotificationAdded = false;
+		for (RemindService remindService : remindServices) {
+			if (!notificationStorage.contains(remindService)) {
+				notificationStorage.addNewNotificationMessage(remindService);
+				anyNotificationAdded = true;
+			} else {
+				printInfo("RemindService of type " + remindService.getRemindType() + " already stored!");
+			}
 		}
+		if (anyNotificationAdded)
+			notificationAdded();
+	}
+
+	/**
+	 * Called after notifications have been added to the notification storage.
+	 * Subclasses which push notifications actively override it to start
+	 * forwarding, by default nothing happens and the notification is fetched with
+	 * {@link #getNotificationInfo() getNotificationInfo}.
+	 */
+	protected void notificationAdded() {
 	}
 
 	/**
@@ -216,7 +293,7 @@ public class ClientAlarmManager {
 	 *                               will be calceled too
 	 */
 	private synchronized void cancelTimerForRemindService(RemindService canceledRemindService) {
-		Timer timer = remindServiceTimerStorage.getTimerForRemindService(canceledRemindService);
+		TimerHandle timer = remindServiceTimerStorage.getTimerForRemindService(canceledRemindService);
 		timer.cancel();
 	}
 
@@ -2,43 +2,39 @@ package com.server.alarmmanagement;
 
 import java.util.UUID;
 
-import com.google.firebase.FirebaseApp;
+import com.server.forwarding.FCMBatchSender;
 import com.server.forwarding.FCMForwarding;
+import com.server.forwarding.IForwarding;
+import com.server.reliability.DeliveryReliability;
 
 /**
  * This class inherits all functionalities of a general client alarmmanager and
  * is specialized for FCM Push or forwarding a message (notification) to the FCM
  * Back-End.
  */
-public class FCMClientAlarmManager extends ClientAlarmManager {
+public class FCMClientAlarmManager extends ForwardingClientAlarmManager {
 
 	/**
 	 * FCMForwarding instance for forwarding a push request
 	 */
 	private FCMForwarding fcmForwarding;
-
 	/**
-	 * This thread is actively polling for notifications to push them to the FCM
-	 * Back-End from Google
+	 * Forwarding which retries failed push requests
 	 */
-	private Thread waitForForwardingMessageToFCM = new Thread(() -> {
-		while (true) {
-			while (!anyNotificationAvailable())
-				;
-			fcmForwarding.forwardMessage(getNotificationInfo());
-		}
-	});
+	private IForwarding reliableForwarding;
 
 	/**
 	 * Constructor.
 	 * 
-	 * @param clientId:    Client ID of client
-	 * @param firebaseApp: Firebase App for Firebase configuration
+	 * @param clientId:            Client ID of client
+	 * @param fcmBatchSender:      Batch sender shared by all clients of the server
+	 * @param deliveryReliability: Retries and dead letter queue of the server
 	 */
-	public FCMClientAlarmManager(UUID clientId, FirebaseApp firebaseApp) {
+	public FCMClientAlarmManager(UUID clientId, FCMBatchSender fcmBatchSender,
+			DeliveryReliability deliveryReliability) {
 		super(clientId);
-		fcmForwarding = new FCMForwarding(firebaseApp);
-		waitForForwardingMessageToFCM.start();
+		fcmForwarding = new FCMForwarding(fcmBatchSender);
+		reliableForwarding = deliveryReliability.makeReliable(clientId, fcmForwarding);
 	}
 
 	/**
@@ -49,4 +45,18 @@ public class FCMClientAlarmManager extends ClientAlarmManager {
 	public void setToken(String registrationToken) {
 		fcmForwarding.setToken(registrationToken);
 	}
+
+	/**
+	 * Returns the FCM Token of this client
+	 * 
+	 * @return FCM Token or null if not set
+	 */
+	public String getToken() {
+		return fcmForwarding.getToken();
+	}
+
+	@Override
+	protected IForwarding getForwarding() {
+		return reliableForwarding;
+	}
 }
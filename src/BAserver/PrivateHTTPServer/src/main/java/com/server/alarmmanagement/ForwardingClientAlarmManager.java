@@ -0,0 +1,106 @@
+package com.server.alarmmanagement;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.server.forwarding.IForwarding;
+import com.server.forwarding.NotificationInfo;
+import com.server.reliability.ReliableForwarding;
+
+/**
+ * This class inherits all functionalities of a general client alarmmanager and
+ * forwards every notification to a push back-end (FCM or PMSN). Forwarding is
+ * done by the shared {@link NotificationDispatcher} as soon as a notification
+ * is added to the storage.
+ */
+public abstract class ForwardingClientAlarmManager extends ClientAlarmManager {
+
+	/**
+	 * Flag whether this client is queued at or drained by the dispatcher
+	 */
+	private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+	/**
+	 * Dispatcher shared by all forwarding clients
+	 */
+	private NotificationDispatcher notificationDispatcher = NotificationDispatcher.getDispatcherInstance();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param clientId: Client ID of client
+	 */
+	public ForwardingClientAlarmManager(UUID clientId) {
+		super(clientId);
+	}
+
+	/**
+	 * Returns the forwarding instance to push a notification to the back-end.
+	 * 
+	 * @return Forwarding instance of this client
+	 */
+	protected abstract IForwarding getForwarding();
+
+	@Override
+	protected void notificationAdded() {
+		notificationDispatcher.dispatch(this);
+	}
+
+	/**
+	 * Forwards all notifications which are currently available as one batch. If
+	 * the forwarding does not accept messages, the notifications stay in the
+	 * storage.
+	 * 
+	 * @return true if the notifications have been forwarded, false if the
+	 *         forwarding does not accept messages
+	 */
+	boolean forwardAvailableNotifications() {
+		if (!getForwarding().isAcceptingMessages())
+			return false;
+		List<NotificationInfo> notificationInfos = getAvailableNotificationInfos();
+		if (!notificationInfos.isEmpty()) {
+			getForwarding().forwardMessages(notificationInfos);
+		}
+		return true;
+	}
+
+	/**
+	 * Forwards a single notification, e.g. a dead letter which is replayed.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @return Future which is completed when the notification has been accepted
+	 *         by the back-end or added to the dead letter queue again
+	 */
+	public CompletableFuture<Void> forwardNotification(NotificationInfo notificationInfo) {
+		IForwarding forwarding = getForwarding();
+		if (forwarding instanceof ReliableForwarding)
+			return ((ReliableForwarding) forwarding).forwardMessageUntilDone(notificationInfo);
+		forwarding.forwardMessage(notificationInfo);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Dispatches this client again as soon as the forwarding accepts messages.
+	 */
+	void resumeWhenForwardingAccepts() {
+		getForwarding().whenAcceptingMessages(this::notificationAdded);
+	}
+
+	/**
+	 * Marks this client as queued at the dispatcher.
+	 * 
+	 * @return true if the client was not already queued, otherwise false
+	 */
+	boolean tryScheduleDispatch() {
+		return dispatchScheduled.compareAndSet(false, true);
+	}
+
+	/**
+	 * Marks this client as not queued anymore.
+	 */
+	void dispatchFinished() {
+		dispatchScheduled.set(false);
+	}
+}
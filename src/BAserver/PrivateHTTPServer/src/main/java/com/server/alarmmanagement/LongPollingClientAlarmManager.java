@@ -0,0 +1,335 @@
+package com.server.alarmmanagement;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.server.forwarding.NotificationInfo;
+import com.server.reliability.DeliveryTracker;
+import com.server.timer.TimerHandle;
+import com.server.timer.TimingWheelScheduler;
+
+/**
+ * This class inherits all functionalities of a general client alarmmanager and
+ * is specialized for HTTP Long Polling Push. The waiting request of the client
+ * is parked here and completed as soon as a notification fires, so no thread is
+ * blocked while the client waits. Every delivered notification is tracked
+ * until the client acknowledges it, a high priority notification which is not
+ * acknowledged in time is delivered again with the next request.
+ * 
+ * Instead of one request per notification, the client can open a stream which
+ * gets all notifications as events. The last events sent are kept, so a client
+ * which reconnects with the ID of the last event it got receives the events it
+ * missed.
+ */
+public class LongPollingClientAlarmManager extends ClientAlarmManager {
+
+	/**
+	 * System property for the milliseconds between two heartbeats of a stream
+	 */
+	public static final String STREAM_HEARTBEAT_INTERVAL_PROPERTY = "stream.heartbeatInterval";
+	private static final long STREAM_HEARTBEAT_INTERVAL = Long.getLong(STREAM_HEARTBEAT_INTERVAL_PROPERTY,
+			30 * 1000L);
+	/**
+	 * Number of events sent last which are kept for a reconnecting stream
+	 */
+	private static final int MAX_RECENT_EVENTS = 32;
+
+	/**
+	 * Parked waiter of the client, null if the client is not waiting
+	 */
+	private NotificationWaiter parkedWaiter;
+
+	/**
+	 * Dispatcher whose worker threads complete the parked waiter
+	 */
+	private NotificationDispatcher notificationDispatcher = NotificationDispatcher.getDispatcherInstance();
+
+	/**
+	 * Tracker of the acknowledgements of the delivered notifications
+	 */
+	private DeliveryTracker deliveryTracker = DeliveryTracker.getTrackerInstance();
+
+	/**
+	 * Notifications to deliver again because they have not been acknowledged,
+	 * delivered before new notifications
+	 */
+	private final ArrayDeque<NotificationInfo> resendQueue = new ArrayDeque<>();
+
+	/**
+	 * Open stream of the client, null if the client has no stream
+	 */
+	private NotificationStream stream;
+	/**
+	 * Timer which sends the heartbeats of the open stream
+	 */
+	private TimerHandle heartbeatTimer;
+	/**
+	 * Events sent last, oldest first
+	 */
+	private final ArrayDeque<NotificationInfo> recentEvents = new ArrayDeque<>();
+	/**
+	 * Events missed by a reconnected stream, sent before new notifications
+	 */
+	private final ArrayDeque<NotificationInfo> replayQueue = new ArrayDeque<>();
+	/**
+	 * Flag so only one thread writes to the stream at a time, which keeps the
+	 * events in order
+	 */
+	private final AtomicBoolean streamDraining = new AtomicBoolean();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param clientId: Client ID of client
+	 */
+	public LongPollingClientAlarmManager(UUID clientId) {
+		super(clientId);
+	}
+
+	/**
+	 * Waits for the next notification of the client. If a notification is already
+	 * available, it is delivered immediately, otherwise the waiter is parked until
+	 * a notification fires. A client only waits with one request at a time, so an
+	 * older parked waiter (e.g. of a lost connection) is released.
+	 * 
+	 * @param waiter: Waiter for the next notification
+	 */
+	public void waitForNotification(NotificationWaiter waiter) {
+		NotificationInfo notificationInfo;
+		NotificationWaiter releasedWaiter = null;
+		synchronized (this) {
+			notificationInfo = nextNotificationInfo();
+			if (notificationInfo == null) {
+				releasedWaiter = parkedWaiter;
+				parkedWaiter = waiter;
+			}
+		}
+		if (releasedWaiter != null)
+			releasedWaiter.release();
+		if (notificationInfo != null)
+			deliver(waiter, notificationInfo);
+	}
+
+	/**
+	 * Opens a stream which gets all notifications of the client. An older stream
+	 * of the client (e.g. of a lost connection) is closed and a parked waiter is
+	 * released. With the ID of the last event the client got, the events sent
+	 * after it are sent again first. If that event is not kept anymore, all kept
+	 * events are sent again.
+	 * 
+	 * @param newStream:   Stream of the client
+	 * @param lastEventId: ID of the last event the client got or
+	 *                     {@link NotificationStream#NO_LAST_EVENT_ID}
+	 */
+	public void openStream(NotificationStream newStream, long lastEventId) {
+		NotificationStream closedStream;
+		NotificationWaiter releasedWaiter;
+		synchronized (this) {
+			closedStream = stream;
+			releasedWaiter = parkedWaiter;
+			parkedWaiter = null;
+			stream = newStream;
+			replayQueue.clear();
+			if (lastEventId != NotificationStream.NO_LAST_EVENT_ID)
+				replayQueue.addAll(getEventsAfter(lastEventId));
+			if (heartbeatTimer != null)
+				heartbeatTimer.cancel();
+			heartbeatTimer = TimingWheelScheduler.getSchedulerInstance().scheduleAtFixedRate(
+					() -> notificationDispatcher.execute(() -> sendHeartbeat(newStream)),
+					new Date(System.currentTimeMillis() + STREAM_HEARTBEAT_INTERVAL), STREAM_HEARTBEAT_INTERVAL);
+		}
+		if (closedStream != null)
+			closedStream.close();
+		if (releasedWaiter != null)
+			releasedWaiter.release();
+		drainStream();
+	}
+
+	/**
+	 * Delivers a notification again which has not been acknowledged in time,
+	 * either to the parked waiter or with the next request of the client.
+	 * 
+	 * @param notificationInfo: Notification info
+	 */
+	public synchronized void resendNotification(NotificationInfo notificationInfo) {
+		resendQueue.add(notificationInfo);
+		notificationAdded();
+	}
+
+	@Override
+	public void cancelAllRemindServices() {
+		NotificationWaiter releasedWaiter;
+		synchronized (this) {
+			super.cancelAllRemindServices();
+			resendQueue.clear();
+			releasedWaiter = parkedWaiter;
+			parkedWaiter = null;
+		}
+		if (releasedWaiter != null)
+			releasedWaiter.release();
+		NotificationStream openStream;
+		synchronized (this) {
+			openStream = stream;
+			recentEvents.clear();
+		}
+		if (openStream != null)
+			closeStream(openStream);
+	}
+
+	@Override
+	protected synchronized void notificationAdded() {
+		if (stream != null) {
+			// Events are written outside of the timer thread
+			notificationDispatcher.execute(this::drainStream);
+			return;
+		}
+		if (parkedWaiter == null)
+			return;
+		NotificationWaiter waiter = parkedWaiter;
+		parkedWaiter = null;
+		NotificationInfo notificationInfo = nextNotificationInfo();
+		// Response is written outside of the timer thread
+		notificationDispatcher.execute(() -> deliver(waiter, notificationInfo));
+	}
+
+	/**
+	 * Returns the next notification to deliver, notifications to deliver again
+	 * first.
+	 * 
+	 * @return Notification info or null if no notification is available
+	 */
+	private synchronized NotificationInfo nextNotificationInfo() {
+		NotificationInfo notificationInfo = resendQueue.poll();
+		return notificationInfo != null ? notificationInfo : getNotificationInfo();
+	}
+
+	/**
+	 * Delivers a notification to a waiter and waits for its acknowledgement.
+	 * 
+	 * @param waiter:           Waiter of the client
+	 * @param notificationInfo: Notification info
+	 */
+	private void deliver(NotificationWaiter waiter, NotificationInfo notificationInfo) {
+		deliveryTracker.sent(clientId, notificationInfo, this::resendNotification);
+		waiter.deliver(notificationInfo);
+	}
+
+	/**
+	 * Sends all available notifications to the open stream, missed events first.
+	 * If another thread is sending already, it picks up the notifications. A new
+	 * notification which could not be sent because the stream is broken is put
+	 * back in front of the notifications to deliver, so the client gets it with
+	 * its next stream or request.
+	 */
+	private void drainStream() {
+		do {
+			if (!streamDraining.compareAndSet(false, true))
+				return;
+			try {
+				while (true) {
+					NotificationStream openStream;
+					NotificationInfo notificationInfo;
+					boolean replayed;
+					synchronized (this) {
+						openStream = stream;
+						if (openStream == null)
+							return;
+						notificationInfo = replayQueue.poll();
+						replayed = notificationInfo != null;
+						if (!replayed)
+							notificationInfo = nextNotificationInfo();
+						if (notificationInfo == null)
+							break;
+						if (!replayed)
+							addRecentEvent(notificationInfo);
+					}
+					// Replayed events are tracked since they were sent first
+					if (!replayed)
+						deliveryTracker.sent(clientId, notificationInfo, this::resendNotification);
+					if (!openStream.send(notificationInfo)) {
+						// A replayed event is still kept with the recent events
+						if (!replayed)
+							notSent(notificationInfo);
+						closeStream(openStream);
+						return;
+					}
+				}
+			} finally {
+				streamDraining.set(false);
+			}
+		} while (anyStreamEventAvailable());
+	}
+
+	private synchronized boolean anyStreamEventAvailable() {
+		return stream != null && (!replayQueue.isEmpty() || !resendQueue.isEmpty() || anyNotificationAvailable());
+	}
+
+	private void sendHeartbeat(NotificationStream openStream) {
+		synchronized (this) {
+			if (stream != openStream)
+				return;
+		}
+		if (!openStream.sendHeartbeat())
+			closeStream(openStream);
+	}
+
+	/**
+	 * Closes a stream and stops its heartbeats if it is still the open stream of
+	 * the client.
+	 * 
+	 * @param closedStream: Stream to close
+	 */
+	private void closeStream(NotificationStream closedStream) {
+		synchronized (this) {
+			if (stream == closedStream) {
+				stream = null;
+				replayQueue.clear();
+				if (heartbeatTimer != null)
+					heartbeatTimer.cancel();
+				heartbeatTimer = null;
+			}
+		}
+		closedStream.close();
+	}
+
+	/**
+	 * Puts a notification which could not be sent back in front of the
+	 * notifications to deliver and stops waiting for its acknowledgement.
+	 * 
+	 * @param notificationInfo: Notification info
+	 */
+	private void notSent(NotificationInfo notificationInfo) {
+		deliveryTracker.notSent(clientId, notificationInfo.getMessageId());
+		synchronized (this) {
+			recentEvents.removeLastOccurrence(notificationInfo);
+			resendQueue.addFirst(notificationInfo);
+		}
+	}
+
+	private synchronized void addRecentEvent(NotificationInfo notificationInfo) {
+		recentEvents.add(notificationInfo);
+		if (recentEvents.size() > MAX_RECENT_EVENTS)
+			recentEvents.poll();
+	}
+
+	/**
+	 * Returns the recent events sent after the event with the ID given.
+	 * 
+	 * @param lastEventId: ID of the last event the client got
+	 * @return Events after it or all recent events if it is not kept anymore
+	 */
+	private synchronized ArrayDeque<NotificationInfo> getEventsAfter(long lastEventId) {
+		ArrayDeque<NotificationInfo> missedEvents = new ArrayDeque<>();
+		Iterator<NotificationInfo> newestFirst = recentEvents.descendingIterator();
+		while (newestFirst.hasNext()) {
+			NotificationInfo event = newestFirst.next();
+			if (event.getMessageId() == lastEventId)
+				return missedEvents;
+			missedEvents.addFirst(event);
+		}
+		return missedEvents;
+	}
+}
@@ -0,0 +1,139 @@
+package com.server.alarmmanagement;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.server.httpserver.ExecutionMode;
+
+/**
+ * This class dispatches the notifications of all forwarding clients with a
+ * shared, fixed number of worker threads. A client is only dispatched when a
+ * notification has been added to his storage, so idle clients cost neither a
+ * thread nor CPU time. Each client is queued at most once at a time, which
+ * bounds the work queue by the number of clients. In the virtual threads
+ * execution mode, every dispatched client gets its own virtual thread, so
+ * blocking sends do not wait for a free worker.
+ */
+public class NotificationDispatcher {
+
+	/**
+	 * System property to configure the number of dispatching worker threads
+	 */
+	public static final String NUM_OF_WORKERS_PROPERTY = "notificationDispatcher.workers";
+	/**
+	 * Number of worker threads if not configured
+	 */
+	private static final int DEFAULT_NUM_OF_WORKERS = Integer.getInteger(NUM_OF_WORKERS_PROPERTY,
+			Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Single dispatcher instance shared by all forwarding servers
+	 */
+	private static NotificationDispatcher dispatcherInstance = new NotificationDispatcher(
+			ExecutionMode.getExecutionMode(), DEFAULT_NUM_OF_WORKERS);
+
+	/**
+	 * Worker threads which forward the notifications
+	 */
+	private final ExecutorService workers;
+
+	/**
+	 * Creates a dispatcher with a fixed number of worker threads.
+	 * 
+	 * @param numberOfWorkers: Number of worker threads
+	 */
+	public NotificationDispatcher(int numberOfWorkers) {
+		this(ExecutionMode.PLATFORM_THREADS, numberOfWorkers);
+	}
+
+	/**
+	 * Creates a dispatcher which runs its workers in the execution mode given.
+	 * 
+	 * @param executionMode:   Platform or virtual threads
+	 * @param numberOfWorkers: Number of worker threads with platform threads
+	 */
+	public NotificationDispatcher(ExecutionMode executionMode, int numberOfWorkers) {
+		workers = executionMode.newExecutor("NotificationDispatcher", numberOfWorkers, true);
+	}
+
+	/**
+	 * Returns the single dispatcher instance.
+	 * 
+	 * @return Notification dispatcher instance
+	 */
+	public static NotificationDispatcher getDispatcherInstance() {
+		return dispatcherInstance;
+	}
+
+	/**
+	 * Queues a client for forwarding his available notifications. If the client
+	 * is already queued or being drained, nothing happens as the running drain
+	 * will pick up the new notification.
+	 * 
+	 * @param clientAlarmManager: Client AlarmManager with available notifications
+	 */
+	public void dispatch(ForwardingClientAlarmManager clientAlarmManager) {
+		if (!clientAlarmManager.tryScheduleDispatch())
+			return;
+		try {
+			workers.execute(() -> drain(clientAlarmManager));
+		} catch (RejectedExecutionException e) {
+			clientAlarmManager.dispatchFinished();
+			printError("Dispatcher has been closed!");
+		}
+	}
+
+	/**
+	 * Executes a delivery task on the worker threads, e.g. to complete a parked
+	 * long polling request.
+	 * 
+	 * @param deliveryTask: Task which delivers a notification
+	 */
+	public void execute(Runnable deliveryTask) {
+		try {
+			workers.execute(deliveryTask);
+		} catch (RejectedExecutionException e) {
+			printError("Dispatcher has been closed!");
+		}
+	}
+
+	/**
+	 * Stops all worker threads.
+	 */
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Forwards all available notifications of a client. A notification added
+	 * after the storage was found empty schedules the client again. If the
+	 * forwarding does not accept messages, the client is dispatched again when it
+	 * does, so a slow push back-end holds the notifications back in the storages
+	 * instead of blocking the worker threads.
+	 * 
+	 * @param clientAlarmManager: Client AlarmManager to drain
+	 */
+	private void drain(ForwardingClientAlarmManager clientAlarmManager) {
+		do {
+			boolean forwarded = true;
+			try {
+				forwarded = clientAlarmManager.forwardAvailableNotifications();
+			} catch (RuntimeException e) {
+				printException(e);
+			}
+			clientAlarmManager.dispatchFinished();
+			if (!forwarded) {
+				clientAlarmManager.resumeWhenForwardingAccepts();
+				return;
+			}
+		} while (clientAlarmManager.anyNotificationAvailable() && clientAlarmManager.tryScheduleDispatch());
+	}
+
+	private void printError(String errorMessage) {
+		System.out.println("ERROR: " + errorMessage);
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+}
@@ -0,0 +1,38 @@
+package com.server.alarmmanagement;
+
+import com.server.forwarding.NotificationInfo;
+
+/**
+ * A stream stays open at a client alarmmanager and gets every notification of
+ * the client as soon as it fires, so the client does not send a new request
+ * per notification. (Only for HTTP Long Polling Push)
+ */
+public interface NotificationStream {
+
+	/**
+	 * Last event ID of a client which opens its first stream
+	 */
+	public static final long NO_LAST_EVENT_ID = -1;
+
+	/**
+	 * Sends a notification as an event with its message ID as event ID.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @return false if the stream is broken, e.g. the client has disconnected
+	 */
+	public boolean send(NotificationInfo notificationInfo);
+
+	/**
+	 * Sends a heartbeat, which keeps the idle connection open and detects a lost
+	 * client.
+	 * 
+	 * @return false if the stream is broken
+	 */
+	public boolean sendHeartbeat();
+
+	/**
+	 * Ends the stream, e.g. because a newer stream of the same client has been
+	 * opened or the server is closed.
+	 */
+	public void close();
+}
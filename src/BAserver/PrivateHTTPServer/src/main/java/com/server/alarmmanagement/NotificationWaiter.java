@@ -0,0 +1,23 @@
+package com.server.alarmmanagement;
+
+import com.server.forwarding.NotificationInfo;
+
+/**
+ * A waiter is parked at a client alarmmanager until a notification for the
+ * client is available. (Only for HTTP Long Polling Push)
+ */
+public interface NotificationWaiter {
+
+	/**
+	 * Delivers the notification the waiter has been waiting for.
+	 * 
+	 * @param notificationInfo: Notification info
+	 */
+	public void deliver(NotificationInfo notificationInfo);
+
+	/**
+	 * Releases the waiter without a notification, e.g. because a newer waiter of
+	 * the same client has been parked or the server is closed.
+	 */
+	public void release();
+}
@@ -2,40 +2,40 @@ package com.server.alarmmanagement;
 
 import java.util.UUID;
 
+import com.server.forwarding.IForwarding;
 import com.server.forwarding.PMSNForwarding;
+import com.server.reliability.DeliveryReliability;
 
 /*
  * This class inherits all functionalities of a general client alarmmanager and
  * is specialized for PMSN Push or forwarding a message (notification) to the
  * PMSN Back-End.
  */
-public class PMSNClientAlarmManager extends ClientAlarmManager {
+public class PMSNClientAlarmManager extends ForwardingClientAlarmManager {
 
 	/**
 	 * PMSNForwarding instance for forwarding a push request to PMNS
 	 */
 	private PMSNForwarding psmnForwarding;
-
 	/**
-	 * This thread is actively polling for notifications to push them to the PMNS
-	 * Back-End (our MNS solution)
+	 * Forwarding which retries failed push requests
 	 */
-	private Thread waitForForwardingMessageToPMSN = new Thread(() -> {
-		while (true) {
-			while (!anyNotificationAvailable())
-				;
-			psmnForwarding.forwardMessage(getNotificationInfo());
-		}
-	});
+	private IForwarding reliableForwarding;
 
 	/**
 	 * Constructor.
 	 * 
-	 * @param clientId: Client ID of client
+	 * @param clientId:            Client ID of client
+	 * @param deliveryReliability: Retries and dead letter queue of the server
 	 */
-	public PMSNClientAlarmManager(UUID clientId) {
+	public PMSNClientAlarmManager(UUID clientId, DeliveryReliability deliveryReliability) {
 		super(clientId);
 		psmnForwarding = new PMSNForwarding(clientId);
-		waitForForwardingMessageToPMSN.start();
+		reliableForwarding = deliveryReliability.makeReliable(clientId, psmnForwarding);
+	}
+
+	@Override
+	protected IForwarding getForwarding() {
+		return reliableForwarding;
 	}
 }
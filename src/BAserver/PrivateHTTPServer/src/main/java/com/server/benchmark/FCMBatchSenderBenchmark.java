@@ -0,0 +1,54 @@
+package com.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.server.forwarding.FCMBatchSender;
+import com.server.forwarding.FCMMessage;
+import com.server.forwarding.FCMSendResult;
+import com.server.forwarding.LocalFCMMessagingBackend;
+
+/**
+ * This benchmark measures the throughput of the FCM batch sender: a peak of
+ * messages is queued at once and sent in batches to the in-process fake of the
+ * FCM Back-End, which simulates the round trip of one call. The time until all
+ * messages have their result, the number of calls and the max number of calls
+ * in flight are printed.
+ *
+ * Arguments: [number of messages] [latency of one call in ms]
+ */
+public class FCMBatchSenderBenchmark {
+
+	private static final int DEFAULT_NUMBER_OF_MESSAGES = 100000;
+	private static final long DEFAULT_LATENCY = 10;
+	private static final long BATCH_WINDOW = 20;
+	private static final int MAX_IN_FLIGHT_BATCHES = 4;
+
+	public static void main(String[] args) {
+		int numberOfMessages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_MESSAGES;
+		long latency = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_LATENCY;
+		LocalFCMMessagingBackend backend = new LocalFCMMessagingBackend(latency);
+		FCMBatchSender sender = new FCMBatchSender(backend, BATCH_WINDOW, MAX_IN_FLIGHT_BATCHES,
+				2 * numberOfMessages);
+		try {
+			long startTime = System.nanoTime();
+			List<CompletableFuture<FCMSendResult>> results = new ArrayList<>(numberOfMessages);
+			for (int i = 0; i < numberOfMessages; i++)
+				results.add(sender.send(new FCMMessage("token-" + i, "Medicine", true)));
+			int failedMessages = 0;
+			for (CompletableFuture<FCMSendResult> result : results)
+				if (!result.join().isSuccessful())
+					failedMessages++;
+			long time = System.nanoTime() - startTime;
+
+			if (failedMessages > 0)
+				System.out.println("ERROR: " + failedMessages + " messages failed");
+			System.out.println("Sent " + numberOfMessages + " messages in " + backend.getNumberOfCalls() + " calls: "
+					+ time / 1000000 + " ms, max " + backend.getMaxNumberOfCallsInFlight() + " in flight");
+		} finally {
+			sender.close();
+			backend.close();
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package com.server.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.server.alarmmanagement.LongPollingClientAlarmManager;
+import com.server.httphandler.HTTPHandler;
+import com.server.httphandler.RemindServiceHandler;
+import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.server.httpserver.ExecutionMode;
+import com.server.httpserver.ServerFunctions;
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+import com.server.model.parse.RemindServiceJsonParser;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This benchmark compares the fixed thread pool of the private HTTP servers
+ * with virtual threads. By default the clients register and cancel remind
+ * services at /remindService of a private HTTP server with its standard
+ * handlers, which waits for the disk flush of the registration journal. With
+ * the handler "sleep" a handler blocks for a fixed time instead, like a
+ * handler which waits for a push back-end. The fixed pool can only handle as
+ * many exchanges at once as it has threads. Many clients send requests at once
+ * and the throughput and the max number of exchanges handled at once are
+ * printed for each execution mode. Virtual threads need Java 21 or later,
+ * otherwise only the fixed pool is measured.
+ *
+ * Arguments: [concurrent clients] [requests per client] [handler: remindService
+ * or sleep] [blocking time in ms of sleep]
+ */
+public class HTTPExecutorBenchmark {
+
+	private static final int DEFAULT_CLIENTS = 2000;
+	private static final int DEFAULT_REQUESTS_PER_CLIENT = 5;
+	private static final String REMIND_SERVICE_HANDLER = "remindService";
+	private static final String SLEEP_HANDLER = "sleep";
+	private static final int DEFAULT_BLOCKING_MILLIS = 100;
+	/**
+	 * Number of threads of the fixed pool, as used by the private HTTP servers
+	 */
+	private static final int NUMBER_OF_PLATFORM_THREADS = 100;
+	private static final byte[] RESPONSE = "true".getBytes();
+	private static final String EXPECTED_RESPONSE = "Remind Service successfully registered!";
+
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+		int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS_PER_CLIENT;
+		String handler = args.length > 2 ? args[2] : REMIND_SERVICE_HANDLER;
+		int blockingMillis = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BLOCKING_MILLIS;
+		if (!handler.equals(REMIND_SERVICE_HANDLER) && !handler.equals(SLEEP_HANDLER)) {
+			System.out.println("Unknown handler " + handler + ", use " + REMIND_SERVICE_HANDLER + " or " + SLEEP_HANDLER);
+			return;
+		}
+		// The clients need a thread each, virtual ones if possible
+		ExecutionMode clientMode = ExecutionMode.isVirtualThreadSupported() ? ExecutionMode.VIRTUAL_THREADS
+				: ExecutionMode.PLATFORM_THREADS;
+
+		System.out.println("Clients: " + clients + ", requests per client: " + requestsPerClient + ", handler: "
+				+ (handler.equals(SLEEP_HANDLER) ? "blocks " + blockingMillis + " ms" : "/" + handler));
+		for (int round = 0; round < 2; round++) {
+			String label = round == 0 ? "Warmup   " : "Measured ";
+			System.out.println(label + "fixed pool of " + NUMBER_OF_PLATFORM_THREADS + " threads: "
+					+ run(ExecutionMode.PLATFORM_THREADS, clientMode, clients, requestsPerClient, handler,
+							blockingMillis));
+			if (ExecutionMode.isVirtualThreadSupported())
+				System.out.println(label + "virtual threads:            "
+						+ run(ExecutionMode.VIRTUAL_THREADS, clientMode, clients, requestsPerClient, handler,
+								blockingMillis));
+			else
+				System.out.println("Virtual threads are not supported by Java " + System.getProperty("java.version"));
+		}
+	}
+
+	/**
+	 * Runs the requests of all clients against a server in the execution mode
+	 * given.
+	 *
+	 * @return Throughput and max number of exchanges handled at once
+	 */
+	private static String run(ExecutionMode serverMode, ExecutionMode clientMode, int clients,
+			int requestsPerClient, String handler, int blockingMillis) throws IOException, InterruptedException {
+		AtomicInteger activeExchanges = new AtomicInteger();
+		AtomicInteger maxActiveExchanges = new AtomicInteger();
+		HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), clients);
+		BenchmarkServer benchmarkServer = null;
+		HttpHandler benchmarkedHandler;
+		String path;
+		if (handler.equals(SLEEP_HANDLER)) {
+			path = "/";
+			benchmarkedHandler = exchange -> {
+				try {
+					// Waits like a handler which forwards to a push back-end
+					Thread.sleep(blockingMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.sendResponseHeaders(200, RESPONSE.length);
+				try (OutputStream responseBody = exchange.getResponseBody()) {
+					responseBody.write(RESPONSE);
+				}
+			};
+		} else {
+			path = "/remindService";
+			benchmarkServer = new BenchmarkServer(httpServer);
+			benchmarkServer.start();
+			BenchmarkServer server = benchmarkServer;
+			// Replaces the standard context to count the exchanges handled at once
+			httpServer.removeContext(path);
+			benchmarkedHandler = HTTPHandler.newHandlerPerExchange(() -> new RemindServiceHandler(server));
+		}
+		httpServer.createContext(path, exchange -> {
+			int active = activeExchanges.incrementAndGet();
+			maxActiveExchanges.accumulateAndGet(active, Math::max);
+			try {
+				benchmarkedHandler.handle(exchange);
+			} finally {
+				activeExchanges.decrementAndGet();
+			}
+		});
+		ExecutorService serverExecutor = serverMode.newExecutor("BenchmarkServer", NUMBER_OF_PLATFORM_THREADS,
+				true);
+		httpServer.setExecutor(serverExecutor);
+		httpServer.start();
+
+		URL url = new URL("http://localhost:" + httpServer.getAddress().getPort() + path);
+		List<String[]> requestBodies = new ArrayList<>(clients);
+		for (int c = 0; c < clients; c++)
+			requestBodies.add(benchmarkServer != null ? benchmarkServer.newClientRequests() : null);
+		LongAdder succeeded = new LongAdder();
+		LongAdder failed = new LongAdder();
+		ExecutorService clientExecutor = clientMode.newExecutor("BenchmarkClient", clients, true);
+		List<Future<?>> results = new ArrayList<>(clients);
+		// The handlers print every request
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long startTime = System.nanoTime();
+		for (int c = 0; c < clients; c++) {
+			String[] clientRequestBodies = requestBodies.get(c);
+			results.add(clientExecutor.submit(() -> {
+				for (int r = 0; r < requestsPerClient; r++) {
+					if (sendRequest(url, clientRequestBodies != null ? clientRequestBodies[r % 2] : null))
+						succeeded.increment();
+					else
+						failed.increment();
+				}
+			}));
+		}
+		for (Future<?> result : results) {
+			try {
+				result.get();
+			} catch (Exception e) {
+				failed.increment();
+			}
+		}
+		long elapsedNanos = System.nanoTime() - startTime;
+		System.setOut(out);
+		clientExecutor.shutdownNow();
+		httpServer.stop(0);
+		serverExecutor.shutdownNow();
+		serverExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		if (benchmarkServer != null)
+			benchmarkServer.close();
+
+		return succeeded.sum() * 1_000_000_000L / elapsedNanos + " requests/s, " + elapsedNanos / 1_000_000
+				+ " ms, max " + maxActiveExchanges.get() + " exchanges at once, " + failed.sum() + " failed";
+	}
+
+	/**
+	 * Sends a request and checks its response.
+	 *
+	 * @param url:         URL of the benchmarked handler
+	 * @param requestBody: Body of a POST request or null for a GET request
+	 * @return true if the request succeeded
+	 */
+	private static boolean sendRequest(URL url, String requestBody) {
+		HttpURLConnection urlConnection = null;
+		try {
+			urlConnection = (HttpURLConnection) url.openConnection();
+			urlConnection.setConnectTimeout(60 * 1000);
+			urlConnection.setReadTimeout(60 * 1000);
+			if (requestBody != null) {
+				urlConnection.setRequestMethod("POST");
+				urlConnection.setDoOutput(true);
+				try (OutputStream out = urlConnection.getOutputStream()) {
+					out.write(requestBody.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			if (urlConnection.getResponseCode() != 200)
+				return false;
+			byte[] response;
+			try (InputStream in = urlConnection.getInputStream()) {
+				response = readAll(in);
+			}
+			// Another exchange's response shows handlers sharing their state
+			return requestBody == null || EXPECTED_RESPONSE.equals(new String(response, StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			if (urlConnection != null)
+				urlConnection.disconnect();
+			return false;
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+			bytes.write(buffer, 0, n);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Private HTTP server with the standard handlers and a registration journal in
+	 * a temporary directory. The clients are registered by the benchmark.
+	 */
+	private static class BenchmarkServer extends AbstractPrivateHTTPServer {
+
+		private final HttpServer httpServer;
+		private final File journalDirectory;
+		private final ConcurrentHashMap<UUID, LongPollingClientAlarmManager> clientAlarmManagers = new ConcurrentHashMap<>();
+		private final RemindServiceJsonParser remindServiceJsonParser = new RemindServiceJsonParser();
+
+		private BenchmarkServer(HttpServer httpServer) throws IOException {
+			this.httpServer = httpServer;
+			journalDirectory = Files.createTempDirectory("benchmarkJournal").toFile();
+		}
+
+		@Override
+		public void start() {
+			System.setProperty("journal.directory", journalDirectory.getAbsolutePath());
+			openJournal();
+			supportStandardFunctions(httpServer, clientAlarmManagers);
+		}
+
+		/**
+		 * Registers a new client and returns the bodies of its requests, which
+		 * register and cancel one remind service by turns.
+		 *
+		 * @return Request bodies to register and to cancel
+		 */
+		private String[] newClientRequests() {
+			UUID clientId = UUID.randomUUID();
+			newClient(clientId);
+			String[] requestBodies = new String[2];
+			for (int i = 0; i < requestBodies.length; i++) {
+				RemindService medicine = new Medicine(8, 0);
+				medicine.setRemind(i == 0);
+				requestBodies[i] = ServerFunctions.POST_CLIENT_ID + clientId + "\n"
+						+ remindServiceJsonParser.parseToJson(Collections.singletonList(medicine));
+			}
+			return requestBodies;
+		}
+
+		private void close() {
+			for (LongPollingClientAlarmManager clientAlarmManager : clientAlarmManagers.values())
+				clientAlarmManager.cancelAllRemindServices();
+			closeJournal();
+			deleteRecursively(journalDirectory);
+		}
+
+		private static void deleteRecursively(File file) {
+			File[] files = file.listFiles();
+			if (files != null)
+				for (File child : files)
+					deleteRecursively(child);
+			file.delete();
+		}
+
+		@Override
+		public void newClient(UUID clientId) {
+			clientAlarmManagers.put(clientId, new LongPollingClientAlarmManager(clientId));
+		}
+
+		@Override
+		public boolean isUserRegistered(UUID clientId) {
+			return clientAlarmManagers.containsKey(clientId);
+		}
+
+		@Override
+		public LongPollingClientAlarmManager getClientAlarmManager(UUID clientId) {
+			return clientAlarmManagers.get(clientId);
+		}
+
+		@Override
+		protected Collection<LongPollingClientAlarmManager> getClientAlarmManagers() {
+			return clientAlarmManagers.values();
+		}
+	}
+}
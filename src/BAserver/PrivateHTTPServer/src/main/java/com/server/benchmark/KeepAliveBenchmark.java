@@ -0,0 +1,164 @@
+package com.server.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import com.server.httphandler.HTTPHandler;
+import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This load test compares the request latency of the app requests with a new
+ * connection per request ("Connection: close", as the app did before) and with
+ * kept alive connections. The handler posts back the client ID like the
+ * handlers of the private HTTP servers and the server uses their keep-alive
+ * configuration. Several clients send their requests one after another and
+ * the average, median and 99th percentile latency of each mode are printed.
+ *
+ * Arguments: [clients] [requests per client]
+ */
+public class KeepAliveBenchmark {
+
+	private static final int DEFAULT_CLIENTS = 8;
+	private static final int DEFAULT_REQUESTS_PER_CLIENT = 2000;
+
+	/**
+	 * Answers with the client ID of the request
+	 */
+	private static class ClientIdEchoHandler extends HTTPHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) {
+			setExchange(exchange);
+			try {
+				sendResponse(readLine());
+			} catch (IOException e) {
+				printException(e);
+			}
+			closeHTTPExchange();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+		int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS_PER_CLIENT;
+		AbstractPrivateHTTPServer.configureKeepAlive();
+		// Every client keeps its connection in the pool of the JDK
+		System.setProperty("http.maxConnections", String.valueOf(clients));
+
+		HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		httpServer.createContext("/", new ClientIdEchoHandler());
+		httpServer.start();
+		URL url = new URL("http://localhost:" + httpServer.getAddress().getPort() + "/");
+
+		// The handler prints every request, which would measure the console instead
+		// of the connections
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		try {
+			console.println("Clients: " + clients + ", requests per client: " + requestsPerClient);
+			for (int round = 0; round < 2; round++) {
+				String label = round == 0 ? "Warmup   " : "Measured ";
+				console.println(label + "Connection: close: " + run(url, false, clients, requestsPerClient));
+				console.println(label + "keep-alive:        " + run(url, true, clients, requestsPerClient));
+			}
+		} finally {
+			System.setOut(console);
+			httpServer.stop(0);
+		}
+	}
+
+	/**
+	 * Sends the requests of all clients.
+	 *
+	 * @return Latencies of all requests
+	 */
+	private static String run(URL url, boolean keepAlive, int clients, int requestsPerClient)
+			throws InterruptedException {
+		long[] latencies = new long[clients * requestsPerClient];
+		int[] failed = new int[clients];
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] clientThreads = new Thread[clients];
+		for (int c = 0; c < clients; c++) {
+			int client = c;
+			clientThreads[c] = new Thread(() -> {
+				String clientId = UUID.randomUUID().toString();
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int r = 0; r < requestsPerClient; r++) {
+					long startTime = System.nanoTime();
+					if (!sendRequest(url, keepAlive, clientId))
+						failed[client]++;
+					latencies[client * requestsPerClient + r] = System.nanoTime() - startTime;
+				}
+			}, "BenchmarkClient-" + c);
+			clientThreads[c].start();
+		}
+		start.countDown();
+		for (Thread clientThread : clientThreads)
+			clientThread.join();
+
+		Arrays.sort(latencies);
+		long total = 0;
+		for (long latency : latencies)
+			total += latency;
+		return "avg " + total / latencies.length / 1000 + " us, p50 " + latencies[latencies.length / 2] / 1000
+				+ " us, p99 " + latencies[latencies.length * 99 / 100] / 1000 + " us, "
+				+ Arrays.stream(failed).sum() + " failed";
+	}
+
+	/**
+	 * Posts the client ID like the request threads of the app.
+	 */
+	private static boolean sendRequest(URL url, boolean keepAlive, String clientId) {
+		HttpURLConnection urlConnection = null;
+		try {
+			urlConnection = (HttpURLConnection) url.openConnection();
+			urlConnection.setDoOutput(true);
+			urlConnection.setRequestMethod("POST");
+			urlConnection.setRequestProperty("Content-Type", "text/plain");
+			if (!keepAlive)
+				urlConnection.setRequestProperty("Connection", "close");
+			try (OutputStream out = urlConnection.getOutputStream()) {
+				out.write(("ClientId: " + clientId + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			if (urlConnection.getResponseCode() != 200)
+				return false;
+			// Reading the whole response returns the connection to the pool
+			try (InputStream in = urlConnection.getInputStream()) {
+				byte[] buffer = new byte[256];
+				while (in.read(buffer) != -1)
+					;
+			}
+			if (!keepAlive)
+				urlConnection.disconnect();
+			return true;
+		} catch (IOException e) {
+			if (urlConnection != null)
+				urlConnection.disconnect();
+			return false;
+		}
+	}
+}
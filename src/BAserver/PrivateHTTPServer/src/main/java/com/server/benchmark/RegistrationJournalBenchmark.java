@@ -0,0 +1,68 @@
+package com.server.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.server.model.Water;
+import com.server.persistence.JournalRecord;
+import com.server.persistence.RecoveredClients;
+import com.server.persistence.RegistrationJournal;
+
+/**
+ * This benchmark measures the registration journal: remind services of new
+ * clients are appended in batches of 1000 records with group commit, and the
+ * journal is replayed again like at a restart of a server. The average time of
+ * appending and of replaying one record is printed.
+ *
+ * Arguments: [number of records]
+ */
+public class RegistrationJournalBenchmark {
+
+	private static final int DEFAULT_NUMBER_OF_RECORDS = 100000;
+	private static final int BATCH_SIZE = 1000;
+
+	public static void main(String[] args) throws IOException {
+		int numberOfRecords = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_RECORDS;
+		File journalDirectory = Files.createTempDirectory("journalBenchmark").toFile();
+		try {
+			Water water = new Water();
+			List<JournalRecord> batch = new ArrayList<>();
+			RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+			journal.open();
+			long startTime = System.nanoTime();
+			for (int i = 0; i < numberOfRecords; i++) {
+				batch.add(JournalRecord.remindService(UUID.randomUUID(), water));
+				if (batch.size() == BATCH_SIZE) {
+					journal.appendAll(batch);
+					batch.clear();
+				}
+			}
+			journal.appendAll(batch);
+			journal.close();
+			long appendTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			RecoveredClients recoveredClients = new RecoveredClients();
+			long replayedRecords = journal.replay(recoveredClients::apply);
+			recoveredClients.parseRemindServices();
+			long replayTime = System.nanoTime() - startTime;
+
+			if (replayedRecords != numberOfRecords || recoveredClients.size() != numberOfRecords)
+				System.out.println("ERROR: " + replayedRecords + " records replayed for " + recoveredClients.size()
+						+ " clients, " + numberOfRecords + " expected");
+			System.out.println("Journal with " + numberOfRecords + " records, append: "
+					+ appendTime / numberOfRecords + " ns/record, replay: " + replayTime / numberOfRecords
+					+ " ns/record");
+		} finally {
+			File[] files = journalDirectory.listFiles();
+			if (files != null)
+				for (File file : files)
+					file.delete();
+			journalDirectory.delete();
+		}
+	}
+}
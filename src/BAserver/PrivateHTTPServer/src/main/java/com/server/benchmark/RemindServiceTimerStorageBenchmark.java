@@ -0,0 +1,94 @@
+package com.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import com.server.model.DocAppointment;
+import com.server.storage.RemindServiceTimerStorage;
+import com.server.timer.TimerHandle;
+
+/**
+ * This benchmark shows that registering and canceling a remind service takes
+ * constant time, independent of the number of remind services a client has
+ * registered. The doc appointments of a client are registered and canceled
+ * again with 1k and 10k entries and the average time of one operation is
+ * printed for both sizes, which should be about the same.
+ *
+ * Arguments: [rounds]
+ */
+public class RemindServiceTimerStorageBenchmark {
+
+	private static final int DEFAULT_ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+		List<DocAppointment> docAppointments1k = createDocAppointments(1000);
+		List<DocAppointment> docAppointments10k = createDocAppointments(10000);
+
+		// Warm up
+		measureRegisterAndCancel(docAppointments10k);
+
+		for (int round = 0; round < rounds; round++) {
+			long nanosPerOperationWith1k = measureRegisterAndCancel(docAppointments1k);
+			long nanosPerOperationWith10k = measureRegisterAndCancel(docAppointments10k);
+			System.out.println("Round " + (round + 1) + ": register and cancel with 1k entries: "
+					+ nanosPerOperationWith1k + " ns/op, with 10k entries: " + nanosPerOperationWith10k + " ns/op");
+		}
+	}
+
+	/**
+	 * Registers all doc appointments and cancels them again.
+	 * 
+	 * @return Average time of one register or cancel in nanoseconds
+	 */
+	private static long measureRegisterAndCancel(List<DocAppointment> docAppointments) {
+		RemindServiceTimerStorage storage = new RemindServiceTimerStorage();
+		TimerHandle timer = new NoTimerHandle();
+		long start = System.nanoTime();
+		for (DocAppointment docAppointment : docAppointments) {
+			if (!storage.existsRemindService(docAppointment))
+				storage.registerForRemindService(docAppointment, timer);
+		}
+		for (DocAppointment docAppointment : docAppointments) {
+			if (storage.existsRemindService(docAppointment))
+				storage.removeRemindService(docAppointment);
+		}
+		long duration = System.nanoTime() - start;
+		if (!storage.getRegisteredRemindServices().isEmpty())
+			System.out.println("ERROR: Not all doc appointments have been canceled");
+		return duration / (2L * docAppointments.size());
+	}
+
+	/**
+	 * Creates doc appointments, one per minute starting today.
+	 */
+	private static List<DocAppointment> createDocAppointments(int numberOfDocAppointments) {
+		List<DocAppointment> docAppointments = new ArrayList<>(numberOfDocAppointments);
+		long today = Calendar.getInstance().getTimeInMillis();
+		long day = 24L * 60L * 60L * 1000L;
+		for (int i = 0; i < numberOfDocAppointments; i++) {
+			int minuteOfDay = i % (24 * 60);
+			docAppointments.add(new DocAppointment(today + (i / (24 * 60)) * day, minuteOfDay / 60, minuteOfDay % 60));
+		}
+		return docAppointments;
+	}
+
+	/**
+	 * Timer of a remind service which is never scheduled
+	 */
+	private static class NoTimerHandle implements TimerHandle {
+
+		private boolean cancelled;
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
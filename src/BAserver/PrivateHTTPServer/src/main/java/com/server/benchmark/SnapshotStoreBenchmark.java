@@ -0,0 +1,65 @@
+package com.server.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+import com.server.model.Water;
+import com.server.persistence.RecoveredClients;
+import com.server.persistence.SnapshotStore;
+
+/**
+ * This benchmark measures the snapshot store: a snapshot of clients with two
+ * remind services each is written and loaded again like at a restart of a
+ * server. The time of writing, loading and restoring the remind services is
+ * printed.
+ *
+ * Arguments: [number of clients]
+ */
+public class SnapshotStoreBenchmark {
+
+	private static final int DEFAULT_NUMBER_OF_CLIENTS = 50000;
+
+	public static void main(String[] args) throws IOException {
+		int numberOfClients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_CLIENTS;
+		File snapshotDirectory = Files.createTempDirectory("snapshotBenchmark").toFile();
+		try {
+			List<RemindService> remindServices = new ArrayList<>();
+			remindServices.add(new Water());
+			remindServices.add(new Medicine(8, 0));
+			SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+			long startTime = System.nanoTime();
+			try (SnapshotStore.Writer writer = snapshotStore.createWriter(1)) {
+				for (int i = 0; i < numberOfClients; i++)
+					writer.writeClient(UUID.randomUUID(), null, remindServices);
+				writer.commit();
+			}
+			long writeTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			RecoveredClients recoveredClients = new RecoveredClients();
+			snapshotStore.load(recoveredClients);
+			long loadTime = System.nanoTime() - startTime;
+			recoveredClients.parseRemindServices();
+			long parseTime = System.nanoTime() - startTime - loadTime;
+
+			if (recoveredClients.size() != numberOfClients)
+				System.out.println("ERROR: " + recoveredClients.size() + " clients loaded, " + numberOfClients
+						+ " expected");
+			System.out.println("Snapshot of " + numberOfClients * remindServices.size() + " remind services: write "
+					+ writeTime / 1000000 + " ms, load " + loadTime / 1000000 + " ms, parse " + parseTime / 1000000
+					+ " ms");
+		} finally {
+			File[] files = snapshotDirectory.listFiles();
+			if (files != null)
+				for (File file : files)
+					file.delete();
+			snapshotDirectory.delete();
+		}
+	}
+}
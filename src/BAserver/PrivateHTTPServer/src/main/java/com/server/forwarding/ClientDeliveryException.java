@@ -0,0 +1,31 @@
+package com.server.forwarding;
+
+import java.io.IOException;
+
+/**
+ * Failure of a message because of its receiving client, e.g. a missing or
+ * unregistered FCM token, while the push back-end itself is working. Such
+ * failures do not count for the circuit breaker of the back-end. A permanent
+ * failure will not go away by sending the message again.
+ */
+public class ClientDeliveryException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final boolean permanent;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message:   Reason of the failure
+	 * @param permanent: True if sending the message again would fail as well
+	 */
+	public ClientDeliveryException(String message, boolean permanent) {
+		super(message);
+		this.permanent = permanent;
+	}
+
+	public boolean isPermanent() {
+		return permanent;
+	}
+}
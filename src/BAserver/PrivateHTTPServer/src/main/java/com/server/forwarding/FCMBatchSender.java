@@ -0,0 +1,308 @@
+package com.server.forwarding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class sends the FCM messages of all clients of a server together. Every
+ * message queued is collected for a short window and sent with up to
+ * {@link FCMMessagingBackend#MAX_BATCH_SIZE} other messages in one call of the
+ * messaging back-end, so a peak of notifications at the same minute costs one
+ * round trip per batch instead of one per client. The result of every message
+ * is handed back to its client by the future returned when queuing.
+ *
+ * Batches are sent asynchronously with a bounded number of batches in flight.
+ * If the back-end is slower than the notifications come in, the number of
+ * unsent messages reaches its limit and the sender stops accepting messages.
+ * Clients then keep their notifications in their storage until the sender has
+ * caught up to half the limit and resumes them.
+ */
+public class FCMBatchSender {
+
+	/**
+	 * System property to configure the time in milliseconds messages are
+	 * collected before a batch is sent
+	 */
+	public static final String BATCH_WINDOW_PROPERTY = "fcm.batchWindow";
+	/**
+	 * Batch window if not configured
+	 */
+	private static final long DEFAULT_BATCH_WINDOW = Long.getLong(BATCH_WINDOW_PROPERTY, 20L);
+	/**
+	 * System property to configure the max number of batches in flight
+	 */
+	public static final String MAX_IN_FLIGHT_BATCHES_PROPERTY = "fcm.maxInFlightBatches";
+	/**
+	 * Max number of batches in flight if not configured
+	 */
+	private static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = Integer.getInteger(MAX_IN_FLIGHT_BATCHES_PROPERTY, 4);
+	/**
+	 * System property to configure the number of unsent messages at which the
+	 * sender stops accepting messages
+	 */
+	public static final String MAX_PENDING_MESSAGES_PROPERTY = "fcm.maxPendingMessages";
+	/**
+	 * Max number of unsent messages if not configured
+	 */
+	private static final int DEFAULT_MAX_PENDING_MESSAGES = Integer.getInteger(MAX_PENDING_MESSAGES_PROPERTY,
+			4 * DEFAULT_MAX_IN_FLIGHT_BATCHES * FCMMessagingBackend.MAX_BATCH_SIZE);
+
+	/**
+	 * Messaging back-end the batches are sent to
+	 */
+	private final FCMMessagingBackend messagingBackend;
+	/**
+	 * Time in milliseconds messages are collected after the first one
+	 */
+	private final long batchWindow;
+	/**
+	 * Messages not sent yet
+	 */
+	private final LinkedBlockingQueue<PendingMessage> pendingMessages = new LinkedBlockingQueue<>();
+	/**
+	 * Permits for the batches in flight
+	 */
+	private final Semaphore inFlightBatches;
+	/**
+	 * Number of unsent messages at which no further messages are accepted
+	 */
+	private final int maxPendingMessages;
+	/**
+	 * Number of messages queued or in flight
+	 */
+	private final AtomicInteger numberOfPendingMessages = new AtomicInteger();
+	/**
+	 * Tasks which resume clients after the sender has caught up
+	 */
+	private final ConcurrentLinkedQueue<Runnable> resumeTasks = new ConcurrentLinkedQueue<>();
+	private final Thread senderThread;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a batch sender with the configured batch window and limits.
+	 * 
+	 * @param messagingBackend: Messaging back-end the batches are sent to
+	 */
+	public FCMBatchSender(FCMMessagingBackend messagingBackend) {
+		this(messagingBackend, DEFAULT_BATCH_WINDOW, DEFAULT_MAX_IN_FLIGHT_BATCHES, DEFAULT_MAX_PENDING_MESSAGES);
+	}
+
+	/**
+	 * Creates a batch sender.
+	 * 
+	 * @param messagingBackend:   Messaging back-end the batches are sent to
+	 * @param batchWindow:        Time in milliseconds messages are collected
+	 *                            before a batch is sent
+	 * @param maxInFlightBatches: Max number of batches in flight
+	 * @param maxPendingMessages: Number of unsent messages at which no further
+	 *                            messages are accepted
+	 */
+	public FCMBatchSender(FCMMessagingBackend messagingBackend, long batchWindow, int maxInFlightBatches,
+			int maxPendingMessages) {
+		this.messagingBackend = messagingBackend;
+		this.batchWindow = batchWindow;
+		this.inFlightBatches = new Semaphore(maxInFlightBatches);
+		this.maxPendingMessages = maxPendingMessages;
+		senderThread = new Thread(this::sendBatches, "FCMBatchSender");
+		senderThread.setDaemon(true);
+		senderThread.start();
+	}
+
+	/**
+	 * Queues a message for the next batch. Messages are queued even if the sender
+	 * does not accept messages, callers check {@link #isAcceptingMessages()
+	 * isAcceptingMessages} before taking notifications from their storage.
+	 * 
+	 * @param message: Message for a client
+	 * @return Future which is completed with the result of the message
+	 */
+	public CompletableFuture<FCMSendResult> send(FCMMessage message) {
+		PendingMessage pendingMessage = new PendingMessage(message);
+		if (closed) {
+			pendingMessage.result.complete(FCMSendResult.failure("Sender has been closed"));
+			return pendingMessage.result;
+		}
+		numberOfPendingMessages.incrementAndGet();
+		pendingMessage.result.whenComplete((result, throwable) -> messageCompleted());
+		pendingMessages.add(pendingMessage);
+		// The sender may have been closed after the check above. Either close drains
+		// the message or it is removed here, so its future is completed in any case.
+		if (closed && pendingMessages.remove(pendingMessage))
+			pendingMessage.result.complete(FCMSendResult.failure("Sender has been closed"));
+		return pendingMessage.result;
+	}
+
+	/**
+	 * Checks whether the number of unsent messages is below its limit.
+	 * 
+	 * @return true if further messages are accepted, otherwise false
+	 */
+	public boolean isAcceptingMessages() {
+		return numberOfPendingMessages.get() < maxPendingMessages;
+	}
+
+	/**
+	 * Runs the task once the sender has caught up, immediately if it accepts
+	 * messages now.
+	 * 
+	 * @param resumeTask: Task which resumes a client
+	 */
+	public void whenAcceptingMessages(Runnable resumeTask) {
+		resumeTasks.add(resumeTask);
+		// The sender may have caught up before the task was added
+		if (isAcceptingMessages())
+			runResumeTasks();
+	}
+
+	/**
+	 * Returns the number of messages queued or in flight.
+	 * 
+	 * @return Number of unsent messages
+	 */
+	public int getNumberOfPendingMessages() {
+		return numberOfPendingMessages.get();
+	}
+
+	private void messageCompleted() {
+		if (numberOfPendingMessages.decrementAndGet() <= maxPendingMessages / 2 && !resumeTasks.isEmpty())
+			runResumeTasks();
+	}
+
+	private void runResumeTasks() {
+		Runnable resumeTask;
+		while ((resumeTask = resumeTasks.poll()) != null) {
+			try {
+				resumeTask.run();
+			} catch (RuntimeException e) {
+				printException(e);
+			}
+		}
+	}
+
+	/**
+	 * Stops sending. Messages not sent yet fail.
+	 */
+	public void close() {
+		closed = true;
+		senderThread.interrupt();
+		try {
+			senderThread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<PendingMessage> unsentMessages = new ArrayList<>();
+		pendingMessages.drainTo(unsentMessages);
+		failAll(unsentMessages, "Sender has been closed");
+	}
+
+	/**
+	 * Loop of the sender thread: waits for the first message, collects further
+	 * messages until the window has passed or the batch is full, waits for a free
+	 * in-flight permit and sends them.
+	 */
+	private void sendBatches() {
+		while (!closed) {
+			List<PendingMessage> batch = new ArrayList<>();
+			try {
+				batch.add(pendingMessages.take());
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindow);
+				while (batch.size() < FCMMessagingBackend.MAX_BATCH_SIZE) {
+					pendingMessages.drainTo(batch, FCMMessagingBackend.MAX_BATCH_SIZE - batch.size());
+					long remainingTime = deadline - System.nanoTime();
+					if (batch.size() == FCMMessagingBackend.MAX_BATCH_SIZE || remainingTime <= 0)
+						break;
+					PendingMessage pendingMessage = pendingMessages.poll(remainingTime, TimeUnit.NANOSECONDS);
+					if (pendingMessage == null)
+						break;
+					batch.add(pendingMessage);
+				}
+				inFlightBatches.acquire();
+			} catch (InterruptedException e) {
+				failAll(batch, "Sender has been closed");
+				return;
+			}
+			sendBatch(batch);
+		}
+	}
+
+	/**
+	 * Sends one batch without waiting for the response. The in-flight permit is
+	 * released when the response has arrived.
+	 * 
+	 * @param batch: Messages of the batch
+	 */
+	private void sendBatch(List<PendingMessage> batch) {
+		List<FCMMessage> messages = new ArrayList<>(batch.size());
+		for (PendingMessage pendingMessage : batch) {
+			messages.add(pendingMessage.message);
+		}
+
+		CompletableFuture<List<FCMSendResult>> results;
+		try {
+			results = messagingBackend.sendAllAsync(messages);
+		} catch (RuntimeException e) {
+			inFlightBatches.release();
+			printException(e);
+			failAll(batch, e.toString());
+			return;
+		}
+		results.whenComplete((sendResults, throwable) -> {
+			inFlightBatches.release();
+			if (throwable != null) {
+				failAll(batch, throwable.toString());
+			} else {
+				batchSent(batch, sendResults);
+			}
+		});
+	}
+
+	/**
+	 * Completes the future of every message of a batch with its result.
+	 * 
+	 * @param batch:   Messages of the batch
+	 * @param results: Results of the back-end
+	 */
+	private void batchSent(List<PendingMessage> batch, List<FCMSendResult> results) {
+		if (results.size() != batch.size()) {
+			failAll(batch, "Back-end returned " + results.size() + " results for " + batch.size() + " messages");
+			return;
+		}
+		printInfo("Sent batch of " + batch.size() + " messages to FCM");
+		for (int i = 0; i < batch.size(); i++) {
+			batch.get(i).result.complete(results.get(i));
+		}
+	}
+
+	private void failAll(List<PendingMessage> messages, String errorMessage) {
+		for (PendingMessage pendingMessage : messages) {
+			pendingMessage.result.complete(FCMSendResult.failure(errorMessage));
+		}
+	}
+
+	private void printInfo(String infoMessage) {
+		System.out.println("INFO: " + infoMessage);
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+
+	/**
+	 * Message waiting for its batch together with the future of its result
+	 */
+	private static final class PendingMessage {
+
+		private final FCMMessage message;
+		private final CompletableFuture<FCMSendResult> result = new CompletableFuture<>();
+
+		private PendingMessage(FCMMessage message) {
+			this.message = message;
+		}
+	}
+}
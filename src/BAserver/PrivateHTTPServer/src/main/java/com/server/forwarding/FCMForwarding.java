@@ -1,27 +1,23 @@
 package com.server.forwarding;
 
-import com.google.firebase.FirebaseApp;
-import com.google.firebase.messaging.AndroidConfig;
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.FirebaseMessagingException;
-import com.google.firebase.messaging.Message;
-import com.google.firebase.messaging.Notification;
-import com.google.firebase.messaging.AndroidConfig.Priority;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * This class is responsible for forwarding a push request to the FCM Back-End
- * from Google.
+ * This class is responsible for forwarding a push request of one client to the
+ * FCM Back-End from Google. Messages are queued at the batch sender shared by
+ * all clients of the server, which sends them together with the messages of
+ * other clients.
  */
-public class FCMForwarding implements IForwarding {
+public class FCMForwarding implements IAcknowledgedForwarding {
 
 	/**
-	 * Title of the notification.
+	 * Destination of all FCM messages
 	 */
-	private static final String NOTIFICATION_CONTENT_TITLE = "Reminder App Notification";
-	/**
-	 * FCM Messages contain a notification text that can be accessed with this key.
-	 */
-	private static final String NOTIFICATION_KEY = "NOTIFICATION";
+	private static final String FCM_DESTINATION = "FCM";
+
 	/**
 	 * Extra that is appended for FCM Messages.
 	 */
@@ -30,20 +26,20 @@ public class FCMForwarding implements IForwarding {
 	/**
 	 * Registration Token from FCM.
 	 */
-	private String registrationToken;
+	private volatile String registrationToken;
 
 	/**
-	 * FirebaseMessaging instance for sending push requests to FCM
+	 * Batch sender shared by all clients
 	 */
-	private FirebaseMessaging firebaseMessaging;
+	private FCMBatchSender fcmBatchSender;
 
 	/**
 	 * Constructor.
 	 * 
-	 * @param firebaseApp: Firebase App instance with all configurations
+	 * @param fcmBatchSender: Batch sender shared by all clients of the server
 	 */
-	public FCMForwarding(FirebaseApp firebaseApp) {
-		this.firebaseMessaging = FirebaseMessaging.getInstance(firebaseApp);
+	public FCMForwarding(FCMBatchSender fcmBatchSender) {
+		this.fcmBatchSender = fcmBatchSender;
 	}
 
 	/**
@@ -55,6 +51,10 @@ public class FCMForwarding implements IForwarding {
 		this.registrationToken = registrationToken;
 	}
 
+	public String getToken() {
+		return registrationToken;
+	}
+
 	/**
 	 * Forwards a message (notification) to the specific client with the FCM token.
 	 * 
@@ -62,118 +62,76 @@ public class FCMForwarding implements IForwarding {
 	 */
 	@Override
 	public void forwardMessage(NotificationInfo notificationInfo) {
-		if (registrationToken == null) {
+		deliverMessage(notificationInfo);
+	}
+
+	@Override
+	public String getDestination() {
+		return FCM_DESTINATION;
+	}
+
+	@Override
+	public CompletableFuture<Void> deliverMessage(NotificationInfo notificationInfo) {
+		String token = registrationToken;
+		if (token == null) {
 			printError("Registration token missing!");
-			return;
+			CompletableFuture<Void> result = new CompletableFuture<>();
+			result.completeExceptionally(new ClientDeliveryException("Registration token missing", true));
+			return result;
 		}
 		// Send a message to the device corresponding with the registration token
-		forwardMessageToFCM(notificationInfo.getNotificationMessage(), notificationInfo.hasHighPriority());
+		return forwardMessageToFCM(token, notificationInfo);
 	}
 
-	/**
-	 * Forwards a message (notification) to the FCM Back-End from Google with the
-	 * priority given. High priority messages will reach the client even in doze
-	 * mode. Normal prioritized messages are affected from Doze Mode.
-	 * 
-	 * @param notificationMessage: Notification message
-	 * @param highPriority:        True for high priority messages otherwise false
-	 *                             for normal priority messages
-	 */
-	private void forwardMessageToFCM(String notificationMessage, boolean highPriority) {
-		Message message;
-		if (highPriority) {
-			message = createFCMMessageWithHighPriority(notificationMessage + APPEND_FCM_NOTIFICATION_MESSAGE);
-		} else {
-			message = createFCMMessageWithNormalPriority(notificationMessage + APPEND_FCM_NOTIFICATION_MESSAGE);
-		}
-
-		try {
-			firebaseMessaging.send(message);
-			printInfo("Sent message to FCM: " + notificationMessage);
-		} catch (FirebaseMessagingException e) {
-			printException(e);
+	@Override
+	public void forwardMessages(List<NotificationInfo> notificationInfos) {
+		String token = registrationToken;
+		if (token == null) {
+			printError("Registration token missing!");
 			return;
 		}
+		for (NotificationInfo notificationInfo : notificationInfos) {
+			forwardMessageToFCM(token, notificationInfo);
+		}
 	}
 
-	/**
-	 * Creates a FCM message with normal priority with this notification message and
-	 * client's FCM token.
-	 * 
-	 * @param notificationMessage: Notification text
-	 * @return Normal prioritized FCM Message with notification text for client with
-	 *         FCM Token
-	 */
-	private Message createFCMMessageWithNormalPriority(String notificationMessage) {
-		return Message.builder().putData(NOTIFICATION_KEY, notificationMessage).setToken(registrationToken)
-				.setAndroidConfig(createAndroidConfigWithNormalMessagePriority()).build();
-		/**
-		 * return
-		 * Message.builder().setNotification(createFCMNotification(notificationMessage)).setToken(registrationToken)
-		 * .setAndroidConfig(createAndroidConfigWithNormalMessagePriority()).build();
-		 **/
-	}
-
-	/**
-	 * Creates a FCM message with high priority with this notification message and
-	 * client's FCM token.
-	 * 
-	 * @param notificationMessage: Notification text
-	 * @return High prioritized FCM Message with notification text for client with
-	 *         FCM Token
-	 */
-	private Message createFCMMessageWithHighPriority(String notificationMessage) {
-		return Message.builder().putData(NOTIFICATION_KEY, notificationMessage).setToken(registrationToken)
-				.setAndroidConfig(createAndroidConfigWithHighMessagePriority()).build();
-		/**
-		 * return
-		 * Message.builder().setNotification(createFCMNotification(notificationMessage)).setToken(registrationToken)
-		 * .setAndroidConfig(createAndroidConfigWithHighMessagePriority()).build();
-		 **/
-	}
-
-	/**
-	 * Created Android configurations for high priority messages.
-	 * 
-	 * @return Android configurations for a high priority messaging.
-	 */
-	private AndroidConfig createAndroidConfigWithHighMessagePriority() {
-		return createAndroidConfigWithPriority(Priority.HIGH);
-	}
-
-	/**
-	 * Created Android configurations for normal priority messages.
-	 * 
-	 * @return Android configurations for a normal priority messaging.
-	 */
-	private AndroidConfig createAndroidConfigWithNormalMessagePriority() {
-		return createAndroidConfigWithPriority(Priority.NORMAL);
-	}
-
-	/**
-	 * Created Android configurations for specified priority (Normal or High).
-	 * 
-	 * @param priority: Priority level (Normal or High)
-	 * @return Android configurations for a messaging with specified priority.
-	 */
-	private AndroidConfig createAndroidConfigWithPriority(Priority priority) {
-		return AndroidConfig.builder().setPriority(priority).build();
+	@Override
+	public boolean isAcceptingMessages() {
+		return fcmBatchSender.isAcceptingMessages();
 	}
 
-	/**
-	 * Not used.
-	 */
-	private Notification createFCMNotification(String notificationMessage) {
-		return Notification.builder().setBody(notificationMessage).setTitle(NOTIFICATION_CONTENT_TITLE).build();
+	@Override
+	public void whenAcceptingMessages(Runnable resumeTask) {
+		fcmBatchSender.whenAcceptingMessages(resumeTask);
 	}
 
 	/**
-	 * Print exception to console.
+	 * Queues a message (notification) for the FCM Back-End from Google with the
+	 * priority given. High priority messages will reach the client even in doze
+	 * mode. Normal prioritized messages are affected from Doze Mode. The result is
+	 * printed as soon as the batch of the message has been sent.
 	 * 
-	 * @param e: Exception
-	 */
-	private void printException(Exception e) {
-		System.out.println("EXCEPTION: " + e.getMessage());
+	 * @param token:            FCM token of the client
+	 * @param notificationInfo: Notification text, message ID and priority
+	 * @return Future which is completed exceptionally if FCM has not accepted the
+	 *         message, with a {@link ClientDeliveryException} if FCM rejected the
+	 *         token
+	 */
+	private CompletableFuture<Void> forwardMessageToFCM(String token, NotificationInfo notificationInfo) {
+		String notificationMessage = notificationInfo.getNotificationMessage();
+		FCMMessage message = new FCMMessage(token, notificationMessage + APPEND_FCM_NOTIFICATION_MESSAGE,
+				notificationInfo.hasHighPriority(), notificationInfo.getMessageId());
+		return fcmBatchSender.send(message).thenAccept(result -> {
+			if (result.isSuccessful()) {
+				printInfo("Sent message to FCM: " + notificationMessage);
+			} else {
+				printError("Message to FCM failed: " + result.getErrorMessage());
+				if (result.isRejected())
+					throw new CompletionException(
+							new ClientDeliveryException(result.getErrorMessage(), result.isPermanent()));
+				throw new CompletionException(new IOException(result.getErrorMessage()));
+			}
+		});
 	}
 
 	/**
@@ -0,0 +1,67 @@
+package com.server.forwarding;
+
+/**
+ * This class contains all info of one FCM message for a client before it is
+ * converted to the message format of the messaging back-end.
+ */
+public class FCMMessage {
+
+	/**
+	 * Registration token of the receiving client
+	 */
+	private final String registrationToken;
+	/**
+	 * Notification text
+	 */
+	private final String notificationMessage;
+	/**
+	 * Whether the message is sent with high priority
+	 */
+	private final boolean highPriority;
+	/**
+	 * Message ID which the client acknowledges, 0 for none
+	 */
+	private final long messageId;
+
+	/**
+	 * Constructor for a message without message ID, which is not acknowledged.
+	 * 
+	 * @param registrationToken:   FCM token of the client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true for high priority messages, otherwise false
+	 */
+	public FCMMessage(String registrationToken, String notificationMessage, boolean highPriority) {
+		this(registrationToken, notificationMessage, highPriority, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param registrationToken:   FCM token of the client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true for high priority messages, otherwise false
+	 * @param messageId:           Message ID which the client acknowledges
+	 */
+	public FCMMessage(String registrationToken, String notificationMessage, boolean highPriority, long messageId) {
+		this.registrationToken = registrationToken;
+		this.notificationMessage = notificationMessage;
+		this.highPriority = highPriority;
+		this.messageId = messageId;
+	}
+
+	public String getRegistrationToken() {
+		return registrationToken;
+	}
+
+	public String getNotificationMessage() {
+		return notificationMessage;
+	}
+
+	public boolean hasHighPriority() {
+		return highPriority;
+	}
+
+	public long getMessageId() {
+		return messageId;
+	}
+}
@@ -0,0 +1,25 @@
+package com.server.forwarding;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for a messaging back-end which sends a batch of FCM messages in
+ * one call without blocking the caller.
+ */
+public interface FCMMessagingBackend {
+
+	/**
+	 * Max number of messages the back-end accepts in one call
+	 */
+	public static final int MAX_BATCH_SIZE = 500;
+
+	/**
+	 * Sends a batch of messages asynchronously. A failure of the whole call is
+	 * reported as a failed result for every message.
+	 * 
+	 * @param messages: At most {@link #MAX_BATCH_SIZE} messages
+	 * @return Future of one result per message in the same order
+	 */
+	public CompletableFuture<List<FCMSendResult>> sendAllAsync(List<FCMMessage> messages);
+}
@@ -0,0 +1,81 @@
+package com.server.forwarding;
+
+/**
+ * This class contains the result of sending one FCM message: the message ID
+ * assigned by the messaging back-end or the reason of the failure. A message
+ * rejected because of its registration token failed because of its client,
+ * every other failure is a failure of the back-end.
+ */
+public class FCMSendResult {
+
+	private final String messageId;
+	private final String errorMessage;
+	private final boolean rejected;
+	private final boolean permanent;
+
+	private FCMSendResult(String messageId, String errorMessage, boolean rejected, boolean permanent) {
+		this.messageId = messageId;
+		this.errorMessage = errorMessage;
+		this.rejected = rejected;
+		this.permanent = permanent;
+	}
+
+	/**
+	 * Creates the result of a message which has been sent.
+	 * 
+	 * @param messageId: Message ID assigned by the messaging back-end
+	 * @return Successful result
+	 */
+	public static FCMSendResult success(String messageId) {
+		return new FCMSendResult(messageId, null, false, false);
+	}
+
+	/**
+	 * Creates the result of a message which could not be sent because of the
+	 * back-end, e.g. it is not reachable or its quota is exceeded.
+	 * 
+	 * @param errorMessage: Reason of the failure
+	 * @return Failed result
+	 */
+	public static FCMSendResult failure(String errorMessage) {
+		return new FCMSendResult(null, errorMessage, false, false);
+	}
+
+	/**
+	 * Creates the result of a message which the back-end rejected because of its
+	 * registration token.
+	 * 
+	 * @param errorMessage: Reason of the failure
+	 * @param permanent:    True if the message will never be accepted for this
+	 *                      token, e.g. the token is unregistered
+	 * @return Failed result
+	 */
+	public static FCMSendResult rejected(String errorMessage, boolean permanent) {
+		return new FCMSendResult(null, errorMessage, true, permanent);
+	}
+
+	public boolean isSuccessful() {
+		return errorMessage == null;
+	}
+
+	public String getMessageId() {
+		return messageId;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**
+	 * Checks whether the message failed because of its registration token.
+	 * 
+	 * @return true if the back-end rejected the message for its client
+	 */
+	public boolean isRejected() {
+		return rejected;
+	}
+
+	public boolean isPermanent() {
+		return permanent;
+	}
+}
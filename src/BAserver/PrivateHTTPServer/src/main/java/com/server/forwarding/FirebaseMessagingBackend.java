@@ -0,0 +1,128 @@
+package com.server.forwarding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.ErrorCode;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.AndroidConfig.Priority;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+
+/**
+ * This class sends batches of messages to the FCM Back-End from Google with
+ * one asynchronous call per batch. The SDK sends every message of the batch
+ * as its own request of the HTTP v1 API, as the batch endpoint of the legacy
+ * API has been shut down.
+ */
+public class FirebaseMessagingBackend implements FCMMessagingBackend {
+
+	/**
+	 * FCM Messages contain a notification text that can be accessed with this key.
+	 */
+	private static final String NOTIFICATION_KEY = "NOTIFICATION";
+	/**
+	 * FCM Messages contain the message ID which the client acknowledges with this
+	 * key.
+	 */
+	private static final String MESSAGE_ID_KEY = "MESSAGE_ID";
+
+	/**
+	 * FirebaseMessaging instance for sending push requests to FCM
+	 */
+	private FirebaseMessaging firebaseMessaging;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param firebaseApp: Firebase App instance with all configurations
+	 */
+	public FirebaseMessagingBackend(FirebaseApp firebaseApp) {
+		this.firebaseMessaging = FirebaseMessaging.getInstance(firebaseApp);
+	}
+
+	@Override
+	public CompletableFuture<List<FCMSendResult>> sendAllAsync(List<FCMMessage> messages) {
+		List<Message> firebaseMessages = new ArrayList<>(messages.size());
+		for (FCMMessage message : messages) {
+			firebaseMessages.add(createFCMMessage(message));
+		}
+
+		CompletableFuture<List<FCMSendResult>> results = new CompletableFuture<>();
+		// The callback runs on the thread of the SDK which completes the request
+		ApiFutures.addCallback(firebaseMessaging.sendEachAsync(firebaseMessages),
+				new ApiFutureCallback<BatchResponse>() {
+					@Override
+					public void onSuccess(BatchResponse batchResponse) {
+						List<FCMSendResult> sendResults = new ArrayList<>(messages.size());
+						for (SendResponse sendResponse : batchResponse.getResponses()) {
+							if (sendResponse.isSuccessful())
+								sendResults.add(FCMSendResult.success(sendResponse.getMessageId()));
+							else
+								sendResults.add(createFailedResult(sendResponse.getException()));
+						}
+						results.complete(sendResults);
+					}
+
+					@Override
+					public void onFailure(Throwable throwable) {
+						List<FCMSendResult> sendResults = new ArrayList<>(messages.size());
+						for (int i = 0; i < messages.size(); i++)
+							sendResults.add(FCMSendResult.failure(throwable.getMessage()));
+						results.complete(sendResults);
+					}
+				}, Runnable::run);
+		return results;
+	}
+
+	/**
+	 * Creates the result of a message which FCM has not accepted. Messages to an
+	 * unregistered or invalid token are rejected for their client, errors like
+	 * UNAVAILABLE, INTERNAL or QUOTA_EXCEEDED are failures of the back-end.
+	 * 
+	 * @param exception: Exception of the message
+	 * @return Failed result
+	 */
+	private FCMSendResult createFailedResult(FirebaseMessagingException exception) {
+		MessagingErrorCode messagingErrorCode = exception.getMessagingErrorCode();
+		if (messagingErrorCode != null) {
+			switch (messagingErrorCode) {
+			case UNREGISTERED:
+			case INVALID_ARGUMENT:
+			case SENDER_ID_MISMATCH:
+				return FCMSendResult.rejected(exception.getMessage(), true);
+			default:
+				return FCMSendResult.failure(exception.getMessage());
+			}
+		}
+		ErrorCode errorCode = exception.getErrorCode();
+		if (errorCode == ErrorCode.NOT_FOUND || errorCode == ErrorCode.INVALID_ARGUMENT)
+			return FCMSendResult.rejected(exception.getMessage(), true);
+		return FCMSendResult.failure(exception.getMessage());
+	}
+
+	/**
+	 * Creates a FCM message with the notification text, message ID, priority and
+	 * FCM token of the client. High priority messages will reach the client even in doze mode.
+	 * Normal prioritized messages are affected from Doze Mode.
+	 * 
+	 * @param message: Message for a client
+	 * @return FCM Message with notification text for client with FCM Token
+	 */
+	private Message createFCMMessage(FCMMessage message) {
+		Priority priority = message.hasHighPriority() ? Priority.HIGH : Priority.NORMAL;
+		Message.Builder builder = Message.builder().putData(NOTIFICATION_KEY, message.getNotificationMessage());
+		if (message.getMessageId() != 0)
+			builder.putData(MESSAGE_ID_KEY, String.valueOf(message.getMessageId()));
+		return builder.setToken(message.getRegistrationToken())
+				.setAndroidConfig(AndroidConfig.builder().setPriority(priority).build()).build();
+	}
+}
@@ -0,0 +1,28 @@
+package com.server.forwarding;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for a forwarding which reports whether a message has reached the
+ * push back-end, so failed messages can be retried.
+ */
+public interface IAcknowledgedForwarding extends IForwarding {
+
+	/**
+	 * Returns the push back-end the messages are sent to. All forwardings to the
+	 * same destination share one circuit breaker.
+	 * 
+	 * @return Name of the destination
+	 */
+	public String getDestination();
+
+	/**
+	 * Forwards a (notification) message without waiting for the push back-end.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @return Future which is completed when the back-end has accepted the
+	 *         message or completed exceptionally if sending failed, with a
+	 *         {@link ClientDeliveryException} if it failed because of the client
+	 */
+	public CompletableFuture<Void> deliverMessage(NotificationInfo notificationInfo);
+}
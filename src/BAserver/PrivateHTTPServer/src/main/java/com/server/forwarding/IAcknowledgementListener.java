@@ -0,0 +1,28 @@
+package com.server.forwarding;
+
+import java.util.UUID;
+
+/**
+ * Interface for a listener of the acknowledgements which a push back-end relays
+ * from the clients.
+ */
+public interface IAcknowledgementListener {
+
+	/**
+	 * Called when a client acknowledges a displayed notification.
+	 * 
+	 * @param clientId:  Client ID of the acknowledging client
+	 * @param messageId: Message ID of the notification
+	 */
+	public void acknowledged(UUID clientId, long messageId);
+
+	/**
+	 * Called when a notification has been pushed to a client which cannot
+	 * acknowledge it, e.g. a legacy client of PMSN.
+	 * 
+	 * @param clientId:  Client ID of the client
+	 * @param messageId: Message ID of the notification
+	 */
+	public default void cannotAcknowledge(UUID clientId, long messageId) {
+	}
+}
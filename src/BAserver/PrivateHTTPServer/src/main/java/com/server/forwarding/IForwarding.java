@@ -1,5 +1,7 @@
 package com.server.forwarding;
 
+import java.util.List;
+
 /**
  * Interface for forwarding a message
  */
@@ -10,4 +12,37 @@ public interface IForwarding {
 	 * @param notificationInfo: Notification info
 	 */
 	public void forwardMessage(NotificationInfo notificationInfo);
+
+	/**
+	 * Forwards several (notification) messages of one client which became
+	 * available at the same time. Forwardings which can send a batch in one
+	 * request override this method.
+	 * 
+	 * @param notificationInfos: Notification infos in order of sending
+	 */
+	public default void forwardMessages(List<NotificationInfo> notificationInfos) {
+		for (NotificationInfo notificationInfo : notificationInfos) {
+			forwardMessage(notificationInfo);
+		}
+	}
+
+	/**
+	 * Checks whether the forwarding accepts messages now. A forwarding which does
+	 * not keep up with the messages returns false, so the notifications stay in
+	 * the storage of the client.
+	 * 
+	 * @return true if messages are accepted, otherwise false
+	 */
+	public default boolean isAcceptingMessages() {
+		return true;
+	}
+
+	/**
+	 * Runs the task as soon as the forwarding accepts messages again.
+	 * 
+	 * @param resumeTask: Task which resumes the forwarding of a client
+	 */
+	public default void whenAcceptingMessages(Runnable resumeTask) {
+		resumeTask.run();
+	}
 }
@@ -0,0 +1,131 @@
+package com.server.forwarding;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an in-process fake of the FCM Back-End for testing and
+ * measuring the forwarding without network access. It keeps all messages sent,
+ * rejects unknown registration tokens and can simulate the latency of one call.
+ * Calls overlap like requests on the network, their results are completed by a
+ * timer thread after the latency.
+ */
+public class LocalFCMMessagingBackend implements FCMMessagingBackend {
+
+	/**
+	 * Latency of one call in milliseconds
+	 */
+	private final long latency;
+	/**
+	 * Thread which completes the calls after their latency
+	 */
+	private final ScheduledExecutorService responseTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "LocalFCMMessagingBackend");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * Registration tokens which are rejected
+	 */
+	private final Set<String> invalidTokens = new HashSet<>();
+	private final List<FCMMessage> sentMessages = new ArrayList<>();
+	private final AtomicLong messageIds = new AtomicLong();
+	private int numberOfCalls;
+	private int numberOfCallsInFlight;
+	private int maxNumberOfCallsInFlight;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param latency: Latency of one call in milliseconds
+	 */
+	public LocalFCMMessagingBackend(long latency) {
+		this.latency = latency;
+	}
+
+	/**
+	 * Lets all messages to this registration token fail.
+	 * 
+	 * @param registrationToken: FCM token
+	 */
+	public synchronized void addInvalidToken(String registrationToken) {
+		invalidTokens.add(registrationToken);
+	}
+
+	@Override
+	public CompletableFuture<List<FCMSendResult>> sendAllAsync(List<FCMMessage> messages) {
+		if (messages.size() > MAX_BATCH_SIZE)
+			throw new IllegalArgumentException("Batch of " + messages.size() + " messages is too large");
+		List<FCMMessage> batch = new ArrayList<>(messages);
+		synchronized (this) {
+			numberOfCalls++;
+			numberOfCallsInFlight++;
+			maxNumberOfCallsInFlight = Math.max(maxNumberOfCallsInFlight, numberOfCallsInFlight);
+		}
+		CompletableFuture<List<FCMSendResult>> results = new CompletableFuture<>();
+		responseTimer.schedule(() -> results.complete(receive(batch)), latency, TimeUnit.MILLISECONDS);
+		return results;
+	}
+
+	/**
+	 * Accepts a batch of messages when its latency has passed.
+	 * 
+	 * @param messages: Messages of one call
+	 * @return One result per message
+	 */
+	private synchronized List<FCMSendResult> receive(List<FCMMessage> messages) {
+		numberOfCallsInFlight--;
+		List<FCMSendResult> results = new ArrayList<>(messages.size());
+		for (FCMMessage message : messages) {
+			if (message.getRegistrationToken() == null || invalidTokens.contains(message.getRegistrationToken())) {
+				results.add(FCMSendResult.rejected("Requested entity was not found.", true));
+			} else {
+				sentMessages.add(message);
+				results.add(FCMSendResult.success("local-message-" + messageIds.incrementAndGet()));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns all messages sent so far.
+	 * 
+	 * @return Copy of the sent messages
+	 */
+	public synchronized List<FCMMessage> getSentMessages() {
+		return new ArrayList<>(sentMessages);
+	}
+
+	/**
+	 * Returns the number of calls of {@link #sendAllAsync(List) sendAllAsync} so
+	 * far.
+	 * 
+	 * @return Number of calls
+	 */
+	public synchronized int getNumberOfCalls() {
+		return numberOfCalls;
+	}
+
+	/**
+	 * Returns the max number of calls which have been in flight at the same time.
+	 * 
+	 * @return Max number of overlapping calls
+	 */
+	public synchronized int getMaxNumberOfCallsInFlight() {
+		return maxNumberOfCallsInFlight;
+	}
+
+	/**
+	 * Stops the timer thread.
+	 */
+	public void close() {
+		responseTimer.shutdownNow();
+	}
+}
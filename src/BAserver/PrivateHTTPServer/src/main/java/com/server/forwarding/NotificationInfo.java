@@ -1,10 +1,20 @@
 package com.server.forwarding;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * This class contains all necessary info for sending a notification.
+ * This class contains all necessary info for sending a notification. Every
+ * notification gets a message ID, which the client sends back as soon as the
+ * notification has been displayed.
  */
 public class NotificationInfo {
 
+	/**
+	 * Last message ID, starting at the current time so IDs of a restarted server
+	 * do not collide with IDs still unacknowledged by the clients
+	 */
+	private static final AtomicLong lastMessageId = new AtomicLong(System.currentTimeMillis());
+
 	/**
 	 * Notification text.
 	 */
@@ -13,17 +23,34 @@ public class NotificationInfo {
 	 * High priority or not
 	 */
 	private boolean highPriority;
+	/**
+	 * Message ID which the client acknowledges
+	 */
+	private final long messageId;
 
 	/**
-	 * Constructor.
-	 * 
+	 * Constructor for a new notification with a new message ID.
+	 *
 	 * @param notificationMessage: Notification text
 	 * @param highPriority:        True if notification has a high priority,
 	 *                             otherwise false
 	 */
 	public NotificationInfo(String notificationMessage, boolean highPriority) {
+		this(notificationMessage, highPriority, lastMessageId.incrementAndGet());
+	}
+
+	/**
+	 * Constructor for a notification which is sent again with its message ID.
+	 *
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        True if notification has a high priority,
+	 *                             otherwise false
+	 * @param messageId:           Message ID of the notification
+	 */
+	public NotificationInfo(String notificationMessage, boolean highPriority, long messageId) {
 		this.notificationMessage = notificationMessage;
 		this.highPriority = highPriority;
+		this.messageId = messageId;
 	}
 
 	public String getNotificationMessage() {
@@ -33,4 +60,8 @@ public class NotificationInfo {
 	public boolean hasHighPriority() {
 		return highPriority;
 	}
+
+	public long getMessageId() {
+		return messageId;
+	}
 }
@@ -0,0 +1,178 @@
+package com.server.forwarding;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.server.networkinfo.PMSNNetworkInfo;
+import com.server.reliability.DeliveryTracker;
+
+/**
+ * This class routes push requests to the nodes of a PMSN cluster. The client
+ * IDs are mapped to the nodes with a {@link ConsistentHashRing}, which the
+ * nodes and the app compute from the same list of nodes, so a push request
+ * goes to the node the receiver is connected to without asking anyone. Every
+ * node gets its own {@link PMSNConnectionPool}.
+ * 
+ * When a node joins or leaves, the new list of nodes is set here and at the
+ * nodes. A node forwards push requests for receivers it does not own anymore,
+ * so requests sent while the lists differ are not lost.
+ * 
+ * Every node relays the acknowledgements of its receivers to one connection of
+ * its pool, which passes them to the {@link DeliveryTracker}.
+ */
+public class PMSNCluster {
+
+	/**
+	 * System property to configure the nodes of the cluster, e.g. "localhost:83,localhost:84"
+	 */
+	public static final String NODES_PROPERTY = "pmsn.cluster";
+
+	/**
+	 * Single cluster instance shared by all clients, a single PMSN by default
+	 */
+	private static PMSNCluster clusterInstance = new PMSNCluster(
+			System.getProperty(NODES_PROPERTY) != null
+					? ConsistentHashRing.parseNodes(System.getProperty(NODES_PROPERTY))
+					: Collections.singletonList(PMSNNetworkInfo.PMSN_IP + ":" + PMSNNetworkInfo.PMSN_PORT),
+			Integer.getInteger(PMSNConnectionPool.POOL_SIZE_PROPERTY, 2),
+			DeliveryTracker.getTrackerInstance());
+
+	private volatile ConsistentHashRing ring;
+	private final ConcurrentHashMap<String, PMSNConnectionPool> pools = new ConcurrentHashMap<>();
+	private final int connectionsPerNode;
+	private final IAcknowledgementListener acknowledgements;
+
+	/**
+	 * Creates a cluster whose connections are opened with their first message and
+	 * do not listen for acknowledgements.
+	 * 
+	 * @param nodes:              Addresses of the nodes ("host:port")
+	 * @param connectionsPerNode: Number of connections to every node
+	 */
+	public PMSNCluster(Collection<String> nodes, int connectionsPerNode) {
+		this(nodes, connectionsPerNode, null);
+	}
+
+	/**
+	 * Creates a cluster whose connections are opened with their first message.
+	 * 
+	 * @param nodes:              Addresses of the nodes ("host:port")
+	 * @param connectionsPerNode: Number of connections to every node
+	 * @param acknowledgements:   Listener of the acknowledgements relayed by the
+	 *                            nodes, or null to not listen
+	 */
+	public PMSNCluster(Collection<String> nodes, int connectionsPerNode, IAcknowledgementListener acknowledgements) {
+		ring = new ConsistentHashRing(nodes);
+		this.connectionsPerNode = connectionsPerNode;
+		this.acknowledgements = acknowledgements;
+	}
+
+	/**
+	 * Returns the single cluster instance.
+	 * 
+	 * @return Cluster instance
+	 */
+	public static PMSNCluster getClusterInstance() {
+		return clusterInstance;
+	}
+
+	/**
+	 * Returns the node a client is connected to.
+	 * 
+	 * @param clientId: Client ID
+	 * @return Address of the node
+	 */
+	public String getOwner(UUID clientId) {
+		return ring.getOwner(clientId);
+	}
+
+	public Collection<String> getNodes() {
+		return ring.getNodes();
+	}
+
+	/**
+	 * Writes a push request without message ID for a client to the node which
+	 * owns the client.
+	 * 
+	 * @param clientId:            Client ID of the receiving client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @throws IOException if the node is not reachable or the connection failed
+	 */
+	public void send(UUID clientId, String notificationMessage, boolean highPriority) throws IOException {
+		send(clientId, notificationMessage, highPriority, 0);
+	}
+
+	/**
+	 * Writes a push request for a client to the node which owns the client.
+	 * 
+	 * @param clientId:            Client ID of the receiving client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @param messageId:           Message ID which the receiver acknowledges, 0
+	 *                             for none
+	 * @throws IOException if the node is not reachable or the connection failed
+	 */
+	public void send(UUID clientId, String notificationMessage, boolean highPriority, long messageId)
+			throws IOException {
+		getPool(getOwner(clientId)).send(clientId, notificationMessage, highPriority, messageId);
+	}
+
+	/**
+	 * Writes a broadcast request for a topic to all nodes, every node sends the
+	 * notification to the subscribers connected to it.
+	 * 
+	 * @param topic:               Name of the topic
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @throws IOException if a node is not reachable, after the request has been
+	 *                     written to the other nodes
+	 */
+	public void broadcast(String topic, String notificationMessage, boolean highPriority) throws IOException {
+		IOException failure = null;
+		for (String node : ring.getNodes()) {
+			try {
+				getPool(node).broadcast(topic, notificationMessage, highPriority);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Changes the nodes of the cluster after a node has joined or left.
+	 * Connections to nodes which left are closed.
+	 * 
+	 * @param nodes: Addresses of all nodes ("host:port")
+	 */
+	public void setNodes(Collection<String> nodes) {
+		ConsistentHashRing newRing = new ConsistentHashRing(nodes);
+		ring = newRing;
+		for (String node : pools.keySet()) {
+			if (!newRing.getNodes().contains(node)) {
+				PMSNConnectionPool pool = pools.remove(node);
+				if (pool != null)
+					pool.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes the connections to all nodes.
+	 */
+	public void close() {
+		for (PMSNConnectionPool pool : pools.values())
+			pool.close();
+		pools.clear();
+	}
+
+	private PMSNConnectionPool getPool(String node) {
+		return pools.computeIfAbsent(node, address -> new PMSNConnectionPool(ConsistentHashRing.getHost(address),
+				ConsistentHashRing.getPort(address), connectionsPerNode, acknowledgements));
+	}
+}
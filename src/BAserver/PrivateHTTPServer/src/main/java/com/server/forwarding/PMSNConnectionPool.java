@@ -0,0 +1,258 @@
+package com.server.forwarding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This class keeps a small number of long-lived sender connections to a PMSN
+ * node which are shared by the forwardings of all clients, see
+ * {@link PMSNCluster}. The messages are written
+ * back to back on a connection without waiting for PMSN, which processes them
+ * in order. All messages of one client use the same connection, so they keep
+ * their order. A connection which fails is opened again with the next message.
+ * 
+ * The connections use the binary frames of {@link PMSNFrame}, so PMSN does not
+ * have to parse text lines for every message. A push carries the message ID of
+ * the notification. The first connection of a pool listens for the
+ * acknowledgements which PMSN relays from the receivers and reads them on its
+ * own thread. PMSN also tells it about notifications pushed to legacy receivers
+ * which cannot acknowledge them.
+ */
+public class PMSNConnectionPool {
+
+	/**
+	 * System property to configure the number of connections to every node
+	 */
+	public static final String POOL_SIZE_PROPERTY = "pmsn.connections";
+
+	private final PMSNConnection[] connections;
+
+	/**
+	 * Creates a pool of connections which are opened with their first message and
+	 * do not listen for acknowledgements.
+	 * 
+	 * @param host:                Host of PMSN
+	 * @param port:                Port of PMSN
+	 * @param numberOfConnections: Number of connections
+	 */
+	public PMSNConnectionPool(String host, int port, int numberOfConnections) {
+		this(host, port, numberOfConnections, null);
+	}
+
+	/**
+	 * Creates a pool of connections which are opened with their first message.
+	 * 
+	 * @param host:                Host of PMSN
+	 * @param port:                Port of PMSN
+	 * @param numberOfConnections: Number of connections
+	 * @param acknowledgements:    Listener of the acknowledgements relayed by
+	 *                             PMSN, or null to not listen
+	 */
+	public PMSNConnectionPool(String host, int port, int numberOfConnections,
+			IAcknowledgementListener acknowledgements) {
+		connections = new PMSNConnection[Math.max(1, numberOfConnections)];
+		for (int i = 0; i < connections.length; i++)
+			connections[i] = new PMSNConnection(host, port, i == 0 ? acknowledgements : null);
+	}
+
+	/**
+	 * Writes a push request for a client to PMSN without message ID.
+	 * 
+	 * @param clientId:            Client ID of the receiving client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @throws IOException if PMSN is not reachable or the connection failed
+	 */
+	public void send(UUID clientId, String notificationMessage, boolean highPriority) throws IOException {
+		send(clientId, notificationMessage, highPriority, 0);
+	}
+
+	/**
+	 * Writes a push request for a client to PMSN.
+	 * 
+	 * @param clientId:            Client ID of the receiving client
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @param messageId:           Message ID which the receiver acknowledges, 0
+	 *                             for none
+	 * @throws IOException if PMSN is not reachable or the connection failed
+	 */
+	public void send(UUID clientId, String notificationMessage, boolean highPriority, long messageId)
+			throws IOException {
+		// The acknowledgement arrives on the first connection, even if the push does not use it
+		if (messageId != 0)
+			connections[0].listen();
+		connections[Math.floorMod(clientId.hashCode(), connections.length)].send(PMSNFrame.TYPE_PUSH, clientId,
+				notificationMessage, highPriority, messageId);
+	}
+
+	/**
+	 * Writes a broadcast request for a topic to PMSN. PMSN sends the notification
+	 * to all receivers which subscribed to the topic, so one request reaches a
+	 * whole group of devices.
+	 * 
+	 * @param topic:               Name of the topic
+	 * @param notificationMessage: Notification text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @throws IOException if PMSN is not reachable or the connection failed
+	 */
+	public void broadcast(String topic, String notificationMessage, boolean highPriority) throws IOException {
+		UUID topicId = PMSNFrame.getTopicId(topic);
+		connections[Math.floorMod(topicId.hashCode(), connections.length)].send(PMSNFrame.TYPE_BROADCAST, topicId,
+				notificationMessage, highPriority, 0);
+	}
+
+	/**
+	 * Closes all connections.
+	 */
+	public void close() {
+		for (PMSNConnection connection : connections)
+			connection.close();
+	}
+
+	/**
+	 * One sender connection to PMSN
+	 */
+	private static final class PMSNConnection {
+
+		private final String host;
+		private final int port;
+		/**
+		 * Listener of the acknowledgements or null if the connection does not listen
+		 */
+		private final IAcknowledgementListener acknowledgements;
+		private Socket socket;
+		private OutputStream out;
+		/**
+		 * Header buffer reused for all frames of the connection
+		 */
+		private final byte[] headerBuffer = new byte[4 + PMSNFrame.HEADER_SIZE];
+
+		private PMSNConnection(String host, int port, IAcknowledgementListener acknowledgements) {
+			this.host = host;
+			this.port = port;
+			this.acknowledgements = acknowledgements;
+		}
+
+		/**
+		 * Writes a push or broadcast frame with the client or topic ID, the priority
+		 * and the notification text. A new connection starts with the magic byte and
+		 * the protocol version.
+		 * 
+		 * @param type:                Frame type
+		 * @param clientId:            Client ID of the receiving client or topic ID
+		 * @param notificationMessage: Notification text
+		 * @param highPriority:        true if the notification has a high priority
+		 * @param messageId:           Message ID at the start of the payload, 0 for
+		 *                             none
+		 * @throws IOException
+		 */
+		private synchronized void send(byte type, UUID clientId, String notificationMessage, boolean highPriority,
+				long messageId) throws IOException {
+			try {
+				if (socket == null)
+					open();
+				byte[] message = notificationMessage.getBytes(StandardCharsets.UTF_8);
+				byte flags = highPriority ? PMSNFrame.FLAG_HIGH_PRIORITY : 0;
+				byte[] payload = message;
+				if (messageId != 0) {
+					flags |= PMSNFrame.FLAG_MESSAGE_ID;
+					payload = ByteBuffer.allocate(8 + message.length).putLong(messageId).put(message).array();
+				}
+				PMSNFrame.write(out, headerBuffer, type, clientId.getMostSignificantBits(),
+						clientId.getLeastSignificantBits(), flags, payload, 0, payload.length);
+				out.flush();
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Opens a connection which listens for acknowledgements if it is not open. A
+		 * failure is printed only, the connection is opened again with the next
+		 * message.
+		 */
+		private synchronized void listen() {
+			if (acknowledgements == null || socket != null)
+				return;
+			try {
+				open();
+				out.flush();
+			} catch (IOException e) {
+				System.out.println("EXCEPTION: " + e);
+				close();
+			}
+		}
+
+		/**
+		 * Opens the connection. A listening connection tells PMSN to relay
+		 * acknowledgements and reads them on its own thread.
+		 * 
+		 * @throws IOException
+		 */
+		private void open() throws IOException {
+			Socket newSocket = new Socket(host, port);
+			newSocket.setTcpNoDelay(true);
+			socket = newSocket;
+			out = new BufferedOutputStream(socket.getOutputStream());
+			out.write(PMSNFrame.MAGIC);
+			out.write(PMSNFrame.VERSION);
+			if (acknowledgements == null)
+				return;
+			PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_LISTEN_ACKS, 0, 0, (byte) 0, new byte[0], 0, 0);
+			Thread reader = new Thread(() -> readAcknowledgements(newSocket), "PMSNAckReader-" + host + ":" + port);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Reads the acknowledgements relayed by PMSN until the connection is closed.
+		 * 
+		 * @param listeningSocket: Socket of the connection
+		 */
+		private void readAcknowledgements(Socket listeningSocket) {
+			PMSNFrame frame = new PMSNFrame();
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(listeningSocket.getInputStream()));
+				while (frame.readFrom(in)) {
+					UUID clientId = new UUID(frame.getClientIdMostSignificantBits(),
+							frame.getClientIdLeastSignificantBits());
+					if (frame.getType() == PMSNFrame.TYPE_ACK)
+						acknowledgements.acknowledged(clientId, frame.getPayloadLong());
+					else if (frame.getType() == PMSNFrame.TYPE_NO_ACK)
+						acknowledgements.cannotAcknowledge(clientId, frame.getPayloadLong());
+				}
+			} catch (IOException e) {
+				if (!listeningSocket.isClosed())
+					System.out.println("EXCEPTION: " + e);
+			}
+			// The next message opens the connection again and listens again
+			close(listeningSocket);
+		}
+
+		private synchronized void close(Socket closedSocket) {
+			if (socket == closedSocket)
+				close();
+		}
+
+		private synchronized void close() {
+			if (socket == null)
+				return;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				System.out.println("EXCEPTION: " + e);
+			}
+			socket = null;
+			out = null;
+		}
+	}
+}
@@ -1,29 +1,16 @@
 package com.server.forwarding;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.UUID;
-
-import com.server.httpserver.ServerFunctions;
-import com.server.networkinfo.PMSNNetworkInfo;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class forwards a message (notification) to PMSN that should reach the
- * specified client with Client ID given.
+ * specified client with Client ID given. The message goes to the PMSN node
+ * which owns the client, see {@link PMSNCluster}.
  */
-public class PMSNForwarding implements IForwarding {
-
-	/**
-	 * IP of PMNS
-	 */
-	private static final String PSMN_IP = PMSNNetworkInfo.PMSN_IP;
-	/**
-	 * Port of PMNS
-	 */
-	private static final int PMSN_PORT = PMSNNetworkInfo.PMSN_PORT;
+public class PMSNForwarding implements IAcknowledgedForwarding {
 
 	/**
 	 * Client ID of target client.
@@ -31,14 +18,9 @@ public class PMSNForwarding implements IForwarding {
 	private UUID clientId;
 
 	/**
-	 * Connection to PMNS.
-	 */
-	private Socket connectionToPMSN;
-
-	/**
-	 * Buffered Writer for sending text to PMNS.
+	 * Nodes of PMNS and their connections shared by all clients
 	 */
-	private BufferedWriter br;
+	private PMSNCluster pmsnCluster = PMSNCluster.getClusterInstance();
 
 	/**
 	 * Constructor.
@@ -57,108 +39,55 @@ public class PMSNForwarding implements IForwarding {
 	 */
 	@Override
 	public void forwardMessage(NotificationInfo notificationInfo) {
-		// PMSN does not consider any priority
+		deliverMessage(notificationInfo);
+	}
+
+	@Override
+	public String getDestination() {
+		return "PMSN " + pmsnCluster.getOwner(clientId);
+	}
+
+	/**
+	 * Forwards a message with the notification info given. The message is written
+	 * to PMSN directly, so the future returned is already completed.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @return Completed future, completed exceptionally if PMSN was not reachable
+	 */
+	@Override
+	public CompletableFuture<Void> deliverMessage(NotificationInfo notificationInfo) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
 		String notificationMessage = notificationInfo.getNotificationMessage();
 		try {
-			forwardMessageToPMSN(notificationMessage);
+			forwardMessageToPMSN(notificationMessage, notificationInfo.hasHighPriority(),
+					notificationInfo.getMessageId());
 		} catch (UnknownHostException e) {
 			printException(e);
-			return;
+			result.completeExceptionally(e);
+			return result;
 		} catch (IOException e) {
 			printException(e);
-			return;
+			result.completeExceptionally(e);
+			return result;
 		}
 		printInfo("Sent message to PMSN: " + notificationMessage);
+		result.complete(null);
+		return result;
 	}
 
 	/**
 	 * Forwards a message (notification)/ push request to PMSN with notification
-	 * text given.
+	 * text given on a pooled connection to the node of the client.
 	 * 
 	 * @param notificationMessage: Notififcation Text
+	 * @param highPriority:        true if the notification has a high priority
+	 * @param messageId:           Message ID which the client acknowledges
 	 * @throws UnknownHostException
 	 * @throws IOException
 	 */
-	public void forwardMessageToPMSN(String notificationMessage) throws UnknownHostException, IOException {
-		connectToPMSN();
-		prepareSending();
-
-		sendClientId(clientId);
-		sendSenderRole();
-		sendNotificationMessage(notificationMessage);
-
-		flushStream();
-		closeConnectionToPMSN(connectionToPMSN);
-	}
-
-	/**
-	 * Connects to PMNS.
-	 * 
-	 * @throws UnknownHostException
-	 * @throws IOException
-	 */
-	private void connectToPMSN() throws UnknownHostException, IOException {
-		connectionToPMSN = new Socket(PSMN_IP, PMSN_PORT);
-	}
-
-	/**
-	 * Prepares for Sending (Initializing the IO writer)
-	 * 
-	 * @throws IOException
-	 */
-	private void prepareSending() throws IOException {
-		br = new BufferedWriter(new OutputStreamWriter(connectionToPMSN.getOutputStream()));
-	}
-
-	/**
-	 * Sends a client ID to PMNS.
-	 * 
-	 * @param clientId: Client ID to specify the target client
-	 * @throws IOException
-	 */
-	private void sendClientId(UUID clientId) throws IOException {
-		br.write(ServerFunctions.POST_CLIENT_ID + clientId);
-		br.newLine();
-	}
-
-	/**
-	 * Sends the role to PMSN. In case of the server, the role is SENDER.
-	 * 
-	 * @throws IOException
-	 */
-	private void sendSenderRole() throws IOException {
-		br.write(ServerFunctions.POST_ROLE + ServerFunctions.SENDER);
-		br.newLine();
-	}
-
-	/**
-	 * Sends the notification text to PMSN.
-	 * 
-	 * @param notificationMessage: Notification Text
-	 * @throws IOException
-	 */
-	private void sendNotificationMessage(String notificationMessage) throws IOException {
-		br.write(ServerFunctions.POST_NOTIFICATION + notificationMessage);
-		br.newLine();
-	}
-
-	/**
-	 * Flushes the stream.
-	 * 
-	 * @throws IOException
-	 */
-	private void flushStream() throws IOException {
-		br.flush();
-	}
-
-	/**
-	 * Closes the connection to PMSN.
-	 * 
-	 * @param connectionToPMSN: Connected socket to PMNS
-	 * @throws IOException
-	 */
-	private void closeConnectionToPMSN(Socket connectionToPMSN) throws IOException {
-		connectionToPMSN.close();
+	public void forwardMessageToPMSN(String notificationMessage, boolean highPriority, long messageId)
+			throws UnknownHostException, IOException {
+		pmsnCluster.send(clientId, notificationMessage, highPriority, messageId);
 	}
 
 	private void printInfo(String infoMessage) {
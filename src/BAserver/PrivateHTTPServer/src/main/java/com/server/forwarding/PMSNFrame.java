@@ -0,0 +1,233 @@
+package com.server.forwarding;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This class reads and writes the binary frames of PMNS, see at Doc of PMNS.
+ * A binary connection starts with the magic byte and the protocol version, so
+ * PMNS can tell it from a legacy text connection by its first byte. Afterwards every frame is:
+ * length of the rest of the frame (int), type (byte), client ID (2 longs),
+ * flags (byte), payload (UTF-8 notification text).
+ * 
+ * Frames about a topic carry the topic ID instead of the client ID, see
+ * {@link #getTopicId(String)}.
+ * 
+ * A frame object is reused for all frames of a connection: the payload stays
+ * in its buffer and the header is read into primitive fields, so reading a
+ * frame does not allocate.
+ */
+public class PMSNFrame {
+
+	/**
+	 * First byte of a binary connection. It is not a valid first byte of a text
+	 * line.
+	 */
+	public static final int MAGIC = 0xB1;
+	public static final int VERSION = 1;
+
+	/**
+	 * A receiver registers for notifications
+	 */
+	public static final byte TYPE_REGISTER_RECEIVER = 1;
+	/**
+	 * A sender requests to push a notification to a receiver
+	 */
+	public static final byte TYPE_PUSH = 2;
+	/**
+	 * A notification pushed to a receiver
+	 */
+	public static final byte TYPE_NOTIFICATION = 3;
+	/**
+	 * An error, the payload contains the error message
+	 */
+	public static final byte TYPE_ERROR = 4;
+	/**
+	 * A registered receiver subscribes to the topic with the ID in the header
+	 */
+	public static final byte TYPE_SUBSCRIBE = 7;
+	/**
+	 * A registered receiver unsubscribes from the topic with the ID in the header
+	 */
+	public static final byte TYPE_UNSUBSCRIBE = 8;
+	/**
+	 * A sender requests to push a notification to all subscribers of the topic
+	 * with the ID in the header
+	 */
+	public static final byte TYPE_BROADCAST = 9;
+	/**
+	 * A receiver acknowledges a displayed notification, the payload contains its
+	 * message ID (long). PMNS relays it to the senders listening for
+	 * acknowledgements.
+	 */
+	public static final byte TYPE_ACK = 11;
+	/**
+	 * A sender listens for the acknowledgements of the receivers on its connection
+	 */
+	public static final byte TYPE_LISTEN_ACKS = 12;
+	/**
+	 * A notification with a message ID has been pushed to a legacy text receiver,
+	 * which cannot acknowledge it. The payload contains the message ID (long).
+	 * PMNS relays it to the senders listening for acknowledgements, so they stop
+	 * waiting for the acknowledgement.
+	 */
+	public static final byte TYPE_NO_ACK = 13;
+
+	public static final byte FLAG_HIGH_PRIORITY = 1;
+	/**
+	 * The payload of a push starts with the message ID (long) which the receiver
+	 * acknowledges
+	 */
+	public static final byte FLAG_MESSAGE_ID = 8;
+
+	/**
+	 * Size of type, client ID and flags
+	 */
+	public static final int HEADER_SIZE = 1 + 16 + 1;
+	/**
+	 * Max size of a frame without the length field
+	 */
+	public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+	private final byte[] buffer = new byte[MAX_FRAME_SIZE];
+	private byte type;
+	private long clientIdMostSignificantBits;
+	private long clientIdLeastSignificantBits;
+	private byte flags;
+	private int payloadLength;
+
+	/**
+	 * Reads the next frame into this frame object.
+	 * 
+	 * @param in: Stream of a binary connection
+	 * @return true if a frame has been read, false at the end of the stream
+	 * @throws IOException if the stream fails or the frame is invalid
+	 */
+	public boolean readFrom(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return false;
+		}
+		if (length < HEADER_SIZE || length > MAX_FRAME_SIZE)
+			throw new IOException("Invalid frame length: " + length);
+		in.readFully(buffer, 0, length);
+		type = buffer[0];
+		clientIdMostSignificantBits = getLong(buffer, 1);
+		clientIdLeastSignificantBits = getLong(buffer, 9);
+		flags = buffer[17];
+		payloadLength = length - HEADER_SIZE;
+		return true;
+	}
+
+	/**
+	 * Writes a frame. The header is written into the buffer given, so the caller
+	 * can reuse it for all frames.
+	 * 
+	 * @param out:           Stream of a binary connection, flushed by the caller
+	 * @param headerBuffer:  Buffer of at least 4 + {@link #HEADER_SIZE} bytes
+	 * @param type:          Frame type
+	 * @param msb:           Most significant bits of the client ID
+	 * @param lsb:           Least significant bits of the client ID
+	 * @param flags:         Flags
+	 * @param payload:       Buffer with the payload
+	 * @param payloadOffset: Offset of the payload in the buffer
+	 * @param payloadLength: Length of the payload
+	 * @throws IOException
+	 */
+	public static void write(OutputStream out, byte[] headerBuffer, byte type, long msb, long lsb, byte flags,
+			byte[] payload, int payloadOffset, int payloadLength) throws IOException {
+		int length = HEADER_SIZE + payloadLength;
+		if (length > MAX_FRAME_SIZE)
+			throw new IOException("Frame too large: " + length);
+		putInt(headerBuffer, 0, length);
+		headerBuffer[4] = type;
+		putLong(headerBuffer, 5, msb);
+		putLong(headerBuffer, 13, lsb);
+		headerBuffer[21] = flags;
+		out.write(headerBuffer, 0, 4 + HEADER_SIZE);
+		out.write(payload, payloadOffset, payloadLength);
+	}
+
+	/**
+	 * Returns the ID of a topic, which frames about the topic carry instead of a
+	 * client ID.
+	 * 
+	 * @param topic: Name of the topic
+	 * @return Name based UUID of the topic
+	 */
+	public static UUID getTopicId(String topic) {
+		return UUID.nameUUIDFromBytes(("topic:" + topic).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the long at the start of the payload, e.g. a message ID.
+	 * 
+	 * @return Long value or -1 if the payload is too short
+	 */
+	public long getPayloadLong() {
+		if (payloadLength < 8)
+			return -1;
+		return getLong(buffer, HEADER_SIZE);
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public long getClientIdMostSignificantBits() {
+		return clientIdMostSignificantBits;
+	}
+
+	public long getClientIdLeastSignificantBits() {
+		return clientIdLeastSignificantBits;
+	}
+
+	public byte getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Returns the buffer which contains the payload at {@link #getPayloadOffset()
+	 * getPayloadOffset}. It is overwritten by the next frame.
+	 * 
+	 * @return Frame buffer
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getPayloadOffset() {
+		return HEADER_SIZE;
+	}
+
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+
+	private static long getLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		return value;
+	}
+
+	private static void putLong(byte[] bytes, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			bytes[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,75 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.server.httpserver.ServerFunctions;
+import com.server.reliability.DeliveryTracker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * This class handles a HTTP exchange when a client acknowledges that a
+ * notification has been displayed. The response tells whether the notification
+ * was still waiting for its acknowledgement.
+ */
+public class AcknowledgementHandler extends PrivateHTTPHandler implements HttpHandler {
+
+	/**
+	 * Tracker of the acknowledgements of all notifications
+	 */
+	private DeliveryTracker deliveryTracker = DeliveryTracker.getTrackerInstance();
+
+	/**
+	 * Constructs this HTTP handler for this HTTP server.
+	 * 
+	 * @param aPrivateHTTPServer: Abstract private (custom) HTTP server
+	 */
+	public AcknowledgementHandler(AbstractPrivateHTTPServer aPrivateHTTPServer) {
+		super(aPrivateHTTPServer);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) {
+		setExchange(exchange);
+		// Post HTTP method because the client ID and the message ID are posted
+		if (isHTTPRequestMethod(HTTP_REQUEST_METHOD_POST)) {
+			String clientIdAsText;
+			String messageIdAsText;
+			try {
+				clientIdAsText = readLine();
+				messageIdAsText = readLine();
+			} catch (IOException e) {
+				handleExceptionAndCloseExchange(e);
+				return;
+			}
+
+			// Get client Id from request body and validate
+			UUID clientId = isClientIdValid(clientIdAsText);
+			if (clientId == null) {
+				printError("Client Id not valid");
+				closeHTTPExchange();
+				return;
+			}
+
+			Long messageId = ServerFunctions.getMessageId(messageIdAsText);
+			if (messageId == null) {
+				printError("Message Id not valid!");
+				sendErrorResponse(BAD_REQUEST);
+				closeHTTPExchange();
+				return;
+			}
+
+			boolean acknowledged = deliveryTracker.acknowledge(clientId, messageId);
+			try {
+				sendResponse(String.valueOf(acknowledged));
+			} catch (IOException e) {
+				printException(e);
+			}
+		} else {
+			sendErrorResponse(HTTP_METHOD_NOT_ALLOWED);
+		}
+		closeHTTPExchange();
+	}
+}
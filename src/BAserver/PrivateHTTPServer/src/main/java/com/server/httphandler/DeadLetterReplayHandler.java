@@ -0,0 +1,42 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+
+import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * This class handles a HTTP exchange for replaying all notifications which
+ * could not be forwarded after all attempts, e.g. after the push back-end has
+ * been down. The response contains the number of replayed notifications.
+ */
+public class DeadLetterReplayHandler extends PrivateHTTPHandler implements HttpHandler {
+
+	/**
+	 * Constructs this HTTP handler for this HTTP server.
+	 *
+	 * @param aPrivateHTTPServer: Abstract private (custom) HTTP server
+	 */
+	public DeadLetterReplayHandler(AbstractPrivateHTTPServer aPrivateHTTPServer) {
+		super(aPrivateHTTPServer);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) {
+		setExchange(exchange);
+		// Post HTTP method because the dead letters are changed
+		if (isHTTPRequestMethod(HTTP_REQUEST_METHOD_POST)) {
+			int numberOfReplayedDeadLetters = aPrivateHTTPServer.replayDeadLetters();
+			logInfo(numberOfReplayedDeadLetters + " dead letters replayed");
+			try {
+				sendResponse(String.valueOf(numberOfReplayedDeadLetters));
+			} catch (IOException e) {
+				printException(e);
+			}
+		} else {
+			sendErrorResponse(HTTP_METHOD_NOT_ALLOWED);
+		}
+		closeHTTPExchange();
+	}
+}
@@ -0,0 +1,130 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.server.alarmmanagement.NotificationStream;
+import com.server.forwarding.NotificationInfo;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * This class wraps a HTTP exchange whose chunked response stays open and gets
+ * every notification of the client as a Server-Sent Event. The ID of an event
+ * is the message ID of the notification, which the client acknowledges and
+ * sends as Last-Event-ID header when it reconnects. (Only for HTTP Long Polling
+ * Push)
+ */
+public class EventStreamExchange implements NotificationStream {
+
+	/**
+	 * HTTP response code for success
+	 */
+	private static final int OK = 200;
+	/**
+	 * Response length for a chunked response of unknown length
+	 */
+	private static final int CHUNKED_RESPONSE_BODY = 0;
+	/**
+	 * Request header with the ID of the last event the client got
+	 */
+	public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+	/**
+	 * Milliseconds a client waits before reconnecting a lost stream
+	 */
+	private static final int RECONNECT_DELAY = 3000;
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * HTTP exchange of the stream
+	 */
+	private final HttpExchange exchange;
+	private OutputStream responseBody;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param exchange: HTTP exchange of the stream request
+	 */
+	public EventStreamExchange(HttpExchange exchange) {
+		this.exchange = exchange;
+	}
+
+	/**
+	 * Sends the response headers and the reconnect delay, the response stays
+	 * open afterwards.
+	 * 
+	 * @return false if the response could not be sent
+	 */
+	public synchronized boolean open() {
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.sendResponseHeaders(OK, CHUNKED_RESPONSE_BODY);
+			responseBody = exchange.getResponseBody();
+			write(("retry: " + RECONNECT_DELAY + "\n\n").getBytes(StandardCharsets.UTF_8));
+			return true;
+		} catch (IOException e) {
+			printException(e);
+			exchange.close();
+			return false;
+		}
+	}
+
+	/**
+	 * Sends the notification text as event data, one data line per line of the
+	 * text.
+	 */
+	@Override
+	public synchronized boolean send(NotificationInfo notificationInfo) {
+		StringBuilder event = new StringBuilder();
+		event.append("id: ").append(notificationInfo.getMessageId()).append('\n');
+		for (String line : notificationInfo.getNotificationMessage().split("\r\n|\r|\n", -1))
+			event.append("data: ").append(line).append('\n');
+		event.append('\n');
+		try {
+			write(event.toString().getBytes(StandardCharsets.UTF_8));
+			printInfo("Sent " + notificationInfo.getNotificationMessage());
+			return true;
+		} catch (IOException e) {
+			printException(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Sends a comment line, which clients ignore.
+	 */
+	@Override
+	public synchronized boolean sendHeartbeat() {
+		try {
+			write(HEARTBEAT);
+			return true;
+		} catch (IOException e) {
+			printException(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Ends the chunked response.
+	 */
+	@Override
+	public synchronized void close() {
+		exchange.close();
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		// Flushing sends the bytes as a chunk at once
+		responseBody.write(bytes);
+		responseBody.flush();
+	}
+
+	private void printInfo(String info) {
+		System.out.println("INFO: " + info);
+	}
+
+	private void printException(IOException exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+}
@@ -1,17 +1,26 @@
 package com.server.httphandler;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 /**
  * This class provides all functions to handle basically a HTTP communication
- * for receiving HTTP requests and send HTTP response in one HTTP exchange.
+ * for receiving HTTP requests and send HTTP response in one HTTP exchange. The
+ * connection of the exchange is kept alive for the next request of the client,
+ * so every exchange must be completed with a response of the exact length.
+ * 
+ * A handler keeps the exchange it handles in its fields, so it handles one
+ * exchange only. A context gets a new handler for every exchange with
+ * {@link #newHandlerPerExchange(Supplier) newHandlerPerExchange}.
  */
 public class HTTPHandler {
 
@@ -42,10 +51,17 @@ public class HTTPHandler {
 	 * Buffered Reader to read a HTTP request
 	 */
 	private BufferedReader br;
+
 	/**
-	 * Buffered Writer to write a HTTP response
+	 * Returns a HTTP handler for a context which handles every exchange with a new
+	 * handler, so exchanges handled at the same time do not share their state.
+	 * 
+	 * @param handlerFactory: Creates the handler of an exchange
+	 * @return HTTP handler of the context
 	 */
-	private BufferedWriter bw;
+	public static HttpHandler newHandlerPerExchange(Supplier<? extends HttpHandler> handlerFactory) {
+		return exchange -> handlerFactory.get().handle(exchange);
+	}
 
 	/**
 	 * Sets the HTTP exchange for receiving requests and sending a response.
@@ -54,8 +70,7 @@ public class HTTPHandler {
 	 */
 	public void setExchange(HttpExchange exchange) {
 		this.exchange = exchange;
-		this.br = new BufferedReader(new InputStreamReader(exchange.getRequestBody()));
-		this.bw = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody()));
+		this.br = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
 	}
 
 	/**
@@ -80,6 +95,24 @@ public class HTTPHandler {
 		return receivedMessage;
 	}
 
+	/**
+	 * Reads all remaining lines in the stream of HTTP requests. Lines are not
+	 * logged one by one, so a large request body does not flood the console.
+	 * 
+	 * @return Read lines, empty if there is no more line
+	 * @throws IOException
+	 */
+	protected List<String> readRemainingLines() throws IOException {
+		List<String> receivedLines = new ArrayList<>();
+		String receivedLine;
+		while ((receivedLine = br.readLine()) != null) {
+			if (!receivedLine.isEmpty())
+				receivedLines.add(receivedLine);
+		}
+		printInfo("Received " + receivedLines.size() + " lines");
+		return receivedLines;
+	}
+
 	/**
 	 * Closes the HTTP exchange and handles all thrown exceptions if there are any.
 	 * 
@@ -98,14 +131,20 @@ public class HTTPHandler {
 	 */
 	protected void sendResponse(String message) throws IOException {
 		printInfo("Sending " + message);
-		sendResponseHeaders(OK, message.length());
-		sendResponseBody(message);
+		// Content length in bytes, otherwise a non-ASCII text breaks the kept alive
+		// connection
+		byte[] response = message.getBytes(StandardCharsets.UTF_8);
+		sendResponseHeaders(OK, response.length);
+		sendResponseBody(response);
 	}
 
 	/**
-	 * Closes the HTTP Exchange.
+	 * Closes the HTTP Exchange. An exchange without a response gets an error
+	 * response, so the connection can be kept alive.
 	 */
 	protected void closeHTTPExchange() {
+		if (exchange.getResponseCode() == -1)
+			sendErrorResponse(BAD_REQUEST);
 		exchange.close();
 	}
 
@@ -116,6 +155,8 @@ public class HTTPHandler {
 	 */
 	protected void sendErrorResponse(int errorCode) {
 		try {
+			// Rest of the request is read, otherwise the connection is not kept alive
+			exchange.getRequestBody().close();
 			// -1 because the error message has no length
 			sendResponseHeaders(errorCode, -1);
 		} catch (IOException e) {
@@ -159,11 +200,12 @@ public class HTTPHandler {
 	/**
 	 * Sends the HTTP response body with the message given.
 	 * 
-	 * @param message: Message (text) in the HTTP response
+	 * @param response: Message (UTF-8 text) in the HTTP response
 	 * @throws IOException
 	 */
-	private void sendResponseBody(String message) throws IOException {
-		bw.write(message);
-		bw.flush();
+	private void sendResponseBody(byte[] response) throws IOException {
+		OutputStream responseBody = exchange.getResponseBody();
+		responseBody.write(response);
+		responseBody.flush();
 	}
 }
\ No newline at end of file
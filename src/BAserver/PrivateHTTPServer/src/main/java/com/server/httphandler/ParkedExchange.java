@@ -0,0 +1,91 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.server.alarmmanagement.NotificationWaiter;
+import com.server.forwarding.NotificationInfo;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * This class wraps a HTTP exchange of a long polling request which is kept open
+ * without a thread until a notification is available. (Only for HTTP Long
+ * Polling Push)
+ */
+public class ParkedExchange implements NotificationWaiter {
+
+	/**
+	 * HTTP response code for success
+	 */
+	private static final int OK = 200;
+	/**
+	 * Response length for a response without body
+	 */
+	private static final int NO_RESPONSE_BODY = -1;
+	/**
+	 * Response header with the message ID which the client acknowledges
+	 */
+	public static final String MESSAGE_ID_HEADER = "Message-Id";
+
+	/**
+	 * Parked HTTP exchange
+	 */
+	private final HttpExchange exchange;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param exchange: HTTP exchange of the long polling request
+	 */
+	public ParkedExchange(HttpExchange exchange) {
+		this.exchange = exchange;
+	}
+
+	/**
+	 * Sends the notification text with its message ID as response and closes the
+	 * exchange.
+	 * 
+	 * @param notificationInfo: Notification info
+	 */
+	@Override
+	public void deliver(NotificationInfo notificationInfo) {
+		byte[] response = notificationInfo.getNotificationMessage().getBytes(StandardCharsets.UTF_8);
+		try {
+			exchange.getResponseHeaders().set(MESSAGE_ID_HEADER, String.valueOf(notificationInfo.getMessageId()));
+			exchange.sendResponseHeaders(OK, response.length);
+			OutputStream responseBody = exchange.getResponseBody();
+			responseBody.write(response);
+			responseBody.flush();
+			printInfo("Sent " + notificationInfo.getNotificationMessage());
+		} catch (IOException e) {
+			printException(e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Completes the exchange with an empty response, the client will poll again.
+	 */
+	@Override
+	public void release() {
+		try {
+			// Rest of the request is read, otherwise the connection is not kept alive
+			exchange.getRequestBody().close();
+			exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+		} catch (IOException e) {
+			printException(e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void printInfo(String info) {
+		System.out.println("INFO: " + info);
+	}
+
+	private void printException(IOException exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+}
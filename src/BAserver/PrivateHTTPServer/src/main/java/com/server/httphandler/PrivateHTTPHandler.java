@@ -36,12 +36,13 @@ public class PrivateHTTPHandler extends HTTPHandler {
 	}
 
 	/**
-	 * Stores a new client with the Client ID given.
+	 * Stores a new client with the Client ID given. The client is written to the
+	 * journal of the server.
 	 * 
 	 * @param clientId: Client ID of the client
 	 */
 	protected void addNewClient(UUID clientId) {
-		aPrivateHTTPServer.newClient(clientId);
+		aPrivateHTTPServer.registerNewClient(clientId);
 	}
 
 	/**
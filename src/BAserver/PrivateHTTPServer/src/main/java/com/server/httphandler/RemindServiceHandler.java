@@ -3,7 +3,6 @@ package com.server.httphandler;
 import java.io.IOException;
 import java.util.UUID;
 
-import com.server.alarmmanagement.ClientAlarmManager;
 import com.server.httpserver.AbstractPrivateHTTPServer;
 import com.server.model.RemindService;
 import com.server.model.parse.RemindServiceJsonParser;
@@ -74,9 +73,8 @@ public class RemindServiceHandler extends PrivateHTTPHandler implements HttpHand
 			// Logging info that remind service arrived
 			logInfo(remindObjectAsJson);
 
-			ClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
-			// Register or cancel remind service received
-			clientAlarmManager.registerOrCancelRemindService(remindService);
+			// Register or cancel remind service received, the server journals it before
+			aPrivateHTTPServer.registerOrCancelRemindService(clientId, remindService);
 
 			try {
 				sendResponse("Remind Service successfully registered!");
@@ -0,0 +1,105 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.server.model.RemindService;
+import com.server.model.parse.RemindServiceJsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * This class handles a HTTP exchange for registering or canceling several
+ * remind services of one client at once, e.g. when a device synchronizes all
+ * its remind services. The request body contains the Client ID followed by one
+ * remind service as JSON per line. The response contains one result line per
+ * remind service in the same order.
+ */
+public class RemindServicesHandler extends PrivateHTTPHandler implements HttpHandler {
+
+	/**
+	 * Result line of a remind service that has been registered or canceled
+	 */
+	private static final String RESULT_OK = "OK";
+	/**
+	 * Result line of a remind service that could not be read
+	 */
+	private static final String RESULT_INVALID = "ERROR: Received JSON not valid!";
+
+	/**
+	 * RemindServiceJSONParser to deserialize remind services from JSON
+	 */
+	private RemindServiceJsonParser remindObjectJsonParser = new RemindServiceJsonParser();
+
+	/**
+	 * Constructs this HTTP handler for this HTTP server.
+	 *
+	 * @param aPrivateHTTPServer: Abstract private (custom) HTTP server
+	 */
+	public RemindServicesHandler(AbstractPrivateHTTPServer aPrivateHTTPServer) {
+		super(aPrivateHTTPServer);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) {
+		setExchange(exchange);
+		// Post HTTP method because the client ID is posted
+		if (isHTTPRequestMethod(HTTP_REQUEST_METHOD_POST)) {
+			// Request body should contain ClientId as a string
+			String clientIdAsText;
+			try {
+				clientIdAsText = readLine();
+			} catch (IOException e) {
+				handleExceptionAndCloseExchange(e);
+				return;
+			}
+
+			// Get client Id from request body and validate
+			UUID clientId = isClientIdValid(clientIdAsText);
+			if (clientId == null) {
+				printError("Client Id not valid");
+				closeHTTPExchange();
+				return;
+			}
+
+			List<String> remindObjectsAsJson;
+			try {
+				// One remind service as JSON per line in the HTTP request body
+				remindObjectsAsJson = readRemainingLines();
+			} catch (IOException e) {
+				handleExceptionAndCloseExchange(e);
+				return;
+			}
+
+			// Invalid remind services are reported, all others are applied together
+			List<RemindService> remindServices = new ArrayList<>(remindObjectsAsJson.size());
+			StringBuilder results = new StringBuilder();
+			for (String remindObjectAsJson : remindObjectsAsJson) {
+				try {
+					remindServices.add(remindObjectJsonParser.readRemindServiceFromJson(remindObjectAsJson));
+					results.append(RESULT_OK).append('\n');
+				} catch (Exception jsonSyntaxException) {
+					results.append(RESULT_INVALID).append('\n');
+				}
+			}
+
+			logInfo(remindServices.size() + " of " + remindObjectsAsJson.size() + " remind services");
+
+			// Register or cancel all remind services received, the server journals them
+			// before
+			aPrivateHTTPServer.registerOrCancelRemindServices(clientId, remindServices);
+
+			try {
+				sendResponse(results.toString());
+			} catch (IOException e) {
+				printException(e);
+			}
+		} else {
+			sendErrorResponse(HTTP_METHOD_NOT_ALLOWED);
+		}
+		closeHTTPExchange();
+	}
+}
@@ -0,0 +1,83 @@
+package com.server.httphandler;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.server.alarmmanagement.LongPollingClientAlarmManager;
+import com.server.alarmmanagement.NotificationStream;
+import com.server.httpserver.LongPollingServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * This class handles a HTTP exchange in which the client opens a stream of
+ * Server-Sent Events. Unlike {@link WaitForRemindHandler}, the response stays
+ * open after a notification, so the client sends one request for all its
+ * notifications. (Only for HTTP Long Polling Push)
+ */
+public class StreamHandler extends PrivateHTTPHandler implements HttpHandler {
+
+	/**
+	 * Constructs this HTTP handler for this HTTP server.
+	 * 
+	 * @param longPollingServer: Abstract private (custom) HTTP long polling server
+	 */
+	public StreamHandler(LongPollingServer longPollingServer) {
+		super(longPollingServer);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) {
+		setExchange(exchange);
+		// POST Client ID
+		if (isHTTPRequestMethod(HTTP_REQUEST_METHOD_POST)) {
+			String clientIdAsText;
+			try {
+				clientIdAsText = readLine();
+			} catch (IOException e) {
+				handleExceptionAndCloseExchange(e);
+				return;
+			}
+
+			// Get client Id from request body and validate
+			UUID clientId = isClientIdValid(clientIdAsText);
+			if (clientId == null) {
+				printError("Client Id not valid");
+				closeHTTPExchange();
+				return;
+			}
+
+			long lastEventId = getLastEventId(exchange);
+			EventStreamExchange eventStream = new EventStreamExchange(exchange);
+			if (!eventStream.open())
+				return;
+			// The stream is kept open without holding this thread
+			LongPollingClientAlarmManager clientAlarmManager = ((LongPollingServer) aPrivateHTTPServer)
+					.getClientAlarmManager(clientId);
+			clientAlarmManager.openStream(eventStream, lastEventId);
+			return;
+		} else {
+			sendErrorResponse(HTTP_METHOD_NOT_ALLOWED);
+		}
+		closeHTTPExchange();
+	}
+
+	/**
+	 * Gets the ID of the last event the client got before its stream was lost.
+	 * 
+	 * @param exchange: HTTP exchange of the stream request
+	 * @return Last event ID or {@link NotificationStream#NO_LAST_EVENT_ID} if the
+	 *         header is missing or invalid
+	 */
+	private long getLastEventId(HttpExchange exchange) {
+		String lastEventId = exchange.getRequestHeaders().getFirst(EventStreamExchange.LAST_EVENT_ID_HEADER);
+		if (lastEventId == null)
+			return NotificationStream.NO_LAST_EVENT_ID;
+		try {
+			return Long.parseLong(lastEventId.trim());
+		} catch (NumberFormatException e) {
+			printError("Invalid Last-Event-ID " + lastEventId);
+			return NotificationStream.NO_LAST_EVENT_ID;
+		}
+	}
+}
@@ -3,8 +3,8 @@ package com.server.httphandler;
 import java.io.IOException;
 import java.util.UUID;
 
-import com.server.alarmmanagement.ClientAlarmManager;
-import com.server.httpserver.AbstractPrivateHTTPServer;
+import com.server.alarmmanagement.LongPollingClientAlarmManager;
+import com.server.httpserver.LongPollingServer;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
@@ -17,10 +17,10 @@ public class WaitForRemindHandler extends PrivateHTTPHandler implements HttpHand
 	/**
 	 * Constructs this HTTP handler for this HTTP server.
 	 * 
-	 * @param aPrivateHTTPServer: Abstract private (custom) HTTP server
+	 * @param longPollingServer: Abstract private (custom) HTTP long polling server
 	 */
-	public WaitForRemindHandler(AbstractPrivateHTTPServer aPrivateHTTPServer) {
-		super(aPrivateHTTPServer);
+	public WaitForRemindHandler(LongPollingServer longPollingServer) {
+		super(longPollingServer);
 	}
 
 	@Override
@@ -45,22 +45,15 @@ public class WaitForRemindHandler extends PrivateHTTPHandler implements HttpHand
 				return;
 			}
 
-			// Wait until a notification is available
-			// Until a notification (= update) is available this connection will be kept
-			// open
-			ClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
-			while (!clientAlarmManager.anyNotificationAvailable())
-				;
-
+			// Until a notification (= update) is available this exchange is parked and
+			// kept open without holding this thread
 			// Be care of: Response has only one notification message per connection with
 			// this implementation
 			// No message priorities are considered !
-			String notificationMessage = clientAlarmManager.getNotificationInfo().getNotificationMessage();
-			try {
-				sendResponse(notificationMessage);
-			} catch (IOException e) {
-				printException(e);
-			}
+			LongPollingClientAlarmManager clientAlarmManager = ((LongPollingServer) aPrivateHTTPServer)
+					.getClientAlarmManager(clientId);
+			clientAlarmManager.waitForNotification(new ParkedExchange(exchange));
+			return;
 		} else {
 			sendErrorResponse(HTTP_METHOD_NOT_ALLOWED);
 		}
@@ -1,16 +1,41 @@
 package com.server.httpserver;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.sun.net.httpserver.HttpServer;
 import com.server.alarmmanagement.ClientAlarmManager;
+import com.server.alarmmanagement.ForwardingClientAlarmManager;
+import com.server.httphandler.AcknowledgementHandler;
 import com.server.httphandler.ClientIDHandler;
 import com.server.httphandler.GetRegisteredRemindServicesHandler;
+import com.server.httphandler.HTTPHandler;
 import com.server.httphandler.RemindServiceHandler;
+import com.server.httphandler.RemindServicesHandler;
 import com.server.logging.ServerLogger;
+import com.server.model.RemindService;
+import com.server.persistence.DeadLetter;
+import com.server.persistence.DeadLetterQueue;
+import com.server.persistence.JournalRecord;
+import com.server.persistence.RecoveredClients;
+import com.server.persistence.RecoveredClients.RecoveredClient;
+import com.server.persistence.RegistrationJournal;
+import com.server.persistence.SnapshotStore;
+import com.server.reliability.DeliveryReliability;
+import com.server.reliability.DeliveryTracker;
+import com.server.timer.TimerHandle;
+import com.server.timer.TimingWheelScheduler;
 
 /**
  * This abstract class provides abstract methods for all private HTTP Push
@@ -24,10 +49,81 @@ public abstract class AbstractPrivateHTTPServer {
 	private ServerLogger serverLogger;
 
 	/**
-	 * Max number of connections accepted of a private http server
+	 * Max number of connections accepted of a private http server with platform
+	 * threads
 	 */
 	private static final int MAX_NUM_OF_CONNECTIONS = 100;
 
+	/**
+	 * Seconds an idle connection is kept alive for the next request of its
+	 * client, longer than the clients keep their idle connections
+	 */
+	private static final String KEEP_ALIVE_IDLE_INTERVAL = "60";
+	/**
+	 * Max number of idle connections kept alive of a private http server
+	 */
+	private static final String MAX_IDLE_CONNECTIONS = "1000";
+
+	static {
+		configureKeepAlive();
+	}
+
+	/**
+	 * System property for the directory of the registration journals
+	 */
+	private static final String JOURNAL_DIRECTORY_PROPERTY = "journal.directory";
+	private static final String DEFAULT_JOURNAL_DIRECTORY = "journal";
+	/**
+	 * System property for the minutes between two snapshots
+	 */
+	private static final String SNAPSHOT_INTERVAL_PROPERTY = "snapshot.interval";
+	private static final long DEFAULT_SNAPSHOT_INTERVAL = 60;
+
+	/**
+	 * Journal of all client registrations, remind services and tokens of this
+	 * server, null if not opened
+	 */
+	private RegistrationJournal journal;
+	/**
+	 * Snapshots of all clients which replace the older journal segments
+	 */
+	private SnapshotStore snapshotStore;
+	/**
+	 * Timer which takes snapshots periodically
+	 */
+	private TimerHandle snapshotTimer;
+	/**
+	 * Flag to avoid taking two snapshots at the same time
+	 */
+	private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+	/**
+	 * Retries, circuit breakers and dead letter queue of forwarding servers, null
+	 * if not opened
+	 */
+	private DeliveryReliability deliveryReliability;
+	/**
+	 * Executor of the HTTP handlers, null if not set
+	 */
+	private ExecutorService executorService;
+
+	/**
+	 * Configures the connections of the JDK HTTP server, which reads these system
+	 * properties once when the first server is created. Small responses are sent
+	 * without delay (no Nagle), otherwise they wait for the delayed ACK of the
+	 * previous response on a kept alive connection. Properties set at the command
+	 * line are not overwritten.
+	 */
+	public static void configureKeepAlive() {
+		setPropertyIfAbsent("sun.net.httpserver.idleInterval", KEEP_ALIVE_IDLE_INTERVAL);
+		setPropertyIfAbsent("sun.net.httpserver.maxIdleConnections", MAX_IDLE_CONNECTIONS);
+		setPropertyIfAbsent("sun.net.httpserver.nodelay", "true");
+	}
+
+	private static void setPropertyIfAbsent(String key, String value) {
+		if (System.getProperty(key) == null)
+			System.setProperty(key, value);
+	}
+
 	/**
 	 * Starts the HTTP server instance.
 	 */
@@ -51,43 +147,367 @@ public abstract class AbstractPrivateHTTPServer {
 
 	public abstract ClientAlarmManager getClientAlarmManager(UUID clientId);
 
+	/**
+	 * Returns the ClientAlarmManagers of all registered clients.
+	 * 
+	 * @return All Client AlarmManagers
+	 */
+	protected abstract Collection<? extends ClientAlarmManager> getClientAlarmManagers();
+
+	/**
+	 * Registers a new client and writes it to the journal, so the client is known
+	 * again after a restart.
+	 * 
+	 * @param clientId: Unique Client ID
+	 */
+	public void registerNewClient(UUID clientId) {
+		// Client is registered first, so a snapshot taken meanwhile contains it if
+		// the record is written to an older journal segment
+		newClient(clientId);
+		appendToJournal(Arrays.asList(JournalRecord.newClient(clientId)));
+	}
+
+	/**
+	 * Registers or cancels a remind service of a client and waits until it is
+	 * written to the journal.
+	 * 
+	 * @param clientId:      Client ID of the client
+	 * @param remindService: Registered or canceled remind service
+	 */
+	public void registerOrCancelRemindService(UUID clientId, RemindService remindService) {
+		ClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
+		CompletableFuture<Void> written;
+		// Journal and alarm manager see the remind services of a client in the same
+		// order
+		synchronized (clientAlarmManager) {
+			written = enqueueToJournal(Arrays.asList(JournalRecord.remindService(clientId, remindService)));
+			clientAlarmManager.registerOrCancelRemindService(remindService);
+		}
+		waitForJournal(written);
+	}
+
+	/**
+	 * Registers or cancels several remind services of a client in the order given.
+	 * All of them are written to the journal with one disk flush and applied with
+	 * one lock acquisition.
+	 * 
+	 * @param clientId:       Client ID of the client
+	 * @param remindServices: Registered or canceled remind services
+	 */
+	public void registerOrCancelRemindServices(UUID clientId, List<RemindService> remindServices) {
+		List<JournalRecord> records = new ArrayList<>(remindServices.size());
+		for (RemindService remindService : remindServices)
+			records.add(JournalRecord.remindService(clientId, remindService));
+		ClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
+		CompletableFuture<Void> written;
+		synchronized (clientAlarmManager) {
+			written = enqueueToJournal(records);
+			clientAlarmManager.registerOrCancelRemindServices(remindServices);
+		}
+		waitForJournal(written);
+	}
+
+	/**
+	 * Writes records to the journal and waits until they are durable. If the
+	 * journal fails, the error is printed and the server continues without
+	 * durability.
+	 * 
+	 * @param records: Journal records
+	 */
+	protected void appendToJournal(List<JournalRecord> records) {
+		waitForJournal(enqueueToJournal(records));
+	}
+
+	/**
+	 * Queues records for the journal without waiting for them.
+	 * 
+	 * @param records: Journal records
+	 * @return Future which is completed when the records are durable, completed
+	 *         already without journal
+	 */
+	protected CompletableFuture<Void> enqueueToJournal(List<JournalRecord> records) {
+		RegistrationJournal openJournal = journal;
+		if (openJournal == null)
+			return CompletableFuture.completedFuture(null);
+		try {
+			return openJournal.enqueueAll(records);
+		} catch (IOException e) {
+			System.out.println("ERROR: Journal could not be written: " + e);
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	/**
+	 * Waits until records queued for the journal are durable, outside of any lock
+	 * so a virtual thread is not pinned to its carrier.
+	 * 
+	 * @param written: Future returned by {@link #enqueueToJournal(List)
+	 *                 enqueueToJournal}
+	 */
+	protected void waitForJournal(CompletableFuture<Void> written) {
+		try {
+			RegistrationJournal.waitUntilWritten(written);
+		} catch (IOException e) {
+			System.out.println("ERROR: Journal could not be written: " + e);
+		}
+	}
+
+	/**
+	 * Loads the last snapshot and replays the newer journal segments of this
+	 * server to restore all clients with their remind services. Afterwards the
+	 * journal is opened for new records and snapshots are taken periodically.
+	 * The journal is not opened if neither the last nor the previous snapshot
+	 * can be loaded. Must be called before the server accepts requests.
+	 */
+	protected void openJournal() {
+		if (journal != null)
+			return;
+		File journalDirectory = getJournalDirectory();
+		journal = new RegistrationJournal(journalDirectory);
+		snapshotStore = new SnapshotStore(journalDirectory);
+		RecoveredClients recoveredClients = new RecoveredClients();
+		long startTime = System.currentTimeMillis();
+		long firstJournalSegment;
+		try {
+			firstJournalSegment = snapshotStore.load(recoveredClients);
+		} catch (IOException e) {
+			// Older journal segments have been deleted, so the journal alone would only restore a part of the
+			// clients. Snapshot and journal are left untouched for a manual recovery.
+			System.out.println("ERROR: No snapshot could be loaded, journal is not opened: " + e);
+			journal = null;
+			return;
+		}
+		try {
+			long numberOfRecords = journal.replay(firstJournalSegment, recoveredClients::apply);
+			recoveredClients.parseRemindServices();
+			restoreClients(recoveredClients);
+			System.out.println("Recovered " + recoveredClients.size() + " clients from snapshot and "
+					+ numberOfRecords + " journal records in " + (System.currentTimeMillis() - startTime) + " ms");
+			journal.open();
+		} catch (IOException e) {
+			System.out.println("ERROR: Journal could not be opened: " + e);
+			journal = null;
+			return;
+		}
+		long snapshotInterval = TimeUnit.MINUTES
+				.toMillis(Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL));
+		snapshotTimer = TimingWheelScheduler.getSchedulerInstance().scheduleAtFixedRate(this::takeSnapshot,
+				new Date(System.currentTimeMillis() + snapshotInterval), snapshotInterval);
+	}
+
+	/**
+	 * Returns the directory of the journal, snapshots and dead letters of this
+	 * server.
+	 * 
+	 * @return Journal directory
+	 */
+	private File getJournalDirectory() {
+		return new File(System.getProperty(JOURNAL_DIRECTORY_PROPERTY, DEFAULT_JOURNAL_DIRECTORY),
+				getClass().getSimpleName());
+	}
+
+	/**
+	 * Opens the dead letter queue and creates the delivery reliability shared by
+	 * the forwardings of all clients. Forwarding servers call it before their
+	 * clients are restored.
+	 */
+	protected void openDeliveryReliability() {
+		DeadLetterQueue deadLetterQueue;
+		try {
+			deadLetterQueue = new DeadLetterQueue(getJournalDirectory());
+			if (deadLetterQueue.size() > 0)
+				System.out.println(deadLetterQueue.size() + " dead letters waiting for replay");
+		} catch (IOException e) {
+			System.out.println("ERROR: Dead letter queue could not be opened: " + e);
+			deadLetterQueue = null;
+		}
+		deliveryReliability = new DeliveryReliability(deadLetterQueue);
+	}
+
+	protected DeliveryReliability getDeliveryReliability() {
+		return deliveryReliability;
+	}
+
+	/**
+	 * Forwards all dead letters again. Each of them gets all attempts again and
+	 * returns to the dead letter queue if it still fails. The replayed letters
+	 * stay on disk until all of them are done.
+	 * 
+	 * @return Number of dead letters replayed
+	 */
+	public int replayDeadLetters() {
+		if (deliveryReliability == null)
+			return 0;
+		List<DeadLetter> deadLetters;
+		try {
+			deadLetters = deliveryReliability.startDeadLetterReplay();
+		} catch (IOException e) {
+			System.out.println("ERROR: Dead letters could not be read: " + e);
+			return 0;
+		}
+		List<CompletableFuture<Void>> replayedDeadLetters = new ArrayList<>(deadLetters.size());
+		for (DeadLetter deadLetter : deadLetters) {
+			ClientAlarmManager clientAlarmManager = getClientAlarmManager(deadLetter.getClientId());
+			if (!(clientAlarmManager instanceof ForwardingClientAlarmManager)) {
+				System.out.println("ERROR: Dead letter of unknown client " + deadLetter.getClientId() + " dropped");
+				continue;
+			}
+			replayedDeadLetters.add(((ForwardingClientAlarmManager) clientAlarmManager)
+					.forwardNotification(deadLetter.getNotificationInfo()));
+		}
+		CompletableFuture.allOf(replayedDeadLetters.toArray(new CompletableFuture<?>[0]))
+				.whenComplete((ignored, throwable) -> deliveryReliability.finishDeadLetterReplay());
+		return replayedDeadLetters.size();
+	}
+
+	/**
+	 * Takes a snapshot of all clients while requests are still handled. The
+	 * journal is switched to a new segment first, then every client is copied
+	 * under its own lock. Records in the new segment are replayed on top of the
+	 * snapshot, which is correct because replaying a record twice does not change
+	 * the result. Afterwards the journal segments older than the previous
+	 * snapshot, which is kept as a fallback, are deleted.
+	 */
+	public void takeSnapshot() {
+		RegistrationJournal currentJournal = journal;
+		if (currentJournal == null || !snapshotRunning.compareAndSet(false, true))
+			return;
+		long startTime = System.currentTimeMillis();
+		try {
+			long firstJournalSegment = currentJournal.rotateSegment();
+			long firstRetainedJournalSegment;
+			try (SnapshotStore.Writer writer = snapshotStore.createWriter(firstJournalSegment)) {
+				for (ClientAlarmManager clientAlarmManager : getClientAlarmManagers()) {
+					UUID clientId = clientAlarmManager.getClientId();
+					List<RemindService> remindServices;
+					String token;
+					synchronized (clientAlarmManager) {
+						remindServices = clientAlarmManager.getRegisteredRemindServices();
+						token = getStoredToken(clientId);
+					}
+					writer.writeClient(clientId, token, remindServices);
+				}
+				firstRetainedJournalSegment = writer.commit();
+				System.out.println("Snapshot of " + writer.getNumberOfClients() + " clients taken in "
+						+ (System.currentTimeMillis() - startTime) + " ms");
+			}
+			currentJournal.deleteSegmentsBefore(firstRetainedJournalSegment);
+		} catch (IOException e) {
+			System.out.println("ERROR: Snapshot could not be taken: " + e);
+		} finally {
+			snapshotRunning.set(false);
+		}
+	}
+
+	/**
+	 * Restores all recovered clients with their remind services.
+	 * 
+	 * @param recoveredClients: State of all clients read from the journal
+	 */
+	protected void restoreClients(RecoveredClients recoveredClients) {
+		for (RecoveredClient recoveredClient : recoveredClients.getRecoveredClients()) {
+			UUID clientId = recoveredClient.getClientId();
+			if (!isUserRegistered(clientId))
+				newClient(clientId);
+			if (recoveredClient.getToken() != null)
+				restoreToken(clientId, recoveredClient.getToken());
+			ClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
+			for (RemindService remindService : recoveredClient.getRemindServices())
+				clientAlarmManager.restoreRemindService(remindService);
+		}
+	}
+
+	/**
+	 * Restores the FCM token of a client. Only servers using tokens override it.
+	 * 
+	 * @param clientId: Client ID of the client
+	 * @param token:    Last token of the client
+	 */
+	protected void restoreToken(UUID clientId, String token) {
+	}
+
+	/**
+	 * Returns the FCM token of a client for a snapshot. Only servers using tokens
+	 * override it.
+	 * 
+	 * @param clientId: Client ID of the client
+	 * @return Token of the client or null
+	 */
+	protected String getStoredToken(UUID clientId) {
+		return null;
+	}
+
+	/**
+	 * Closes the journal of this server.
+	 */
+	protected void closeJournal() {
+		if (snapshotTimer != null) {
+			snapshotTimer.cancel();
+			snapshotTimer = null;
+		}
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
 	public void printInfo(String infoMessage) {
 		serverLogger.printInfo(infoMessage);
 	}
 
 	/**
-	 * Initializes all http handlers for standard functions (Client ID handling and
-	 * remind service handling) of all private http server
+	 * Initializes all http handlers for standard functions (Client ID handling,
+	 * remind service handling and acknowledgements of notifications) of all
+	 * private http server
 	 * 
 	 * @param httpServer:          HTTPServer object for adding HTTP Handlers which
-	 * @param clientAlarmManagers: Hash Map of all Client Alarm Manager
+	 * @param clientAlarmManagers: Map of all Client Alarm Manager
 	 */
 	protected void supportStandardFunctions(HttpServer httpServer,
-			HashMap<UUID, ? extends ClientAlarmManager> clientAlarmManagers) {
+			Map<UUID, ? extends ClientAlarmManager> clientAlarmManagers) {
 		// Logger can be ignored
 		serverLogger = new ServerLogger(getClass().getSimpleName());
 
-		ClientIDHandler clientIDHandler = new ClientIDHandler(this);
-		RemindServiceHandler remindServiceHandler = new RemindServiceHandler(this);
-		GetRegisteredRemindServicesHandler getRegisteredRemindServicesHandler = new GetRegisteredRemindServicesHandler(
-				this);
-
-		// All standard functions are reachable with those URLs
-		httpServer.createContext("/", clientIDHandler);
-		httpServer.createContext("/remindService", remindServiceHandler);
-		httpServer.createContext("/getRegisteredRemindServices", getRegisteredRemindServicesHandler);
+		// All standard functions are reachable with those URLs, every exchange gets
+		// its own handler
+		httpServer.createContext("/", HTTPHandler.newHandlerPerExchange(() -> new ClientIDHandler(this)));
+		httpServer.createContext("/remindService",
+				HTTPHandler.newHandlerPerExchange(() -> new RemindServiceHandler(this)));
+		httpServer.createContext("/remindServices",
+				HTTPHandler.newHandlerPerExchange(() -> new RemindServicesHandler(this)));
+		httpServer.createContext("/getRegisteredRemindServices",
+				HTTPHandler.newHandlerPerExchange(() -> new GetRegisteredRemindServicesHandler(this)));
+		httpServer.createContext("/ack", HTTPHandler.newHandlerPerExchange(() -> new AcknowledgementHandler(this)));
 	}
 
+	/**
+	 * Sets the executor which runs the HTTP handlers. With platform threads, all
+	 * requests are handled in parallel with a fixed number of accepted
+	 * connections. With virtual threads, every exchange gets its own thread.
+	 * 
+	 * @param httpServer: HTTPServer object
+	 */
 	protected void setExecutor(HttpServer httpServer) {
-		// Executor handles parallel all requests with a fix number of accepted
-		// connections
-		ExecutorService executorService = Executors.newFixedThreadPool(MAX_NUM_OF_CONNECTIONS);
+		ExecutionMode executionMode = ExecutionMode.getExecutionMode();
+		System.out.println("INFO: " + getClass().getSimpleName() + " runs HTTP handlers on " + executionMode);
+		executorService = executionMode.newExecutor(getClass().getSimpleName(), MAX_NUM_OF_CONNECTIONS, false);
 		httpServer.setExecutor(executorService);
 	}
 
-	protected void close(HttpServer httpServer, HashMap<UUID, ? extends ClientAlarmManager> clientAlarmManagers) {
+	protected void close(HttpServer httpServer, Map<UUID, ? extends ClientAlarmManager> clientAlarmManagers) {
 		httpServer.stop(0);
+		if (executorService != null)
+			executorService.shutdown();
+		// Last snapshot makes the next start faster
+		takeSnapshot();
+		// Timer tasks are scheduled on a shared scheduler and must be canceled
+		for (ClientAlarmManager clientAlarmManager : clientAlarmManagers.values()) {
+			clientAlarmManager.cancelAllRemindServices();
+		}
 		clientAlarmManagers.clear();
+		closeJournal();
+		// Delivery latencies measured since the start
+		System.out.println(DeliveryTracker.getTrackerInstance());
 		httpServer = null;
 	}
 }
\ No newline at end of file
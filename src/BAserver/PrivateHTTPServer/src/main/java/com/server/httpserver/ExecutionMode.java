@@ -0,0 +1,125 @@
+package com.server.httpserver;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution mode of the HTTP handlers and send tasks of the private HTTP
+ * servers. With platform threads, a fixed number of threads runs the tasks and
+ * a task waiting for a blocking call holds its thread. With virtual threads
+ * (Java 21 or later), every task gets its own virtual thread, so blocking
+ * handlers scale to many thousands of concurrent exchanges. The virtual
+ * threads API is called by reflection, so the servers still run on Java 8; if
+ * it is not available, platform threads are used.
+ */
+public enum ExecutionMode {
+
+	PLATFORM_THREADS, VIRTUAL_THREADS;
+
+	/**
+	 * System property to select the execution mode: "platform" or "virtual"
+	 */
+	public static final String EXECUTION_MODE_PROPERTY = "server.executionMode";
+
+	/**
+	 * Virtual threads API of the runtime, null if virtual threads are not
+	 * supported
+	 */
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory("Virtual");
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR = getNewThreadPerTaskExecutor();
+
+	/**
+	 * Returns the execution mode selected with the system property. Virtual threads
+	 * are only selected if the runtime supports them.
+	 *
+	 * @return Selected execution mode, platform threads by default
+	 */
+	public static ExecutionMode getExecutionMode() {
+		String executionMode = System.getProperty(EXECUTION_MODE_PROPERTY, "platform");
+		if (!"virtual".equalsIgnoreCase(executionMode))
+			return PLATFORM_THREADS;
+		if (!isVirtualThreadSupported()) {
+			System.out.println("INFO: Virtual threads are not supported by Java " + System.getProperty("java.version")
+					+ ", platform threads are used");
+			return PLATFORM_THREADS;
+		}
+		return VIRTUAL_THREADS;
+	}
+
+	/**
+	 * Checks if the runtime supports virtual threads.
+	 *
+	 * @return true with Java 21 or later
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_THREAD_FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates an executor for the tasks of a server component. With platform
+	 * threads, the number of threads is fixed. With virtual threads, every task
+	 * gets a new virtual thread.
+	 *
+	 * @param threadName:              Name prefix of the threads
+	 * @param numberOfPlatformThreads: Number of platform threads
+	 * @param daemon:                  True if the platform threads should not
+	 *                                 keep the JVM alive, virtual threads are
+	 *                                 always daemon threads
+	 * @return Executor
+	 */
+	public ExecutorService newExecutor(String threadName, int numberOfPlatformThreads, boolean daemon) {
+		if (this == VIRTUAL_THREADS) {
+			ThreadFactory threadFactory = createVirtualThreadFactory(threadName);
+			ExecutorService executorService = newThreadPerTaskExecutor(threadFactory);
+			if (executorService != null)
+				return executorService;
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(numberOfPlatformThreads, runnable -> {
+			Thread thread = new Thread(runnable, threadName + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(daemon);
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates a factory of virtual threads named with the prefix and a counter:
+	 * Thread.ofVirtual().name(threadName + "-", 1).factory()
+	 *
+	 * @param threadName: Name prefix of the threads
+	 * @return Thread factory or null if virtual threads are not supported
+	 */
+	private static ThreadFactory createVirtualThreadFactory(String threadName) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadName + "-", 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 8 to 20, or virtual threads are a preview feature which is not enabled
+			return null;
+		}
+	}
+
+	private static Method getNewThreadPerTaskExecutor() {
+		try {
+			return Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+		if (threadFactory == null || NEW_THREAD_PER_TASK_EXECUTOR == null)
+			return null;
+		try {
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			System.out.println("EXCEPTION: " + e);
+			return null;
+		}
+	}
+}
@@ -4,14 +4,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.server.alarmmanagement.FCMClientAlarmManager;
+import com.server.httphandler.DeadLetterReplayHandler;
+import com.server.forwarding.FCMBatchSender;
+import com.server.forwarding.FirebaseMessagingBackend;
+import com.server.httphandler.HTTPHandler;
 import com.server.httphandler.TokenHandler;
+import com.server.persistence.JournalRecord;
 import com.sun.net.httpserver.HttpServer;
 
 /**
@@ -31,9 +39,10 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 	 */
 	private static FCMForwardingServer FCM_FS_ServerInstance = new FCMForwardingServer();
 	/**
-	 * Hash Map to store all ClientAlarmManagers by client ID
+	 * Map to store all ClientAlarmManagers by client ID, concurrent for taking
+	 * snapshots while clients register
 	 */
-	private HashMap<UUID, FCMClientAlarmManager> clientAlarmManagers = new HashMap<>();
+	private ConcurrentHashMap<UUID, FCMClientAlarmManager> clientAlarmManagers = new ConcurrentHashMap<>();
 	/**
 	 * FCM forwarding server
 	 */
@@ -42,6 +51,10 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 	 * Firebase App for authentication towards FCM
 	 */
 	private FirebaseApp firebaseApp;
+	/**
+	 * Sender shared by all clients which sends their messages to FCM in batches
+	 */
+	private FCMBatchSender fcmBatchSender;
 
 	private FCMForwardingServer() {
 	}
@@ -57,7 +70,7 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 
 	@Override
 	public void newClient(UUID clientId) {
-		clientAlarmManagers.put(clientId, new FCMClientAlarmManager(clientId, firebaseApp));
+		clientAlarmManagers.put(clientId, new FCMClientAlarmManager(clientId, fcmBatchSender, getDeliveryReliability()));
 	}
 
 	@Override
@@ -65,6 +78,11 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 		return clientAlarmManagers.get(clientId);
 	}
 
+	@Override
+	protected Collection<FCMClientAlarmManager> getClientAlarmManagers() {
+		return clientAlarmManagers.values();
+	}
+
 	/**
 	 * Sets the token to be saved with the client ID registered at the private
 	 * server to specifically push a notification to a certain client
@@ -73,7 +91,24 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 	 * @param registeredToken: Token of client for FCM
 	 */
 	public void setTokenToFCMForwardingClient(UUID clientId, String registeredToken) {
-		getClientAlarmManager(clientId).setToken(registeredToken);
+		FCMClientAlarmManager clientAlarmManager = getClientAlarmManager(clientId);
+		CompletableFuture<Void> written;
+		// Journal and snapshots see the tokens of a client in the same order
+		synchronized (clientAlarmManager) {
+			written = enqueueToJournal(Arrays.asList(JournalRecord.token(clientId, registeredToken)));
+			clientAlarmManager.setToken(registeredToken);
+		}
+		waitForJournal(written);
+	}
+
+	@Override
+	protected void restoreToken(UUID clientId, String token) {
+		getClientAlarmManager(clientId).setToken(token);
+	}
+
+	@Override
+	protected String getStoredToken(UUID clientId) {
+		return getClientAlarmManager(clientId).getToken();
 	}
 
 	@Override
@@ -89,6 +124,11 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 			System.out.println("ERROR: Firebase Initialization failed!");
 			return;
 		}
+		fcmBatchSender = new FCMBatchSender(new FirebaseMessagingBackend(firebaseApp));
+		super.openDeliveryReliability();
+
+		// Clients are restored after Firebase is initialized for their forwarding
+		super.openJournal();
 
 		try {
 			FCM_FS = HttpServer.create(new InetSocketAddress(FCM_FORWARDING_PORT), 0);
@@ -102,8 +142,10 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 		super.supportStandardFunctions(FCM_FS, clientAlarmManagers);
 
 		// Custom Token Handler to receive tokens of a client
-		TokenHandler tokenHandler = new TokenHandler(this);
-		FCM_FS.createContext("/token", tokenHandler);
+		FCM_FS.createContext("/token", HTTPHandler.newHandlerPerExchange(() -> new TokenHandler(this)));
+		// Notifications which failed after all retries can be sent again
+		FCM_FS.createContext("/deadLetters/replay",
+				HTTPHandler.newHandlerPerExchange(() -> new DeadLetterReplayHandler(this)));
 
 		super.setExecutor(FCM_FS);
 
@@ -113,6 +155,8 @@ public class FCMForwardingServer extends AbstractPrivateHTTPServer {
 	public void close() {
 		System.out.println("FCM Forwarding Server gets closed");
 		super.close(FCM_FS, clientAlarmManagers);
+		fcmBatchSender.close();
+		fcmBatchSender = null;
 		firebaseApp.delete();
 		firebaseApp = null;
 	}
@@ -2,10 +2,13 @@ package com.server.httpserver;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.server.alarmmanagement.ClientAlarmManager;
+import com.server.alarmmanagement.LongPollingClientAlarmManager;
+import com.server.httphandler.HTTPHandler;
+import com.server.httphandler.StreamHandler;
 import com.server.httphandler.WaitForRemindHandler;
 import com.sun.net.httpserver.HttpServer;
 
@@ -22,9 +25,10 @@ public class LongPollingServer extends AbstractPrivateHTTPServer {
 	 */
 	private static LongPollingServer LPS_ServerInstance = new LongPollingServer();
 	/**
-	 * Hash Map to store all ClientAlarmManagers by client ID
+	 * Map to store all ClientAlarmManagers by client ID, concurrent for taking
+	 * snapshots while clients register
 	 */
-	private HashMap<UUID, ClientAlarmManager> clientAlarmManagers = new HashMap<>();
+	private ConcurrentHashMap<UUID, LongPollingClientAlarmManager> clientAlarmManagers = new ConcurrentHashMap<>();
 	/**
 	 * HTTP long polling server
 	 */
@@ -44,7 +48,7 @@ public class LongPollingServer extends AbstractPrivateHTTPServer {
 
 	@Override
 	public void newClient(UUID clientId) {
-		clientAlarmManagers.put(clientId, new ClientAlarmManager(clientId));
+		clientAlarmManagers.put(clientId, new LongPollingClientAlarmManager(clientId));
 	}
 
 	@Override
@@ -53,10 +57,15 @@ public class LongPollingServer extends AbstractPrivateHTTPServer {
 	}
 
 	@Override
-	public ClientAlarmManager getClientAlarmManager(UUID clientId) {
+	public LongPollingClientAlarmManager getClientAlarmManager(UUID clientId) {
 		return clientAlarmManagers.get(clientId);
 	}
 
+	@Override
+	protected Collection<LongPollingClientAlarmManager> getClientAlarmManagers() {
+		return clientAlarmManagers.values();
+	}
+
 	@Override
 	public void start() {
 		// Long Polling Server port: 80
@@ -64,6 +73,9 @@ public class LongPollingServer extends AbstractPrivateHTTPServer {
 			System.out.println("Long Polling Server is already running!");
 		}
 
+		// Restore all clients of the journal before accepting requests
+		super.openJournal();
+
 		try {
 			LPS = HttpServer.create(new InetSocketAddress(LONG_POLLING_PORT), 0);
 		} catch (IOException e) {
@@ -77,8 +89,9 @@ public class LongPollingServer extends AbstractPrivateHTTPServer {
 
 		// Custom handlers for pushing notifications through a HTTP Long Polling request
 		// lifecycle
-		WaitForRemindHandler waitForRemindHandler = new WaitForRemindHandler(this);
-		LPS.createContext("/waitForRemind", waitForRemindHandler);
+		LPS.createContext("/waitForRemind", HTTPHandler.newHandlerPerExchange(() -> new WaitForRemindHandler(this)));
+		// Stream of Server-Sent Events, one request for all notifications
+		LPS.createContext("/stream", HTTPHandler.newHandlerPerExchange(() -> new StreamHandler(this)));
 
 		super.setExecutor(LPS);
 
@@ -2,11 +2,15 @@ package com.server.httpserver;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.server.alarmmanagement.ClientAlarmManager;
 import com.server.alarmmanagement.PMSNClientAlarmManager;
+import com.server.forwarding.PMSNCluster;
+import com.server.httphandler.DeadLetterReplayHandler;
+import com.server.httphandler.HTTPHandler;
 import com.sun.net.httpserver.HttpServer;
 
 /**
@@ -21,9 +25,10 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 	 */
 	private static PMSNForwardingServer PMSN_FS_ServerInstance = new PMSNForwardingServer();
 	/**
-	 * Hash Map to store all ClientAlarmManagers by client ID
+	 * Map to store all ClientAlarmManagers by client ID, concurrent for taking
+	 * snapshots while clients register
 	 */
-	private HashMap<UUID, PMSNClientAlarmManager> clientAlarmManagers = new HashMap<>();
+	private ConcurrentHashMap<UUID, PMSNClientAlarmManager> clientAlarmManagers = new ConcurrentHashMap<>();
 	/**
 	 * Private mobile notification server for sending push requests
 	 */
@@ -38,7 +43,7 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 
 	@Override
 	public void newClient(UUID clientId) {
-		clientAlarmManagers.put(clientId, new PMSNClientAlarmManager(clientId));
+		clientAlarmManagers.put(clientId, new PMSNClientAlarmManager(clientId, getDeliveryReliability()));
 	}
 
 	@Override
@@ -51,6 +56,11 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 		return clientAlarmManagers.get(clientId);
 	}
 
+	@Override
+	protected Collection<PMSNClientAlarmManager> getClientAlarmManagers() {
+		return clientAlarmManagers.values();
+	}
+
 	@Override
 	public void start() {
 		// PMSN Forwarding Server port: 82
@@ -58,6 +68,10 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 			System.out.println("PMSN Forwarding Server is already running!");
 		}
 
+		// Restore all clients of the journal before accepting requests
+		super.openDeliveryReliability();
+		super.openJournal();
+
 		try {
 			PMSN_FS = HttpServer.create(new InetSocketAddress(PMSN_FORWARDING_PORT), 0);
 		} catch (IOException e) {
@@ -68,6 +82,9 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 		}
 		// Support all standard functions for handling remind services
 		super.supportStandardFunctions(PMSN_FS, clientAlarmManagers);
+		// Notifications which failed after all retries can be sent again
+		PMSN_FS.createContext("/deadLetters/replay",
+				HTTPHandler.newHandlerPerExchange(() -> new DeadLetterReplayHandler(this)));
 		super.setExecutor(PMSN_FS);
 
 		PMSN_FS.start();
@@ -76,5 +93,6 @@ public class PMSNForwardingServer extends AbstractPrivateHTTPServer {
 	public void close() {
 		System.out.println("PMSN Forwarding Server gets closed");
 		super.close(PMSN_FS, clientAlarmManagers);
+		PMSNCluster.getClusterInstance().close();
 	}
 }
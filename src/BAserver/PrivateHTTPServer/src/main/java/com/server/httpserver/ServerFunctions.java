@@ -14,17 +14,15 @@ public class ServerFunctions {
 	public static final String POST_CLIENT_ID = "ClientId: ";
 	public static final String POST_ROLE = "Role: ";
 	public static final String POST_CLIENT_TOKEN = "Token: ";
-	public static final String REGEX_CLIENT_ID = POST_CLIENT_ID + ".+";
-	public static final String REGEX_CLIENT_TOKEN = POST_CLIENT_TOKEN + ".+";
-	public static final String REGEX_ROLE = POST_ROLE + SENDER + "|" + POST_ROLE + RECEIVER;
+	public static final String POST_MESSAGE_ID = "MessageId: ";
 	
 	public static UUID getClientID(String expectedClientIdAsText) {
-		if(!expectedClientIdAsText.matches(REGEX_CLIENT_ID)) return null;
+		String clientIdAsText = getValue(expectedClientIdAsText, POST_CLIENT_ID);
+		if(clientIdAsText == null || clientIdAsText.isEmpty()) return null;
 	
 		UUID clientId = null;
 		try {
-			String[] clientIdPart = expectedClientIdAsText.split(POST_CLIENT_ID);
-			clientId = UUID.fromString(clientIdPart[1]);
+			clientId = UUID.fromString(clientIdAsText);
 		}
 		catch(Exception e) {
 			return null;
@@ -33,23 +31,53 @@ public class ServerFunctions {
 	}
 	
 	public static String getClientToken(String expectedClientTokenAsText) {
-		if(!expectedClientTokenAsText.matches(REGEX_CLIENT_TOKEN)) return null;
+		String clientToken = getValue(expectedClientTokenAsText, POST_CLIENT_TOKEN);
+		if(clientToken == null || clientToken.isEmpty()) return null;
 		
-		String[] clientTokenPart = expectedClientTokenAsText.split(POST_CLIENT_TOKEN);
 		// TODO Token validation
-		return clientTokenPart[1];
+		return clientToken;
 	}
 	
-	public static String getRole(String expectedRole) {
-		if(!expectedRole.matches(REGEX_ROLE)) return null;
+	/**
+	 * Returns the message ID of an acknowledged notification.
+	 * 
+	 * @param expectedMessageIdAsText: request line with the message ID
+	 * @return message ID or null if the line does not contain a valid message ID
+	 */
+	public static Long getMessageId(String expectedMessageIdAsText) {
+		String messageIdAsText = getValue(expectedMessageIdAsText, POST_MESSAGE_ID);
+		if(messageIdAsText == null) return null;
 		
-		String[] clientRolePart = expectedRole.split(POST_ROLE);
-		return clientRolePart[1];
+		try {
+			return Long.valueOf(messageIdAsText);
+		}
+		catch(NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	public static String getRole(String expectedRole) {
+		String role = getValue(expectedRole, POST_ROLE);
+		if(SENDER.equals(role)) return SENDER;
+		if(RECEIVER.equals(role)) return RECEIVER;
+		return null;
 	}
 	
 	public static String getNotificationMessage(String expectedNotificationMessage) {
 		// Message can also be empty string
-		String[] clientRolePart = expectedNotificationMessage.split(POST_NOTIFICATION);
-		return clientRolePart[1];
+		return getValue(expectedNotificationMessage, POST_NOTIFICATION);
+	}
+	
+	/**
+	 * Returns the value after the prefix of a request line, checked by prefix instead
+	 * of a regular expression.
+	 * 
+	 * @param line: request line
+	 * @param prefix: expected prefix of the line
+	 * @return value after the prefix or null if the line does not start with the prefix
+	 */
+	private static String getValue(String line, String prefix) {
+		if(line == null || !line.startsWith(prefix)) return null;
+		return line.substring(prefix.length());
 	}
 }
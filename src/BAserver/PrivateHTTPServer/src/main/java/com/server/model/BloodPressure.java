@@ -26,6 +26,19 @@ public class BloodPressure extends RemindService {
 		super(RemindType.BLOODPRESSURE, new Date(System.currentTimeMillis()), DATE_FORMAT);
 	}
 
+	/**
+	 * Restores a BloodPressure remind service with the fields it has been stored with.
+	 * 
+	 * @param date:       Date object
+	 * @param dateText:   Text representation of date
+	 * @param dateFormat: Date format of the date text
+	 * @param remind:     Remind user or not
+	 * @param timeZoneID: Time zone ID the remind service has been created in
+	 */
+	public BloodPressure(Date date, String dateText, String dateFormat, boolean remind, String timeZoneID) {
+		super(RemindType.BLOODPRESSURE, date, dateText, dateFormat, remind, timeZoneID);
+	}
+
 	/**
 	 * Creates a Blood pressure remind service starting at given date and time.
 	 * 
@@ -47,6 +47,24 @@ public class DocAppointment extends RemindService {
 		this.minute = minute;
 	}
 
+	/**
+	 * Restores a DocAppointment remind service with the fields it has been stored with.
+	 * 
+	 * @param hourOfDay:  Hour of day
+	 * @param minute:     Minute
+	 * @param date:       Date object
+	 * @param dateText:   Text representation of date
+	 * @param dateFormat: Date format of the date text
+	 * @param remind:     Remind user or not
+	 * @param timeZoneID: Time zone ID the remind service has been created in
+	 */
+	public DocAppointment(int hourOfDay, int minute, Date date, String dateText, String dateFormat, boolean remind,
+			String timeZoneID) {
+		super(RemindType.DOCAPPOINTMENT, date, dateText, dateFormat, remind, timeZoneID);
+		this.hourOfDay = hourOfDay;
+		this.minute = minute;
+	}
+
 	/**
 	 * Creates a Doc appointment with a date text presentation.
 	 * 
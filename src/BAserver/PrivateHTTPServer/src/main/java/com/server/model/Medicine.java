@@ -48,6 +48,24 @@ public class Medicine extends RemindService {
 		this.minute = minute;
 	}
 
+	/**
+	 * Restores a Medicine remind service with the fields it has been stored with.
+	 * 
+	 * @param hourOfDay:  Hour of day
+	 * @param minute:     Minute
+	 * @param date:       Date object
+	 * @param dateText:   Text representation of date
+	 * @param dateFormat: Date format of the date text
+	 * @param remind:     Remind user or not
+	 * @param timeZoneID: Time zone ID the remind service has been created in
+	 */
+	public Medicine(int hourOfDay, int minute, Date date, String dateText, String dateFormat, boolean remind,
+			String timeZoneID) {
+		super(RemindType.MEDICINE, date, dateText, dateFormat, remind, timeZoneID);
+		this.hourOfDay = hourOfDay;
+		this.minute = minute;
+	}
+
 	/**
 	 * Creates a Medicine remind service with a text presentation of the date.
 	 * 
@@ -56,6 +56,27 @@ public abstract class RemindService extends RemindServiceType implements Seriali
 		super(remindType);
 	}
 
+	/**
+	 * Restores a remind service with the fields it has been stored with, so no
+	 * date has to be formatted or parsed again.
+	 * 
+	 * @param remindType: Remind type of remind service
+	 * @param date:       Date object
+	 * @param dateText:   Text representation of date
+	 * @param dateFormat: Date format of the date text
+	 * @param remind:     Remind user or not
+	 * @param timeZoneID: Time zone ID the remind service has been created in
+	 */
+	protected RemindService(RemindType remindType, Date date, String dateText, String dateFormat, boolean remind,
+			String timeZoneID) {
+		super(remindType);
+		this.date = date;
+		this.dateText = dateText;
+		this.dateFormat = dateFormat;
+		this.remind = remind;
+		this.timeZoneID = timeZoneID;
+	}
+
 	/**
 	 * Formats the date with a date format.
 	 * 
@@ -172,6 +193,12 @@ public abstract class RemindService extends RemindServiceType implements Seriali
 			return false;
 	}
 
+	@Override
+	public int hashCode() {
+		// Consistent with equals: same class (= remind type) and same unique ID
+		return 31 * remindType.ordinal() + createUniqueID();
+	}
+
 	/**
 	 * Normalizes a date object, that means seconds and milliseconds are discarded.
 	 * E.g. 14:30:01:22 is normalized to 14:30:00:00
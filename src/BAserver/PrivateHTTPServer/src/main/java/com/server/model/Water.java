@@ -26,6 +26,19 @@ public class Water extends RemindService {
 		super(RemindType.WATER, new Date(System.currentTimeMillis()), DATE_FORMAT);
 	}
 
+	/**
+	 * Restores a Water remind service with the fields it has been stored with.
+	 * 
+	 * @param date:       Date object
+	 * @param dateText:   Text representation of date
+	 * @param dateFormat: Date format of the date text
+	 * @param remind:     Remind user or not
+	 * @param timeZoneID: Time zone ID the remind service has been created in
+	 */
+	public Water(Date date, String dateText, String dateFormat, boolean remind, String timeZoneID) {
+		super(RemindType.WATER, date, dateText, dateFormat, remind, timeZoneID);
+	}
+
 	/**
 	 * Creates a Water remind service starting at given date and time.
 	 * 
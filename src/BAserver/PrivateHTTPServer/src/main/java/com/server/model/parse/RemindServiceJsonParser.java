@@ -13,9 +13,20 @@ import com.server.model.RemindServiceType;
  */
 public class RemindServiceJsonParser {
 
-	private Gson gson = new Gson();
+	private Gson gson;
 
 	public RemindServiceJsonParser() {
+		this(new Gson());
+	}
+
+	/**
+	 * Creates a parser with a configured Gson instance, e.g. with custom type
+	 * adapters.
+	 * 
+	 * @param gson: Gson instance
+	 */
+	public RemindServiceJsonParser(Gson gson) {
+		this.gson = gson;
 	}
 
 	/**
@@ -0,0 +1,67 @@
+package com.server.persistence;
+
+import java.util.UUID;
+
+import com.server.forwarding.NotificationInfo;
+
+/**
+ * This class contains a notification which could not be forwarded to a client
+ * after all attempts, together with the reason of the last failure.
+ */
+public class DeadLetter {
+
+	private final UUID clientId;
+	private final String notificationMessage;
+	private final boolean highPriority;
+	/**
+	 * Message ID of the notification, 0 for dead letters written before message
+	 * IDs existed
+	 */
+	private final long messageId;
+	private final int numberOfAttempts;
+	private final String reason;
+	/**
+	 * Time of the last failed attempt in milliseconds
+	 */
+	private final long failureTime;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param clientId:         Client ID of the receiving client
+	 * @param notificationInfo: Notification which could not be forwarded
+	 * @param numberOfAttempts: Number of failed attempts
+	 * @param reason:           Reason of the last failure
+	 */
+	public DeadLetter(UUID clientId, NotificationInfo notificationInfo, int numberOfAttempts, String reason) {
+		this.clientId = clientId;
+		this.notificationMessage = notificationInfo.getNotificationMessage();
+		this.highPriority = notificationInfo.hasHighPriority();
+		this.messageId = notificationInfo.getMessageId();
+		this.numberOfAttempts = numberOfAttempts;
+		this.reason = reason;
+		this.failureTime = System.currentTimeMillis();
+	}
+
+	public UUID getClientId() {
+		return clientId;
+	}
+
+	public NotificationInfo getNotificationInfo() {
+		if (messageId == 0)
+			return new NotificationInfo(notificationMessage, highPriority);
+		return new NotificationInfo(notificationMessage, highPriority, messageId);
+	}
+
+	public int getNumberOfAttempts() {
+		return numberOfAttempts;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public long getFailureTime() {
+		return failureTime;
+	}
+}
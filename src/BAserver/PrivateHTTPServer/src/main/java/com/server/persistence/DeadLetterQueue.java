@@ -0,0 +1,168 @@
+package com.server.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * This class keeps all notifications which could not be forwarded after all
+ * attempts in a file, one dead letter as JSON per line, so they survive a
+ * restart and can be replayed once the push back-end works again. Dead
+ * letters are rare, so every one is forced to disk on its own.
+ *
+ * A replay moves the file to a replay file, which is only deleted after every
+ * replayed letter has been delivered or added to the queue again. If the
+ * server stops during a replay, the letters of the replay file are added back
+ * to the queue at the next start.
+ */
+public class DeadLetterQueue {
+
+	private static final String DEAD_LETTER_FILE_NAME = "deadLetters.json";
+	private static final String REPLAY_FILE_NAME = "deadLetters.replay.json";
+
+	private final File deadLetterFile;
+	/**
+	 * Dead letters of the replay in progress
+	 */
+	private final File replayFile;
+	private final Gson gson = new Gson();
+	private int numberOfDeadLetters;
+
+	/**
+	 * Opens the dead letter queue in the directory given.
+	 * 
+	 * @param directory: Directory of the dead letter file
+	 * @throws IOException if the directory cannot be created or the file cannot
+	 *                     be read
+	 */
+	public DeadLetterQueue(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Dead letter directory could not be created: " + directory);
+		deadLetterFile = new File(directory, DEAD_LETTER_FILE_NAME);
+		replayFile = new File(directory, REPLAY_FILE_NAME);
+		restoreUnfinishedReplay();
+		numberOfDeadLetters = readAll(deadLetterFile).size();
+	}
+
+	/**
+	 * Adds a dead letter and forces it to disk.
+	 * 
+	 * @param deadLetter: Notification which could not be forwarded
+	 * @throws IOException
+	 */
+	public synchronized void add(DeadLetter deadLetter) throws IOException {
+		try (FileOutputStream outputStream = new FileOutputStream(deadLetterFile, true);
+				BufferedWriter writer = new BufferedWriter(
+						new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+			writer.write(gson.toJson(deadLetter));
+			writer.newLine();
+			writer.flush();
+			outputStream.getFD().sync();
+		}
+		numberOfDeadLetters++;
+	}
+
+	/**
+	 * Starts a replay: all dead letters are moved to the replay file and removed
+	 * from the queue. They stay on disk until {@link #finishReplay()
+	 * finishReplay} is called. Only one replay can be in progress.
+	 * 
+	 * @return All dead letters in the order they were added, empty if a replay is
+	 *         in progress
+	 * @throws IOException
+	 */
+	public synchronized List<DeadLetter> startReplay() throws IOException {
+		if (replayFile.exists()) {
+			System.out.println("INFO: Replay of dead letters is still in progress");
+			return new ArrayList<>();
+		}
+		List<DeadLetter> deadLetters = readAll(deadLetterFile);
+		if (deadLetterFile.exists())
+			Files.move(deadLetterFile.toPath(), replayFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		numberOfDeadLetters = 0;
+		return deadLetters;
+	}
+
+	/**
+	 * Finishes the replay in progress after every replayed letter has been
+	 * delivered or added to the queue again.
+	 */
+	public synchronized void finishReplay() {
+		if (replayFile.exists() && !replayFile.delete())
+			System.out.println("ERROR: Dead letter replay file could not be deleted: " + replayFile);
+	}
+
+	/**
+	 * Reads all dead letters of the queue without removing them.
+	 * 
+	 * @return All dead letters in the order they were added
+	 * @throws IOException
+	 */
+	public synchronized List<DeadLetter> readAll() throws IOException {
+		return readAll(deadLetterFile);
+	}
+
+	public synchronized int size() {
+		return numberOfDeadLetters;
+	}
+
+	/**
+	 * Adds the letters of a replay which has not been finished, e.g. because of a
+	 * crash, back to the queue.
+	 * 
+	 * @throws IOException
+	 */
+	private void restoreUnfinishedReplay() throws IOException {
+		if (!replayFile.exists())
+			return;
+		List<DeadLetter> deadLetters = readAll(replayFile);
+		for (DeadLetter deadLetter : deadLetters)
+			add(deadLetter);
+		if (!replayFile.delete())
+			throw new IOException("Dead letter replay file could not be deleted: " + replayFile);
+		System.out.println("INFO: " + deadLetters.size() + " dead letters of an unfinished replay restored");
+	}
+
+	/**
+	 * Reads all dead letters of a file. A line which cannot be read, e.g. one torn
+	 * by a crash, is skipped.
+	 * 
+	 * @param file: Dead letter or replay file
+	 * @return All dead letters
+	 * @throws IOException
+	 */
+	private List<DeadLetter> readAll(File file) throws IOException {
+		List<DeadLetter> deadLetters = new ArrayList<>();
+		if (!file.isFile())
+			return deadLetters;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				try {
+					DeadLetter deadLetter = gson.fromJson(line, DeadLetter.class);
+					if (deadLetter != null)
+						deadLetters.add(deadLetter);
+				} catch (JsonSyntaxException e) {
+					System.out.println("ERROR: Dead letter could not be read: " + e.getMessage());
+				}
+			}
+		}
+		return deadLetters;
+	}
+}
@@ -0,0 +1,145 @@
+package com.server.persistence;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.JsonSyntaxException;
+import com.server.model.RemindService;
+import com.server.model.parse.RemindServiceJsonParser;
+import com.server.storage.RemindServiceTimerStorage;
+
+/**
+ * This class represents one event of a client written to the registration
+ * journal: a new client, a registered or canceled remind service or a FCM
+ * token.
+ */
+public class JournalRecord {
+
+	/**
+	 * A new client has been registered, payload is empty
+	 */
+	public static final byte NEW_CLIENT = 1;
+	/**
+	 * A remind service has been registered, payload is the remind service as JSON
+	 */
+	public static final byte REMIND_SERVICE = 2;
+	/**
+	 * A FCM token has been set, payload is the token
+	 */
+	public static final byte TOKEN = 3;
+	/**
+	 * A remind service has been canceled, payload is the remind service as JSON
+	 */
+	public static final byte CANCELED_REMIND_SERVICE = 4;
+
+	/**
+	 * Parser for remind services in the journal. Dates are written as
+	 * milliseconds, which is much faster to read than the formatted dates of the
+	 * HTTP interface.
+	 */
+	private static final RemindServiceJsonParser JOURNAL_JSON_PARSER = new RemindServiceJsonParser(
+			new GsonBuilder()
+					.registerTypeAdapter(Date.class,
+							(JsonSerializer<Date>) (date, type, context) -> new JsonPrimitive(date.getTime()))
+					.registerTypeAdapter(Date.class,
+							(JsonDeserializer<Date>) (json, type, context) -> new Date(json.getAsLong()))
+					.create());
+
+	/**
+	 * Type of event
+	 */
+	private final byte type;
+	/**
+	 * Client ID of the client
+	 */
+	private final UUID clientId;
+	/**
+	 * Storage key of the remind service, so the journal can be replayed without
+	 * deserializing every remind service. 0 for other types.
+	 */
+	private final long storageKey;
+	/**
+	 * Payload depending on the type
+	 */
+	private final String payload;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type:       Type of event
+	 * @param clientId:   Client ID
+	 * @param storageKey: Storage key of the remind service or 0
+	 * @param payload:    Payload depending on the type
+	 */
+	public JournalRecord(byte type, UUID clientId, long storageKey, String payload) {
+		this.type = type;
+		this.clientId = clientId;
+		this.storageKey = storageKey;
+		this.payload = payload;
+	}
+
+	/**
+	 * Creates a record for a new client.
+	 * 
+	 * @param clientId: Client ID
+	 * @return Journal record
+	 */
+	public static JournalRecord newClient(UUID clientId) {
+		return new JournalRecord(NEW_CLIENT, clientId, 0, "");
+	}
+
+	/**
+	 * Creates a record for a registered or canceled remind service.
+	 * 
+	 * @param clientId:      Client ID
+	 * @param remindService: Registered or canceled remind service
+	 * @return Journal record
+	 */
+	public static JournalRecord remindService(UUID clientId, RemindService remindService) {
+		return new JournalRecord(remindService.getRemind() ? REMIND_SERVICE : CANCELED_REMIND_SERVICE, clientId,
+				RemindServiceTimerStorage.createStorageKey(remindService),
+				JOURNAL_JSON_PARSER.parseToJson(remindService).trim());
+	}
+
+	/**
+	 * Reads the remind service of a remind service record.
+	 * 
+	 * @param remindServiceAsJson: Payload of the record
+	 * @return Remind service
+	 * @throws JsonSyntaxException
+	 */
+	public static RemindService readRemindService(String remindServiceAsJson) throws JsonSyntaxException {
+		return JOURNAL_JSON_PARSER.readRemindServiceFromJson(remindServiceAsJson);
+	}
+
+	/**
+	 * Creates a record for a FCM token.
+	 * 
+	 * @param clientId: Client ID
+	 * @param token:    FCM token
+	 * @return Journal record
+	 */
+	public static JournalRecord token(UUID clientId, String token) {
+		return new JournalRecord(TOKEN, clientId, 0, token);
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public UUID getClientId() {
+		return clientId;
+	}
+
+	public long getStorageKey() {
+		return storageKey;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+}
@@ -0,0 +1,171 @@
+package com.server.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import com.server.model.RemindService;
+import com.server.storage.LongKeyMap;
+
+/**
+ * This class collects the last state of all clients while the journal is
+ * replayed. Records of the same remind service replace each other by their
+ * storage key, so only the remind services registered at the end are
+ * deserialized and scheduled instead of every single record. Remind services
+ * of a snapshot are restored without JSON and only replaced by newer records.
+ */
+public class RecoveredClients {
+
+	/**
+	 * Recovered clients by client ID in order of registration
+	 */
+	private LinkedHashMap<UUID, RecoveredClient> recoveredClients = new LinkedHashMap<>();
+
+	/**
+	 * Applies a journal record to the recovered state.
+	 *
+	 * @param record: Journal record
+	 */
+	public void apply(JournalRecord record) {
+		RecoveredClient recoveredClient;
+		switch (record.getType()) {
+		case JournalRecord.NEW_CLIENT:
+			getOrCreateClient(record.getClientId());
+			break;
+		case JournalRecord.REMIND_SERVICE:
+			recoveredClient = getOrCreateClient(record.getClientId());
+			recoveredClient.restoredRemindServices.remove(record.getStorageKey());
+			recoveredClient.remindServicesAsJson.put(record.getStorageKey(), record.getPayload());
+			break;
+		case JournalRecord.CANCELED_REMIND_SERVICE:
+			recoveredClient = getOrCreateClient(record.getClientId());
+			recoveredClient.restoredRemindServices.remove(record.getStorageKey());
+			recoveredClient.remindServicesAsJson.remove(record.getStorageKey());
+			break;
+		case JournalRecord.TOKEN:
+			getOrCreateClient(record.getClientId()).token = record.getPayload();
+			break;
+		default:
+			System.out.println("ERROR: Unknown journal record type " + record.getType());
+		}
+	}
+
+	/**
+	 * Applies a remind service restored from a snapshot. It is replaced by newer
+	 * records of the same storage key like a journaled remind service.
+	 *
+	 * @param clientId:      Client ID
+	 * @param storageKey:    Storage key of the remind service
+	 * @param remindService: Restored remind service
+	 */
+	public void applyRemindService(UUID clientId, long storageKey, RemindService remindService) {
+		RecoveredClient recoveredClient = getOrCreateClient(clientId);
+		recoveredClient.remindServicesAsJson.remove(storageKey);
+		recoveredClient.restoredRemindServices.put(storageKey, remindService);
+	}
+
+	/**
+	 * Discards all recovered clients, e.g. after a corrupt snapshot has been
+	 * applied partially.
+	 */
+	public void clear() {
+		recoveredClients.clear();
+	}
+
+	/**
+	 * Deserializes the remind services of all clients. Clients are processed in
+	 * parallel as deserializing is the main cost of the recovery.
+	 */
+	public void parseRemindServices() {
+		recoveredClients.values().parallelStream().forEach(this::parseRemindServices);
+	}
+
+	/**
+	 * Returns all recovered clients.
+	 *
+	 * @return Recovered clients in order of registration
+	 */
+	public Collection<RecoveredClient> getRecoveredClients() {
+		return recoveredClients.values();
+	}
+
+	public int size() {
+		return recoveredClients.size();
+	}
+
+	private void parseRemindServices(RecoveredClient recoveredClient) {
+		List<String> remindServicesAsJson = recoveredClient.remindServicesAsJson.values();
+		List<RemindService> remindServices = new ArrayList<>(recoveredClient.getNumberOfRemindServices());
+		remindServices.addAll(recoveredClient.restoredRemindServices.values());
+		for (String remindServiceAsJson : remindServicesAsJson) {
+			try {
+				remindServices.add(JournalRecord.readRemindService(remindServiceAsJson));
+			} catch (RuntimeException e) {
+				System.out.println("ERROR: Journaled remind service not valid: " + e);
+			}
+		}
+		recoveredClient.remindServices = remindServices;
+	}
+
+	private RecoveredClient getOrCreateClient(UUID clientId) {
+		RecoveredClient recoveredClient = recoveredClients.get(clientId);
+		if (recoveredClient == null) {
+			recoveredClient = new RecoveredClient(clientId);
+			recoveredClients.put(clientId, recoveredClient);
+		}
+		return recoveredClient;
+	}
+
+	/**
+	 * Recovered state of one client.
+	 */
+	public static class RecoveredClient {
+
+		private final UUID clientId;
+		/**
+		 * Last FCM token or null
+		 */
+		private String token;
+		/**
+		 * Registered remind services as JSON by their storage key
+		 */
+		private final LongKeyMap<String> remindServicesAsJson = new LongKeyMap<>();
+		/**
+		 * Remind services restored from a snapshot by their storage key
+		 */
+		private final LongKeyMap<RemindService> restoredRemindServices = new LongKeyMap<>();
+		/**
+		 * Deserialized remind services, empty until they are parsed
+		 */
+		private List<RemindService> remindServices = new ArrayList<>();
+
+		private RecoveredClient(UUID clientId) {
+			this.clientId = clientId;
+		}
+
+		public UUID getClientId() {
+			return clientId;
+		}
+
+		public String getToken() {
+			return token;
+		}
+
+		public int getNumberOfRemindServices() {
+			return remindServicesAsJson.size() + restoredRemindServices.size();
+		}
+
+		/**
+		 * Returns the registered remind services after
+		 * {@link RecoveredClients#parseRemindServices() parseRemindServices} has been
+		 * called.
+		 *
+		 * @return Registered remind services
+		 */
+		public List<RemindService> getRemindServices() {
+			return remindServices;
+		}
+	}
+}
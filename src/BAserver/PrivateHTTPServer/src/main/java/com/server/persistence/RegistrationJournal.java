@@ -0,0 +1,454 @@
+package com.server.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements an append-only write-ahead journal of all client
+ * registrations, remind services and FCM tokens of a server. The journal is
+ * split into segment files which are rotated at a fixed size.
+ *
+ * Records are written by one journal thread with group commit: all records
+ * queued while the previous batch was forced to disk are written and forced
+ * together, so many concurrent appends share one fsync.
+ *
+ * Record layout: length (int), type (byte), client ID (2 longs), storage key
+ * (long), payload (UTF-8), CRC32 of everything between length and CRC (int).
+ */
+public class RegistrationJournal {
+
+	/**
+	 * Size after which a new segment is started
+	 */
+	private static final long SEGMENT_SIZE = 64L * 1024L * 1024L;
+	/**
+	 * Max number of records written with one fsync
+	 */
+	private static final int MAX_BATCH_SIZE = 4096;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	/**
+	 * Bytes of a record header: type, client ID and storage key
+	 */
+	private static final int HEADER_SIZE = 1 + 16 + 8;
+	/**
+	 * Bytes of a record besides the payload: length, header and CRC
+	 */
+	private static final int RECORD_OVERHEAD = 4 + HEADER_SIZE + 4;
+
+	/**
+	 * Directory of the segment files
+	 */
+	private final File journalDirectory;
+	/**
+	 * Records waiting to be written by the journal thread
+	 */
+	private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+	/**
+	 * Queued by close after all accepted records, stops the journal thread once
+	 * they are written. The journal thread is not interrupted, because an
+	 * interrupt during a write would close the file channel.
+	 */
+	private static final PendingRecord CLOSE_MARKER = new PendingRecord(null);
+	/**
+	 * Lock for queueing records, so no record is queued after the close marker
+	 */
+	private final Object queueLock = new Object();
+	/**
+	 * Currently written segment
+	 */
+	private FileChannel currentSegment;
+	/**
+	 * Number of the currently written segment
+	 */
+	private long currentSegmentNumber;
+	/**
+	 * Thread writing all records
+	 */
+	private Thread journalThread;
+	/**
+	 * Lock for writing into the current segment and rotating it
+	 */
+	private final Object segmentLock = new Object();
+	private volatile boolean open;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param journalDirectory: Directory of the segment files, created if missing
+	 */
+	public RegistrationJournal(File journalDirectory) {
+		this.journalDirectory = journalDirectory;
+	}
+
+	/**
+	 * Reads all records of all segments in the order they were written. A record
+	 * which has not been written completely (e.g. because of a crash) ends the
+	 * segment.
+	 *
+	 * @param recordConsumer: Consumer of every record
+	 * @return Number of records read
+	 * @throws IOException
+	 */
+	public long replay(Consumer<JournalRecord> recordConsumer) throws IOException {
+		return replay(0, recordConsumer);
+	}
+
+	/**
+	 * Reads all records of the segments starting with the segment number given.
+	 *
+	 * @param firstSegmentNumber: Number of the first segment to read
+	 * @param recordConsumer:     Consumer of every record
+	 * @return Number of records read
+	 * @throws IOException
+	 */
+	public long replay(long firstSegmentNumber, Consumer<JournalRecord> recordConsumer) throws IOException {
+		long numberOfRecords = 0;
+		for (long segmentNumber : listSegmentNumbers()) {
+			if (segmentNumber >= firstSegmentNumber)
+				numberOfRecords += replaySegment(segmentFile(segmentNumber), recordConsumer);
+		}
+		return numberOfRecords;
+	}
+
+	/**
+	 * Opens the journal for appending. A new segment is started, so a partially
+	 * written record at the end of the last segment is never continued.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void open() throws IOException {
+		if (open)
+			return;
+		if (!journalDirectory.isDirectory() && !journalDirectory.mkdirs())
+			throw new IOException("Journal directory could not be created: " + journalDirectory);
+		long[] segmentNumbers = listSegmentNumbers();
+		currentSegmentNumber = segmentNumbers.length == 0 ? 0 : segmentNumbers[segmentNumbers.length - 1] + 1;
+		currentSegment = openSegment(currentSegmentNumber);
+		open = true;
+		journalThread = new Thread(this::writeRecords, "RegistrationJournal-" + journalDirectory.getName());
+		journalThread.setDaemon(true);
+		journalThread.start();
+	}
+
+	/**
+	 * Appends a record and waits until it is durably written.
+	 *
+	 * @param record: Journal record
+	 * @throws IOException if the record could not be written
+	 */
+	public void append(JournalRecord record) throws IOException {
+		appendAll(Arrays.asList(record));
+	}
+
+	/**
+	 * Appends records and waits until all of them are durably written. The records
+	 * are written in the order given.
+	 *
+	 * @param records: Journal records
+	 * @throws IOException if a record could not be written
+	 */
+	public void appendAll(List<JournalRecord> records) throws IOException {
+		waitUntilWritten(enqueueAll(records));
+	}
+
+	/**
+	 * Queues records for writing without waiting for them, e.g. while holding a
+	 * lock which keeps the records in order. The records are written in the order
+	 * given.
+	 *
+	 * @param records: Journal records
+	 * @return Future which is completed when all records are durably written
+	 * @throws IOException if the journal is not open
+	 */
+	public CompletableFuture<Void> enqueueAll(List<JournalRecord> records) throws IOException {
+		// Records are written in order, waiting for the last one is sufficient
+		CompletableFuture<Void> lastWritten = CompletableFuture.completedFuture(null);
+		synchronized (queueLock) {
+			if (!open)
+				throw new IOException("Journal is not open");
+			for (JournalRecord record : records) {
+				PendingRecord pendingRecord = new PendingRecord(record);
+				pendingRecords.add(pendingRecord);
+				lastWritten = pendingRecord.written;
+			}
+		}
+		return lastWritten;
+	}
+
+	/**
+	 * Waits until queued records are durably written.
+	 *
+	 * @param written: Future returned by {@link #enqueueAll(List) enqueueAll}
+	 * @throws IOException if a record could not be written
+	 */
+	public static void waitUntilWritten(CompletableFuture<Void> written) throws IOException {
+		try {
+			written.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Waiting for journal has been interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("Writing journal failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Closes the journal. All records appended before are written first, records
+	 * appended afterwards fail.
+	 */
+	public synchronized void close() {
+		synchronized (queueLock) {
+			if (!open)
+				return;
+			open = false;
+			pendingRecords.add(CLOSE_MARKER);
+		}
+		try {
+			journalThread.join();
+			synchronized (segmentLock) {
+				currentSegment.close();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			printException(e);
+		}
+	}
+
+	public File getJournalDirectory() {
+		return journalDirectory;
+	}
+
+	/**
+	 * Loop of the journal thread: takes all pending records, writes them and
+	 * forces them to disk with one fsync. Ends after the close marker, which is
+	 * the last record ever queued.
+	 */
+	private void writeRecords() {
+		List<PendingRecord> batch = new ArrayList<>();
+		boolean closed = false;
+		while (!closed) {
+			try {
+				batch.add(pendingRecords.take());
+			} catch (InterruptedException e) {
+				// Only the close marker stops the journal thread
+				continue;
+			}
+			pendingRecords.drainTo(batch, MAX_BATCH_SIZE - 1);
+			if (batch.get(batch.size() - 1) == CLOSE_MARKER) {
+				batch.remove(batch.size() - 1);
+				closed = true;
+			}
+			if (batch.isEmpty())
+				continue;
+			try {
+				writeBatch(batch);
+				for (PendingRecord pendingRecord : batch)
+					pendingRecord.written.complete(null);
+			} catch (IOException e) {
+				printException(e);
+				for (PendingRecord pendingRecord : batch)
+					pendingRecord.written.completeExceptionally(e);
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Writes a batch of records into the current segment and forces it to disk.
+	 *
+	 * @param batch: Records to write
+	 * @throws IOException
+	 */
+	private void writeBatch(List<PendingRecord> batch) throws IOException {
+		int batchSize = 0;
+		for (PendingRecord pendingRecord : batch)
+			batchSize += pendingRecord.encodedPayload.length + RECORD_OVERHEAD;
+		ByteBuffer buffer = ByteBuffer.allocate(batchSize);
+		CRC32 crc = new CRC32();
+		for (PendingRecord pendingRecord : batch)
+			encodeRecord(buffer, pendingRecord, crc);
+		buffer.flip();
+		synchronized (segmentLock) {
+			if (currentSegment.size() + batchSize > SEGMENT_SIZE && currentSegment.size() > 0)
+				rotateSegment();
+			while (buffer.hasRemaining())
+				currentSegment.write(buffer);
+			currentSegment.force(false);
+		}
+	}
+
+	private void encodeRecord(ByteBuffer buffer, PendingRecord pendingRecord, CRC32 crc) {
+		JournalRecord record = pendingRecord.record;
+		byte[] payload = pendingRecord.encodedPayload;
+		int start = buffer.position();
+		buffer.putInt(HEADER_SIZE + payload.length);
+		buffer.put(record.getType());
+		buffer.putLong(record.getClientId().getMostSignificantBits());
+		buffer.putLong(record.getClientId().getLeastSignificantBits());
+		buffer.putLong(record.getStorageKey());
+		buffer.put(payload);
+		crc.reset();
+		crc.update(buffer.array(), start + 4, HEADER_SIZE + payload.length);
+		buffer.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Starts a new segment. All records written afterwards are in the new segment,
+	 * e.g. for taking a snapshot that covers all older segments.
+	 *
+	 * @return Number of the new segment
+	 * @throws IOException
+	 */
+	public long rotateSegment() throws IOException {
+		synchronized (segmentLock) {
+			currentSegment.force(false);
+			currentSegment.close();
+			currentSegmentNumber++;
+			currentSegment = openSegment(currentSegmentNumber);
+			return currentSegmentNumber;
+		}
+	}
+
+	/**
+	 * Deletes all segments before the segment number given, e.g. after they have
+	 * been included in a snapshot.
+	 *
+	 * @param segmentNumber: Number of the first segment to keep
+	 */
+	public void deleteSegmentsBefore(long segmentNumber) {
+		for (long oldSegmentNumber : listSegmentNumbers()) {
+			if (oldSegmentNumber < segmentNumber && !segmentFile(oldSegmentNumber).delete())
+				printError("Journal segment could not be deleted: " + oldSegmentNumber);
+		}
+	}
+
+	/**
+	 * Reads all records of one segment file.
+	 *
+	 * @param segmentFile:    Segment file
+	 * @param recordConsumer: Consumer of every record
+	 * @return Number of records read
+	 * @throws IOException
+	 */
+	private long replaySegment(File segmentFile, Consumer<JournalRecord> recordConsumer) throws IOException {
+		long numberOfRecords = 0;
+		CRC32 crc = new CRC32();
+		byte[] recordBytes = new byte[1024];
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(segmentFile), 1 << 16))) {
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (length < HEADER_SIZE || length > SEGMENT_SIZE) {
+					printError("Corrupt record in " + segmentFile.getName() + ", rest of segment is skipped");
+					break;
+				}
+				if (recordBytes.length < length)
+					recordBytes = new byte[Math.max(length, recordBytes.length * 2)];
+				int checksum;
+				try {
+					in.readFully(recordBytes, 0, length);
+					checksum = in.readInt();
+				} catch (EOFException e) {
+					printError("Incomplete record at end of " + segmentFile.getName());
+					break;
+				}
+				crc.reset();
+				crc.update(recordBytes, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					printError("Checksum mismatch in " + segmentFile.getName() + ", rest of segment is skipped");
+					break;
+				}
+				recordConsumer.accept(decodeRecord(recordBytes, length));
+				numberOfRecords++;
+			}
+		}
+		return numberOfRecords;
+	}
+
+	private JournalRecord decodeRecord(byte[] recordBytes, int length) {
+		ByteBuffer buffer = ByteBuffer.wrap(recordBytes, 0, length);
+		byte type = buffer.get();
+		UUID clientId = new UUID(buffer.getLong(), buffer.getLong());
+		long storageKey = buffer.getLong();
+		String payload = new String(recordBytes, HEADER_SIZE, length - HEADER_SIZE, StandardCharsets.UTF_8);
+		return new JournalRecord(type, clientId, storageKey, payload);
+	}
+
+	/**
+	 * Lists the numbers of all segment files in ascending order.
+	 *
+	 * @return Sorted segment numbers
+	 */
+	protected long[] listSegmentNumbers() {
+		File[] segmentFiles = journalDirectory
+				.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		if (segmentFiles == null)
+			return new long[0];
+		long[] segmentNumbers = new long[segmentFiles.length];
+		for (int i = 0; i < segmentFiles.length; i++) {
+			String name = segmentFiles[i].getName();
+			segmentNumbers[i] = Long
+					.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		}
+		Arrays.sort(segmentNumbers);
+		return segmentNumbers;
+	}
+
+	protected File segmentFile(long segmentNumber) {
+		return new File(journalDirectory, String.format("%s%020d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+	}
+
+	private FileChannel openSegment(long segmentNumber) throws IOException {
+		return FileChannel.open(segmentFile(segmentNumber).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private void printError(String errorMessage) {
+		System.out.println("ERROR: " + errorMessage);
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+
+	/**
+	 * Record waiting to be written with a future completed after the fsync.
+	 */
+	private static class PendingRecord {
+
+		private final JournalRecord record;
+		private final byte[] encodedPayload;
+		private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+		private PendingRecord(JournalRecord record) {
+			this.record = record;
+			this.encodedPayload = record == null ? null : record.getPayload().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
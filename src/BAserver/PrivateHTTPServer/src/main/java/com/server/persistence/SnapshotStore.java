@@ -0,0 +1,461 @@
+package com.server.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import com.server.model.BloodPressure;
+import com.server.model.DocAppointment;
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+import com.server.model.RemindType;
+import com.server.model.Water;
+import com.server.storage.RemindServiceTimerStorage;
+
+/**
+ * This class writes and loads point-in-time snapshots of all clients of a
+ * server. A snapshot contains the number of the first journal segment which is
+ * not included in it, so after loading only the newer segments are replayed
+ * and older segments can be deleted. The previous snapshot is kept as a
+ * fallback if the last one turns out to be corrupt, so the journal segments
+ * must be kept from the first segment of the previous snapshot on.
+ *
+ * Layout: magic (int), version (int), first journal segment (long), clients,
+ * end tag (byte), number of clients (long), CRC32 of everything before (int).
+ * Client: tag (byte), client ID (2 longs), token (string or length -1), number
+ * of remind services (int), remind services. Remind service: storage key
+ * (long), remind type ordinal (byte), date in milliseconds (long or
+ * Long.MIN_VALUE), remind (byte), date text, date format and time zone ID
+ * (strings), hour of day and minute (ints) for Medicine and DocAppointment.
+ * Version 1 wrote the remind service as journal JSON (string) instead. Strings
+ * are written as length (int) and UTF-8 bytes.
+ */
+public class SnapshotStore {
+
+	private static final int MAGIC = 0x524D534E;
+	private static final int VERSION = 2;
+	/**
+	 * Version with remind services as journal JSON, still loaded
+	 */
+	private static final int JSON_VERSION = 1;
+	private static final long NO_DATE = Long.MIN_VALUE;
+	private static final byte CLIENT_TAG = 1;
+	private static final byte END_TAG = 0;
+	private static final String SNAPSHOT_FILE_NAME = "snapshot.bin";
+	private static final String PREVIOUS_SNAPSHOT_FILE_NAME = "snapshot.prev.bin";
+	private static final String CORRUPT_SNAPSHOT_FILE_NAME = "snapshot.corrupt";
+	private static final String TEMPORARY_FILE_NAME = "snapshot.tmp";
+	/**
+	 * Size of the buffer used for writing a snapshot
+	 */
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+	/**
+	 * Max size of the file region mapped at once while loading
+	 */
+	private static final long MAX_MAPPED_REGION_SIZE = 1L << 28;
+
+	/**
+	 * Directory of the snapshot file
+	 */
+	private final File snapshotDirectory;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param snapshotDirectory: Directory of the snapshot file
+	 */
+	public SnapshotStore(File snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+
+	/**
+	 * Loads the last snapshot into the recovered clients given by mapping the
+	 * snapshot file. If the last snapshot is corrupt, it is put aside and the
+	 * previous snapshot is loaded instead.
+	 *
+	 * @param recoveredClients: Recovered clients the snapshot is applied to
+	 * @return Number of the first journal segment to replay after the snapshot or
+	 *         0 if no snapshot exists
+	 * @throws IOException if no intact snapshot is left or it cannot be read
+	 */
+	public long load(RecoveredClients recoveredClients) throws IOException {
+		File snapshotFile = new File(snapshotDirectory, SNAPSHOT_FILE_NAME);
+		File previousSnapshotFile = new File(snapshotDirectory, PREVIOUS_SNAPSHOT_FILE_NAME);
+		if (snapshotFile.isFile()) {
+			try {
+				return load(snapshotFile, recoveredClients);
+			} catch (IOException e) {
+				if (!previousSnapshotFile.isFile())
+					throw e;
+				System.out.println("ERROR: " + e.getMessage() + ", previous snapshot is loaded instead");
+				recoveredClients.clear();
+				// The corrupt snapshot must not become the previous snapshot at the next commit
+				Files.move(snapshotFile.toPath(), new File(snapshotDirectory, CORRUPT_SNAPSHOT_FILE_NAME).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		// Without a last snapshot a commit has been interrupted after the previous one was moved
+		if (!previousSnapshotFile.isFile())
+			return 0;
+		return load(previousSnapshotFile, recoveredClients);
+	}
+
+	private long load(File snapshotFile, RecoveredClients recoveredClients) throws IOException {
+		try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+			MappedReader reader = new MappedReader(channel);
+			if (reader.readInt() != MAGIC)
+				throw new IOException("Unknown snapshot format: " + snapshotFile);
+			int version = reader.readInt();
+			if (version != VERSION && version != JSON_VERSION)
+				throw new IOException("Unknown snapshot format: " + snapshotFile);
+			long firstJournalSegment = reader.readLong();
+			long numberOfClients = 0;
+			while (reader.readByte() == CLIENT_TAG) {
+				UUID clientId = new UUID(reader.readLong(), reader.readLong());
+				recoveredClients.apply(JournalRecord.newClient(clientId));
+				String token = reader.readString();
+				if (token != null)
+					recoveredClients.apply(JournalRecord.token(clientId, token));
+				int numberOfRemindServices = reader.readInt();
+				for (int i = 0; i < numberOfRemindServices; i++) {
+					long storageKey = reader.readLong();
+					if (version == JSON_VERSION)
+						recoveredClients.apply(new JournalRecord(JournalRecord.REMIND_SERVICE, clientId, storageKey,
+								reader.readString()));
+					else
+						recoveredClients.applyRemindService(clientId, storageKey, readRemindService(reader));
+				}
+				numberOfClients++;
+			}
+			long writtenNumberOfClients = reader.readLong();
+			int checksum = reader.checksum();
+			if (writtenNumberOfClients != numberOfClients || reader.readInt() != checksum)
+				throw new IOException("Snapshot is corrupt: " + snapshotFile);
+			return firstJournalSegment;
+		} catch (RuntimeException e) {
+			// Buffer underflow of a truncated file or an unknown remind type
+			throw new IOException("Snapshot is corrupt: " + snapshotFile, e);
+		}
+	}
+
+	private static RemindService readRemindService(MappedReader reader) throws IOException {
+		RemindType remindType = RemindType.values()[reader.readByte()];
+		long dateInMilliseconds = reader.readLong();
+		Date date = dateInMilliseconds == NO_DATE ? null : new Date(dateInMilliseconds);
+		boolean remind = reader.readByte() != 0;
+		String dateText = reader.readString();
+		String dateFormat = reader.readSharedString();
+		String timeZoneID = reader.readSharedString();
+		switch (remindType) {
+		case MEDICINE:
+			return new Medicine(reader.readInt(), reader.readInt(), date, dateText, dateFormat, remind, timeZoneID);
+		case DOCAPPOINTMENT:
+			return new DocAppointment(reader.readInt(), reader.readInt(), date, dateText, dateFormat, remind,
+					timeZoneID);
+		case WATER:
+			return new Water(date, dateText, dateFormat, remind, timeZoneID);
+		case BLOODPRESSURE:
+			return new BloodPressure(date, dateText, dateFormat, remind, timeZoneID);
+		}
+		throw new IllegalStateException("Unknown remind type " + remindType);
+	}
+
+	/**
+	 * Reads the first journal segment from the header of a snapshot file without
+	 * checking the rest of it.
+	 *
+	 * @param snapshotFile: Snapshot file
+	 * @return Number of the first journal segment not included in the snapshot or
+	 *         0 if the header cannot be read
+	 */
+	private static long readFirstJournalSegment(File snapshotFile) {
+		try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			while (header.hasRemaining() && channel.read(header) >= 0)
+				;
+			header.flip();
+			if (header.remaining() < 16 || header.getInt() != MAGIC)
+				return 0;
+			header.getInt();
+			return header.getLong();
+		} catch (IOException e) {
+			System.out.println("EXCEPTION: " + e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Creates a writer for a new snapshot. The snapshot replaces the last one
+	 * when the writer is committed.
+	 *
+	 * @param firstJournalSegment: Number of the first journal segment not included
+	 *                             in the snapshot
+	 * @return Snapshot writer
+	 * @throws IOException
+	 */
+	public Writer createWriter(long firstJournalSegment) throws IOException {
+		if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs())
+			throw new IOException("Snapshot directory could not be created: " + snapshotDirectory);
+		return new Writer(firstJournalSegment);
+	}
+
+	/**
+	 * Writer of one snapshot. Clients are written one after another, so the state
+	 * of all clients never has to be copied at once.
+	 */
+	public class Writer implements AutoCloseable {
+
+		private final File temporaryFile = new File(snapshotDirectory, TEMPORARY_FILE_NAME);
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		private final long firstJournalSegment;
+		private long numberOfClients;
+		private boolean committed;
+
+		private Writer(long firstJournalSegment) throws IOException {
+			channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.firstJournalSegment = firstJournalSegment;
+			ensureCapacity(16);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(firstJournalSegment);
+		}
+
+		/**
+		 * Writes one client with its remind services.
+		 *
+		 * @param clientId:       Client ID
+		 * @param token:          FCM token or null
+		 * @param remindServices: Registered remind services of the client
+		 * @throws IOException
+		 */
+		public void writeClient(UUID clientId, String token, List<RemindService> remindServices)
+				throws IOException {
+			ensureCapacity(1 + 16);
+			buffer.put(CLIENT_TAG);
+			buffer.putLong(clientId.getMostSignificantBits());
+			buffer.putLong(clientId.getLeastSignificantBits());
+			writeString(token);
+			ensureCapacity(4);
+			buffer.putInt(remindServices.size());
+			for (RemindService remindService : remindServices)
+				writeRemindService(remindService);
+			numberOfClients++;
+		}
+
+		private void writeRemindService(RemindService remindService) throws IOException {
+			ensureCapacity(8 + 1 + 8 + 1);
+			buffer.putLong(RemindServiceTimerStorage.createStorageKey(remindService));
+			buffer.put((byte) remindService.getRemindType().ordinal());
+			Date date = remindService.getDate();
+			buffer.putLong(date == null ? NO_DATE : date.getTime());
+			buffer.put((byte) (remindService.getRemind() ? 1 : 0));
+			writeString(remindService.getFormattedDateText());
+			writeString(remindService.getDateFormat());
+			writeString(remindService.getTimeZoneID());
+			if (remindService instanceof Medicine) {
+				Medicine medicine = (Medicine) remindService;
+				ensureCapacity(8);
+				buffer.putInt(medicine.getHourOfDay());
+				buffer.putInt(medicine.getMinute());
+			} else if (remindService instanceof DocAppointment) {
+				DocAppointment docAppointment = (DocAppointment) remindService;
+				ensureCapacity(8);
+				buffer.putInt(docAppointment.getHourOfDay());
+				buffer.putInt(docAppointment.getMinute());
+			}
+		}
+
+		/**
+		 * Completes the snapshot, forces it to disk and replaces the last snapshot
+		 * atomically. The last snapshot is kept as previous snapshot.
+		 *
+		 * @return Number of the first journal segment still needed by the kept
+		 *         snapshots, older segments can be deleted
+		 * @throws IOException
+		 */
+		public long commit() throws IOException {
+			ensureCapacity(1 + 8);
+			buffer.put(END_TAG);
+			buffer.putLong(numberOfClients);
+			flush();
+			buffer.putInt((int) crc.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(true);
+			channel.close();
+			File snapshotFile = new File(snapshotDirectory, SNAPSHOT_FILE_NAME);
+			File previousSnapshotFile = new File(snapshotDirectory, PREVIOUS_SNAPSHOT_FILE_NAME);
+			if (snapshotFile.isFile())
+				Files.move(snapshotFile.toPath(), previousSnapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			committed = true;
+			if (!previousSnapshotFile.isFile())
+				return firstJournalSegment;
+			return Math.min(firstJournalSegment, readFirstJournalSegment(previousSnapshotFile));
+		}
+
+		public long getNumberOfClients() {
+			return numberOfClients;
+		}
+
+		/**
+		 * Closes the writer. A snapshot which has not been committed is deleted.
+		 */
+		@Override
+		public void close() {
+			if (committed)
+				return;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.out.println("EXCEPTION: " + e);
+			}
+			temporaryFile.delete();
+		}
+
+		private void writeString(String text) throws IOException {
+			if (text == null) {
+				ensureCapacity(4);
+				buffer.putInt(-1);
+				return;
+			}
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			ensureCapacity(4);
+			buffer.putInt(bytes.length);
+			int offset = 0;
+			while (offset < bytes.length) {
+				if (!buffer.hasRemaining())
+					flush();
+				int length = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private void ensureCapacity(int numberOfBytes) throws IOException {
+			if (buffer.remaining() < numberOfBytes)
+				flush();
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.duplicate());
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads a snapshot file through mapped regions. A region is mapped again at
+	 * the current position if the next value does not fit into it.
+	 */
+	private static class MappedReader {
+
+		private final FileChannel channel;
+		private final long fileSize;
+		private final CRC32 crc = new CRC32();
+		/**
+		 * Strings repeated in most remind services, kept only once in memory
+		 */
+		private final Map<String, String> sharedStrings = new HashMap<>();
+		private MappedByteBuffer region;
+		private long regionStart;
+		/**
+		 * Absolute position up to which the checksum has been calculated
+		 */
+		private long checksumPosition;
+
+		private MappedReader(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.fileSize = channel.size();
+			map(0);
+		}
+
+		private byte readByte() throws IOException {
+			ensureReadable(1);
+			return region.get();
+		}
+
+		private int readInt() throws IOException {
+			ensureReadable(4);
+			return region.getInt();
+		}
+
+		private long readLong() throws IOException {
+			ensureReadable(8);
+			return region.getLong();
+		}
+
+		private String readString() throws IOException {
+			int length = readInt();
+			if (length < 0)
+				return null;
+			ensureReadable(length);
+			byte[] bytes = new byte[length];
+			region.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private String readSharedString() throws IOException {
+			String text = readString();
+			if (text == null)
+				return null;
+			String sharedText = sharedStrings.putIfAbsent(text, text);
+			return sharedText == null ? text : sharedText;
+		}
+
+		/**
+		 * Calculates the CRC32 of all bytes read so far.
+		 *
+		 * @return CRC32 value
+		 */
+		private int checksum() {
+			updateChecksum();
+			return (int) crc.getValue();
+		}
+
+		private void ensureReadable(int numberOfBytes) throws IOException {
+			if (region.remaining() < numberOfBytes)
+				map(regionStart + region.position());
+		}
+
+		private void map(long position) throws IOException {
+			if (region != null)
+				updateChecksum();
+			long size = Math.min(MAX_MAPPED_REGION_SIZE, fileSize - position);
+			region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			regionStart = position;
+		}
+
+		/**
+		 * Adds the bytes of the current region read since the last update to the
+		 * checksum.
+		 */
+		private void updateChecksum() {
+			ByteBuffer readBytes = region.duplicate();
+			readBytes.flip();
+			readBytes.position((int) (checksumPosition - regionStart));
+			crc.update(readBytes);
+			checksumPosition = regionStart + region.position();
+		}
+	}
+}
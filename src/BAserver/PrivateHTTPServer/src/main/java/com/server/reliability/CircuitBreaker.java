@@ -0,0 +1,107 @@
+package com.server.reliability;
+
+/**
+ * This class stops sending to a push back-end after several failures in a row,
+ * so a back-end which is down is not flooded with messages that will fail
+ * anyway. After an open time one trial message is let through: if it
+ * succeeds, the breaker closes again, otherwise it stays open for another
+ * open time.
+ */
+public class CircuitBreaker {
+
+	private static final int CLOSED = 0;
+	private static final int OPEN = 1;
+	private static final int HALF_OPEN = 2;
+
+	/**
+	 * Number of failures in a row which opens the breaker
+	 */
+	private final int failureThreshold;
+	/**
+	 * Time in milliseconds the breaker stays open
+	 */
+	private final long openTime;
+
+	private int state = CLOSED;
+	private int numberOfFailures;
+	private long openUntil;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param failureThreshold: Number of failures in a row which opens the breaker
+	 * @param openTime:         Time in milliseconds the breaker stays open
+	 */
+	public CircuitBreaker(int failureThreshold, long openTime) {
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+	}
+
+	/**
+	 * Checks whether a message may be sent now. The first call after the open
+	 * time lets one trial message through.
+	 * 
+	 * @return true if the message may be sent, otherwise false
+	 */
+	public synchronized boolean allowRequest() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (System.currentTimeMillis() < openUntil)
+				return false;
+			state = HALF_OPEN;
+			return true;
+		default:
+			// Trial message is still in flight
+			return false;
+		}
+	}
+
+	/**
+	 * Records a message which has been sent.
+	 */
+	public synchronized void recordSuccess() {
+		state = CLOSED;
+		numberOfFailures = 0;
+	}
+
+	/**
+	 * Records a message which could not be sent.
+	 */
+	public synchronized void recordFailure() {
+		numberOfFailures++;
+		if (state == HALF_OPEN || numberOfFailures >= failureThreshold) {
+			if (state != OPEN)
+				System.out.println("ERROR: Circuit breaker opened after " + numberOfFailures + " failures");
+			state = OPEN;
+			openUntil = System.currentTimeMillis() + openTime;
+		}
+	}
+
+	/**
+	 * Records a message which failed because of its client, e.g. an unregistered
+	 * token. It says nothing about the back-end, so it neither opens nor closes
+	 * the breaker. A trial message ending this way is given back, so the next
+	 * message becomes the trial.
+	 */
+	public synchronized void recordClientFailure() {
+		if (state == HALF_OPEN)
+			state = OPEN;
+	}
+
+	/**
+	 * Returns the time until a message may be sent again.
+	 * 
+	 * @return Remaining open time in milliseconds, 0 if the breaker is not open
+	 */
+	public synchronized long getRemainingOpenTime() {
+		if (state != OPEN)
+			return 0;
+		return Math.max(0, openUntil - System.currentTimeMillis());
+	}
+
+	public synchronized boolean isOpen() {
+		return state != CLOSED;
+	}
+}
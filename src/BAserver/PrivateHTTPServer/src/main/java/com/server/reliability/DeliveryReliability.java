@@ -0,0 +1,166 @@
+package com.server.reliability;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.server.forwarding.IAcknowledgedForwarding;
+import com.server.forwarding.IForwarding;
+import com.server.persistence.DeadLetter;
+import com.server.persistence.DeadLetterQueue;
+import com.server.timer.TimingWheelScheduler;
+
+/**
+ * This class holds everything the reliable forwardings of one server share: the
+ * retry policy, one circuit breaker per destination, the timer on which retries
+ * wait, the dead letter queue for notifications which failed for good and the
+ * tracker which waits for the acknowledgements of the clients.
+ */
+public class DeliveryReliability {
+
+	/**
+	 * System properties to configure the circuit breakers
+	 */
+	public static final String FAILURE_THRESHOLD_PROPERTY = "delivery.failureThreshold";
+	public static final String OPEN_TIME_PROPERTY = "delivery.openTime";
+
+	private final RetryPolicy retryPolicy;
+	private final int failureThreshold;
+	private final long openTime;
+	private final TimingWheelScheduler scheduler;
+	/**
+	 * Dead letter queue or null if dead letters are only printed
+	 */
+	private final DeadLetterQueue deadLetterQueue;
+	private final DeliveryTracker deliveryTracker;
+	private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the delivery reliability configured by system properties on the
+	 * shared scheduler.
+	 * 
+	 * @param deadLetterQueue: Dead letter queue or null
+	 */
+	public DeliveryReliability(DeadLetterQueue deadLetterQueue) {
+		this(RetryPolicy.fromSystemProperties(), Integer.getInteger(FAILURE_THRESHOLD_PROPERTY, 10),
+				Long.getLong(OPEN_TIME_PROPERTY, 30 * 1000L), TimingWheelScheduler.getSchedulerInstance(),
+				deadLetterQueue);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param retryPolicy:      Retry policy
+	 * @param failureThreshold: Number of failures in a row which opens a breaker
+	 * @param openTime:         Time in milliseconds a breaker stays open
+	 * @param scheduler:        Timer on which retries wait
+	 * @param deadLetterQueue:  Dead letter queue or null
+	 */
+	public DeliveryReliability(RetryPolicy retryPolicy, int failureThreshold, long openTime,
+			TimingWheelScheduler scheduler, DeadLetterQueue deadLetterQueue) {
+		this(retryPolicy, failureThreshold, openTime, scheduler, deadLetterQueue,
+				DeliveryTracker.getTrackerInstance());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param retryPolicy:      Retry policy
+	 * @param failureThreshold: Number of failures in a row which opens a breaker
+	 * @param openTime:         Time in milliseconds a breaker stays open
+	 * @param scheduler:        Timer on which retries wait
+	 * @param deadLetterQueue:  Dead letter queue or null
+	 * @param deliveryTracker:  Tracker of the acknowledgements of the clients
+	 */
+	public DeliveryReliability(RetryPolicy retryPolicy, int failureThreshold, long openTime,
+			TimingWheelScheduler scheduler, DeadLetterQueue deadLetterQueue, DeliveryTracker deliveryTracker) {
+		this.retryPolicy = retryPolicy;
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+		this.scheduler = scheduler;
+		this.deadLetterQueue = deadLetterQueue;
+		this.deliveryTracker = deliveryTracker;
+	}
+
+	/**
+	 * Wraps the forwarding of a client with retries, circuit breaker and dead
+	 * letter queue.
+	 * 
+	 * @param clientId:   Client ID of the receiving client
+	 * @param forwarding: Forwarding which reports the result of every message
+	 * @return Reliable forwarding
+	 */
+	public IForwarding makeReliable(UUID clientId, IAcknowledgedForwarding forwarding) {
+		return new ReliableForwarding(clientId, forwarding, this);
+	}
+
+	/**
+	 * Returns the circuit breaker of a destination.
+	 * 
+	 * @param destination: Name of the push back-end
+	 * @return Circuit breaker shared by all forwardings to this destination
+	 */
+	public CircuitBreaker getCircuitBreaker(String destination) {
+		return circuitBreakers.computeIfAbsent(destination, key -> new CircuitBreaker(failureThreshold, openTime));
+	}
+
+	/**
+	 * Starts a replay of all dead letters. They are kept on disk until
+	 * {@link #finishDeadLetterReplay() finishDeadLetterReplay} is called.
+	 * 
+	 * @return All dead letters
+	 * @throws IOException
+	 */
+	public List<DeadLetter> startDeadLetterReplay() throws IOException {
+		if (deadLetterQueue == null)
+			return new ArrayList<>();
+		return deadLetterQueue.startReplay();
+	}
+
+	/**
+	 * Finishes the replay of the dead letters after all of them have been
+	 * delivered or added to the dead letter queue again.
+	 */
+	public void finishDeadLetterReplay() {
+		if (deadLetterQueue != null)
+			deadLetterQueue.finishReplay();
+	}
+
+	DeliveryTracker getDeliveryTracker() {
+		return deliveryTracker;
+	}
+
+	RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Runs a retry after the delay given on the timer.
+	 * 
+	 * @param retry: Retry task
+	 * @param delay: Delay in milliseconds
+	 */
+	void scheduleRetry(Runnable retry, long delay) {
+		scheduler.schedule(retry, new Date(System.currentTimeMillis() + delay));
+	}
+
+	/**
+	 * Stores a notification which failed for good.
+	 * 
+	 * @param deadLetter: Dead letter
+	 */
+	void addDeadLetter(DeadLetter deadLetter) {
+		System.out.println("ERROR: Notification for client " + deadLetter.getClientId() + " failed after "
+				+ deadLetter.getNumberOfAttempts() + " attempts: " + deadLetter.getReason());
+		if (deadLetterQueue == null)
+			return;
+		try {
+			deadLetterQueue.add(deadLetter);
+		} catch (IOException e) {
+			System.out.println("EXCEPTION: " + e);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package com.server.reliability;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.server.forwarding.IAcknowledgementListener;
+import com.server.forwarding.NotificationInfo;
+import com.server.timer.TimerHandle;
+import com.server.timer.TimingWheelScheduler;
+
+/**
+ * This class tracks every notification handed to a push path until the client
+ * acknowledges it after displaying it. The time between sending and the
+ * acknowledgement is the delivery latency of the notification. A high priority
+ * notification which is not acknowledged within the acknowledgement timeout is
+ * sent again, a few times at most. Each pending notification waits on the timer,
+ * so no thread waits for an acknowledgement.
+ * 
+ * Clients which cannot acknowledge, e.g. legacy clients of PMSN, are not
+ * tracked until they acknowledge a notification again, so they do not get
+ * their notifications several times.
+ */
+public class DeliveryTracker implements IAcknowledgementListener {
+
+	/**
+	 * System properties to configure the acknowledgement timeout in milliseconds
+	 * and the max number of times a notification is sent again
+	 */
+	public static final String ACK_TIMEOUT_PROPERTY = "delivery.ackTimeout";
+	public static final String MAX_RESENDS_PROPERTY = "delivery.maxResends";
+
+	/**
+	 * Single tracker instance shared by all servers
+	 */
+	private static DeliveryTracker trackerInstance = new DeliveryTracker(TimingWheelScheduler.getSchedulerInstance(),
+			Long.getLong(ACK_TIMEOUT_PROPERTY, 60 * 1000L), Integer.getInteger(MAX_RESENDS_PROPERTY, 3));
+
+	private final TimingWheelScheduler scheduler;
+	private final long ackTimeout;
+	private final int maxResends;
+	private final ConcurrentHashMap<Long, PendingDelivery> pendingDeliveries = new ConcurrentHashMap<>();
+	/**
+	 * Clients whose push path reported that they cannot acknowledge
+	 */
+	private final Set<UUID> clientsWithoutAcknowledgement = ConcurrentHashMap.newKeySet();
+
+	private final LongAdder acknowledged = new LongAdder();
+	private final LongAdder unacknowledged = new LongAdder();
+	private final LongAdder resent = new LongAdder();
+	private final LongAdder totalLatency = new LongAdder();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scheduler:  Timer on which the acknowledgement timeouts wait
+	 * @param ackTimeout: Time in milliseconds a client has to acknowledge a
+	 *                    notification
+	 * @param maxResends: Max number of times a high priority notification is sent
+	 *                    again
+	 */
+	public DeliveryTracker(TimingWheelScheduler scheduler, long ackTimeout, int maxResends) {
+		this.scheduler = scheduler;
+		this.ackTimeout = ackTimeout;
+		this.maxResends = maxResends;
+	}
+
+	/**
+	 * Returns the single tracker instance.
+	 *
+	 * @return Tracker instance
+	 */
+	public static DeliveryTracker getTrackerInstance() {
+		return trackerInstance;
+	}
+
+	/**
+	 * Tracks a notification which has been handed to the push path of a client. A
+	 * notification which is sent again keeps the time of its first sending. A
+	 * notification to a client which cannot acknowledge is not tracked.
+	 *
+	 * @param clientId:         Client ID of the receiving client
+	 * @param notificationInfo: Notification sent
+	 * @param resend:           Sends the notification again if it is not
+	 *                          acknowledged in time
+	 */
+	public void sent(UUID clientId, NotificationInfo notificationInfo, Consumer<NotificationInfo> resend) {
+		if (clientsWithoutAcknowledgement.contains(clientId))
+			return;
+		PendingDelivery pendingDelivery = pendingDeliveries.computeIfAbsent(notificationInfo.getMessageId(),
+				messageId -> new PendingDelivery(clientId, notificationInfo, resend));
+		pendingDelivery.scheduleTimeout();
+	}
+
+	/**
+	 * Records the acknowledgement of a notification by its client.
+	 *
+	 * @param clientId:  Client ID of the acknowledging client
+	 * @param messageId: Message ID of the notification
+	 * @return true if the notification was pending, false if it is unknown, e.g.
+	 *         acknowledged before or by another client
+	 */
+	public boolean acknowledge(UUID clientId, long messageId) {
+		// The client has registered again with a push path which acknowledges
+		clientsWithoutAcknowledgement.remove(clientId);
+		PendingDelivery pendingDelivery = pendingDeliveries.get(messageId);
+		if (pendingDelivery == null || !pendingDelivery.clientId.equals(clientId)
+				|| !pendingDeliveries.remove(messageId, pendingDelivery))
+			return false;
+		pendingDelivery.cancelTimeout();
+		long latency = System.currentTimeMillis() - pendingDelivery.firstSentTime;
+		acknowledged.increment();
+		totalLatency.add(latency);
+		maxLatency.accumulateAndGet(latency, Math::max);
+		System.out.println("INFO: Notification " + messageId + " acknowledged by client " + clientId + " after "
+				+ latency + " ms");
+		return true;
+	}
+
+	@Override
+	public void acknowledged(UUID clientId, long messageId) {
+		acknowledge(clientId, messageId);
+	}
+
+	/**
+	 * Stops tracking the notifications of a client which cannot acknowledge them.
+	 * The pending notification is neither sent again nor counted as
+	 * unacknowledged.
+	 *
+	 * @param clientId:  Client ID of the client
+	 * @param messageId: Message ID of the notification pushed to the client
+	 */
+	@Override
+	public void cannotAcknowledge(UUID clientId, long messageId) {
+		if (clientsWithoutAcknowledgement.add(clientId))
+			System.out.println("INFO: Client " + clientId + " cannot acknowledge, its notifications are not tracked");
+		notSent(clientId, messageId);
+	}
+
+	/**
+	 * Stops tracking a notification which has not reached its client, e.g.
+	 * because the connection broke. The notification is neither sent again nor
+	 * counted as unacknowledged, the push path tracks it again when it sends it.
+	 *
+	 * @param clientId:  Client ID of the receiving client
+	 * @param messageId: Message ID of the notification
+	 */
+	public void notSent(UUID clientId, long messageId) {
+		PendingDelivery pendingDelivery = pendingDeliveries.get(messageId);
+		if (pendingDelivery != null && pendingDelivery.clientId.equals(clientId)
+				&& pendingDeliveries.remove(messageId, pendingDelivery))
+			pendingDelivery.cancelTimeout();
+	}
+
+	/**
+	 * Returns the number of notifications waiting for their acknowledgement.
+	 *
+	 * @return Number of pending notifications
+	 */
+	public int getNumberOfPendingDeliveries() {
+		return pendingDeliveries.size();
+	}
+
+	public long getNumberOfAcknowledged() {
+		return acknowledged.sum();
+	}
+
+	public long getNumberOfUnacknowledged() {
+		return unacknowledged.sum();
+	}
+
+	public long getNumberOfResent() {
+		return resent.sum();
+	}
+
+	/**
+	 * Returns the average delivery latency of all acknowledged notifications.
+	 *
+	 * @return Average latency in milliseconds or 0 if none has been acknowledged
+	 */
+	public long getAverageLatency() {
+		long numberOfAcknowledged = acknowledged.sum();
+		return numberOfAcknowledged == 0 ? 0 : totalLatency.sum() / numberOfAcknowledged;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Deliveries: " + getNumberOfAcknowledged() + " acknowledged (avg " + getAverageLatency() + " ms, max "
+				+ getMaxLatency() + " ms), " + getNumberOfPendingDeliveries() + " pending, " + getNumberOfResent()
+				+ " resent, " + getNumberOfUnacknowledged() + " unacknowledged";
+	}
+
+	/**
+	 * Sends a high priority notification again or gives it up when its
+	 * acknowledgement timeout has passed.
+	 *
+	 * @param pendingDelivery: Pending notification
+	 */
+	private void timeoutPassed(PendingDelivery pendingDelivery) {
+		long messageId = pendingDelivery.notificationInfo.getMessageId();
+		// Acknowledged meanwhile
+		if (pendingDeliveries.get(messageId) != pendingDelivery)
+			return;
+		if (pendingDelivery.notificationInfo.hasHighPriority() && pendingDelivery.tryResend(maxResends)) {
+			resent.increment();
+			System.out.println("INFO: Notification " + messageId + " not acknowledged, sent again to client "
+					+ pendingDelivery.clientId);
+			// A resend which never reaches the push path still times out
+			pendingDelivery.scheduleTimeout();
+			pendingDelivery.resend.accept(pendingDelivery.notificationInfo);
+			return;
+		}
+		if (!pendingDeliveries.remove(messageId, pendingDelivery))
+			return;
+		unacknowledged.increment();
+		System.out.println("ERROR: Notification " + messageId + " has not been acknowledged by client "
+				+ pendingDelivery.clientId);
+	}
+
+	/**
+	 * A notification waiting for its acknowledgement
+	 */
+	private final class PendingDelivery {
+
+		private final UUID clientId;
+		private final NotificationInfo notificationInfo;
+		private final Consumer<NotificationInfo> resend;
+		private final long firstSentTime = System.currentTimeMillis();
+		private int numberOfResends;
+		private TimerHandle timeout;
+
+		private PendingDelivery(UUID clientId, NotificationInfo notificationInfo,
+				Consumer<NotificationInfo> resend) {
+			this.clientId = clientId;
+			this.notificationInfo = notificationInfo;
+			this.resend = resend;
+		}
+
+		private synchronized void scheduleTimeout() {
+			if (timeout != null)
+				timeout.cancel();
+			timeout = scheduler.schedule(() -> timeoutPassed(this),
+					new Date(System.currentTimeMillis() + ackTimeout));
+		}
+
+		private synchronized void cancelTimeout() {
+			if (timeout != null)
+				timeout.cancel();
+		}
+
+		private synchronized boolean tryResend(int maxResends) {
+			if (numberOfResends >= maxResends)
+				return false;
+			numberOfResends++;
+			return true;
+		}
+	}
+}
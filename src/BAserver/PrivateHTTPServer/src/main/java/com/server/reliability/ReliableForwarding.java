@@ -0,0 +1,154 @@
+package com.server.reliability;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.server.forwarding.ClientDeliveryException;
+import com.server.forwarding.IAcknowledgedForwarding;
+import com.server.forwarding.IForwarding;
+import com.server.forwarding.NotificationInfo;
+import com.server.persistence.DeadLetter;
+
+/**
+ * This class forwards the notifications of one client reliably. A failed
+ * notification is sent again after a growing, jittered delay on the timer, so
+ * no thread waits for a retry. While the circuit breaker of the destination is
+ * open, attempts wait for it instead of hitting the back-end. A notification
+ * which still fails after the last attempt goes to the dead letter queue. Only
+ * failures of the back-end count for its circuit breaker, a failure because of
+ * the client (e.g. a missing token) does not stop the other clients, and a
+ * permanent one goes to the dead letter queue without retries. A
+ * notification accepted by the back-end is tracked until the client
+ * acknowledges it and forwarded again if it has a high priority and the
+ * acknowledgement does not arrive in time.
+ */
+public class ReliableForwarding implements IForwarding {
+
+	private final UUID clientId;
+	private final IAcknowledgedForwarding forwarding;
+	private final DeliveryReliability deliveryReliability;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param clientId:            Client ID of the receiving client
+	 * @param forwarding:          Forwarding which reports the result of every
+	 *                             message
+	 * @param deliveryReliability: Retry policy, breakers and dead letter queue of
+	 *                             the server
+	 */
+	public ReliableForwarding(UUID clientId, IAcknowledgedForwarding forwarding,
+			DeliveryReliability deliveryReliability) {
+		this.clientId = clientId;
+		this.forwarding = forwarding;
+		this.deliveryReliability = deliveryReliability;
+	}
+
+	@Override
+	public void forwardMessage(NotificationInfo notificationInfo) {
+		attempt(notificationInfo, 1, null);
+	}
+
+	/**
+	 * Forwards a notification like {@link #forwardMessage(NotificationInfo)
+	 * forwardMessage} and reports when it is done, e.g. for a replayed dead
+	 * letter.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @return Future which is completed when the back-end has accepted the
+	 *         notification or it has been added to the dead letter queue again
+	 */
+	public CompletableFuture<Void> forwardMessageUntilDone(NotificationInfo notificationInfo) {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		attempt(notificationInfo, 1, done);
+		return done;
+	}
+
+	@Override
+	public boolean isAcceptingMessages() {
+		return forwarding.isAcceptingMessages();
+	}
+
+	@Override
+	public void whenAcceptingMessages(Runnable resumeTask) {
+		forwarding.whenAcceptingMessages(resumeTask);
+	}
+
+	/**
+	 * Sends a notification if the circuit breaker allows it, otherwise the
+	 * attempt counts as failed.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @param attempt:          Number of this attempt, starting with 1
+	 * @param done:             Future completed when the notification has been
+	 *                          accepted or dead lettered, or null
+	 */
+	private void attempt(NotificationInfo notificationInfo, int attempt, CompletableFuture<Void> done) {
+		CircuitBreaker circuitBreaker = deliveryReliability.getCircuitBreaker(forwarding.getDestination());
+		if (!circuitBreaker.allowRequest()) {
+			attemptFailed(notificationInfo, attempt, "Circuit breaker of " + forwarding.getDestination() + " open",
+					circuitBreaker.getRemainingOpenTime(), done);
+			return;
+		}
+
+		CompletableFuture<Void> result;
+		try {
+			result = forwarding.deliverMessage(notificationInfo);
+		} catch (RuntimeException e) {
+			result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+		}
+		result.whenComplete((ignored, throwable) -> {
+			if (throwable == null) {
+				circuitBreaker.recordSuccess();
+				deliveryReliability.getDeliveryTracker().sent(clientId, notificationInfo, this::forwardMessage);
+				if (done != null)
+					done.complete(null);
+			} else {
+				Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+						? throwable.getCause()
+						: throwable;
+				if (!(cause instanceof ClientDeliveryException)) {
+					circuitBreaker.recordFailure();
+					attemptFailed(notificationInfo, attempt, cause.toString(), 0, done);
+					return;
+				}
+				circuitBreaker.recordClientFailure();
+				if (((ClientDeliveryException) cause).isPermanent())
+					addDeadLetter(notificationInfo, attempt, cause.toString(), done);
+				else
+					attemptFailed(notificationInfo, attempt, cause.toString(), 0, done);
+			}
+		});
+	}
+
+	/**
+	 * Schedules the next attempt or moves the notification to the dead letter
+	 * queue after the last attempt.
+	 * 
+	 * @param notificationInfo: Notification info
+	 * @param attempt:          Number of the failed attempt
+	 * @param reason:           Reason of the failure
+	 * @param minDelay:         Min delay in milliseconds before the next attempt
+	 * @param done:             Future of the notification or null
+	 */
+	private void attemptFailed(NotificationInfo notificationInfo, int attempt, String reason, long minDelay,
+			CompletableFuture<Void> done) {
+		RetryPolicy retryPolicy = deliveryReliability.getRetryPolicy();
+		if (!retryPolicy.canRetry(attempt)) {
+			addDeadLetter(notificationInfo, attempt, reason, done);
+			return;
+		}
+		long delay = Math.max(minDelay, retryPolicy.getDelay(attempt));
+		System.out.println("INFO: Attempt " + attempt + " failed (" + reason + "), retry in " + delay + " ms");
+		deliveryReliability.scheduleRetry(() -> attempt(notificationInfo, attempt + 1, done), delay);
+	}
+
+	private void addDeadLetter(NotificationInfo notificationInfo, int attempt, String reason,
+			CompletableFuture<Void> done) {
+		deliveryReliability.addDeadLetter(new DeadLetter(clientId, notificationInfo, attempt, reason));
+		if (done != null)
+			done.complete(null);
+	}
+}
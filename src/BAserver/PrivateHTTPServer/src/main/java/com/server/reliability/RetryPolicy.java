@@ -0,0 +1,77 @@
+package com.server.reliability;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class determines how often and after which delay a failed message is
+ * sent again. The delay doubles with every attempt up to a max delay. A random
+ * part of up to half the delay spreads the retries of many clients which
+ * failed at the same time.
+ */
+public class RetryPolicy {
+
+	/**
+	 * System properties to configure the retries
+	 */
+	public static final String MAX_ATTEMPTS_PROPERTY = "delivery.maxAttempts";
+	public static final String BASE_DELAY_PROPERTY = "delivery.baseDelay";
+	public static final String MAX_DELAY_PROPERTY = "delivery.maxDelay";
+
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+
+	/**
+	 * Creates the retry policy configured by system properties: 6 attempts, 1
+	 * second base delay and 5 minutes max delay by default.
+	 * 
+	 * @return Configured retry policy
+	 */
+	public static RetryPolicy fromSystemProperties() {
+		return new RetryPolicy(Integer.getInteger(MAX_ATTEMPTS_PROPERTY, 6),
+				Long.getLong(BASE_DELAY_PROPERTY, 1000L), Long.getLong(MAX_DELAY_PROPERTY, 5 * 60 * 1000L));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxAttempts: Max number of attempts including the first one
+	 * @param baseDelay:   Delay in milliseconds before the first retry
+	 * @param maxDelay:    Max delay in milliseconds between two attempts
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("At least one attempt is needed");
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Checks whether another attempt is allowed after a failed one.
+	 * 
+	 * @param failedAttempt: Number of the failed attempt, starting with 1
+	 * @return true if the message is sent again, otherwise false
+	 */
+	public boolean canRetry(int failedAttempt) {
+		return failedAttempt < maxAttempts;
+	}
+
+	/**
+	 * Returns the delay before the next attempt.
+	 * 
+	 * @param failedAttempt: Number of the failed attempt, starting with 1
+	 * @return Delay in milliseconds
+	 */
+	public long getDelay(int failedAttempt) {
+		long delay = baseDelay << Math.min(failedAttempt - 1, 30);
+		if (delay <= 0 || delay > maxDelay)
+			delay = maxDelay;
+		long halfDelay = delay / 2;
+		return halfDelay + ThreadLocalRandom.current().nextLong(delay - halfDelay + 1);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+}
@@ -0,0 +1,208 @@
+package com.server.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map with primitive long keys. Keys are stored unboxed in an open
+ * addressing table with linear probing, so get, put and remove are O(1) on
+ * average and no object is allocated per key. Null values are not supported.
+ *
+ * @param <V> Type of values
+ */
+public class LongKeyMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	/**
+	 * Table is doubled if it is filled more than this
+	 */
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public LongKeyMap() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the value stored for the key.
+	 * 
+	 * @param key: Key
+	 * @return Value or null if no value is stored for the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index = indexOf(key);
+		return index < 0 ? null : (V) values[index];
+	}
+
+	/**
+	 * Checks whether a value is stored for the key.
+	 * 
+	 * @param key: Key
+	 * @return true if a value is stored, otherwise false
+	 */
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Stores the value for the key.
+	 * 
+	 * @param key:   Key
+	 * @param value: Value, must not be null
+	 * @return Previous value or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("Null values are not supported");
+		int index = slot(key);
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V previousValue = (V) values[index];
+				values[index] = value;
+				return previousValue;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if (++size > resizeThreshold)
+			resize();
+		return null;
+	}
+
+	/**
+	 * Removes the value stored for the key.
+	 * 
+	 * @param key: Key
+	 * @return Removed value or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int index = indexOf(key);
+		if (index < 0)
+			return null;
+		V removedValue = (V) values[index];
+		values[index] = null;
+		size--;
+		shiftBack(index);
+		return removedValue;
+	}
+
+	/**
+	 * Returns all stored values.
+	 * 
+	 * @return New list with all values
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> storedValues = new ArrayList<>(size);
+		for (Object value : values) {
+			if (value != null)
+				storedValues.add((V) value);
+		}
+		return storedValues;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Finds the table index of the key.
+	 * 
+	 * @param key: Key
+	 * @return Index or -1 if the key is not stored
+	 */
+	private int indexOf(long key) {
+		int index = slot(key);
+		while (values[index] != null) {
+			if (keys[index] == key)
+				return index;
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the following entries of a probe sequence back into a freed slot so
+	 * that no tombstones are needed.
+	 * 
+	 * @param freedIndex: Index of the freed slot
+	 */
+	private void shiftBack(int freedIndex) {
+		int index = freedIndex;
+		while (true) {
+			index = (index + 1) & mask;
+			if (values[index] == null)
+				return;
+			int preferredIndex = slot(keys[index]);
+			// Entry may only be moved if its preferred slot is not between the freed
+			// slot and its current slot
+			boolean movable = freedIndex <= index ? (preferredIndex <= freedIndex || preferredIndex > index)
+					: (preferredIndex <= freedIndex && preferredIndex > index);
+			if (movable) {
+				keys[freedIndex] = keys[index];
+				values[freedIndex] = values[index];
+				values[index] = null;
+				freedIndex = index;
+			}
+		}
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] == null)
+				continue;
+			int index = slot(oldKeys[i]);
+			while (values[index] != null)
+				index = (index + 1) & mask;
+			keys[index] = oldKeys[i];
+			values[index] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Preferred slot of a key. The bits of the key are mixed as remind service keys
+	 * are clustered.
+	 * 
+	 * @param key: Key
+	 * @return Preferred table index
+	 */
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
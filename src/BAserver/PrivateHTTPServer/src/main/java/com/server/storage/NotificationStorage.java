@@ -1,17 +1,26 @@
 package com.server.storage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.server.model.RemindService;
 
 /**
  * This class stores all remind services that are available for a user. Those
  * remind services are added or removed from this storage.
+ * 
+ * Remind services of high priority (doctor appointments and medicine) are kept
+ * in their own queue and are always removed before the others, so a backlog of
+ * water or blood pressure reminders never delays them. Within one priority the
+ * order of adding is kept. A set of all stored remind services makes the
+ * duplicate check independent of the number of stored remind services.
  */
 public class NotificationStorage {
 
-	private List<RemindService> notificationList = new ArrayList<>();
+	private ArrayDeque<RemindService> highPriorityNotifications = new ArrayDeque<>();
+	private ArrayDeque<RemindService> normalPriorityNotifications = new ArrayDeque<>();
+	private Set<RemindService> storedNotifications = new HashSet<>();
 
 	/**
 	 * Empty constructor.
@@ -19,32 +28,61 @@ public class NotificationStorage {
 	public NotificationStorage() {
 	}
 
+	/**
+	 * Checks whether a remind service has a high priority according to its remind
+	 * type.
+	 * 
+	 * @param remindService: Remind service
+	 * @return true for doctor appointments and medicine, otherwise false
+	 */
+	public static boolean hasHighPriority(RemindService remindService) {
+		switch (remindService.getRemindType()) {
+		case DOCAPPOINTMENT:
+		case MEDICINE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	/**
 	 * Checks whether there is a notification available in the storage.
 	 * 
 	 * @return true is there is any notification that must be sent, otherwise false
 	 */
 	public synchronized boolean anyNotificationAvalaible() {
-		return !notificationList.isEmpty();
+		return !storedNotifications.isEmpty();
 	}
 
 	/**
-	 * Adds a new remind service to this storage.
+	 * Adds a new remind service to this storage. A remind service which is
+	 * already stored is not added again.
 	 * 
 	 * @param remindService: Remind service to get the notification text for later
 	 *                       push
 	 */
 	public synchronized void addNewNotificationMessage(RemindService remindService) {
-		notificationList.add(remindService);
+		if (!storedNotifications.add(remindService))
+			return;
+		if (hasHighPriority(remindService))
+			highPriorityNotifications.addLast(remindService);
+		else
+			normalPriorityNotifications.addLast(remindService);
 	}
 
 	/**
-	 * Removes a remind service (notification) from this storage.
+	 * Removes a remind service (notification) from this storage. Remind services
+	 * of high priority are removed first.
 	 * 
-	 * @return Remind service that is removed
+	 * @return Remind service that is removed or null if the storage is empty
 	 */
 	public synchronized RemindService removeNotificationForSending() {
-		return notificationList.remove(0);
+		RemindService remindService = highPriorityNotifications.pollFirst();
+		if (remindService == null)
+			remindService = normalPriorityNotifications.pollFirst();
+		if (remindService != null)
+			storedNotifications.remove(remindService);
+		return remindService;
 	}
 
 	/**
@@ -55,6 +93,15 @@ public class NotificationStorage {
 	 *         false
 	 */
 	public synchronized boolean contains(RemindService remindService) {
-		return notificationList.contains(remindService);
+		return storedNotifications.contains(remindService);
+	}
+
+	/**
+	 * Returns the number of stored remind services.
+	 * 
+	 * @return Number of remind services
+	 */
+	public synchronized int size() {
+		return storedNotifications.size();
 	}
 }
@@ -1,22 +1,23 @@
 package com.server.storage;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Timer;
 
 import com.server.model.RemindService;
+import com.server.timer.TimerHandle;
 
 /**
- * This storage saves all remind services with their corresponding timer for
- * retrieving.
+ * This storage saves all remind services with the handle of their scheduled
+ * timer task for retrieving. Remind services are indexed by their remind type
+ * and unique remind service ID, so every operation is O(1).
  */
 public class RemindServiceTimerStorage {
 
 	/**
-	 * HashMap of alle remind services and their corresponding timers
+	 * Map of alle remind services and the handles of their scheduled timer tasks
+	 * by their storage key
 	 */
-	private HashMap<RemindService, Timer> registeredRemindServices = new HashMap<>();
+	private LongKeyMap<RegisteredRemindService> registeredRemindServices = new LongKeyMap<>();
 
 	/**
 	 * Empty constructor.
@@ -30,7 +31,11 @@ public class RemindServiceTimerStorage {
 	 * @return List of all registered remind services
 	 */
 	public List<RemindService> getRegisteredRemindServices() {
-		return new ArrayList<>(registeredRemindServices.keySet());
+		List<RemindService> remindServices = new ArrayList<>(registeredRemindServices.size());
+		for (RegisteredRemindService registeredRemindService : registeredRemindServices.values()) {
+			remindServices.add(registeredRemindService.remindService);
+		}
+		return remindServices;
 	}
 
 	/**
@@ -40,17 +45,21 @@ public class RemindServiceTimerStorage {
 	 * @return true if remind service is saved, otherwise false
 	 */
 	public boolean existsRemindService(RemindService remindService) {
-		return retrieveRemindService(remindService) != null;
+		return remindService != null && registeredRemindServices.containsKey(createStorageKey(remindService));
 	}
 
 	/**
-	 * Gets the corresponding timer for this remind service.
+	 * Gets the handle of the scheduled timer task for this remind service.
 	 * 
 	 * @param remindService: Remind service for his corresponding timer
-	 * @return Timer of the remind service given
+	 * @return Timer handle of the remind service given or null if not saved
 	 */
-	public Timer getTimerForRemindService(RemindService remindService) {
-		return registeredRemindServices.get(retrieveRemindService(remindService));
+	public TimerHandle getTimerForRemindService(RemindService remindService) {
+		if (remindService == null)
+			return null;
+		RegisteredRemindService registeredRemindService = registeredRemindServices
+				.get(createStorageKey(remindService));
+		return registeredRemindService == null ? null : registeredRemindService.scheduledTimer;
 	}
 
 	/**
@@ -59,34 +68,57 @@ public class RemindServiceTimerStorage {
 	 * @param remindService: Remind service that is removed from this storage.
 	 */
 	public void removeRemindService(RemindService remindService) {
-		registeredRemindServices.remove(retrieveRemindService(remindService));
+		if (remindService == null)
+			return;
+		registeredRemindServices.remove(createStorageKey(remindService));
 	}
 
 	/**
-	 * Saves a remind service with his corresponding (already scheduled) timer.
+	 * Saves a remind service with the handle of his (already scheduled) timer task.
+	 * An equal remind service saved before is replaced.
 	 * 
 	 * @param remindService:  Remind service
-	 * @param scheduledTimer: Already scheduled timer
+	 * @param scheduledTimer: Handle of the already scheduled timer task
 	 */
-	public void registerForRemindService(RemindService remindService, Timer scheduledTimer) {
-		registeredRemindServices.put(remindService, scheduledTimer);
+	public void registerForRemindService(RemindService remindService, TimerHandle scheduledTimer) {
+		registeredRemindServices.put(createStorageKey(remindService),
+				new RegisteredRemindService(remindService, scheduledTimer));
 	}
 
 	/**
-	 * Retrieves the remind service for the remind service given. This method
-	 * implements a work around due to equality check issues with hashing.
-	 * 
-	 * @param expectedRemindObject: Expected remind service in the storage
-	 * @return Remind service in the storage or null if not saved
+	 * Cancels the timer tasks of all remind services and clears this storage.
 	 */
-	private RemindService retrieveRemindService(RemindService expectedRemindObject) {
-		if (expectedRemindObject == null)
-			return null;
-		for (RemindService key : registeredRemindServices.keySet()) {
-			if (key.equals(expectedRemindObject))
-				return key;
+	public void cancelAllRemindServices() {
+		for (RegisteredRemindService registeredRemindService : registeredRemindServices.values()) {
+			registeredRemindService.scheduledTimer.cancel();
 		}
-		return null;
+		registeredRemindServices.clear();
 	}
 
+	/**
+	 * Creates the key of a remind service in this storage. Two remind services have
+	 * the same key if they are equal: the remind type is stored in the upper and
+	 * the unique remind service ID in the lower 32 bits.
+	 * 
+	 * @param remindService: Remind service
+	 * @return Storage key of the remind service
+	 */
+	public static long createStorageKey(RemindService remindService) {
+		return ((long) remindService.getRemindType().ordinal() << 32)
+				| (remindService.createUniqueID() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Remind service with the handle of its scheduled timer task.
+	 */
+	private static class RegisteredRemindService {
+
+		private final RemindService remindService;
+		private final TimerHandle scheduledTimer;
+
+		private RegisteredRemindService(RemindService remindService, TimerHandle scheduledTimer) {
+			this.remindService = remindService;
+			this.scheduledTimer = scheduledTimer;
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package com.server.timer;
+
+import java.util.List;
+
+/**
+ * Target of timers scheduled by the {@link FireBucketScheduler}. All timers of
+ * the same target which expire together are handed over in one batch.
+ *
+ * @param <T> Type of the items scheduled
+ */
+public interface BatchTimerTarget<T> {
+
+	/**
+	 * Called when timers of this target have expired.
+	 * 
+	 * @param expiredItems: Items of all expired timers in order of scheduling
+	 */
+	public void timersExpired(List<T> expiredItems);
+}
@@ -0,0 +1,307 @@
+package com.server.timer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * This class groups timers by their fire time into buckets of a fixed duration
+ * (one minute by default, as remind services are normalized to whole minutes).
+ * Each bucket is one task on the {@link TimingWheelScheduler}. When it fires,
+ * the expired timers are grouped by their target and every target gets all
+ * its items in one batch, so thousands of remind services at the same minute
+ * cost one timer task instead of thousands.
+ *
+ * Fire times are truncated to the start of their bucket.
+ */
+public class FireBucketScheduler {
+
+	/**
+	 * Duration of one bucket in milliseconds
+	 */
+	private static final long DEFAULT_BUCKET_DURATION = 60000L;
+
+	/**
+	 * Single scheduler instance shared by all client alarm managers
+	 */
+	private static FireBucketScheduler schedulerInstance = new FireBucketScheduler(
+			TimingWheelScheduler.getSchedulerInstance(), DEFAULT_BUCKET_DURATION);
+
+	/**
+	 * Timing wheel which fires the buckets
+	 */
+	private final TimingWheelScheduler timingWheel;
+	/**
+	 * Duration of one bucket in milliseconds
+	 */
+	private final long bucketDuration;
+	/**
+	 * Buckets which have not fired yet by their bucket number
+	 */
+	private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a bucket scheduler on top of a timing wheel.
+	 *
+	 * @param timingWheel:    Timing wheel which fires the buckets
+	 * @param bucketDuration: Duration of one bucket in milliseconds
+	 */
+	public FireBucketScheduler(TimingWheelScheduler timingWheel, long bucketDuration) {
+		if (bucketDuration <= 0)
+			throw new IllegalArgumentException("Bucket duration must be positive");
+		this.timingWheel = timingWheel;
+		this.bucketDuration = bucketDuration;
+	}
+
+	/**
+	 * Returns the single scheduler instance of the server.
+	 *
+	 * @return Fire bucket scheduler instance
+	 */
+	public static FireBucketScheduler getSchedulerInstance() {
+		return schedulerInstance;
+	}
+
+	/**
+	 * Schedules an item for one expiration in the bucket of the time given. If
+	 * the bucket lies in the past, it expires with the next tick of the wheel.
+	 *
+	 * @param target:   Target which gets the item on expiration
+	 * @param item:     Item handed to the target
+	 * @param fireTime: Time of expiration
+	 * @return Handle to cancel the timer
+	 */
+	public <T> TimerHandle schedule(BatchTimerTarget<T> target, T item, Date fireTime) {
+		return addEntry(new FireEntry(target, item, 0), bucketNumberOf(fireTime.getTime()));
+	}
+
+	/**
+	 * Schedules an item for repeated expiration starting in the bucket of the
+	 * time given. Periods missed while the server was busy are skipped.
+	 *
+	 * @param target:    Target which gets the item on every expiration
+	 * @param item:      Item handed to the target
+	 * @param firstTime: Time of the first expiration
+	 * @param period:    Time between two expirations in milliseconds, at least
+	 *                   one bucket duration
+	 * @return Handle to cancel the timer
+	 */
+	public <T> TimerHandle scheduleAtFixedRate(BatchTimerTarget<T> target, T item, Date firstTime, long period) {
+		if (period < bucketDuration)
+			throw new IllegalArgumentException("Period must be at least one bucket duration");
+		return addEntry(new FireEntry(target, item, period), bucketNumberOf(firstTime.getTime()));
+	}
+
+	/**
+	 * Returns the number of buckets which have not fired yet.
+	 *
+	 * @return Number of pending buckets
+	 */
+	public int getNumberOfPendingBuckets() {
+		return buckets.size();
+	}
+
+	private long bucketNumberOf(long time) {
+		return Math.floorDiv(time, bucketDuration);
+	}
+
+	/**
+	 * Adds an entry to the bucket with the number given. A bucket which is firing
+	 * does not accept entries anymore, so a new bucket is created for it.
+	 *
+	 * @param entry:        Timer entry
+	 * @param bucketNumber: Bucket number
+	 * @return Timer entry as handle
+	 */
+	private FireEntry addEntry(FireEntry entry, long bucketNumber) {
+		while (true) {
+			Bucket bucket = buckets.computeIfAbsent(bucketNumber, this::createBucket);
+			if (bucket.add(entry))
+				return entry;
+			// Bucket has been fired meanwhile and is removed from the map
+			buckets.remove(bucketNumber, bucket);
+		}
+	}
+
+	/**
+	 * Creates a bucket and schedules its expiration on the timing wheel.
+	 *
+	 * @param bucketNumber: Bucket number
+	 * @return New bucket
+	 */
+	private Bucket createBucket(long bucketNumber) {
+		Bucket bucket = new Bucket(bucketNumber);
+		bucket.timer = timingWheel.schedule(() -> fire(bucket), new Date(bucketNumber * bucketDuration));
+		return bucket;
+	}
+
+	/**
+	 * Fires all entries of a bucket, grouped by their target, and reschedules the
+	 * periodic entries.
+	 *
+	 * @param bucket: Expired bucket
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void fire(Bucket bucket) {
+		buckets.remove(bucket.bucketNumber, bucket);
+		List<FireEntry> entries = bucket.close();
+
+		Map<BatchTimerTarget, List<Object>> expiredItemsByTarget = new IdentityHashMap<>();
+		for (FireEntry entry : entries) {
+			if (!entry.expire())
+				continue;
+			List<Object> expiredItems = expiredItemsByTarget.get(entry.target);
+			if (expiredItems == null) {
+				expiredItems = new ArrayList<>();
+				expiredItemsByTarget.put(entry.target, expiredItems);
+			}
+			expiredItems.add(entry.item);
+		}
+		for (Map.Entry<BatchTimerTarget, List<Object>> targetItems : expiredItemsByTarget.entrySet()) {
+			try {
+				targetItems.getKey().timersExpired(targetItems.getValue());
+			} catch (RuntimeException e) {
+				printException(e);
+			}
+		}
+
+		// Periodic entries are moved to their next bucket which lies in the future
+		long currentBucketNumber = bucketNumberOf(System.currentTimeMillis());
+		for (FireEntry entry : entries) {
+			if (entry.period == 0 || entry.isCancelled())
+				continue;
+			long nextBucketNumber = bucketNumberOf(bucket.bucketNumber * bucketDuration + entry.period);
+			if (nextBucketNumber <= currentBucketNumber) {
+				long periodInBuckets = entry.period / bucketDuration;
+				nextBucketNumber += ((currentBucketNumber - nextBucketNumber) / periodInBuckets + 1) * periodInBuckets;
+			}
+			addEntry(entry, nextBucketNumber);
+		}
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+
+	/**
+	 * Entries of one bucket. Canceled entries are removed lazily when they make
+	 * up half of the bucket.
+	 */
+	private final class Bucket {
+
+		private final long bucketNumber;
+		private List<FireEntry> entries = new ArrayList<>();
+		private int numberOfCancelledEntries;
+		private boolean closed;
+		private TimerHandle timer;
+
+		private Bucket(long bucketNumber) {
+			this.bucketNumber = bucketNumber;
+		}
+
+		/**
+		 * Adds an entry if the bucket has not fired yet.
+		 *
+		 * @param entry: Timer entry
+		 * @return true if added, false if the bucket is closed
+		 */
+		private synchronized boolean add(FireEntry entry) {
+			if (closed)
+				return false;
+			entries.add(entry);
+			entry.bucket = this;
+			return true;
+		}
+
+		/**
+		 * Counts a canceled entry and removes all canceled entries if they make up
+		 * half of the bucket. An empty bucket is removed with its timer.
+		 */
+		private synchronized void entryCancelled() {
+			if (closed)
+				return;
+			numberOfCancelledEntries++;
+			if (numberOfCancelledEntries * 2 < entries.size())
+				return;
+			List<FireEntry> activeEntries = new ArrayList<>(entries.size() - numberOfCancelledEntries);
+			for (FireEntry entry : entries) {
+				if (!entry.isCancelled())
+					activeEntries.add(entry);
+			}
+			entries = activeEntries;
+			numberOfCancelledEntries = 0;
+			if (entries.isEmpty()) {
+				closed = true;
+				buckets.remove(bucketNumber, this);
+				timer.cancel();
+			}
+		}
+
+		/**
+		 * Closes the bucket for firing.
+		 *
+		 * @return All entries of the bucket
+		 */
+		private synchronized List<FireEntry> close() {
+			closed = true;
+			return entries;
+		}
+	}
+
+	/**
+	 * Scheduled item in a bucket. This is the handle returned to the caller.
+	 */
+	private static final class FireEntry implements TimerHandle {
+
+		private static final int SCHEDULED = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<FireEntry> STATE_UPDATER = AtomicIntegerFieldUpdater
+				.newUpdater(FireEntry.class, "state");
+
+		@SuppressWarnings("rawtypes")
+		private final BatchTimerTarget target;
+		private final Object item;
+		private final long period;
+		private volatile int state = SCHEDULED;
+		/**
+		 * Current bucket of the entry
+		 */
+		private volatile Bucket bucket;
+
+		private FireEntry(BatchTimerTarget<?> target, Object item, long period) {
+			this.target = target;
+			this.item = item;
+			this.period = period;
+		}
+
+		@Override
+		public void cancel() {
+			if (STATE_UPDATER.compareAndSet(this, SCHEDULED, CANCELLED)) {
+				Bucket currentBucket = bucket;
+				if (currentBucket != null)
+					currentBucket.entryCancelled();
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * Marks a one-time entry as expired. Periodic entries stay scheduled.
+		 *
+		 * @return true if the entry has to be fired, otherwise false
+		 */
+		private boolean expire() {
+			if (period > 0)
+				return state == SCHEDULED;
+			return STATE_UPDATER.compareAndSet(this, SCHEDULED, EXPIRED);
+		}
+	}
+}
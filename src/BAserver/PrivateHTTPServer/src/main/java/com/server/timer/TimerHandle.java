@@ -0,0 +1,21 @@
+package com.server.timer;
+
+/**
+ * Handle of a task scheduled by the {@link TimingWheelScheduler}. It is used
+ * instead of a java.util.Timer object to cancel a scheduled task.
+ */
+public interface TimerHandle {
+
+	/**
+	 * Cancels the scheduled task. A canceled task will not be executed anymore.
+	 * Canceling an already canceled task has no effect.
+	 */
+	public void cancel();
+
+	/**
+	 * Checks whether the scheduled task has been canceled.
+	 * 
+	 * @return true if the task is canceled, otherwise false
+	 */
+	public boolean isCancelled();
+}
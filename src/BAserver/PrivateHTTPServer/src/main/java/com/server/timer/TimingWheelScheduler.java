@@ -0,0 +1,388 @@
+package com.server.timer;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * This class implements a hashed timing wheel that schedules the timer tasks of
+ * all clients of the server. One ticker thread advances the wheel tick by tick
+ * and hands expired tasks to a small pool of worker threads. Tasks whose
+ * deadline lies more than one wheel revolution ahead are kept with the number
+ * of remaining rounds in their bucket.
+ *
+ * Scheduling and canceling a task is O(1) and does not create any thread.
+ */
+public class TimingWheelScheduler {
+
+	/**
+	 * Duration of one tick in milliseconds. Remind services are normalized to whole
+	 * minutes, so one second is precise enough.
+	 */
+	private static final long DEFAULT_TICK_DURATION = 1000L;
+	/**
+	 * Number of buckets of the wheel (must be a power of two)
+	 */
+	private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+	/**
+	 * Number of worker threads executing expired tasks
+	 */
+	private static final int DEFAULT_NUM_OF_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Single scheduler instance shared by all client alarm managers
+	 */
+	private static TimingWheelScheduler schedulerInstance = new TimingWheelScheduler(DEFAULT_TICK_DURATION,
+			DEFAULT_TICKS_PER_WHEEL, DEFAULT_NUM_OF_WORKERS);
+
+	/**
+	 * Duration of one tick in milliseconds
+	 */
+	private final long tickDuration;
+	/**
+	 * Buckets of the wheel
+	 */
+	private final Bucket[] wheel;
+	/**
+	 * Mask to map a tick to its bucket
+	 */
+	private final int mask;
+	/**
+	 * Start time of the wheel in milliseconds, all ticks are relative to it
+	 */
+	private final long startTime;
+	/**
+	 * Newly scheduled entries that are moved into the wheel by the ticker thread
+	 */
+	private final Queue<TimerEntry> pendingEntries = new ConcurrentLinkedQueue<>();
+	/**
+	 * Canceled entries that are unlinked from their bucket by the ticker thread
+	 */
+	private final Queue<TimerEntry> cancelledEntries = new ConcurrentLinkedQueue<>();
+	/**
+	 * Worker threads to execute expired tasks
+	 */
+	private final ExecutorService workers;
+	/**
+	 * Thread advancing the wheel
+	 */
+	private final Thread ticker;
+	/**
+	 * Current tick, only accessed by the ticker thread
+	 */
+	private long tick;
+	/**
+	 * Flag to stop the ticker thread
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Creates and starts a timing wheel.
+	 *
+	 * @param tickDuration:    Duration of one tick in milliseconds
+	 * @param ticksPerWheel:   Number of buckets, rounded up to a power of two
+	 * @param numberOfWorkers: Number of threads executing expired tasks
+	 */
+	public TimingWheelScheduler(long tickDuration, int ticksPerWheel, int numberOfWorkers) {
+		if (tickDuration <= 0 || ticksPerWheel <= 0 || numberOfWorkers <= 0)
+			throw new IllegalArgumentException("Tick duration, ticks per wheel and workers must be positive");
+		this.tickDuration = tickDuration;
+		int normalizedTicksPerWheel = 1;
+		while (normalizedTicksPerWheel < ticksPerWheel)
+			normalizedTicksPerWheel <<= 1;
+		this.wheel = new Bucket[normalizedTicksPerWheel];
+		for (int i = 0; i < wheel.length; i++)
+			wheel[i] = new Bucket();
+		this.mask = wheel.length - 1;
+		this.workers = Executors.newFixedThreadPool(numberOfWorkers, createThreadFactory("TimingWheelWorker"));
+		this.startTime = System.currentTimeMillis();
+		this.ticker = createThreadFactory("TimingWheelTicker").newThread(this::advanceWheel);
+		this.ticker.start();
+	}
+
+	/**
+	 * Returns the single scheduler instance of the server.
+	 *
+	 * @return Timing wheel scheduler instance
+	 */
+	public static TimingWheelScheduler getSchedulerInstance() {
+		return schedulerInstance;
+	}
+
+	/**
+	 * Schedules a task for one execution at the time given. If the time lies in
+	 * the past, the task is executed with the next tick.
+	 *
+	 * @param task:     Task to execute
+	 * @param fireTime: Time of execution
+	 * @return Handle to cancel the task
+	 */
+	public TimerHandle schedule(Runnable task, Date fireTime) {
+		return addEntry(new TimerEntry(this, task, fireTime.getTime(), 0));
+	}
+
+	/**
+	 * Schedules a task for repeated fixed-rate execution starting at the time
+	 * given. Executions missed while the server was busy are coalesced into one.
+	 *
+	 * @param task:      Task to execute
+	 * @param firstTime: Time of the first execution
+	 * @param period:    Time between two executions in milliseconds
+	 * @return Handle to cancel the task
+	 */
+	public TimerHandle scheduleAtFixedRate(Runnable task, Date firstTime, long period) {
+		if (period <= 0)
+			throw new IllegalArgumentException("Period must be positive");
+		return addEntry(new TimerEntry(this, task, firstTime.getTime(), period));
+	}
+
+	/**
+	 * Stops the ticker and all worker threads. Scheduled tasks are not executed
+	 * anymore.
+	 */
+	public void close() {
+		running = false;
+		ticker.interrupt();
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Adds an entry to the pending entries which are moved into the wheel with the
+	 * next tick.
+	 *
+	 * @param entry: Timer entry
+	 * @return Timer entry as handle
+	 */
+	private TimerEntry addEntry(TimerEntry entry) {
+		if (!running)
+			throw new IllegalStateException("Timing wheel has been closed");
+		pendingEntries.add(entry);
+		return entry;
+	}
+
+	/**
+	 * Main loop of the ticker thread.
+	 */
+	private void advanceWheel() {
+		while (running) {
+			long deadline = startTime + (tick + 1) * tickDuration;
+			if (!waitUntil(deadline))
+				return;
+			removeCancelledEntries();
+			transferPendingEntries();
+			wheel[(int) (tick & mask)].expireEntries();
+			tick++;
+		}
+	}
+
+	/**
+	 * Sleeps until the deadline given is reached.
+	 *
+	 * @param deadline: Deadline in milliseconds
+	 * @return true if the deadline is reached, false if the wheel has been closed
+	 */
+	private boolean waitUntil(long deadline) {
+		long sleepTime;
+		while ((sleepTime = deadline - System.currentTimeMillis()) > 0) {
+			try {
+				Thread.sleep(sleepTime);
+			} catch (InterruptedException e) {
+				if (!running)
+					return false;
+			}
+		}
+		return running;
+	}
+
+	/**
+	 * Unlinks all canceled entries from their buckets.
+	 */
+	private void removeCancelledEntries() {
+		TimerEntry entry;
+		while ((entry = cancelledEntries.poll()) != null) {
+			if (entry.bucket != null)
+				entry.bucket.remove(entry);
+		}
+	}
+
+	/**
+	 * Moves all pending entries into the bucket of their deadline.
+	 */
+	private void transferPendingEntries() {
+		TimerEntry entry;
+		while ((entry = pendingEntries.poll()) != null) {
+			if (entry.state == TimerEntry.CANCELLED)
+				continue;
+			long calculatedTick = Math.max(0, (entry.deadline - startTime) / tickDuration);
+			entry.remainingRounds = (calculatedTick - tick) / wheel.length;
+			// Deadlines in the past are expired with the current tick
+			long bucketTick = Math.max(calculatedTick, tick);
+			wheel[(int) (bucketTick & mask)].add(entry);
+		}
+	}
+
+	/**
+	 * Executes the task of an expired entry on a worker thread and reschedules it
+	 * if it is periodic.
+	 *
+	 * @param entry: Expired entry
+	 */
+	private void fire(TimerEntry entry) {
+		try {
+			workers.execute(() -> {
+				if (entry.state == TimerEntry.CANCELLED)
+					return;
+				try {
+					entry.task.run();
+				} catch (RuntimeException e) {
+					printException(e);
+				}
+				if (entry.period > 0 && entry.state != TimerEntry.CANCELLED) {
+					entry.nextDeadline(System.currentTimeMillis());
+					pendingEntries.add(entry);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Wheel has been closed
+		}
+	}
+
+	private static ThreadFactory createThreadFactory(String threadName) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, threadName + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private void printException(Exception exception) {
+		System.out.println("EXCEPTION: " + exception);
+	}
+
+	/**
+	 * One bucket of the wheel, a doubly linked list of entries. Only accessed by the
+	 * ticker thread.
+	 */
+	private final class Bucket {
+
+		private TimerEntry head;
+		private TimerEntry tail;
+
+		private void add(TimerEntry entry) {
+			entry.bucket = this;
+			if (head == null) {
+				head = tail = entry;
+			} else {
+				tail.next = entry;
+				entry.prev = tail;
+				tail = entry;
+			}
+		}
+
+		private void remove(TimerEntry entry) {
+			if (entry.prev != null)
+				entry.prev.next = entry.next;
+			else
+				head = entry.next;
+			if (entry.next != null)
+				entry.next.prev = entry.prev;
+			else
+				tail = entry.prev;
+			entry.prev = null;
+			entry.next = null;
+			entry.bucket = null;
+		}
+
+		/**
+		 * Fires all entries of this bucket whose rounds are over.
+		 */
+		private void expireEntries() {
+			TimerEntry entry = head;
+			while (entry != null) {
+				TimerEntry next = entry.next;
+				if (entry.state == TimerEntry.CANCELLED) {
+					remove(entry);
+				} else if (entry.remainingRounds <= 0) {
+					remove(entry);
+					if (entry.expire())
+						fire(entry);
+				} else {
+					entry.remainingRounds--;
+				}
+				entry = next;
+			}
+		}
+	}
+
+	/**
+	 * Scheduled task in the wheel. This is the handle returned to the caller.
+	 */
+	private static final class TimerEntry implements TimerHandle {
+
+		private static final int SCHEDULED = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<TimerEntry> STATE_UPDATER = AtomicIntegerFieldUpdater
+				.newUpdater(TimerEntry.class, "state");
+
+		private final Runnable task;
+		private final long period;
+		private long deadline;
+		private long remainingRounds;
+		private volatile int state = SCHEDULED;
+		private TimerEntry next;
+		private TimerEntry prev;
+		private Bucket bucket;
+		private final TimingWheelScheduler scheduler;
+
+		private TimerEntry(TimingWheelScheduler scheduler, Runnable task, long deadline, long period) {
+			this.scheduler = scheduler;
+			this.task = task;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		@Override
+		public void cancel() {
+			if (STATE_UPDATER.compareAndSet(this, SCHEDULED, CANCELLED)) {
+				// Unlinking is done by the ticker thread
+				scheduler.cancelledEntries.add(this);
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * Marks a one-time entry as expired. Periodic entries stay scheduled.
+		 *
+		 * @return true if the entry has to be fired, otherwise false
+		 */
+		private boolean expire() {
+			if (period > 0)
+				return state == SCHEDULED;
+			return STATE_UPDATER.compareAndSet(this, SCHEDULED, EXPIRED);
+		}
+
+		/**
+		 * Calculates the next deadline of a periodic entry. Missed periods are
+		 * skipped.
+		 *
+		 * @param now: Current time in milliseconds
+		 */
+		private void nextDeadline(long now) {
+			deadline += period;
+			if (deadline <= now)
+				deadline += ((now - deadline) / period + 1) * period;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package test.com.server.alarmmanagement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.server.alarmmanagement.ClientAlarmManager;
+import com.server.model.BloodPressure;
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+
+public class Test_ClientAlarmManager {
+
+	@Test
+	public void batch_is_applied_in_order() {
+		ClientAlarmManager clientAlarmManager = new ClientAlarmManager(UUID.randomUUID());
+		Medicine canceledMedicine = new Medicine(8, 0);
+		canceledMedicine.setRemind(false);
+
+		clientAlarmManager.registerOrCancelRemindServices(Arrays.<RemindService>asList(new Medicine(8, 0),
+				new Medicine(20, 0), new BloodPressure(), canceledMedicine));
+
+		assertEquals(2, clientAlarmManager.getRegisteredRemindServices().size());
+		assertTrue(clientAlarmManager.getRegisteredRemindServices().contains(new Medicine(20, 0)));
+		clientAlarmManager.cancelAllRemindServices();
+	}
+}
@@ -0,0 +1,91 @@
+package test.com.server.alarmmanagement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.server.alarmmanagement.ForwardingClientAlarmManager;
+import com.server.forwarding.IForwarding;
+import com.server.forwarding.NotificationInfo;
+import com.server.model.Water;
+
+public class Test_ForwardingClientAlarmManager {
+
+	@Test
+	public void fired_notification_is_forwarded_without_polling() throws InterruptedException {
+		CountDownLatch forwarded = new CountDownLatch(1);
+		TestClientAlarmManager clientAlarmManager = new TestClientAlarmManager(notificationInfo -> {
+			assertFalse(notificationInfo.hasHighPriority());
+			forwarded.countDown();
+		});
+
+		// Water reminders start at the time of creation
+		clientAlarmManager.registerOrCancelRemindService(new Water());
+
+		assertTrue(forwarded.await(5, TimeUnit.SECONDS));
+		assertFalse(clientAlarmManager.anyNotificationAvailable());
+		assertEquals(1, clientAlarmManager.getRegisteredRemindServices().size());
+		clientAlarmManager.cancelAllRemindServices();
+	}
+
+	@Test
+	public void notification_stays_in_storage_while_forwarding_does_not_accept() throws InterruptedException {
+		CountDownLatch forwarded = new CountDownLatch(1);
+		CountDownLatch resumeRequested = new CountDownLatch(1);
+		AtomicReference<Runnable> resumeTask = new AtomicReference<>();
+		IForwarding saturatedForwarding = new IForwarding() {
+			@Override
+			public void forwardMessage(NotificationInfo notificationInfo) {
+				forwarded.countDown();
+			}
+
+			@Override
+			public boolean isAcceptingMessages() {
+				return resumeTask.get() == null;
+			}
+
+			@Override
+			public void whenAcceptingMessages(Runnable task) {
+				resumeTask.set(task);
+				resumeRequested.countDown();
+			}
+		};
+		// Saturated until the first resume task is registered
+		resumeTask.set(() -> {
+		});
+		TestClientAlarmManager clientAlarmManager = new TestClientAlarmManager(saturatedForwarding);
+		clientAlarmManager.registerOrCancelRemindService(new Water());
+
+		assertTrue(resumeRequested.await(5, TimeUnit.SECONDS));
+		assertTrue(clientAlarmManager.anyNotificationAvailable());
+		assertEquals(1L, forwarded.getCount());
+
+		// Forwarding has caught up
+		resumeTask.getAndSet(null).run();
+		assertTrue(forwarded.await(5, TimeUnit.SECONDS));
+		assertFalse(clientAlarmManager.anyNotificationAvailable());
+		clientAlarmManager.cancelAllRemindServices();
+	}
+
+	private static class TestClientAlarmManager extends ForwardingClientAlarmManager {
+
+		private final IForwarding forwarding;
+
+		TestClientAlarmManager(IForwarding forwarding) {
+			super(UUID.randomUUID());
+			this.forwarding = forwarding;
+		}
+
+		@Override
+		protected IForwarding getForwarding() {
+			return forwarding;
+		}
+	}
+}
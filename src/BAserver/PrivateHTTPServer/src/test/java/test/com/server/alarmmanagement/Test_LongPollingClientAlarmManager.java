@@ -0,0 +1,162 @@
+package test.com.server.alarmmanagement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.server.alarmmanagement.LongPollingClientAlarmManager;
+import com.server.alarmmanagement.NotificationStream;
+import com.server.alarmmanagement.NotificationWaiter;
+import com.server.forwarding.NotificationInfo;
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+
+public class Test_LongPollingClientAlarmManager {
+
+	/**
+	 * Stream which collects its events and breaks after a number of events
+	 */
+	private static class TestStream implements NotificationStream {
+
+		private final LinkedBlockingQueue<NotificationInfo> events = new LinkedBlockingQueue<>();
+		private final AtomicInteger remainingEvents;
+		private volatile boolean closed;
+
+		private TestStream(int eventsUntilBroken) {
+			remainingEvents = new AtomicInteger(eventsUntilBroken);
+		}
+
+		@Override
+		public boolean send(NotificationInfo notificationInfo) {
+			if (remainingEvents.getAndDecrement() <= 0)
+				return false;
+			events.add(notificationInfo);
+			return true;
+		}
+
+		@Override
+		public boolean sendHeartbeat() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		private NotificationInfo nextEvent() throws InterruptedException {
+			return events.poll(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private final LongPollingClientAlarmManager clientAlarmManager = new LongPollingClientAlarmManager(
+			UUID.randomUUID());
+
+	@After
+	public void tearDown() {
+		clientAlarmManager.cancelAllRemindServices();
+	}
+
+	@Test
+	public void fired_notifications_are_sent_to_open_stream_in_order() throws InterruptedException {
+		TestStream stream = new TestStream(Integer.MAX_VALUE);
+		clientAlarmManager.openStream(stream, NotificationStream.NO_LAST_EVENT_ID);
+
+		fire(new Medicine(8, 0));
+		fire(new Medicine(9, 0));
+
+		NotificationInfo first = stream.nextEvent();
+		NotificationInfo second = stream.nextEvent();
+		assertNotNull(first);
+		assertNotNull(second);
+		assertTrue(first.getMessageId() < second.getMessageId());
+		// Stream stays open for the next notifications
+		assertFalse(stream.closed);
+	}
+
+	@Test
+	public void reconnected_stream_gets_missed_events_first() throws InterruptedException {
+		TestStream lostStream = new TestStream(Integer.MAX_VALUE);
+		clientAlarmManager.openStream(lostStream, NotificationStream.NO_LAST_EVENT_ID);
+		fire(new Medicine(8, 0));
+		fire(new Medicine(9, 0));
+		NotificationInfo received = lostStream.nextEvent();
+		NotificationInfo missed = lostStream.nextEvent();
+		assertNotNull(missed);
+
+		TestStream stream = new TestStream(Integer.MAX_VALUE);
+		clientAlarmManager.openStream(stream, received.getMessageId());
+		fire(new Medicine(10, 0));
+
+		assertTrue(lostStream.closed);
+		assertEquals(missed.getMessageId(), stream.nextEvent().getMessageId());
+		NotificationInfo next = stream.nextEvent();
+		assertNotNull(next);
+		assertTrue(next.getMessageId() > missed.getMessageId());
+	}
+
+	@Test
+	public void event_not_sent_on_broken_stream_is_replayed() throws InterruptedException {
+		TestStream brokenStream = new TestStream(1);
+		clientAlarmManager.openStream(brokenStream, NotificationStream.NO_LAST_EVENT_ID);
+		fire(new Medicine(8, 0));
+		NotificationInfo received = brokenStream.nextEvent();
+		assertNotNull(received);
+
+		fire(new Medicine(9, 0));
+		for (int i = 0; i < 50 && !brokenStream.closed; i++)
+			Thread.sleep(100);
+		assertTrue(brokenStream.closed);
+
+		TestStream stream = new TestStream(Integer.MAX_VALUE);
+		clientAlarmManager.openStream(stream, received.getMessageId());
+		NotificationInfo replayed = stream.nextEvent();
+		assertNotNull(replayed);
+		assertTrue(replayed.getMessageId() > received.getMessageId());
+		assertNull(stream.events.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void event_not_sent_on_broken_stream_is_delivered_to_next_request() throws InterruptedException {
+		TestStream brokenStream = new TestStream(0);
+		clientAlarmManager.openStream(brokenStream, NotificationStream.NO_LAST_EVENT_ID);
+		fire(new Medicine(8, 0));
+		for (int i = 0; i < 50 && !brokenStream.closed; i++)
+			Thread.sleep(100);
+		assertTrue(brokenStream.closed);
+
+		// The client falls back to a request
+		LinkedBlockingQueue<NotificationInfo> delivered = new LinkedBlockingQueue<>();
+		clientAlarmManager.waitForNotification(new NotificationWaiter() {
+			@Override
+			public void deliver(NotificationInfo notificationInfo) {
+				delivered.add(notificationInfo);
+			}
+
+			@Override
+			public void release() {
+			}
+		});
+		assertNotNull(delivered.poll(5, TimeUnit.SECONDS));
+
+		// Not kept as recent event, so a new stream does not get it twice
+		TestStream stream = new TestStream(Integer.MAX_VALUE);
+		clientAlarmManager.openStream(stream, 0);
+		assertNull(stream.events.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	private void fire(RemindService remindService) {
+		clientAlarmManager.timersExpired(Collections.singletonList(remindService));
+	}
+}
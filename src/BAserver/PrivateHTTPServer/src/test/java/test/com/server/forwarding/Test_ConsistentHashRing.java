@@ -0,0 +1,59 @@
+package test.com.server.forwarding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.server.forwarding.ConsistentHashRing;
+
+public class Test_ConsistentHashRing {
+
+	private static final int NUMBER_OF_CLIENTS = 10000;
+
+	@Test
+	public void clients_are_spread_over_all_nodes() {
+		ConsistentHashRing ring = new ConsistentHashRing(
+				Arrays.asList("localhost:83", "localhost:84", "localhost:85", "localhost:86"));
+		Map<String, Integer> clientsPerNode = new HashMap<>();
+		for (int i = 0; i < NUMBER_OF_CLIENTS; i++)
+			clientsPerNode.merge(ring.getOwner(UUID.randomUUID()), 1, Integer::sum);
+
+		assertEquals(4, clientsPerNode.size());
+		for (int numberOfClients : clientsPerNode.values())
+			assertTrue("Clients of a node: " + numberOfClients, numberOfClients > NUMBER_OF_CLIENTS / 8);
+	}
+
+	@Test
+	public void joining_node_only_takes_over_clients() {
+		ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("localhost:83", "localhost:84", "localhost:85"));
+		// Order of the nodes does not matter
+		ConsistentHashRing largerRing = new ConsistentHashRing(
+				Arrays.asList("localhost:86", "localhost:85", "localhost:84", "localhost:83"));
+		int numberOfMovedClients = 0;
+		for (int i = 0; i < NUMBER_OF_CLIENTS; i++) {
+			UUID clientId = UUID.randomUUID();
+			String newOwner = largerRing.getOwner(clientId);
+			if (!newOwner.equals(ring.getOwner(clientId))) {
+				assertEquals("localhost:86", newOwner);
+				numberOfMovedClients++;
+			}
+		}
+		// About a quarter of the clients moves to the new node
+		assertTrue("Moved clients: " + numberOfMovedClients,
+				numberOfMovedClients > NUMBER_OF_CLIENTS / 8 && numberOfMovedClients < NUMBER_OF_CLIENTS / 2);
+	}
+
+	@Test
+	public void node_address_is_parsed() {
+		assertEquals(Arrays.asList("localhost:83", "10.0.2.2:84"),
+				ConsistentHashRing.parseNodes(" localhost:83, 10.0.2.2:84,"));
+		assertEquals("10.0.2.2", ConsistentHashRing.getHost("10.0.2.2:84"));
+		assertEquals(84, ConsistentHashRing.getPort("10.0.2.2:84"));
+	}
+}
@@ -0,0 +1,110 @@
+package test.com.server.forwarding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.server.forwarding.FCMBatchSender;
+import com.server.forwarding.FCMMessage;
+import com.server.forwarding.FCMSendResult;
+import com.server.forwarding.LocalFCMMessagingBackend;
+
+public class Test_FCMBatchSender {
+
+	@Test
+	public void messages_of_all_clients_are_sent_in_batches() {
+		LocalFCMMessagingBackend backend = new LocalFCMMessagingBackend(0);
+		FCMBatchSender sender = new FCMBatchSender(backend, 200, 4, 10000);
+		List<CompletableFuture<FCMSendResult>> results = new ArrayList<>();
+		for (int i = 0; i < 1200; i++)
+			results.add(sender.send(new FCMMessage("token-" + i, "Medicine", true)));
+		for (CompletableFuture<FCMSendResult> result : results)
+			assertTrue(result.join().isSuccessful());
+
+		assertEquals(1200, backend.getSentMessages().size());
+		// At most 500 messages per call
+		assertTrue(backend.getNumberOfCalls() >= 3);
+		assertTrue(backend.getNumberOfCalls() <= 4);
+		sender.close();
+	}
+
+	@Test
+	public void results_are_mapped_back_to_their_messages() {
+		LocalFCMMessagingBackend backend = new LocalFCMMessagingBackend(0);
+		backend.addInvalidToken("expired");
+		FCMBatchSender sender = new FCMBatchSender(backend, 50, 4, 10000);
+		CompletableFuture<FCMSendResult> firstResult = sender.send(new FCMMessage("first", "Water", false));
+		CompletableFuture<FCMSendResult> expiredResult = sender.send(new FCMMessage("expired", "Water", false));
+		CompletableFuture<FCMSendResult> lastResult = sender.send(new FCMMessage("last", "Water", false));
+
+		assertTrue(firstResult.join().isSuccessful());
+		assertFalse(expiredResult.join().isSuccessful());
+		assertTrue(lastResult.join().isSuccessful());
+		assertEquals("first", backend.getSentMessages().get(0).getRegistrationToken());
+		assertEquals("last", backend.getSentMessages().get(1).getRegistrationToken());
+		sender.close();
+	}
+
+	@Test
+	public void messages_fail_after_close() {
+		FCMBatchSender sender = new FCMBatchSender(new LocalFCMMessagingBackend(0), 50, 4, 10000);
+		sender.close();
+		assertFalse(sender.send(new FCMMessage("token", "Water", false)).join().isSuccessful());
+	}
+
+	@Test
+	public void messages_sent_while_closing_are_completed() throws Exception {
+		FCMBatchSender sender = new FCMBatchSender(new LocalFCMMessagingBackend(0), 50, 4, 100000);
+		List<CompletableFuture<FCMSendResult>> results = new ArrayList<>();
+		Thread sendingThread = new Thread(() -> {
+			for (int i = 0; i < 20000; i++)
+				results.add(sender.send(new FCMMessage("token-" + i, "Water", false)));
+		});
+		sendingThread.start();
+		Thread.sleep(5);
+		sender.close();
+		sendingThread.join();
+		for (CompletableFuture<FCMSendResult> result : results)
+			result.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void number_of_batches_in_flight_is_limited() {
+		LocalFCMMessagingBackend backend = new LocalFCMMessagingBackend(50);
+		FCMBatchSender sender = new FCMBatchSender(backend, 0, 2, 100000);
+		List<CompletableFuture<FCMSendResult>> results = new ArrayList<>();
+		for (int i = 0; i < 5000; i++)
+			results.add(sender.send(new FCMMessage("token-" + i, "Water", false)));
+		for (CompletableFuture<FCMSendResult> result : results)
+			assertTrue(result.join().isSuccessful());
+
+		assertEquals(2, backend.getMaxNumberOfCallsInFlight());
+		sender.close();
+		backend.close();
+	}
+
+	@Test
+	public void sender_stops_accepting_messages_at_limit_and_resumes() throws InterruptedException {
+		LocalFCMMessagingBackend backend = new LocalFCMMessagingBackend(100);
+		FCMBatchSender sender = new FCMBatchSender(backend, 0, 1, 1000);
+		for (int i = 0; i < 1000; i++)
+			sender.send(new FCMMessage("token-" + i, "Water", false));
+		assertFalse(sender.isAcceptingMessages());
+
+		CountDownLatch resumed = new CountDownLatch(1);
+		sender.whenAcceptingMessages(resumed::countDown);
+		assertEquals(1L, resumed.getCount());
+		assertTrue(resumed.await(5, TimeUnit.SECONDS));
+		assertTrue(sender.getNumberOfPendingMessages() <= 500);
+		sender.close();
+		backend.close();
+	}
+}
@@ -0,0 +1,106 @@
+package test.com.server.forwarding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.server.forwarding.PMSNCluster;
+import com.server.forwarding.PMSNFrame;
+
+public class Test_PMSNCluster {
+
+	@Test
+	public void push_goes_to_owner_node() throws IOException {
+		try (ServerSocket node1 = new ServerSocket(0); ServerSocket node2 = new ServerSocket(0)) {
+			String address1 = "localhost:" + node1.getLocalPort();
+			String address2 = "localhost:" + node2.getLocalPort();
+			PMSNCluster cluster = new PMSNCluster(Arrays.asList(address1, address2), 1);
+			// Find a client of each node
+			UUID clientOfNode1;
+			do {
+				clientOfNode1 = UUID.randomUUID();
+			} while (!cluster.getOwner(clientOfNode1).equals(address1));
+			UUID clientOfNode2;
+			do {
+				clientOfNode2 = UUID.randomUUID();
+			} while (!cluster.getOwner(clientOfNode2).equals(address2));
+
+			cluster.send(clientOfNode1, "For node 1", false);
+			cluster.send(clientOfNode2, "For node 2", false);
+
+			try (Socket connection1 = node1.accept(); Socket connection2 = node2.accept()) {
+				PMSNFrame frame = new PMSNFrame();
+				assertTrue(frame.readFrom(openBinaryConnection(connection1)));
+				assertEquals(clientOfNode1.getLeastSignificantBits(), frame.getClientIdLeastSignificantBits());
+				assertEquals("For node 1", getPayload(frame));
+				assertTrue(frame.readFrom(openBinaryConnection(connection2)));
+				assertEquals(clientOfNode2.getLeastSignificantBits(), frame.getClientIdLeastSignificantBits());
+				assertEquals("For node 2", getPayload(frame));
+			}
+			cluster.close();
+		}
+	}
+
+	@Test
+	public void broadcast_goes_to_all_nodes() throws IOException {
+		try (ServerSocket node1 = new ServerSocket(0); ServerSocket node2 = new ServerSocket(0)) {
+			PMSNCluster cluster = new PMSNCluster(
+					Arrays.asList("localhost:" + node1.getLocalPort(), "localhost:" + node2.getLocalPort()), 1);
+			cluster.broadcast("announcements", "To everybody", false);
+
+			for (ServerSocket node : new ServerSocket[] { node1, node2 }) {
+				try (Socket connection = node.accept()) {
+					PMSNFrame frame = new PMSNFrame();
+					assertTrue(frame.readFrom(openBinaryConnection(connection)));
+					assertEquals(PMSNFrame.TYPE_BROADCAST, frame.getType());
+					assertEquals("To everybody", getPayload(frame));
+				}
+			}
+			cluster.close();
+		}
+	}
+
+	@Test
+	public void left_node_gets_no_pushes() throws IOException {
+		try (ServerSocket node1 = new ServerSocket(0)) {
+			String address1 = "localhost:" + node1.getLocalPort();
+			PMSNCluster cluster = new PMSNCluster(Arrays.asList(address1, "localhost:1"), 1);
+			cluster.setNodes(Arrays.asList(address1));
+			UUID clientId = UUID.randomUUID();
+			assertEquals(address1, cluster.getOwner(clientId));
+
+			cluster.send(clientId, "Only node left", false);
+			try (Socket connection = node1.accept()) {
+				PMSNFrame frame = new PMSNFrame();
+				assertTrue(frame.readFrom(openBinaryConnection(connection)));
+				assertEquals("Only node left", getPayload(frame));
+			}
+			cluster.close();
+		}
+	}
+
+	/**
+	 * Reads the magic byte and the version a binary connection starts with.
+	 */
+	private static DataInputStream openBinaryConnection(Socket connection) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+		assertEquals(PMSNFrame.MAGIC, in.read());
+		assertEquals(PMSNFrame.VERSION, in.read());
+		return in;
+	}
+
+	private static String getPayload(PMSNFrame frame) {
+		return new String(frame.getBuffer(), frame.getPayloadOffset(), frame.getPayloadLength(),
+				StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,154 @@
+package test.com.server.forwarding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.server.forwarding.PMSNConnectionPool;
+import com.server.forwarding.PMSNFrame;
+
+public class Test_PMSNConnectionPool {
+
+	@Test
+	public void messages_are_pipelined_on_one_connection() throws IOException {
+		try (ServerSocket pmsn = new ServerSocket(0)) {
+			PMSNConnectionPool pool = new PMSNConnectionPool("localhost", pmsn.getLocalPort(), 1);
+			UUID clientId = UUID.randomUUID();
+			for (int i = 0; i < 100; i++)
+				pool.send(clientId, "Notification " + i, i % 2 == 0);
+
+			try (Socket connection = pmsn.accept()) {
+				DataInputStream in = openBinaryConnection(connection);
+				PMSNFrame frame = new PMSNFrame();
+				for (int i = 0; i < 100; i++) {
+					assertTrue(frame.readFrom(in));
+					assertEquals(PMSNFrame.TYPE_PUSH, frame.getType());
+					assertEquals(clientId.getMostSignificantBits(), frame.getClientIdMostSignificantBits());
+					assertEquals(clientId.getLeastSignificantBits(), frame.getClientIdLeastSignificantBits());
+					assertEquals(i % 2 == 0 ? PMSNFrame.FLAG_HIGH_PRIORITY : 0, frame.getFlags());
+					assertEquals("Notification " + i, getPayload(frame));
+				}
+				pool.close();
+				// Only one connection for all messages
+				assertFalse(frame.readFrom(in));
+			}
+		}
+	}
+
+	@Test
+	public void broadcast_carries_topic_id() throws IOException {
+		try (ServerSocket pmsn = new ServerSocket(0)) {
+			PMSNConnectionPool pool = new PMSNConnectionPool("localhost", pmsn.getLocalPort(), 1);
+			pool.broadcast("announcements", "Maintenance tonight", true);
+
+			try (Socket connection = pmsn.accept()) {
+				DataInputStream in = openBinaryConnection(connection);
+				PMSNFrame frame = new PMSNFrame();
+				assertTrue(frame.readFrom(in));
+				UUID topicId = PMSNFrame.getTopicId("announcements");
+				assertEquals(PMSNFrame.TYPE_BROADCAST, frame.getType());
+				assertEquals(topicId.getMostSignificantBits(), frame.getClientIdMostSignificantBits());
+				assertEquals(topicId.getLeastSignificantBits(), frame.getClientIdLeastSignificantBits());
+				assertEquals(PMSNFrame.FLAG_HIGH_PRIORITY, frame.getFlags());
+				assertEquals("Maintenance tonight", getPayload(frame));
+			}
+			pool.close();
+		}
+	}
+
+	@Test
+	public void acknowledgements_are_read_on_listening_connection() throws IOException, InterruptedException {
+		try (ServerSocket pmsn = new ServerSocket(0)) {
+			List<Long> acknowledgedMessageIds = new CopyOnWriteArrayList<>();
+			UUID clientId = UUID.randomUUID();
+			PMSNConnectionPool pool = new PMSNConnectionPool("localhost", pmsn.getLocalPort(), 1,
+					(acknowledgingClientId, messageId) -> {
+						if (acknowledgingClientId.equals(clientId))
+							acknowledgedMessageIds.add(messageId);
+					});
+			pool.send(clientId, "Medicine", true, 42);
+
+			try (Socket connection = pmsn.accept()) {
+				DataInputStream in = openBinaryConnection(connection);
+				PMSNFrame frame = new PMSNFrame();
+				assertTrue(frame.readFrom(in));
+				assertEquals(PMSNFrame.TYPE_LISTEN_ACKS, frame.getType());
+				assertTrue(frame.readFrom(in));
+				assertEquals(PMSNFrame.TYPE_PUSH, frame.getType());
+				assertEquals((byte) (PMSNFrame.FLAG_HIGH_PRIORITY | PMSNFrame.FLAG_MESSAGE_ID), frame.getFlags());
+				assertEquals(42L, frame.getPayloadLong());
+				assertEquals("Medicine", new String(frame.getBuffer(), frame.getPayloadOffset() + 8,
+						frame.getPayloadLength() - 8, StandardCharsets.UTF_8));
+
+				// PMSN relays the acknowledgement of the receiver
+				OutputStream out = connection.getOutputStream();
+				byte[] messageId = ByteBuffer.allocate(8).putLong(42).array();
+				PMSNFrame.write(out, new byte[4 + PMSNFrame.HEADER_SIZE], PMSNFrame.TYPE_ACK,
+						clientId.getMostSignificantBits(), clientId.getLeastSignificantBits(), (byte) 0, messageId, 0,
+						messageId.length);
+				out.flush();
+				long deadline = System.currentTimeMillis() + 2000;
+				while (acknowledgedMessageIds.isEmpty() && System.currentTimeMillis() < deadline)
+					Thread.sleep(10);
+				assertEquals(1, acknowledgedMessageIds.size());
+				assertEquals(42L, (long) acknowledgedMessageIds.get(0));
+			}
+			pool.close();
+		}
+	}
+
+	@Test
+	public void failed_connection_is_opened_again() throws IOException {
+		int port;
+		try (ServerSocket pmsn = new ServerSocket(0)) {
+			port = pmsn.getLocalPort();
+		}
+		PMSNConnectionPool pool = new PMSNConnectionPool("localhost", port, 1);
+		UUID clientId = UUID.randomUUID();
+		try {
+			pool.send(clientId, "Lost", false);
+		} catch (IOException e) {
+			// PMSN is not running
+		}
+
+		try (ServerSocket pmsn = new ServerSocket(port)) {
+			pool.send(clientId, "Delivered", false);
+			try (Socket connection = pmsn.accept()) {
+				DataInputStream in = openBinaryConnection(connection);
+				PMSNFrame frame = new PMSNFrame();
+				assertTrue(frame.readFrom(in));
+				assertEquals("Delivered", getPayload(frame));
+			}
+			pool.close();
+		}
+	}
+
+	/**
+	 * Reads the magic byte and the version a binary connection starts with.
+	 */
+	private static DataInputStream openBinaryConnection(Socket connection) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+		assertEquals(PMSNFrame.MAGIC, in.read());
+		assertEquals(PMSNFrame.VERSION, in.read());
+		return in;
+	}
+
+	private static String getPayload(PMSNFrame frame) {
+		return new String(frame.getBuffer(), frame.getPayloadOffset(), frame.getPayloadLength(),
+				StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,57 @@
+package test.com.server.forwarding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.server.forwarding.PMSNFrame;
+
+public class Test_PMSNFrame {
+
+	@Test
+	public void written_frames_are_read_with_one_frame_object() throws IOException {
+		UUID clientId = UUID.randomUUID();
+		byte[] headerBuffer = new byte[4 + PMSNFrame.HEADER_SIZE];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] first = "Medicine \u00e4".getBytes(StandardCharsets.UTF_8);
+		PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_PUSH, clientId.getMostSignificantBits(),
+				clientId.getLeastSignificantBits(), PMSNFrame.FLAG_HIGH_PRIORITY, first, 0, first.length);
+		PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_REGISTER_RECEIVER, clientId.getMostSignificantBits(),
+				clientId.getLeastSignificantBits(), (byte) 0, new byte[0], 0, 0);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		PMSNFrame frame = new PMSNFrame();
+		assertTrue(frame.readFrom(in));
+		assertEquals(PMSNFrame.TYPE_PUSH, frame.getType());
+		assertEquals(clientId, new UUID(frame.getClientIdMostSignificantBits(), frame.getClientIdLeastSignificantBits()));
+		assertEquals(PMSNFrame.FLAG_HIGH_PRIORITY, frame.getFlags());
+		assertEquals("Medicine \u00e4", new String(frame.getBuffer(), frame.getPayloadOffset(),
+				frame.getPayloadLength(), StandardCharsets.UTF_8));
+
+		assertTrue(frame.readFrom(in));
+		assertEquals(PMSNFrame.TYPE_REGISTER_RECEIVER, frame.getType());
+		assertEquals(0, frame.getPayloadLength());
+		assertFalse(frame.readFrom(in));
+	}
+
+	@Test
+	public void invalid_frame_length_is_rejected() {
+		byte[] tooLarge = { 0x7F, 0, 0, 0 };
+		try {
+			new PMSNFrame().readFrom(new DataInputStream(new ByteArrayInputStream(tooLarge)));
+			fail("Invalid frame has been read");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+}
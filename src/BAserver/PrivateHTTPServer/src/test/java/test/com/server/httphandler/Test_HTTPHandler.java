@@ -0,0 +1,167 @@
+package test.com.server.httphandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.server.httphandler.HTTPHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class Test_HTTPHandler {
+
+	/**
+	 * Answers with the line of the request, or without a response if the line is
+	 * empty
+	 */
+	private static class EchoHandler extends HTTPHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) {
+			setExchange(exchange);
+			try {
+				String line = readLine();
+				if (line != null && !line.isEmpty())
+					sendResponse(line);
+			} catch (IOException e) {
+				printException(e);
+			}
+			closeHTTPExchange();
+		}
+	}
+
+	private HttpServer httpServer;
+	private ExecutorService executorService;
+
+	@Before
+	public void setUp() throws IOException {
+		httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		httpServer.createContext("/", HTTPHandler.newHandlerPerExchange(EchoHandler::new));
+		// Exchanges are handled at the same time like in the private HTTP servers
+		executorService = Executors.newFixedThreadPool(16);
+		httpServer.setExecutor(executorService);
+		httpServer.start();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		httpServer.stop(0);
+		executorService.shutdown();
+		executorService.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void responses_on_kept_alive_connection_have_byte_length() throws IOException {
+		try (Socket socket = new Socket("localhost", httpServer.getAddress().getPort())) {
+			socket.setSoTimeout(5000);
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+
+			sendRequest(out, "Wasser trinken \u00fcberf\u00e4llig");
+			assertEquals("200|Wasser trinken \u00fcberf\u00e4llig", readResponse(in));
+			// Same connection for the next request
+			sendRequest(out, "Medicine");
+			assertEquals("200|Medicine", readResponse(in));
+		}
+	}
+
+	@Test
+	public void exchange_without_response_gets_error_and_connection_is_kept_alive() throws IOException {
+		try (Socket socket = new Socket("localhost", httpServer.getAddress().getPort())) {
+			socket.setSoTimeout(5000);
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+
+			sendRequest(out, "");
+			assertEquals("400|", readResponse(in));
+			sendRequest(out, "Water");
+			assertEquals("200|Water", readResponse(in));
+		}
+	}
+
+	@Test
+	public void exchanges_handled_at_the_same_time_get_their_own_response() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int c = 0; c < 16; c++) {
+				String clientName = "Client " + c;
+				results.add(clients.submit(() -> {
+					try (Socket socket = new Socket("localhost", httpServer.getAddress().getPort())) {
+						socket.setSoTimeout(5000);
+						for (int r = 0; r < 50; r++) {
+							sendRequest(socket.getOutputStream(), clientName + " request " + r);
+							assertEquals("200|" + clientName + " request " + r, readResponse(socket.getInputStream()));
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results)
+				result.get();
+		} finally {
+			clients.shutdownNow();
+		}
+	}
+
+	private void sendRequest(OutputStream out, String line) throws IOException {
+		byte[] body = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		String header = "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length + "\r\n\r\n";
+		out.write(header.getBytes(StandardCharsets.US_ASCII));
+		out.write(body);
+		out.flush();
+	}
+
+	/**
+	 * Reads a response with its content length.
+	 * 
+	 * @return Status code and body separated with "|"
+	 */
+	private String readResponse(InputStream in) throws IOException {
+		String statusLine = readHeaderLine(in);
+		int contentLength = 0;
+		String headerLine;
+		while (!(headerLine = readHeaderLine(in)).isEmpty()) {
+			if (headerLine.toLowerCase().startsWith("content-length:"))
+				contentLength = Integer.parseInt(headerLine.substring("content-length:".length()).trim());
+			assertTrue(!headerLine.equalsIgnoreCase("Connection: close"));
+		}
+		byte[] body = new byte[contentLength];
+		int read = 0;
+		while (read < contentLength) {
+			int n = in.read(body, read, contentLength - read);
+			assertTrue(n > 0);
+			read += n;
+		}
+		return statusLine.split(" ")[1] + "|" + new String(body, StandardCharsets.UTF_8);
+	}
+
+	private String readHeaderLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != '\n') {
+			assertTrue(b != -1);
+			if (b != '\r')
+				line.write(b);
+		}
+		return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+	}
+}
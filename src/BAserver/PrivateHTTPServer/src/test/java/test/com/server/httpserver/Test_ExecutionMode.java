@@ -0,0 +1,86 @@
+package test.com.server.httpserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.server.httpserver.ExecutionMode;
+
+public class Test_ExecutionMode {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(ExecutionMode.EXECUTION_MODE_PROPERTY);
+	}
+
+	@Test
+	public void platform_threads_are_selected_by_default() {
+		assertEquals(ExecutionMode.PLATFORM_THREADS, ExecutionMode.getExecutionMode());
+	}
+
+	@Test
+	public void virtual_threads_are_only_selected_if_supported() {
+		System.setProperty(ExecutionMode.EXECUTION_MODE_PROPERTY, "virtual");
+		ExecutionMode expected = ExecutionMode.isVirtualThreadSupported() ? ExecutionMode.VIRTUAL_THREADS
+				: ExecutionMode.PLATFORM_THREADS;
+		assertEquals(expected, ExecutionMode.getExecutionMode());
+	}
+
+	@Test
+	public void platform_executor_is_limited_to_its_threads() throws InterruptedException {
+		ExecutorService executorService = ExecutionMode.PLATFORM_THREADS.newExecutor("Test", 2, true);
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		AtomicReference<String> threadName = new AtomicReference<>();
+		CountDownLatch finished = new CountDownLatch(10);
+		for (int i = 0; i < 10; i++) {
+			executorService.execute(() -> {
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				threadName.set(Thread.currentThread().getName());
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				active.decrementAndGet();
+				finished.countDown();
+			});
+		}
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		executorService.shutdown();
+		assertEquals(2, maxActive.get());
+		assertTrue(threadName.get().startsWith("Test-"));
+	}
+
+	@Test
+	public void virtual_executor_runs_blocking_tasks_at_once_if_supported() throws InterruptedException {
+		if (!ExecutionMode.isVirtualThreadSupported())
+			return;
+		ExecutorService executorService = ExecutionMode.VIRTUAL_THREADS.newExecutor("Test", 2, true);
+		CountDownLatch allStarted = new CountDownLatch(1000);
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 1000; i++) {
+			executorService.execute(() -> {
+				allStarted.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		// All tasks block at once, far more than the platform threads
+		assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
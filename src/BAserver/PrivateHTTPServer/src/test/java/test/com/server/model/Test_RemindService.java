@@ -72,6 +72,16 @@ public class Test_RemindService {
 		assertFalse(medicine2.equals(medicine1));
 	}
 
+	@Test
+	public void equal_remindServices_have_equal_hashCodes() {
+		assertTrue(new Water().hashCode() == new Water().hashCode());
+		assertTrue(new BloodPressure().hashCode() == new BloodPressure().hashCode());
+		assertTrue(new Medicine(10, 10).hashCode() == new Medicine(10, 10).hashCode());
+		DocAppointment docAppointment1 = new DocAppointment((new Date()).getTime(), 10, 10);
+		DocAppointment docAppointment2 = new DocAppointment((new Date()).getTime(), 10, 10);
+		assertTrue(docAppointment1.hashCode() == docAppointment2.hashCode());
+	}
+
 	@Test
 	public void format_and_parse_date() {
 		Water water = new Water();
@@ -0,0 +1,157 @@
+package test.com.server.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.server.model.Medicine;
+import com.server.model.Water;
+import com.server.persistence.JournalRecord;
+import com.server.persistence.RecoveredClients;
+import com.server.persistence.RecoveredClients.RecoveredClient;
+import com.server.persistence.RegistrationJournal;
+
+public class Test_RegistrationJournal {
+
+	private File journalDirectory;
+
+	@Before
+	public void createJournalDirectory() throws IOException {
+		journalDirectory = Files.createTempDirectory("journal").toFile();
+	}
+
+	@After
+	public void deleteJournalDirectory() {
+		File[] files = journalDirectory.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		journalDirectory.delete();
+	}
+
+	@Test
+	public void appended_records_are_replayed_in_order() throws IOException {
+		UUID clientId = UUID.randomUUID();
+		RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		journal.append(JournalRecord.newClient(clientId));
+		journal.appendAll(Arrays.asList(JournalRecord.token(clientId, "token-1"),
+				JournalRecord.token(clientId, "t\u00f6ken-2")));
+		journal.close();
+
+		List<JournalRecord> records = replay(new RegistrationJournal(journalDirectory));
+		assertEquals(3, records.size());
+		assertEquals(JournalRecord.NEW_CLIENT, records.get(0).getType());
+		assertEquals(clientId, records.get(0).getClientId());
+		assertEquals("t\u00f6ken-2", records.get(2).getPayload());
+	}
+
+	@Test
+	public void reopened_journal_continues_in_new_segment() throws IOException {
+		RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		journal.append(JournalRecord.newClient(UUID.randomUUID()));
+		journal.close();
+		journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		journal.append(JournalRecord.newClient(UUID.randomUUID()));
+		journal.close();
+
+		assertEquals(2, journalDirectory.listFiles().length);
+		assertEquals(2, replay(journal).size());
+	}
+
+	@Test
+	public void torn_record_at_end_is_ignored() throws IOException {
+		RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		journal.append(JournalRecord.newClient(UUID.randomUUID()));
+		journal.append(JournalRecord.token(UUID.randomUUID(), "token"));
+		journal.close();
+
+		// Simulate a crash while the last record was written
+		File segment = journalDirectory.listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+		assertEquals(1, replay(journal).size());
+	}
+
+	@Test
+	public void recovered_clients_keep_last_state_only() throws IOException {
+		UUID clientId = UUID.randomUUID();
+		Medicine canceledMedicine = new Medicine(8, 0);
+		canceledMedicine.setRemind(false);
+		RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		journal.appendAll(Arrays.asList(JournalRecord.newClient(clientId),
+				JournalRecord.remindService(clientId, new Water()),
+				JournalRecord.remindService(clientId, new Medicine(8, 0)),
+				JournalRecord.remindService(clientId, new Medicine(9, 0)),
+				JournalRecord.remindService(clientId, canceledMedicine)));
+		journal.close();
+
+		RecoveredClients recoveredClients = new RecoveredClients();
+		journal.replay(recoveredClients::apply);
+		recoveredClients.parseRemindServices();
+		assertEquals(1, recoveredClients.size());
+		RecoveredClient recoveredClient = recoveredClients.getRecoveredClients().iterator().next();
+		assertEquals(clientId, recoveredClient.getClientId());
+		assertNull(recoveredClient.getToken());
+		assertEquals(2, recoveredClient.getRemindServices().size());
+	}
+
+	@Test
+	public void records_appended_while_closing_are_not_lost() throws Exception {
+		RegistrationJournal journal = new RegistrationJournal(journalDirectory);
+		journal.open();
+		AtomicInteger written = new AtomicInteger();
+		List<Exception> failures = new ArrayList<>();
+		Thread[] appenders = new Thread[8];
+		for (int i = 0; i < appenders.length; i++) {
+			appenders[i] = new Thread(() -> {
+				try {
+					while (true) {
+						journal.append(JournalRecord.newClient(UUID.randomUUID()));
+						written.incrementAndGet();
+					}
+				} catch (IOException e) {
+					// Only appends after closing fail
+					if (!"Journal is not open".equals(e.getMessage()))
+						synchronized (failures) {
+							failures.add(e);
+						}
+				}
+			});
+			appenders[i].start();
+		}
+		Thread.sleep(200);
+		journal.close();
+		for (Thread appender : appenders)
+			appender.join();
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertTrue(written.get() > 0);
+		assertEquals(written.get(), replay(new RegistrationJournal(journalDirectory)).size());
+	}
+
+	private List<JournalRecord> replay(RegistrationJournal journal) throws IOException {
+		List<JournalRecord> records = new ArrayList<>();
+		journal.replay(records::add);
+		return records;
+	}
+}
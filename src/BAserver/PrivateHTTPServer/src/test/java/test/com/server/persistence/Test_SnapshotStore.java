@@ -0,0 +1,206 @@
+package test.com.server.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.server.model.DocAppointment;
+import com.server.model.Medicine;
+import com.server.model.RemindService;
+import com.server.model.Water;
+import com.server.persistence.JournalRecord;
+import com.server.persistence.RecoveredClients;
+import com.server.persistence.RecoveredClients.RecoveredClient;
+import com.server.persistence.SnapshotStore;
+
+public class Test_SnapshotStore {
+
+	private File snapshotDirectory;
+
+	@Before
+	public void createSnapshotDirectory() throws IOException {
+		snapshotDirectory = Files.createTempDirectory("snapshot").toFile();
+	}
+
+	@After
+	public void deleteSnapshotDirectory() {
+		File[] files = snapshotDirectory.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		snapshotDirectory.delete();
+	}
+
+	@Test
+	public void no_snapshot_replays_whole_journal() throws IOException {
+		RecoveredClients recoveredClients = new RecoveredClients();
+		assertEquals(0L, new SnapshotStore(snapshotDirectory).load(recoveredClients));
+		assertEquals(0, recoveredClients.size());
+	}
+
+	@Test
+	public void written_snapshot_is_loaded() throws IOException {
+		UUID firstClientId = UUID.randomUUID();
+		UUID secondClientId = UUID.randomUUID();
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(7)) {
+			writer.writeClient(firstClientId, "token", Arrays.asList(new Water(), new Medicine(8, 30)));
+			writer.writeClient(secondClientId, null, Collections.<RemindService>emptyList());
+			writer.commit();
+		}
+
+		RecoveredClients recoveredClients = new RecoveredClients();
+		assertEquals(7L, snapshotStore.load(recoveredClients));
+		recoveredClients.parseRemindServices();
+		Iterator<RecoveredClient> iterator = recoveredClients.getRecoveredClients().iterator();
+		RecoveredClient firstClient = iterator.next();
+		assertEquals(firstClientId, firstClient.getClientId());
+		assertEquals("token", firstClient.getToken());
+		assertEquals(2, firstClient.getRemindServices().size());
+		assertTrue(firstClient.getRemindServices().contains(new Medicine(8, 30)));
+		RecoveredClient secondClient = iterator.next();
+		assertEquals(secondClientId, secondClient.getClientId());
+		assertNull(secondClient.getToken());
+		assertEquals(0, secondClient.getRemindServices().size());
+	}
+
+	@Test
+	public void uncommitted_snapshot_keeps_last_snapshot() throws IOException {
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(3)) {
+			writer.writeClient(UUID.randomUUID(), null, Arrays.<RemindService>asList(new Water()));
+			writer.commit();
+		}
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(4)) {
+			writer.writeClient(UUID.randomUUID(), null, Arrays.<RemindService>asList(new Water()));
+		}
+		assertEquals(3L, snapshotStore.load(new RecoveredClients()));
+		assertEquals(1, snapshotDirectory.listFiles().length);
+	}
+
+	@Test
+	public void corrupt_snapshot_is_detected() throws IOException {
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(1)) {
+			writer.writeClient(UUID.randomUUID(), "token", Arrays.<RemindService>asList(new Water()));
+			writer.commit();
+		}
+		corruptSnapshot();
+		try {
+			snapshotStore.load(new RecoveredClients());
+			fail("Corrupt snapshot has been loaded");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void restored_remind_services_keep_their_fields() throws IOException {
+		UUID clientId = UUID.randomUUID();
+		DocAppointment docAppointment = new DocAppointment(System.currentTimeMillis(), 14, 30);
+		Water water = new Water();
+		water.setRemind(false);
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(1)) {
+			writer.writeClient(clientId, null, Arrays.asList(docAppointment, water));
+			writer.commit();
+		}
+
+		RecoveredClients recoveredClients = new RecoveredClients();
+		snapshotStore.load(recoveredClients);
+		recoveredClients.parseRemindServices();
+		List<RemindService> remindServices = recoveredClients.getRecoveredClients().iterator().next()
+				.getRemindServices();
+		assertEquals(2, remindServices.size());
+		for (RemindService remindService : remindServices) {
+			RemindService writtenRemindService = remindService instanceof Water ? water : docAppointment;
+			assertEquals(writtenRemindService, remindService);
+			assertEquals(writtenRemindService.getDate(), remindService.getDate());
+			assertEquals(writtenRemindService.getFormattedDateText(), remindService.getFormattedDateText());
+			assertEquals(writtenRemindService.getDateFormat(), remindService.getDateFormat());
+			assertEquals(writtenRemindService.getRemind(), remindService.getRemind());
+			assertEquals(writtenRemindService.getTimeZoneID(), remindService.getTimeZoneID());
+			assertEquals(writtenRemindService.scheduleTimeToTriggerReminding(),
+					remindService.scheduleTimeToTriggerReminding());
+		}
+	}
+
+	@Test
+	public void journal_replaces_restored_remind_services() throws IOException {
+		UUID clientId = UUID.randomUUID();
+		Medicine medicine = new Medicine(8, 30);
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(1)) {
+			writer.writeClient(clientId, null, Arrays.<RemindService>asList(medicine, new Water()));
+			writer.commit();
+		}
+
+		RecoveredClients recoveredClients = new RecoveredClients();
+		snapshotStore.load(recoveredClients);
+		medicine.setRemind(false);
+		recoveredClients.apply(JournalRecord.remindService(clientId, medicine));
+		recoveredClients.parseRemindServices();
+		RecoveredClient recoveredClient = recoveredClients.getRecoveredClients().iterator().next();
+		assertEquals(Arrays.<RemindService>asList(new Water()), recoveredClient.getRemindServices());
+	}
+
+	@Test
+	public void commit_keeps_journal_of_previous_snapshot() throws IOException {
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		assertEquals(3L, commitSnapshot(snapshotStore, 3, UUID.randomUUID()));
+		assertEquals(3L, commitSnapshot(snapshotStore, 5, UUID.randomUUID()));
+		assertEquals(5L, commitSnapshot(snapshotStore, 8, UUID.randomUUID()));
+		assertEquals(2, snapshotDirectory.listFiles().length);
+	}
+
+	@Test
+	public void corrupt_snapshot_falls_back_to_previous_snapshot() throws IOException {
+		UUID firstClientId = UUID.randomUUID();
+		SnapshotStore snapshotStore = new SnapshotStore(snapshotDirectory);
+		commitSnapshot(snapshotStore, 3, firstClientId);
+		commitSnapshot(snapshotStore, 5, UUID.randomUUID());
+		corruptSnapshot();
+
+		RecoveredClients recoveredClients = new RecoveredClients();
+		assertEquals(3L, snapshotStore.load(recoveredClients));
+		assertEquals(1, recoveredClients.size());
+		assertEquals(firstClientId, recoveredClients.getRecoveredClients().iterator().next().getClientId());
+		// The corrupt snapshot is put aside and never becomes the previous snapshot
+		assertFalse(new File(snapshotDirectory, "snapshot.bin").exists());
+		assertEquals(3L, commitSnapshot(snapshotStore, 7, UUID.randomUUID()));
+	}
+
+	private long commitSnapshot(SnapshotStore snapshotStore, long firstJournalSegment, UUID clientId)
+			throws IOException {
+		try (SnapshotStore.Writer writer = snapshotStore.createWriter(firstJournalSegment)) {
+			writer.writeClient(clientId, null, Arrays.<RemindService>asList(new Water()));
+			return writer.commit();
+		}
+	}
+
+	private void corruptSnapshot() throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(new File(snapshotDirectory, "snapshot.bin"), "rw")) {
+			// Flip a byte of the client ID
+			file.seek(20);
+			int value = file.read();
+			file.seek(20);
+			file.write(value ^ 0xFF);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package test.com.server.reliability;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.server.forwarding.NotificationInfo;
+import com.server.reliability.DeliveryTracker;
+import com.server.timer.TimingWheelScheduler;
+
+public class Test_DeliveryTracker {
+
+	private TimingWheelScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = new TimingWheelScheduler(10, 8, 2);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.close();
+	}
+
+	@Test
+	public void acknowledged_notification_records_latency_and_is_not_resent() throws InterruptedException {
+		DeliveryTracker deliveryTracker = new DeliveryTracker(scheduler, 100, 3);
+		UUID clientId = UUID.randomUUID();
+		NotificationInfo notificationInfo = new NotificationInfo("Medicine", true);
+		AtomicInteger numberOfResends = new AtomicInteger();
+		deliveryTracker.sent(clientId, notificationInfo, resent -> numberOfResends.incrementAndGet());
+
+		Thread.sleep(20);
+		// Only the receiving client acknowledges
+		assertFalse(deliveryTracker.acknowledge(UUID.randomUUID(), notificationInfo.getMessageId()));
+		assertTrue(deliveryTracker.acknowledge(clientId, notificationInfo.getMessageId()));
+		assertFalse(deliveryTracker.acknowledge(clientId, notificationInfo.getMessageId()));
+
+		Thread.sleep(200);
+		assertEquals(0, numberOfResends.get());
+		assertEquals(1L, deliveryTracker.getNumberOfAcknowledged());
+		assertEquals(0, deliveryTracker.getNumberOfPendingDeliveries());
+		assertTrue(deliveryTracker.getAverageLatency() >= 20);
+		assertEquals(deliveryTracker.getAverageLatency(), deliveryTracker.getMaxLatency());
+	}
+
+	@Test
+	public void high_priority_notification_is_resent_until_max_resends() throws InterruptedException {
+		DeliveryTracker deliveryTracker = new DeliveryTracker(scheduler, 30, 2);
+		UUID clientId = UUID.randomUUID();
+		AtomicInteger numberOfResends = new AtomicInteger();
+		deliveryTracker.sent(clientId, new NotificationInfo("Medicine", true), new Consumer<NotificationInfo>() {
+			@Override
+			public void accept(NotificationInfo notificationInfo) {
+				numberOfResends.incrementAndGet();
+				// The push path tracks the resent notification again
+				deliveryTracker.sent(clientId, notificationInfo, this);
+			}
+		});
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (deliveryTracker.getNumberOfUnacknowledged() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(2, numberOfResends.get());
+		assertEquals(2L, deliveryTracker.getNumberOfResent());
+		assertEquals(1L, deliveryTracker.getNumberOfUnacknowledged());
+		assertEquals(0, deliveryTracker.getNumberOfPendingDeliveries());
+	}
+
+	@Test
+	public void normal_priority_notification_is_not_resent() throws InterruptedException {
+		DeliveryTracker deliveryTracker = new DeliveryTracker(scheduler, 30, 2);
+		AtomicInteger numberOfResends = new AtomicInteger();
+		deliveryTracker.sent(UUID.randomUUID(), new NotificationInfo("Water", false),
+				resent -> numberOfResends.incrementAndGet());
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (deliveryTracker.getNumberOfUnacknowledged() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(0, numberOfResends.get());
+		assertEquals(1L, deliveryTracker.getNumberOfUnacknowledged());
+	}
+
+	@Test
+	public void client_which_cannot_acknowledge_is_not_tracked() throws InterruptedException {
+		DeliveryTracker deliveryTracker = new DeliveryTracker(scheduler, 30, 2);
+		UUID clientId = UUID.randomUUID();
+		AtomicInteger numberOfResends = new AtomicInteger();
+		NotificationInfo notificationInfo = new NotificationInfo("Medicine", true);
+		deliveryTracker.sent(clientId, notificationInfo, resent -> numberOfResends.incrementAndGet());
+		// PMSN pushed the notification to a legacy receiver
+		deliveryTracker.cannotAcknowledge(clientId, notificationInfo.getMessageId());
+		deliveryTracker.sent(clientId, new NotificationInfo("Water", true), resent -> numberOfResends.incrementAndGet());
+		assertEquals(0, deliveryTracker.getNumberOfPendingDeliveries());
+
+		Thread.sleep(200);
+		assertEquals(0, numberOfResends.get());
+		assertEquals(0L, deliveryTracker.getNumberOfResent());
+		assertEquals(0L, deliveryTracker.getNumberOfUnacknowledged());
+
+		// An acknowledgement shows that the client acknowledges again
+		deliveryTracker.acknowledge(clientId, 1);
+		deliveryTracker.sent(clientId, new NotificationInfo("Walk", true), resent -> numberOfResends.incrementAndGet());
+		assertEquals(1, deliveryTracker.getNumberOfPendingDeliveries());
+	}
+}
@@ -0,0 +1,246 @@
+package test.com.server.reliability;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.server.forwarding.FCMBatchSender;
+import com.server.forwarding.FCMForwarding;
+import com.server.forwarding.IAcknowledgedForwarding;
+import com.server.forwarding.IForwarding;
+import com.server.forwarding.LocalFCMMessagingBackend;
+import com.server.forwarding.NotificationInfo;
+import com.server.persistence.DeadLetter;
+import com.server.persistence.DeadLetterQueue;
+import com.server.reliability.CircuitBreaker;
+import com.server.reliability.DeliveryReliability;
+import com.server.reliability.ReliableForwarding;
+import com.server.reliability.RetryPolicy;
+import com.server.timer.TimingWheelScheduler;
+
+public class Test_ReliableForwarding {
+
+	private File deadLetterDirectory;
+	private TimingWheelScheduler scheduler;
+
+	@Before
+	public void setUp() throws IOException {
+		deadLetterDirectory = Files.createTempDirectory("deadLetters").toFile();
+		scheduler = new TimingWheelScheduler(10, 8, 2);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.close();
+		File[] files = deadLetterDirectory.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		deadLetterDirectory.delete();
+	}
+
+	/**
+	 * Forwarding which fails a fixed number of times before it succeeds
+	 */
+	private static class FailingForwarding implements IAcknowledgedForwarding {
+
+		private final AtomicInteger remainingFailures;
+		private final AtomicInteger numberOfAttempts = new AtomicInteger();
+		private final CountDownLatch delivered = new CountDownLatch(1);
+
+		private FailingForwarding(int numberOfFailures) {
+			remainingFailures = new AtomicInteger(numberOfFailures);
+		}
+
+		@Override
+		public void forwardMessage(NotificationInfo notificationInfo) {
+			deliverMessage(notificationInfo);
+		}
+
+		@Override
+		public String getDestination() {
+			return "test";
+		}
+
+		@Override
+		public CompletableFuture<Void> deliverMessage(NotificationInfo notificationInfo) {
+			numberOfAttempts.incrementAndGet();
+			CompletableFuture<Void> result = new CompletableFuture<>();
+			if (remainingFailures.getAndDecrement() > 0) {
+				result.completeExceptionally(new IOException("Back-end not reachable"));
+			} else {
+				delivered.countDown();
+				result.complete(null);
+			}
+			return result;
+		}
+	}
+
+	@Test
+	public void failed_notification_is_retried_until_delivered() throws InterruptedException, IOException {
+		DeadLetterQueue deadLetterQueue = new DeadLetterQueue(deadLetterDirectory);
+		DeliveryReliability deliveryReliability = new DeliveryReliability(new RetryPolicy(4, 20, 100), 100, 1000,
+				scheduler, deadLetterQueue);
+		FailingForwarding failingForwarding = new FailingForwarding(2);
+		IForwarding forwarding = deliveryReliability.makeReliable(UUID.randomUUID(), failingForwarding);
+
+		forwarding.forwardMessage(new NotificationInfo("Medicine", true));
+
+		assertTrue(failingForwarding.delivered.await(2, TimeUnit.SECONDS));
+		assertEquals(3, failingForwarding.numberOfAttempts.get());
+		assertEquals(0, deadLetterQueue.size());
+	}
+
+	@Test
+	public void notification_goes_to_dead_letter_queue_after_last_attempt() throws InterruptedException, IOException {
+		DeadLetterQueue deadLetterQueue = new DeadLetterQueue(deadLetterDirectory);
+		DeliveryReliability deliveryReliability = new DeliveryReliability(new RetryPolicy(3, 20, 100), 100, 1000,
+				scheduler, deadLetterQueue);
+		UUID clientId = UUID.randomUUID();
+		FailingForwarding failingForwarding = new FailingForwarding(Integer.MAX_VALUE);
+		IForwarding forwarding = deliveryReliability.makeReliable(clientId, failingForwarding);
+
+		forwarding.forwardMessage(new NotificationInfo("Medicine", true));
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (deadLetterQueue.size() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(3, failingForwarding.numberOfAttempts.get());
+
+		// Dead letters survive a restart
+		List<DeadLetter> deadLetters = new DeadLetterQueue(deadLetterDirectory).readAll();
+		assertEquals(1, deadLetters.size());
+		assertEquals(clientId, deadLetters.get(0).getClientId());
+		assertEquals("Medicine", deadLetters.get(0).getNotificationInfo().getNotificationMessage());
+		assertTrue(deadLetters.get(0).getNotificationInfo().hasHighPriority());
+	}
+
+	@Test
+	public void dead_letters_stay_on_disk_until_replay_is_finished() throws Exception {
+		DeadLetterQueue deadLetterQueue = new DeadLetterQueue(deadLetterDirectory);
+		DeliveryReliability deliveryReliability = new DeliveryReliability(new RetryPolicy(2, 20, 100), 100, 1000,
+				scheduler, deadLetterQueue);
+		UUID clientId = UUID.randomUUID();
+		deadLetterQueue.add(new DeadLetter(clientId, new NotificationInfo("Medicine", true), 2, "failed"));
+
+		List<DeadLetter> deadLetters = deadLetterQueue.startReplay();
+		assertEquals(1, deadLetters.size());
+		assertEquals(0, deadLetterQueue.size());
+		// Only one replay at a time
+		assertTrue(deadLetterQueue.startReplay().isEmpty());
+
+		// The replayed letter fails again and is done once it is back in the queue
+		ReliableForwarding forwarding = (ReliableForwarding) deliveryReliability.makeReliable(clientId,
+				new FailingForwarding(Integer.MAX_VALUE));
+		forwarding.forwardMessageUntilDone(deadLetters.get(0).getNotificationInfo()).get(2, TimeUnit.SECONDS);
+		assertEquals(1, deadLetterQueue.size());
+		deadLetterQueue.finishReplay();
+		assertEquals(1, new DeadLetterQueue(deadLetterDirectory).size());
+
+		// Letters of a replay interrupted by a restart are restored
+		deadLetterQueue.add(new DeadLetter(clientId, new NotificationInfo("Water", false), 2, "failed"));
+		assertEquals(2, deadLetterQueue.startReplay().size());
+		assertEquals(2, new DeadLetterQueue(deadLetterDirectory).size());
+	}
+
+	@Test
+	public void client_failures_do_not_open_circuit_breaker_for_other_clients()
+			throws InterruptedException, IOException {
+		DeadLetterQueue deadLetterQueue = new DeadLetterQueue(deadLetterDirectory);
+		DeliveryReliability deliveryReliability = new DeliveryReliability(new RetryPolicy(3, 20, 100), 3, 1000,
+				scheduler, deadLetterQueue);
+		LocalFCMMessagingBackend messagingBackend = new LocalFCMMessagingBackend(0);
+		messagingBackend.addInvalidToken("unregistered-token");
+		FCMBatchSender fcmBatchSender = new FCMBatchSender(messagingBackend, 1, 4, 1000);
+		try {
+			// Clients without a token and with an unregistered token fail permanently
+			int numberOfFailingClients = 10;
+			for (int i = 0; i < numberOfFailingClients; i++) {
+				FCMForwarding fcmForwarding = new FCMForwarding(fcmBatchSender);
+				if (i % 2 == 0)
+					fcmForwarding.setToken("unregistered-token");
+				deliveryReliability.makeReliable(UUID.randomUUID(), fcmForwarding)
+						.forwardMessage(new NotificationInfo("Medicine", true));
+			}
+			long deadline = System.currentTimeMillis() + 2000;
+			while (deadLetterQueue.size() < numberOfFailingClients && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			assertEquals(numberOfFailingClients, deadLetterQueue.size());
+			// Not retried
+			for (DeadLetter deadLetter : deadLetterQueue.readAll())
+				assertEquals(1, deadLetter.getNumberOfAttempts());
+			assertFalse(deliveryReliability.getCircuitBreaker("FCM").isOpen());
+
+			FCMForwarding fcmForwarding = new FCMForwarding(fcmBatchSender);
+			fcmForwarding.setToken("token");
+			deliveryReliability.makeReliable(UUID.randomUUID(), fcmForwarding)
+					.forwardMessage(new NotificationInfo("Water", true));
+			deadline = System.currentTimeMillis() + 2000;
+			while (messagingBackend.getSentMessages().isEmpty() && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			assertEquals(1, messagingBackend.getSentMessages().size());
+		} finally {
+			fcmBatchSender.close();
+			messagingBackend.close();
+		}
+	}
+
+	@Test
+	public void circuit_breaker_opens_and_lets_trial_through_after_open_time() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 50);
+		assertTrue(circuitBreaker.allowRequest());
+		circuitBreaker.recordFailure();
+		assertTrue(circuitBreaker.allowRequest());
+		circuitBreaker.recordFailure();
+		assertFalse(circuitBreaker.allowRequest());
+		assertTrue(circuitBreaker.getRemainingOpenTime() > 0);
+
+		Thread.sleep(60);
+		// One trial message
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.allowRequest());
+		circuitBreaker.recordSuccess();
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test
+	public void client_failure_gives_trial_back() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50);
+		circuitBreaker.recordFailure();
+		Thread.sleep(60);
+		assertTrue(circuitBreaker.allowRequest());
+		circuitBreaker.recordClientFailure();
+		// Next message is the trial
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.allowRequest());
+	}
+
+	@Test
+	public void retry_delay_grows_up_to_max_delay() {
+		RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000);
+		for (int i = 0; i < 20; i++) {
+			long firstDelay = retryPolicy.getDelay(1);
+			assertTrue(firstDelay >= 50 && firstDelay <= 100);
+			long thirdDelay = retryPolicy.getDelay(3);
+			assertTrue(thirdDelay >= 200 && thirdDelay <= 400);
+			long lastDelay = retryPolicy.getDelay(9);
+			assertTrue(lastDelay >= 500 && lastDelay <= 1000);
+		}
+		assertFalse(retryPolicy.canRetry(10));
+	}
+}
@@ -0,0 +1,45 @@
+package test.com.server.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.server.model.BloodPressure;
+import com.server.model.Medicine;
+import com.server.model.Water;
+import com.server.storage.NotificationStorage;
+
+public class Test_NotificationStorage {
+
+	@Test
+	public void high_priority_notifications_are_removed_first() {
+		NotificationStorage storage = new NotificationStorage();
+		storage.addNewNotificationMessage(new Water());
+		storage.addNewNotificationMessage(new BloodPressure());
+		storage.addNewNotificationMessage(new Medicine(8, 0));
+		storage.addNewNotificationMessage(new Medicine(20, 0));
+
+		assertEquals(new Medicine(8, 0), storage.removeNotificationForSending());
+		assertEquals(new Medicine(20, 0), storage.removeNotificationForSending());
+		assertEquals(new Water(), storage.removeNotificationForSending());
+		assertEquals(new BloodPressure(), storage.removeNotificationForSending());
+		assertFalse(storage.anyNotificationAvalaible());
+		assertNull(storage.removeNotificationForSending());
+	}
+
+	@Test
+	public void stored_notification_is_not_added_twice() {
+		NotificationStorage storage = new NotificationStorage();
+		storage.addNewNotificationMessage(new Water());
+		storage.addNewNotificationMessage(new Water());
+		assertTrue(storage.contains(new Water()));
+		assertEquals(1, storage.size());
+
+		storage.removeNotificationForSending();
+		assertFalse(storage.contains(new Water()));
+		assertEquals(0, storage.size());
+	}
+}
@@ -0,0 +1,73 @@
+package test.com.server.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.server.model.BloodPressure;
+import com.server.model.Medicine;
+import com.server.model.Water;
+import com.server.storage.RemindServiceTimerStorage;
+import com.server.timer.TimerHandle;
+
+public class Test_RemindServiceTimerStorage {
+
+	@Test
+	public void register_retrieve_and_remove_remindServices() {
+		RemindServiceTimerStorage storage = new RemindServiceTimerStorage();
+		TimerHandle waterTimer = new TestTimerHandle();
+		TimerHandle medicineTimer = new TestTimerHandle();
+		storage.registerForRemindService(new Water(), waterTimer);
+		storage.registerForRemindService(new Medicine(10, 10), medicineTimer);
+
+		// Equal but not identical remind services are found
+		assertTrue(storage.existsRemindService(new Water()));
+		assertSame(medicineTimer, storage.getTimerForRemindService(new Medicine(10, 10)));
+		assertFalse(storage.existsRemindService(new Medicine(10, 11)));
+		assertFalse(storage.existsRemindService(new BloodPressure()));
+
+		storage.removeRemindService(new Water());
+		assertFalse(storage.existsRemindService(new Water()));
+		assertNull(storage.getTimerForRemindService(new Water()));
+		assertEquals(1, storage.getRegisteredRemindServices().size());
+	}
+
+	@Test
+	public void equal_remindService_is_replaced() {
+		RemindServiceTimerStorage storage = new RemindServiceTimerStorage();
+		TimerHandle newTimer = new TestTimerHandle();
+		storage.registerForRemindService(new Medicine(8, 0), new TestTimerHandle());
+		storage.registerForRemindService(new Medicine(8, 0), newTimer);
+		assertEquals(1, storage.getRegisteredRemindServices().size());
+		assertSame(newTimer, storage.getTimerForRemindService(new Medicine(8, 0)));
+	}
+
+	@Test
+	public void cancel_all_remindServices() {
+		RemindServiceTimerStorage storage = new RemindServiceTimerStorage();
+		TimerHandle timer = new TestTimerHandle();
+		storage.registerForRemindService(new Water(), timer);
+		storage.cancelAllRemindServices();
+		assertTrue(timer.isCancelled());
+		assertTrue(storage.getRegisteredRemindServices().isEmpty());
+	}
+
+	private static class TestTimerHandle implements TimerHandle {
+
+		private boolean cancelled;
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package test.com.server.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.server.timer.BatchTimerTarget;
+import com.server.timer.FireBucketScheduler;
+import com.server.timer.TimerHandle;
+import com.server.timer.TimingWheelScheduler;
+
+public class Test_FireBucketScheduler {
+
+	private static final long TICK_DURATION = 10L;
+	private static final long BUCKET_DURATION = 100L;
+
+	/**
+	 * Target which records every batch it gets
+	 */
+	private static class RecordingTarget implements BatchTimerTarget<String> {
+
+		private final List<List<String>> batches = new ArrayList<>();
+		private final CountDownLatch expired;
+
+		private RecordingTarget(int numberOfBatches) {
+			expired = new CountDownLatch(numberOfBatches);
+		}
+
+		@Override
+		public synchronized void timersExpired(List<String> expiredItems) {
+			batches.add(new ArrayList<>(expiredItems));
+			expired.countDown();
+		}
+
+		private synchronized List<List<String>> getBatches() {
+			return new ArrayList<>(batches);
+		}
+	}
+
+	@Test
+	public void items_of_one_bucket_are_fired_as_one_batch_per_target() throws InterruptedException {
+		TimingWheelScheduler timingWheel = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		FireBucketScheduler scheduler = new FireBucketScheduler(timingWheel, BUCKET_DURATION);
+		RecordingTarget firstTarget = new RecordingTarget(1);
+		RecordingTarget secondTarget = new RecordingTarget(1);
+		// Start of a bucket which lies in the future
+		long bucketStart = (System.currentTimeMillis() / BUCKET_DURATION + 2) * BUCKET_DURATION;
+		scheduler.schedule(firstTarget, "a", new Date(bucketStart + 10));
+		scheduler.schedule(firstTarget, "b", new Date(bucketStart + 90));
+		scheduler.schedule(secondTarget, "c", new Date(bucketStart + 50));
+		assertEquals(1, scheduler.getNumberOfPendingBuckets());
+
+		assertTrue(firstTarget.expired.await(2, TimeUnit.SECONDS));
+		assertTrue(secondTarget.expired.await(2, TimeUnit.SECONDS));
+		assertEquals(1, firstTarget.getBatches().size());
+		assertEquals(2, firstTarget.getBatches().get(0).size());
+		assertEquals(1, secondTarget.getBatches().size());
+		assertEquals(0, scheduler.getNumberOfPendingBuckets());
+		timingWheel.close();
+	}
+
+	@Test
+	public void cancelled_item_is_not_fired() throws InterruptedException {
+		TimingWheelScheduler timingWheel = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		FireBucketScheduler scheduler = new FireBucketScheduler(timingWheel, BUCKET_DURATION);
+		RecordingTarget target = new RecordingTarget(1);
+		long bucketStart = (System.currentTimeMillis() / BUCKET_DURATION + 2) * BUCKET_DURATION;
+		scheduler.schedule(target, "a", new Date(bucketStart));
+		TimerHandle handle = scheduler.schedule(target, "b", new Date(bucketStart));
+		handle.cancel();
+		assertTrue(handle.isCancelled());
+
+		assertTrue(target.expired.await(2, TimeUnit.SECONDS));
+		assertEquals(1, target.getBatches().get(0).size());
+		assertEquals("a", target.getBatches().get(0).get(0));
+		timingWheel.close();
+	}
+
+	@Test
+	public void bucket_of_cancelled_items_is_removed() {
+		TimingWheelScheduler timingWheel = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		FireBucketScheduler scheduler = new FireBucketScheduler(timingWheel, BUCKET_DURATION);
+		RecordingTarget target = new RecordingTarget(1);
+		TimerHandle handle = scheduler.schedule(target, "a", new Date(System.currentTimeMillis() + 60000));
+		assertEquals(1, scheduler.getNumberOfPendingBuckets());
+		handle.cancel();
+		assertEquals(0, scheduler.getNumberOfPendingBuckets());
+		timingWheel.close();
+	}
+
+	@Test
+	public void item_in_the_past_is_fired_immediately() throws InterruptedException {
+		TimingWheelScheduler timingWheel = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		FireBucketScheduler scheduler = new FireBucketScheduler(timingWheel, BUCKET_DURATION);
+		RecordingTarget target = new RecordingTarget(1);
+		scheduler.schedule(target, "a", new Date(System.currentTimeMillis() - 60000));
+		assertTrue(target.expired.await(2, TimeUnit.SECONDS));
+		timingWheel.close();
+	}
+
+	@Test
+	public void periodic_item_is_fired_repeatedly() throws InterruptedException {
+		TimingWheelScheduler timingWheel = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		FireBucketScheduler scheduler = new FireBucketScheduler(timingWheel, BUCKET_DURATION);
+		RecordingTarget target = new RecordingTarget(3);
+		TimerHandle handle = scheduler.scheduleAtFixedRate(target, "a", new Date(), BUCKET_DURATION);
+		assertTrue(target.expired.await(3, TimeUnit.SECONDS));
+		handle.cancel();
+		timingWheel.close();
+	}
+}
@@ -0,0 +1,87 @@
+package test.com.server.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.server.timer.TimerHandle;
+import com.server.timer.TimingWheelScheduler;
+
+public class Test_TimingWheelScheduler {
+
+	private static final long TICK_DURATION = 10L;
+
+	@Test
+	public void one_time_task_is_executed() throws InterruptedException {
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		CountDownLatch executed = new CountDownLatch(1);
+		scheduler.schedule(executed::countDown, new Date(System.currentTimeMillis() + 50));
+		assertTrue(executed.await(2, TimeUnit.SECONDS));
+		scheduler.close();
+	}
+
+	@Test
+	public void task_in_the_past_is_executed_immediately() throws InterruptedException {
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		CountDownLatch executed = new CountDownLatch(1);
+		scheduler.schedule(executed::countDown, new Date(System.currentTimeMillis() - 60000));
+		assertTrue(executed.await(2, TimeUnit.SECONDS));
+		scheduler.close();
+	}
+
+	@Test
+	public void task_beyond_one_revolution_is_executed() throws InterruptedException {
+		// 8 buckets of 10 ms: 200 ms needs more than two rounds
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		CountDownLatch executed = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		scheduler.schedule(executed::countDown, new Date(start + 200));
+		assertTrue(executed.await(2, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		scheduler.close();
+	}
+
+	@Test
+	public void periodic_task_is_executed_repeatedly() throws InterruptedException {
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		CountDownLatch executed = new CountDownLatch(3);
+		TimerHandle handle = scheduler.scheduleAtFixedRate(executed::countDown, new Date(), 30);
+		assertTrue(executed.await(2, TimeUnit.SECONDS));
+		handle.cancel();
+		scheduler.close();
+	}
+
+	@Test
+	public void canceled_task_is_not_executed() throws InterruptedException {
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		AtomicInteger executions = new AtomicInteger();
+		TimerHandle handle = scheduler.schedule(executions::incrementAndGet,
+				new Date(System.currentTimeMillis() + 100));
+		handle.cancel();
+		assertTrue(handle.isCancelled());
+		Thread.sleep(300);
+		assertEquals(0, executions.get());
+		scheduler.close();
+	}
+
+	@Test
+	public void canceled_periodic_task_stops() throws InterruptedException {
+		TimingWheelScheduler scheduler = new TimingWheelScheduler(TICK_DURATION, 8, 2);
+		AtomicInteger executions = new AtomicInteger();
+		TimerHandle handle = scheduler.scheduleAtFixedRate(executions::incrementAndGet, new Date(), 20);
+		Thread.sleep(150);
+		handle.cancel();
+		Thread.sleep(50);
+		int executionsAfterCancel = executions.get();
+		Thread.sleep(200);
+		assertTrue(executionsAfterCancel > 0);
+		assertEquals(executionsAfterCancel, executions.get());
+		scheduler.close();
+	}
+}
@@ -5,14 +5,18 @@ import android.util.Log;
 
 import com.ba.reminder.interfaces.IPushTechnology;
 import com.ba.reminder.logging.FlavorLogger;
+import com.ba.reminder.notification.NotificationReceiver;
 import com.ba.reminder.remote.HTTPPushTechnology;
+import com.ba.reminder.remote.TAcknowledge;
+import com.flavor.reminder.remote.TReadEventStream;
 import com.flavor.reminder.remote.TWaitForUpdates;
 import com.server.model.RemindService;
 
 import java.util.List;
 
 /**
- * HTTP Long Polling Push solution.
+ * HTTP Long Polling Push solution. By default the notifications are read from the event stream of the server,
+ * which keeps one response open, instead of polling for each notification.
  */
 public class PushTechnology extends HTTPPushTechnology implements IPushTechnology {
 
@@ -24,6 +28,10 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
      * Port of the private HTTP push server.
      */
     public static final int PORT = 80;
+    /**
+     * Reads the event stream instead of sending a Long Polling request per notification.
+     */
+    public static final boolean USE_EVENT_STREAM = true;
     /**
      * Context of application.
      */
@@ -33,7 +41,7 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
      */
     private final FlavorLogger flavorLogger;
     /**
-     * Thread that actively waits for notification with Long Polling
+     * Thread that actively waits for notification with Long Polling or the event stream
      */
     private Thread waitForUpdates;
 
@@ -47,6 +55,9 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
         this.context = context;
         flavorLogger = new FlavorLogger();
 
+        // Acknowledge displayed notifications to the server
+        NotificationReceiver.setAcknowledger(messageId -> new TAcknowledge(clientId, messageId).start());
+
         // HTTP Long Polling
         waitForNotifications();
     }
@@ -55,7 +66,11 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
      * Waits for notifications pushed from the server.
      */
     private void waitForNotifications() {
-        waitForUpdates = new TWaitForUpdates(context, clientId);
+        if (USE_EVENT_STREAM) {
+            waitForUpdates = new TReadEventStream(context, clientId);
+        } else {
+            waitForUpdates = new TWaitForUpdates(context, clientId);
+        }
         waitForUpdates.start();
     }
 
@@ -0,0 +1,206 @@
+package com.flavor.reminder.remote;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.ba.reminder.logging.FlavorLogger;
+import com.ba.reminder.notification.NotificationReceiver;
+import com.ba.reminder.remote.HTTPConnectionPool;
+import com.ba.reminder.remote.ServerUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This thread connects to the event stream of the server. Unlike HTTP Long Polling, the response is kept open
+ * and every notification arrives as an event of it, so a notification needs no new request. Each event carries the
+ * message ID of its notification. After a lost connection the thread reconnects with the ID of the last event
+ * received and the server sends the events missed in the meantime first.
+ */
+public class TReadEventStream extends Thread {
+
+    /**
+     * Field prefixes and the comment prefix of the event stream format.
+     */
+    private static final String ID_FIELD = "id:";
+    private static final String DATA_FIELD = "data:";
+    private static final String RETRY_FIELD = "retry:";
+    private static final String COMMENT = ":";
+    /**
+     * No event has been received yet.
+     */
+    private static final long NO_LAST_EVENT_ID = -1;
+    /**
+     * The server sends a heartbeat every 30 seconds, a stream without any for longer is broken.
+     */
+    private static final int READ_TIMEOUT = 90 * 1000;
+
+    /**
+     * Logger.
+     */
+    private final FlavorLogger flavorLogger = new FlavorLogger();
+    /**
+     * Client ID.
+     */
+    private final UUID clientId;
+    /**
+     * Context of application.
+     */
+    private final Context context;
+    /**
+     * ID of the last event received, sent when reconnecting.
+     */
+    private long lastEventId = NO_LAST_EVENT_ID;
+    /**
+     * Time in milliseconds to wait before reconnecting, as given by the server.
+     */
+    private long reconnectionTime = 3000;
+
+    /**
+     * Constructor.
+     *
+     * @param context: Context of application.
+     * @param clientId: Client ID for authentication
+     */
+    public TReadEventStream(Context context, UUID clientId) {
+        this.context = context;
+        this.clientId = clientId;
+    }
+
+    @Override
+    public void run() {
+        URL url;
+        try {
+            url = new URL(ServerUtils.STREAM_URL);
+        } catch (MalformedURLException e) {
+            Log.e("ERROR ", e.toString());
+            return;
+        }
+
+        while (!isInterrupted()) {
+            HttpURLConnection urlConnection = null;
+            try {
+                urlConnection = HTTPConnectionPool.openConnection(url);
+                urlConnection.setReadTimeout(READ_TIMEOUT);
+                urlConnection.setDoInput(true);
+                urlConnection.setDoOutput(true);
+
+                // HTTP Post headers
+                urlConnection.setRequestMethod("POST");
+                urlConnection.setRequestProperty("Content-Type", "text/plain");
+                urlConnection.setRequestProperty("charset", "utf-8");
+                urlConnection.setRequestProperty("Accept", "text/event-stream");
+                if (lastEventId != NO_LAST_EVENT_ID) {
+                    urlConnection.setRequestProperty(ServerUtils.LAST_EVENT_ID_HEADER, String.valueOf(lastEventId));
+                }
+
+                // POST Body contains client id for authentication
+                BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
+                br_out.write(ServerUtils.POST_CLIENT_ID_REGEX + clientId.toString());
+                br_out.newLine();
+                br_out.flush();
+                br_out.close();
+
+                if (urlConnection.getResponseCode() != 200) {
+                    Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
+                    Log.e("Event Stream", "Stop reading the event stream");
+                    HTTPConnectionPool.release(urlConnection);
+                    return;
+                }
+                readEvents(new BufferedReader(new InputStreamReader(urlConnection.getInputStream(),
+                        StandardCharsets.UTF_8)));
+                // The server closed the stream, e.g. because the client opened another one
+                Log.d("DEBUG", "Event stream closed by the server");
+                HTTPConnectionPool.discard(urlConnection);
+            } catch (IOException e) {
+                // Connection problem or no heartbeat within the read timeout, try reconnecting
+                Log.e("Exception", e.toString());
+                Log.d("DEBUG", "Start Reconnecting");
+                HTTPConnectionPool.discard(urlConnection);
+            }
+            try {
+                Thread.sleep(reconnectionTime);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the events of the stream until it ends and displays their notifications.
+     *
+     * @param br_in: Reader of the open response
+     * @throws IOException
+     */
+    private void readEvents(BufferedReader br_in) throws IOException {
+        long eventId = NO_LAST_EVENT_ID;
+        StringBuilder data = null;
+        String line;
+        while ((line = br_in.readLine()) != null) {
+            if (line.isEmpty()) {
+                // A blank line ends an event, a heartbeat has no data
+                if (data != null) {
+                    dispatchEvent(eventId, data.toString());
+                }
+                eventId = NO_LAST_EVENT_ID;
+                data = null;
+            } else if (line.startsWith(ID_FIELD)) {
+                eventId = parseLong(fieldValue(line, ID_FIELD), NO_LAST_EVENT_ID);
+            } else if (line.startsWith(DATA_FIELD)) {
+                if (data == null) {
+                    data = new StringBuilder();
+                } else {
+                    data.append('\n');
+                }
+                data.append(fieldValue(line, DATA_FIELD));
+            } else if (line.startsWith(RETRY_FIELD)) {
+                reconnectionTime = parseLong(fieldValue(line, RETRY_FIELD), reconnectionTime);
+            } else if (!line.startsWith(COMMENT)) {
+                Log.d("DEBUG", "Unknown event stream line: " + line);
+            }
+        }
+    }
+
+    /**
+     * Displays the notification of an event and remembers its ID for reconnecting.
+     *
+     * @param eventId: Event ID, the message ID of the notification
+     * @param notificationMessage: Data of the event
+     */
+    private void dispatchEvent(long eventId, String notificationMessage) {
+        if (eventId != NO_LAST_EVENT_ID) {
+            lastEventId = eventId;
+        }
+        // Log as message arrived at client
+        flavorLogger.infoForNotificationArrivedAtClient(notificationMessage);
+
+        // Display message at the notification tray
+        NotificationReceiver.triggerNotification(context, notificationMessage,
+                eventId != NO_LAST_EVENT_ID ? eventId : NotificationReceiver.NO_MESSAGE_ID);
+    }
+
+    /**
+     * Returns the value of a field line without the single space following the colon.
+     */
+    private static String fieldValue(String line, String field) {
+        String value = line.substring(field.length());
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            Log.e("ERROR", e.toString());
+            return defaultValue;
+        }
+    }
+}
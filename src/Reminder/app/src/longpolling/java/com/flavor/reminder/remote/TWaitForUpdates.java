@@ -5,6 +5,7 @@ import android.util.Log;
 
 import com.ba.reminder.logging.FlavorLogger;
 import com.ba.reminder.notification.NotificationReceiver;
+import com.ba.reminder.remote.HTTPConnectionPool;
 import com.ba.reminder.remote.ServerUtils;
 
 import java.io.BufferedReader;
@@ -21,7 +22,8 @@ import java.util.UUID;
 
 /**
  * This threads connects to the server with the URL for HTTP Long Polling.
- * The connection is kept open until a push notification arrives at the client.
+ * The connection is kept open until a push notification arrives at the client. Afterwards it is kept alive
+ * for the next request, so polling again does not need a new TCP handshake.
  */
 public class TWaitForUpdates extends Thread {
 
@@ -60,10 +62,10 @@ public class TWaitForUpdates extends Thread {
         }
 
         while (true) {
-            // Non persistent connection
+            // Persistent connection of the shared pool
             HttpURLConnection urlConnection = null;
             try {
-                urlConnection = (HttpURLConnection) url.openConnection();
+                urlConnection = HTTPConnectionPool.openConnection(url);
                 // Infinite Waiting
                 urlConnection.setConnectTimeout(ServerUtils.INFINITE_CONNECTION_TIMEOUT);
                 urlConnection.setDoInput(true);
@@ -73,7 +75,6 @@ public class TWaitForUpdates extends Thread {
                 urlConnection.setRequestMethod("POST");
                 urlConnection.setRequestProperty("Content-Type", "text/plain");
                 urlConnection.setRequestProperty("charset", "utf-8");
-                urlConnection.setRequestProperty("Connection", "close");
 
                 // POST Body contains client id for authentication
                 BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
@@ -84,6 +85,7 @@ public class TWaitForUpdates extends Thread {
 
                 // Blocks until notification has been received
                 if (urlConnection.getResponseCode() == 200) {
+                    long messageId = getMessageId(urlConnection);
                     BufferedReader br_in = new BufferedReader(new InputStreamReader(urlConnection.getInputStream()));
                     String notificationMessage;
                     while ((notificationMessage = br_in.readLine()) != null) {
@@ -91,12 +93,14 @@ public class TWaitForUpdates extends Thread {
                         flavorLogger.infoForNotificationArrivedAtClient(notificationMessage);
 
                         // Display message at the notification tray
-                        NotificationReceiver.triggerNotification(context, notificationMessage);
+                        NotificationReceiver.triggerNotification(context, notificationMessage, messageId);
                     }
+                    // Response has been read completely, the connection is reused for the next poll
                     br_in.close();
                 } else {
                     Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
                     Log.e("HTTP Long Polling", "Stop Long Polling");
+                    HTTPConnectionPool.release(urlConnection);
                     return;
                 }
                 // If a connection problem occurs, try reconnecting
@@ -104,19 +108,39 @@ public class TWaitForUpdates extends Thread {
                 Log.e("Exception", e.toString());
                 Log.d("DEBUG", "Reconnecting failed");
                 Log.d("DEBUG", "Start Reconnecting");
+                HTTPConnectionPool.discard(urlConnection);
                 reconnect();
             } catch (SocketException e) {
                 Log.e("Exception", e.toString());
                 Log.d("DEBUG", "Start Reconnecting");
+                HTTPConnectionPool.discard(urlConnection);
                 reconnect();
             } catch (IOException e) {
                 Log.e("ERROR", e.toString());
-            } finally {
-                if (urlConnection != null) urlConnection.disconnect();
+                HTTPConnectionPool.discard(urlConnection);
             }
         }
     }
 
+    /**
+     * Returns the message ID of the notification in the response.
+     *
+     * @param urlConnection: Connection with the response
+     * @return Message ID or {@link NotificationReceiver#NO_MESSAGE_ID} if the response has none
+     */
+    private long getMessageId(HttpURLConnection urlConnection) {
+        String messageId = urlConnection.getHeaderField(ServerUtils.MESSAGE_ID_HEADER);
+        if (messageId == null) {
+            return NotificationReceiver.NO_MESSAGE_ID;
+        }
+        try {
+            return Long.parseLong(messageId.trim());
+        } catch (NumberFormatException e) {
+            Log.e("ERROR", e.toString());
+            return NotificationReceiver.NO_MESSAGE_ID;
+        }
+    }
+
     /**
      * Reconnects to the server.
      */
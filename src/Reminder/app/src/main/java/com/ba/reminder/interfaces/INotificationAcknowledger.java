@@ -0,0 +1,14 @@
+package com.ba.reminder.interfaces;
+
+/**
+ * Interface for sending the acknowledgement of a displayed notification back to the server.
+ */
+public interface INotificationAcknowledger {
+
+    /**
+     * Acknowledges a notification which has been displayed.
+     *
+     * @param messageId: Message ID of the notification
+     */
+    void acknowledge(long messageId);
+}
@@ -11,9 +11,11 @@ import android.graphics.Color;
 import androidx.core.app.NotificationCompat;
 
 import com.ba.reminder.R;
+import com.ba.reminder.interfaces.INotificationAcknowledger;
 import com.ba.reminder.logging.FlavorLogger;
 import com.server.model.SerializeConst;
 
+import java.util.LinkedHashSet;
 import java.util.Random;
 
 /**
@@ -37,6 +39,22 @@ public class NotificationReceiver extends BroadcastReceiver {
      * Common color code for all notifications.
      */
     private static final String COLOR_STRING = "#4CAF50";
+    /**
+     * Message ID of a notification which is not acknowledged, e.g. a local notification.
+     */
+    public static final long NO_MESSAGE_ID = 0;
+    /**
+     * Number of recently displayed message IDs kept to recognize notifications sent again.
+     */
+    private static final int MAX_RECENT_MESSAGE_IDS = 64;
+    /**
+     * Message IDs of the notifications displayed most recently, oldest first.
+     */
+    private static final LinkedHashSet<Long> recentMessageIds = new LinkedHashSet<>();
+    /**
+     * Sends the acknowledgements of displayed notifications, set by the push technology.
+     */
+    private static INotificationAcknowledger acknowledger;
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -50,8 +68,16 @@ public class NotificationReceiver extends BroadcastReceiver {
         notificationChannel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
         notificationManager.createNotificationChannel(notificationChannel);
 
-        // Retrieve notification text from intent
+        // Retrieve notification text and message ID from intent
         String message = (String) intent.getSerializableExtra(SerializeConst.NOTIFICATION_MESSAGE);
+        long messageId = intent.getLongExtra(SerializeConst.MESSAGE_ID, NO_MESSAGE_ID);
+
+        // A notification sent again because its acknowledgement got lost is only acknowledged again
+        if (messageId != NO_MESSAGE_ID && !addRecentMessageId(messageId)) {
+            acknowledge(messageId);
+            return;
+        }
+
         // Create a random number
         int randomId = createRandomId();
 
@@ -63,6 +89,11 @@ public class NotificationReceiver extends BroadcastReceiver {
 
         // Logging for notification displayed
         flavorLogger.infoForNotificationDisplayed(message);
+
+        // Tell the server that the notification has been displayed
+        if (messageId != NO_MESSAGE_ID) {
+            acknowledge(messageId);
+        }
     }
 
     /**
@@ -107,6 +138,57 @@ public class NotificationReceiver extends BroadcastReceiver {
         context.sendBroadcast(createNotificationIntent(context, message));
     }
 
+    /**
+     * Triggers the displaying of a notification pushed by the server. After displaying it, the
+     * notification is acknowledged with its message ID.
+     *
+     * @param context: Context in which the notification should be displayed
+     * @param message: Message which contains the notification text to show
+     * @param messageId: Message ID of the notification or {@link #NO_MESSAGE_ID}
+     */
+    public static void triggerNotification(Context context, String message, long messageId) {
+        Intent notificationIntent = createNotificationIntent(context, message);
+        notificationIntent.putExtra(SerializeConst.MESSAGE_ID, messageId);
+        context.sendBroadcast(notificationIntent);
+    }
+
+    /**
+     * Sets the acknowledger which sends the acknowledgements of displayed notifications to the server.
+     *
+     * @param notificationAcknowledger: Acknowledger of the push technology
+     */
+    public static void setAcknowledger(INotificationAcknowledger notificationAcknowledger) {
+        acknowledger = notificationAcknowledger;
+    }
+
+    /**
+     * Acknowledges a displayed notification if an acknowledger is set.
+     *
+     * @param messageId: Message ID of the notification
+     */
+    private static void acknowledge(long messageId) {
+        INotificationAcknowledger notificationAcknowledger = acknowledger;
+        if (notificationAcknowledger != null) {
+            notificationAcknowledger.acknowledge(messageId);
+        }
+    }
+
+    /**
+     * Remembers the message ID of a displayed notification.
+     *
+     * @param messageId: Message ID of the notification
+     * @return false if the notification has been displayed recently, otherwise true
+     */
+    private static synchronized boolean addRecentMessageId(long messageId) {
+        if (!recentMessageIds.add(messageId)) {
+            return false;
+        }
+        if (recentMessageIds.size() > MAX_RECENT_MESSAGE_IDS) {
+            recentMessageIds.remove(recentMessageIds.iterator().next());
+        }
+        return true;
+    }
+
     /**
      * Creates a random number.
      *
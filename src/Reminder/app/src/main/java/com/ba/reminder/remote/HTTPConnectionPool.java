@@ -0,0 +1,80 @@
+package com.ba.reminder.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * This class configures the pool of HTTP connections to the private servers, which all request threads share.
+ * An idle connection is kept alive and reused for the next request to the same server, so a request does not pay
+ * for a new TCP handshake. A connection only goes back to the pool after its response has been read completely,
+ * therefore a request thread releases its connection instead of disconnecting it.
+ */
+public final class HTTPConnectionPool {
+
+    /**
+     * Max number of idle connections kept in the pool.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    /**
+     * Time in milliseconds an idle connection is kept in the pool, shorter than the server keeps it alive.
+     */
+    private static final long KEEP_ALIVE_DURATION = 50 * 1000;
+
+    static {
+        // Read by the platform when the first connection is opened
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        System.setProperty("http.keepAliveDuration", String.valueOf(KEEP_ALIVE_DURATION));
+    }
+
+    private HTTPConnectionPool() {
+    }
+
+    /**
+     * Opens a connection to the URL given, reusing an idle connection of the pool if there is one.
+     *
+     * @param url: URL of the private server
+     * @return Connection for one request
+     * @throws IOException
+     */
+    public static HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(ServerUtils.CONNECTION_TIMEOUT);
+        return urlConnection;
+    }
+
+    /**
+     * Reads the rest of the response and returns the connection to the pool. Must only be called after the
+     * response code has been received.
+     *
+     * @param urlConnection: Connection with a received response
+     */
+    public static void release(HttpURLConnection urlConnection) {
+        try {
+            InputStream in = urlConnection.getErrorStream();
+            if (in == null) {
+                in = urlConnection.getInputStream();
+            }
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) != -1) {
+                // Response has been handled already
+            }
+            in.close();
+        } catch (IOException e) {
+            discard(urlConnection);
+        }
+    }
+
+    /**
+     * Closes a connection which failed, so it is not reused.
+     *
+     * @param urlConnection: Failed connection or null
+     */
+    public static void discard(HttpURLConnection urlConnection) {
+        if (urlConnection != null) {
+            urlConnection.disconnect();
+        }
+    }
+}
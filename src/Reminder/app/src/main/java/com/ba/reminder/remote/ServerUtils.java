@@ -28,6 +28,10 @@ public class ServerUtils {
      * URL for sending the FCM token.
      */
     public static final String POST_TOKEN_URL = URL + "token";
+    /**
+     * URL for acknowledging a displayed notification.
+     */
+    public static final String POST_ACK_URL = URL + "ack";
     /**
      * URL for getting the list of all registered remind services.
      */
@@ -36,6 +40,10 @@ public class ServerUtils {
      * URL for HTTP Long Polling and actively waiting for push notifications.
      */
     public static final String WAIT_FOR_REMIND_URL = URL + "waitForRemind";
+    /**
+     * URL for the event stream which pushes all notifications over one open response.
+     */
+    public static final String STREAM_URL = URL + "stream";
     /**
      * Regular prefix for posting the client ID.
      */
@@ -44,6 +52,18 @@ public class ServerUtils {
      * Regular prefix for posting the FCM token.
      */
     public static final String POST_CLIENT_TOKEN_REGEX = "Token: ";
+    /**
+     * Regular prefix for posting the message ID of a notification.
+     */
+    public static final String POST_MESSAGE_ID_REGEX = "MessageId: ";
+    /**
+     * Response header with the message ID of a notification.
+     */
+    public static final String MESSAGE_ID_HEADER = "Message-Id";
+    /**
+     * Request header with the ID of the last event received from the event stream.
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
     /**
      * Key for storing the client ID at the client.
      */
@@ -0,0 +1,72 @@
+package com.ba.reminder.remote;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.UUID;
+
+/**
+ * This thread connects to the private HTTP forwarding server under the corresponding url to acknowledge a
+ * displayed notification.
+ */
+public class TAcknowledge extends Thread {
+
+    /**
+     * Client ID.
+     */
+    private final UUID clientId;
+    /**
+     * Message ID of the displayed notification.
+     */
+    private final long messageId;
+
+    /**
+     * Constructor.
+     *
+     * @param clientId: Client ID
+     * @param messageId: Message ID of the displayed notification
+     */
+    public TAcknowledge(UUID clientId, long messageId) {
+        this.clientId = clientId;
+        this.messageId = messageId;
+    }
+
+    @Override
+    public void run() {
+        HttpURLConnection urlConnection = null;
+        try {
+            // Set up connection
+            URL url = new URL(ServerUtils.POST_ACK_URL);
+            urlConnection = HTTPConnectionPool.openConnection(url);
+            urlConnection.setDoOutput(true);
+            urlConnection.setDoInput(true);
+
+            // POST Header info
+            urlConnection.setRequestMethod("POST");
+            urlConnection.setRequestProperty("Content-Type", "text/plain");
+            urlConnection.setRequestProperty("charset", "utf-8");
+
+            // POST Body contains client ID and message ID separated with a new line
+            BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
+            br_out.write(ServerUtils.POST_CLIENT_ID_REGEX + clientId.toString());
+            br_out.newLine();
+            br_out.write(ServerUtils.POST_MESSAGE_ID_REGEX + messageId);
+            br_out.newLine();
+            br_out.flush();
+            br_out.close();
+            // Wait for server response, the body tells if the notification was still pending
+            if (urlConnection.getResponseCode() != 200) {
+                Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
+            }
+            // Connection is reused for the next request
+            HTTPConnectionPool.release(urlConnection);
+        } catch (IOException e) {
+            Log.e("Exception", e.toString());
+            HTTPConnectionPool.discard(urlConnection);
+        }
+    }
+}
@@ -33,9 +33,8 @@ public class TConnect extends Thread {
         HttpURLConnection urlConnection = null;
         try {
             URL url = new URL(ServerUtils.URL);
-            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection = HTTPConnectionPool.openConnection(url);
             urlConnection.setDoInput(true);
-            urlConnection.setConnectTimeout(ServerUtils.CONNECTION_TIMEOUT);
             // Successful case
             if (urlConnection.getResponseCode() == 200) {
                 BufferedReader br = new BufferedReader(new InputStreamReader(urlConnection.getInputStream()));
@@ -47,10 +46,11 @@ public class TConnect extends Thread {
             } else {
                 Log.d("SERVER ERROR", urlConnection.getResponseCode() + "");
             }
+            // Connection is reused for the next request
+            HTTPConnectionPool.release(urlConnection);
         } catch (IOException e) {
             Log.e("Connection", e.toString());
-        } finally {
-            if (urlConnection != null) urlConnection.disconnect();
+            HTTPConnectionPool.discard(urlConnection);
         }
     }
 
@@ -52,7 +52,7 @@ public class TGetRegisteredRemindServices extends Thread {
         try {
             // Set up connection
             URL url = new URL(ServerUtils.GET_REMIND_OBJECT_LIST_URL);
-            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection = HTTPConnectionPool.openConnection(url);
             urlConnection.setDoInput(true);
             urlConnection.setDoOutput(true);
 
@@ -60,7 +60,6 @@ public class TGetRegisteredRemindServices extends Thread {
             urlConnection.setRequestMethod("POST");
             urlConnection.setRequestProperty("Content-Type", "text/plain");
             urlConnection.setRequestProperty("charset", "utf-8");
-            urlConnection.setRequestProperty("Connection", "close");
 
             // Post the client ID
             BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
@@ -91,12 +90,11 @@ public class TGetRegisteredRemindServices extends Thread {
             } else {
                 Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
             }
+            // Connection is reused for the next request
+            HTTPConnectionPool.release(urlConnection);
         } catch (IOException e) {
             Log.e("Exception", e.toString());
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
+            HTTPConnectionPool.discard(urlConnection);
         }
     }
 }
@@ -56,14 +56,13 @@ public class TSendRemindService extends Thread {
         try {
             // Set up connection
             URL url = new URL(ServerUtils.POST_REMIND_SERVICE_URL);
-            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection = HTTPConnectionPool.openConnection(url);
             urlConnection.setDoOutput(true);
 
             // POST Header info
             urlConnection.setRequestMethod("POST");
             urlConnection.setRequestProperty("Content-Type", "application/json");
             urlConnection.setRequestProperty("charset", "utf-8");
-            urlConnection.setRequestProperty("Connection", "close");
 
             // POST Body contains remindService as json
             BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
@@ -78,12 +77,11 @@ public class TSendRemindService extends Thread {
             if (urlConnection.getResponseCode() != 200) {
                 Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
             }
+            // Connection is reused for the next request
+            HTTPConnectionPool.release(urlConnection);
         } catch (IOException e) {
             Log.e("Exception", e.toString());
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
+            HTTPConnectionPool.discard(urlConnection);
         }
         // Log for remind service registration sent to server
         flavorLogger.infoForNotificationSent(remindService_json);
@@ -13,4 +13,8 @@ public class SerializeConst {
      * Extra constant for notification texts.
      */
     public static final String NOTIFICATION_MESSAGE = "NOTIFICATION_MESSAGE";
+    /**
+     * Extra constant for the message ID of a notification, which is acknowledged to the server.
+     */
+    public static final String MESSAGE_ID = "MESSAGE_ID";
 }
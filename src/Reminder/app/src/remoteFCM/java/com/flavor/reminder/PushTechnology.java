@@ -5,7 +5,9 @@ import android.util.Log;
 
 import com.ba.reminder.interfaces.IPushTechnology;
 import com.ba.reminder.logging.FlavorLogger;
+import com.ba.reminder.notification.NotificationReceiver;
 import com.ba.reminder.remote.HTTPPushTechnology;
+import com.ba.reminder.remote.TAcknowledge;
 import com.flavor.reminder.remote.CustomFirebaseMessagingService;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.server.model.RemindService;
@@ -38,6 +40,8 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
     public PushTechnology(Context context) {
         super(context, SHARED_PREF_FILENAME);
         CustomFirebaseMessagingService.setClientId(clientId);
+        // Acknowledge displayed notifications to the private HTTP forwarding server
+        NotificationReceiver.setAcknowledger(messageId -> new TAcknowledge(clientId, messageId).start());
         // Send FCM token to private HTTP forwarding server
         sendRegistrationTokenToServer();
         flavorLogger = new FlavorLogger();
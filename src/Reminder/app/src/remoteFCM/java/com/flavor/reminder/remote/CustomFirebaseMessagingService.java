@@ -20,6 +20,10 @@ public class CustomFirebaseMessagingService extends FirebaseMessagingService {
      * Key for getting the notification text in case of a message with no notification type.
      */
     private static final String NOTIFICATION_KEY = "NOTIFICATION";
+    /**
+     * Key for getting the message ID of the notification, which is acknowledged after displaying it.
+     */
+    private static final String MESSAGE_ID_KEY = "MESSAGE_ID";
     /**
      * Tag for logging
      */
@@ -84,14 +88,34 @@ public class CustomFirebaseMessagingService extends FirebaseMessagingService {
         // Only called when app is in the background
         RemoteMessage.Notification notification;
         if ((notification = remoteMessage.getNotification()) != null && (message = notification.getBody()) != null) {
-            NotificationReceiver.triggerNotification(CustomFirebaseMessagingService.this, message);
+            NotificationReceiver.triggerNotification(CustomFirebaseMessagingService.this, message, getMessageId(data));
         }
         // 2. Possibility: RemoteMessage can contain data for notification (message type)
         else if (data.containsKey(NOTIFICATION_KEY)) {
-            NotificationReceiver.triggerNotification(CustomFirebaseMessagingService.this, data.get(NOTIFICATION_KEY));
+            NotificationReceiver.triggerNotification(CustomFirebaseMessagingService.this, data.get(NOTIFICATION_KEY),
+                    getMessageId(data));
         }
         else {
             Log.e(TAG, "RemoteMessage has no info for a notification");
         }
     }
+
+    /**
+     * Returns the message ID of the notification in the data of a message.
+     *
+     * @param data: Data of the message
+     * @return Message ID or {@link NotificationReceiver#NO_MESSAGE_ID} if the data has none
+     */
+    private static long getMessageId(Map<String, String> data) {
+        String messageId = data.get(MESSAGE_ID_KEY);
+        if (messageId == null) {
+            return NotificationReceiver.NO_MESSAGE_ID;
+        }
+        try {
+            return Long.parseLong(messageId);
+        } catch (NumberFormatException e) {
+            Log.e(TAG, e.toString());
+            return NotificationReceiver.NO_MESSAGE_ID;
+        }
+    }
 }
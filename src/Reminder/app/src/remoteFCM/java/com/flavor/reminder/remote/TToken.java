@@ -2,6 +2,7 @@ package com.flavor.reminder.remote;
 
 import android.util.Log;
 
+import com.ba.reminder.remote.HTTPConnectionPool;
 import com.ba.reminder.remote.ServerUtils;
 
 import java.io.BufferedWriter;
@@ -42,15 +43,15 @@ public class TToken extends Thread {
         try {
             // Set up connection
             URL url = new URL(ServerUtils.POST_TOKEN_URL);
-            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection = HTTPConnectionPool.openConnection(url);
             urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(false);
+            // Response is read, so the connection can be reused
+            urlConnection.setDoInput(true);
 
             // POST Header info
             urlConnection.setRequestMethod("POST");
             urlConnection.setRequestProperty("Content-Type", "application/json");
             urlConnection.setRequestProperty("charset", "utf-8");
-            urlConnection.setRequestProperty("Connection", "close");
 
             // POST Body contains client ID and FCM token separated with a ner line
             BufferedWriter br_out = new BufferedWriter(new OutputStreamWriter(urlConnection.getOutputStream()));
@@ -65,12 +66,11 @@ public class TToken extends Thread {
             if (urlConnection.getResponseCode() != 200) {
                 Log.e("SERVER ERROR", urlConnection.getResponseCode() + "");
             }
+            // Connection is reused for the next request
+            HTTPConnectionPool.release(urlConnection);
         } catch (IOException e) {
             Log.e("Exception", e.toString());
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
+            HTTPConnectionPool.discard(urlConnection);
         }
     }
 }
@@ -4,6 +4,7 @@ import android.content.Context;
 
 import com.ba.reminder.interfaces.IPushTechnology;
 import com.ba.reminder.logging.FlavorLogger;
+import com.ba.reminder.notification.NotificationReceiver;
 import com.ba.reminder.remote.HTTPPushTechnology;
 import com.flavor.reminder.remote.THoldConnection;
 import com.server.model.RemindService;
@@ -41,6 +42,8 @@ public class PushTechnology extends HTTPPushTechnology implements IPushTechnolog
         super(context, SHARED_PREF_FILENAME);
         TListenToNotification = new THoldConnection(context, clientId);
         TListenToNotification.start();
+        // Acknowledge displayed notifications on the connection to MNS
+        NotificationReceiver.setAcknowledger(TListenToNotification::acknowledge);
         flavorLogger = new FlavorLogger();
     }
 
@@ -1,24 +1,32 @@
 package com.flavor.reminder.remote;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.util.Log;
 
 import com.ba.reminder.logging.FlavorLogger;
 import com.ba.reminder.notification.NotificationReceiver;
 import com.ba.reminder.remote.ServerUtils;
+import com.flavor.reminder.PushTechnology;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.ConnectException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
  * This thread holds an open connection to PMNS (private mobile notification server) to receive push notifications.
+ * The connection uses the binary frames of {@link PMSNFrame}. The sequence number of the last notification is stored,
+ * so PMNS sends the notifications missed while the connection was lost after reconnecting.
+ * Displayed notifications are acknowledged on the same connection with their message ID.
  */
 public class THoldConnection extends Thread {
 
@@ -38,10 +46,23 @@ public class THoldConnection extends Thread {
      * Receiver role.
      */
     public static final String RECEIVER = "Receiver";
+    /**
+     * Topic of announcements which PMNS broadcasts to all devices.
+     */
+    public static final String ANNOUNCEMENT_TOPIC = "announcements";
+    /**
+     * Key of the sequence number of the last notification in the local storage.
+     */
+    private static final String LAST_SEQUENCE_KEY = "pmsn_last_sequence";
     /**
      * Port of PMNS.
      */
     private static final int PMSN_PORT = 83;
+    /**
+     * Nodes of the PMNS cluster, the same list as configured for PMNS and the server.
+     */
+    private static final ConsistentHashRing PMSN_CLUSTER =
+            new ConsistentHashRing(Arrays.asList(ServerUtils.IP + ":" + PMSN_PORT));
     /**
      * Logger.
      */
@@ -54,10 +75,26 @@ public class THoldConnection extends Thread {
      * Context of application.
      */
     private final Context context;
+    /**
+     * Local storage for the sequence number of the last notification.
+     */
+    private final SharedPreferences localStorage;
     /**
      * Socket to PMNS.
      */
     private Socket connection;
+    /**
+     * Stream to PMNS, written by this thread and by the threads sending acknowledgements.
+     */
+    private OutputStream out;
+    /**
+     * Buffer for the headers of the frames written to PMNS.
+     */
+    private final byte[] headerBuffer = new byte[4 + PMSNFrame.HEADER_SIZE];
+    /**
+     * Node of the PMNS cluster which owns the client.
+     */
+    private String pmsnNode;
 
     /**
      * Constructor.
@@ -68,40 +105,89 @@ public class THoldConnection extends Thread {
     public THoldConnection(Context context, UUID clientId) {
         this.clientId = clientId;
         this.context = context;
+        this.localStorage = context.getSharedPreferences(PushTechnology.SHARED_PREF_FILENAME, Context.MODE_PRIVATE);
+        this.pmsnNode = PMSN_CLUSTER.getOwner(clientId);
     }
 
     @Override
     public void run() {
         try {
-            // Connect to PMNS
-            connection = new Socket(ServerUtils.IP, PMSN_PORT);
+            // Connect to the PMNS node of the client
+            connection = new Socket(ConsistentHashRing.getHost(pmsnNode), ConsistentHashRing.getPort(pmsnNode));
             Log.d("DEBUG", "Connected to server.");
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream()));
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            this.out = out;
+            // Binary connections start with the magic byte and the protocol version
+            out.write(PMSNFrame.MAGIC);
+            out.write(PMSNFrame.VERSION);
             // Client ID is unique so that PMNS can distinguish between the clients.
-            bw.write(POST_CLIENT_ID + clientId.toString());
-            bw.newLine();
-            // Role of receiver as the client receives push notifications
-            bw.write(POST_ROLE + RECEIVER);
-            bw.newLine();
-            bw.flush();
+            // Role of receiver as the client receives push notifications, PMNS sends the notifications after the last one
+            byte[] lastSequence = ByteBuffer.allocate(8).putLong(localStorage.getLong(LAST_SEQUENCE_KEY, 0)).array();
+            // Announcements are broadcast to all devices subscribed to the topic
+            UUID announcementTopicId = PMSNFrame.getTopicId(ANNOUNCEMENT_TOPIC);
+            synchronized (headerBuffer) {
+                PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_REGISTER_RECEIVER,
+                        clientId.getMostSignificantBits(), clientId.getLeastSignificantBits(), (byte) 0,
+                        lastSequence, 0, lastSequence.length);
+                PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_SUBSCRIBE,
+                        announcementTopicId.getMostSignificantBits(), announcementTopicId.getLeastSignificantBits(),
+                        (byte) 0, new byte[0], 0, 0);
+                out.flush();
+            }
 
-            BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            // Connection is kept open
-            String expectedNotificationMessage;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            // Connection is kept open, all notifications are read into one frame
+            PMSNFrame frame = new PMSNFrame();
             while (true) {
                 // Thread is blocked
-                expectedNotificationMessage = br.readLine();
-                if (expectedNotificationMessage == null) {
+                if (!frame.readFrom(in)) {
                     Log.d("PMSN", "End of stream");
                     return;
                 }
-                String notification = getNotificationMessage(expectedNotificationMessage);
-                if (notification != null) {
+                if (frame.getType() == PMSNFrame.TYPE_PING) {
+                    // Answer heartbeats, otherwise PMNS closes the connection
+                    synchronized (headerBuffer) {
+                        PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_PONG, 0, 0, (byte) 0, new byte[0], 0, 0);
+                        out.flush();
+                    }
+                    continue;
+                }
+                int messageOffset = frame.getPayloadOffset();
+                int messageLength = frame.getPayloadLength();
+                long messageId = NotificationReceiver.NO_MESSAGE_ID;
+                if (frame.getType() == PMSNFrame.TYPE_NOTIFICATION
+                        && (frame.getFlags() & PMSNFrame.FLAG_SEQUENCED) != 0) {
+                    // Remember the notification, so it is not sent again after reconnecting
+                    localStorage.edit().putLong(LAST_SEQUENCE_KEY, frame.getPayloadLong()).apply();
+                    messageOffset += 8;
+                    messageLength -= 8;
+                }
+                if (frame.getType() == PMSNFrame.TYPE_NOTIFICATION
+                        && (frame.getFlags() & PMSNFrame.FLAG_MESSAGE_ID) != 0) {
+                    // Message ID to acknowledge the notification with after displaying it
+                    messageId = ByteBuffer.wrap(frame.getBuffer(), messageOffset, 8).getLong();
+                    messageOffset += 8;
+                    messageLength -= 8;
+                }
+                String message = new String(frame.getBuffer(), messageOffset, messageLength, StandardCharsets.UTF_8);
+                if (frame.getType() == PMSNFrame.TYPE_ERROR) {
+                    Log.e("PMSN", message);
+                    return;
+                }
+                if (frame.getType() == PMSNFrame.TYPE_REDIRECT) {
+                    // Another node of the cluster owns the client now
+                    Log.d("PMSN", "Redirected to " + message);
+                    pmsnNode = message;
+                    connection.close();
+                    reconnect();
+                    return;
+                }
+                if (frame.getType() == PMSNFrame.TYPE_NOTIFICATION) {
                     // Log when message arrived to the client
-                    flavorLogger.infoForNotificationArrivedAtClient(notification);
+                    flavorLogger.infoForNotificationArrivedAtClient(message);
 
                     // Show notification at the notification tray
-                    NotificationReceiver.triggerNotification(context, notification);
+                    NotificationReceiver.triggerNotification(context, message, messageId);
                 }
             }
             // If a connection error occurs, try reconnecting
@@ -120,16 +206,40 @@ public class THoldConnection extends Thread {
     }
 
     /**
-     * Gets the notification text in the message sent by PMNS with a regular expresion.
+     * Acknowledges a displayed notification to PMNS, which relays the acknowledgement to the server.
+     * The acknowledgement is written by its own thread, as it is called on the main thread.
+     *
+     * @param messageId: Message ID of the notification
+     */
+    public void acknowledge(long messageId) {
+        new Thread(() -> {
+            byte[] payload = ByteBuffer.allocate(8).putLong(messageId).array();
+            synchronized (headerBuffer) {
+                if (out == null) {
+                    Log.e("PMSN", "Not connected, notification " + messageId + " not acknowledged");
+                    return;
+                }
+                try {
+                    PMSNFrame.write(out, headerBuffer, PMSNFrame.TYPE_ACK, clientId.getMostSignificantBits(),
+                            clientId.getLeastSignificantBits(), (byte) 0, payload, 0, payload.length);
+                    out.flush();
+                } catch (IOException e) {
+                    Log.e("Exception", e.toString());
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Gets the notification text in a text line sent by PMNS to legacy receivers.
      *
      * @param expectedNotificationMessage: Message which contains a notification text
      * @return Notification text
      */
     public static String getNotificationMessage(String expectedNotificationMessage) {
-        if (!expectedNotificationMessage.matches(POST_NOTIFICATION + ".*")) return null;
+        if (!expectedNotificationMessage.startsWith(POST_NOTIFICATION)) return null;
         // Message can also be empty string
-        String[] clientRolePart = expectedNotificationMessage.split(POST_NOTIFICATION);
-        return clientRolePart[1];
+        return expectedNotificationMessage.substring(POST_NOTIFICATION.length());
     }
 
     @Override